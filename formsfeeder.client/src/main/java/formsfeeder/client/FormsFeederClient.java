@@ -19,6 +19,7 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status.Family;
 import javax.ws.rs.core.Response.StatusType;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.glassfish.jersey.media.multipart.FormDataMultiPart;
 import org.slf4j.Logger;
@@ -27,6 +28,8 @@ import org.slf4j.LoggerFactory;
 import com._4point.aem.formsfeeder.core.api.FeedConsumer;
 import com._4point.aem.formsfeeder.core.datasource.DataSource;
 import com._4point.aem.formsfeeder.core.datasource.DataSourceList;
+import com._4point.aem.formsfeeder.core.datasource.serialization.BinaryDataSourceListDecoder;
+import com._4point.aem.formsfeeder.core.datasource.serialization.BinaryDataSourceListEncoder;
 import com._4point.aem.formsfeeder.core.support.Jdk8Utils;
 
 import formsfeeder.client.support.BuilderImpl;
@@ -37,6 +40,8 @@ import formsfeeder.client.support.FfLoggerFactory;
 public class FormsFeederClient implements FeedConsumer {
 	public static final String FORMSFEEDERCLIENT_DATA_SOURCE_NAME = "formsfeeder:server_response";
 
+	private static final MediaType BINARY_DSL_MEDIA_TYPE = MediaType.valueOf(BinaryDataSourceListEncoder.DSL_MIME_TYPE_STR);
+
 	private final Logger baseLogger = LoggerFactory.getLogger(this.getClass());
 	
 	private final WebTarget target;
@@ -44,15 +49,17 @@ public class FormsFeederClient implements FeedConsumer {
 	private final String pluginName;
 	private final Map<String,Supplier<String>> headerMap;
 	private final Map<String,List<Supplier<String>>> queryParams;
+	private final boolean useBinaryFormat;
 	String returnedCorrelationId = null;
 	
 	private FormsFeederClient(WebTarget target, Map<String,List<Supplier<String>>> queryParams, Supplier<String> correlationIdFn, String pluginName,
-							  Map<String, Supplier<String>> headerMap) {
+							  Map<String, Supplier<String>> headerMap, boolean useBinaryFormat) {
 		this.target = target;
 		this.queryParams = queryParams;
 		this.correlationIdFn = correlationIdFn;
 		this.pluginName = pluginName;
 		this.headerMap = headerMap;
+		this.useBinaryFormat = useBinaryFormat;
 	}
 
 	@Override
@@ -78,13 +85,15 @@ public class FormsFeederClient implements FeedConsumer {
 					}
 				}
 			}
-			javax.ws.rs.client.Invocation.Builder invocBuilder = webTarget.request(MediaType.MULTIPART_FORM_DATA_TYPE).header(CorrelationId.CORRELATION_ID_HDR, correlationIdSent);
+			javax.ws.rs.client.Invocation.Builder invocBuilder = (useBinaryFormat ? webTarget.request(BINARY_DSL_MEDIA_TYPE) : webTarget.request(MediaType.MULTIPART_FORM_DATA_TYPE))
+																	.header(CorrelationId.CORRELATION_ID_HDR, correlationIdSent);
 			if(headerMap!=null && !headerMap.isEmpty()) {
 				headerMap.keySet().stream().forEach(header -> invocBuilder.header(header, headerMap.get(header).get()));
 			}
 
 			// If the list is empty, send a GET instead of a POST
-			Response response = dataSources.list().isEmpty() ? invocBuilder.get() : invocBuilder.post(asEntity(asFormDataMultipart(dataSources)));
+			Response response = dataSources.list().isEmpty() ? invocBuilder.get() 
+															 : invocBuilder.post(useBinaryFormat ? asBinaryEntity(dataSources) : asEntity(asFormDataMultipart(dataSources)));
 			
 			
 			StatusType resultStatus = response.getStatusInfo();
@@ -110,8 +119,11 @@ public class FormsFeederClient implements FeedConsumer {
 				logger.info("Formsfeeder server returned 0 DataSources.");
 				return DataSourceList.emptyList();
 			} else {
-				DataSourceList returnedList = MediaType.MULTIPART_FORM_DATA_TYPE.isCompatible(response.getMediaType()) ?
+				MediaType responseType = response.getMediaType();
+				DataSourceList returnedList = MediaType.MULTIPART_FORM_DATA_TYPE.isCompatible(responseType) ?
 													asDataSourceList(response.readEntity(FormDataMultiPart.class), logger) : // Multiple DataSource Response.
+											  BINARY_DSL_MEDIA_TYPE.isCompatible(responseType) ?
+													asBinaryDataSourceList(response) : 	// Multiple DataSource Response in binary format.
 													asDataSourceList(response, FORMSFEEDERCLIENT_DATA_SOURCE_NAME, logger) ;// Single DataSource Response
 				logger.info("Formsfeeder server returned " + returnedList.list().size() + " DataSources.");
 				if (logger.isDebugEnabled()) {
@@ -139,6 +151,27 @@ public class FormsFeederClient implements FeedConsumer {
 		return Entity.entity(requestData, requestData.getMediaType());
 	}
 
+	/**
+	 * Creates an entity that writes the DataSourceList in the binary format as the request is sent.
+	 * 
+	 * @param dataSources
+	 * @return
+	 */
+	private static Entity<StreamingOutput> asBinaryEntity(DataSourceList dataSources) {
+		StreamingOutput binary = os->{
+			try (BinaryDataSourceListEncoder encoder = BinaryDataSourceListEncoder.wrap(os)) {
+				encoder.encode(dataSources);
+			}
+		};
+		return Entity.entity(binary, BINARY_DSL_MEDIA_TYPE);
+	}
+
+	private static DataSourceList asBinaryDataSourceList(Response response) throws IOException {
+		try (InputStream is = response.readEntity(InputStream.class); BinaryDataSourceListDecoder decoder = BinaryDataSourceListDecoder.wrap(is)) {
+			return decoder.decode().orElse(DataSourceList.emptyList());
+		}
+	}
+
 	public static Builder builder() {
 		return new Builder();
 	}
@@ -150,6 +183,7 @@ public class FormsFeederClient implements FeedConsumer {
 	public static class Builder implements formsfeeder.client.support.Builder {
 		private BuilderImpl builder = new BuilderImpl();
 		private String pluginName = null;
+		private boolean useBinaryFormat = false;
 
 		@Override
 		public Builder machineName(String machineName) {
@@ -242,12 +276,25 @@ public class FormsFeederClient implements FeedConsumer {
 			return this;
 		}
 		
+		/**
+		 * Send DataSources to the server (and ask for them back) in the compact binary DataSourceList format instead
+		 * of multipart/form-data.  This requires a server that supports the binary format.
+		 * 
+		 * @param useBinaryFormat
+		 * @return
+		 */
+		public Builder useBinaryFormat(boolean useBinaryFormat) {
+			this.useBinaryFormat = useBinaryFormat;
+			return this;
+		}
+		
 		public FormsFeederClient build() {
 			return new FormsFeederClient(builder.createLocalTarget(),
 										 builder.getQueryParams(),
 										 builder.getCorrelationIdFn(), 
 										 Objects.requireNonNull(this.pluginName, "Plug-in name must be supplied using plugin() method before build() is called."),
-										 builder.getHeaderMap()
+										 builder.getHeaderMap(),
+										 useBinaryFormat
 			);
 		}
 	}
@@ -1,10 +1,16 @@
 package formsfeeder.client;
 
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.matching;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlMatching;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -16,6 +22,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -29,6 +36,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
@@ -45,6 +53,8 @@ import com._4point.aem.formsfeeder.core.datasource.DataSource;
 import com._4point.aem.formsfeeder.core.datasource.DataSourceList;
 import com._4point.aem.formsfeeder.core.datasource.MimeType;
 import com._4point.aem.formsfeeder.core.datasource.StandardMimeTypes;
+import com._4point.aem.formsfeeder.core.datasource.serialization.BinaryDataSourceListDecoder;
+import com._4point.aem.formsfeeder.core.datasource.serialization.BinaryDataSourceListEncoder;
 import com._4point.aem.formsfeeder.core.support.Jdk8Utils;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.github.tomakehurst.wiremock.WireMockServer;
@@ -53,6 +63,7 @@ import com.github.tomakehurst.wiremock.extension.responsetemplating.ResponseTemp
 import com.github.tomakehurst.wiremock.http.ResponseDefinition;
 import com.github.tomakehurst.wiremock.recording.SnapshotRecordResult;
 import com.github.tomakehurst.wiremock.stubbing.StubMapping;
+import com.github.tomakehurst.wiremock.verification.LoggedRequest;
 import com.jcabi.xml.XML;
 import com.jcabi.xml.XMLDocument;
 
@@ -275,6 +286,56 @@ class FormsFeederClientTest {
 		}
 	}
 
+	@Test
+	void testAccept_BinaryFormat() throws Exception {
+		if (USE_WIREMOCK) {    // Perform this test when doing unit testing (using wiremock), but skip this test when doing integration testing
+			String correlationId = "correlationId";
+			DataSourceList expectedResponse = DataSourceList.builder()
+															.add("ResponseString", stringData)
+															.add("ResponseBytes", "Response Bytes".getBytes(), mimeType, Paths.get("response.pdf"))
+															.build();
+			wireMockServer.stubFor(post(urlPathEqualTo("/api/v1/Mock"))
+					.withHeader(HttpHeaders.CONTENT_TYPE, equalTo(BinaryDataSourceListEncoder.DSL_MIME_TYPE_STR))
+					.willReturn(aResponse().withStatus(200)
+										   .withHeader(HttpHeaders.CONTENT_TYPE, BinaryDataSourceListEncoder.DSL_MIME_TYPE_STR)
+										   .withHeader(CorrelationId.CORRELATION_ID_HDR, correlationId)
+										   .withBody(toBinary(expectedResponse))));
+
+			FormsFeederClient underTest = FormsFeederClient.builder()
+					.machineName(formsfeederServerName)
+					.port(formsfeederServerPort)
+					.plugin("Mock")
+					.correlationId(() -> correlationId)
+					.useBinaryFormat(true)
+					.build();
+			DataSourceList result = underTest.accept(DataSourceList.builder().add(STRING_DS_NAME, stringData).build());
+
+			List<LoggedRequest> requests = wireMockServer.findAll(postRequestedFor(urlPathEqualTo("/api/v1/Mock")));
+			assertEquals(1, requests.size());
+			LoggedRequest request = requests.get(0);
+			try (BinaryDataSourceListDecoder decoder = BinaryDataSourceListDecoder.wrap(new ByteArrayInputStream(request.getBody()))) {
+				DataSourceList sent = decoder.decode().get();
+				assertEquals(stringData, sent.deconstructor().getStringByName(STRING_DS_NAME).get());
+			}
+			DataSourceList.Deconstructor d11r = result.deconstructor();
+			assertAll(
+					()->assertThat(request.getHeader(HttpHeaders.ACCEPT), containsString(BinaryDataSourceListEncoder.DSL_MIME_TYPE_STR)),
+					()->assertEquals(2, result.size()),
+					()->assertEquals(stringData, d11r.getStringByName("ResponseString").get()),
+					()->assertArrayEquals("Response Bytes".getBytes(), d11r.getByteArrayByName("ResponseBytes").get()),
+					()->assertEquals(Paths.get("response.pdf"), d11r.getDataSourceByName("ResponseBytes").get().filename().get())
+					);
+		}
+	}
+
+	private static byte[] toBinary(DataSourceList dsl) throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		try (BinaryDataSourceListEncoder encoder = BinaryDataSourceListEncoder.wrap(os)) {
+			encoder.encode(dsl);
+		}
+		return os.toByteArray();
+	}
+
 	@Test
 	void testAccept_CustomContextRoot() throws Exception {
 		if (USE_WIREMOCK) {    // Perform this test when doing unit testing (using wiremock), but skip this test when doing integration testing
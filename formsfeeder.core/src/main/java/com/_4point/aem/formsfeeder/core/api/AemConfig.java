@@ -1,5 +1,7 @@
 package com._4point.aem.formsfeeder.core.api;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 public interface AemConfig {
@@ -52,4 +54,15 @@ public interface AemConfig {
 	default public String url() {
 		return protocol().toProtocolString() + "://" + host() + (port() != 80 ? ":" + port() : "") + "/";
 	}
+
+	/**
+	 * The base URLs of all the AEM servers that requests may be sent to, in order of preference.
+	 * 
+	 * By default, this is just the one server described by host(), port() and protocol().
+	 * 
+	 * @return
+	 */
+	default public List<String> urls() {
+		return Collections.singletonList(url());
+	}
 }
@@ -1,6 +1,5 @@
 package com._4point.aem.formsfeeder.core.datasource;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
@@ -27,7 +26,6 @@ import javax.xml.stream.FactoryConfigurationError;
 import javax.xml.stream.XMLStreamException;
 
 import com._4point.aem.formsfeeder.core.datasource.serialization.XmlDataSourceListDecoder;
-import com._4point.aem.formsfeeder.core.datasource.serialization.XmlDataSourceListEncoder;
 import com._4point.aem.formsfeeder.core.support.Jdk8Utils;
 
 /**
@@ -41,12 +39,16 @@ public class DataSourceList implements Iterable<DataSource> {
 	private static final DataSourceList EMPTY_LIST = new DataSourceList();
 	
 	private final List<DataSource> list;
+	// Index of DataSources by name.  It is built lazily on the first lookup by name.  Since the underlying list is immutable, the
+	// index never needs to be rebuilt.  Racing threads may each build an index, but they will build identical ones, so this is benign.
+	private volatile Map<String, List<DataSource>> nameIndex = null;
 
 	/**
 	 * Constructs an empty list.  Just used by the EMPTY_LIST constant.
 	 */
 	private DataSourceList() {
 		this.list =  Collections.emptyList();
+		this.nameIndex = Collections.emptyMap();
 	}
 	
 	/**
@@ -89,7 +91,8 @@ public class DataSourceList implements Iterable<DataSource> {
 	/**
 	 * Gets the first DataSource with the specified name.
 	 * 
-	 * Will generate a NullPointerException if the name parameter is null.
+	 * Will generate a NullPointerException if the name parameter is null (unless the list is empty, in which case nothing
+	 * is found).
 	 * 
 	 * Shortcut function for <code>getDataSource((ds)-&gt;ds.name().equals(name))</code>
 	 * 
@@ -97,7 +100,8 @@ public class DataSourceList implements Iterable<DataSource> {
 	 * @return the first DataSource with the specified name
 	 */
 	public final Optional<DataSource> getDataSourceByName(final String name) {
-		return getDataSource(byName(name));
+		List<DataSource> found = lookupByName(name);
+		return found != null ? Optional.of(found.get(0)) : Optional.empty();
 	}
 
 	/**
@@ -121,15 +125,19 @@ public class DataSourceList implements Iterable<DataSource> {
 	/**
 	 * Returns a list of the DataSource objects with the specified name.
 	 * 
-	 * Will generate a NullPointerException if the name parameter is null.
+	 * Will generate a NullPointerException if the name parameter is null (unless the list is empty, in which case nothing
+	 * is found).
 	 * 
 	 * Shortcut function for <code>getDataSources((ds)-&gt;ds.name().equals(name))</code>
 	 * 
+	 * The list returned is unmodifiable and may be shared between callers.
+	 * 
 	 * @param name
 	 * @return a list of the DataSource objects with the specified name
 	 */
 	public final List<DataSource> getDataSourcesByName(String name) {
-		return getDataSources(byName(name));
+		List<DataSource> found = lookupByName(name);
+		return found != null ? found : Collections.emptyList();
 	}
 
 	/**
@@ -151,6 +159,58 @@ public class DataSourceList implements Iterable<DataSource> {
 		return Jdk8Utils.copyOfList(found);
 	}
 
+	/**
+	 * Looks up the DataSources with a name in the name index.
+	 * 
+	 * The null check matches the predicate based lookup (see {@link #byName(String)}), which only fails on a null name
+	 * once it is applied to a DataSource, so a null name finds nothing in an empty list.
+	 * 
+	 * @param name
+	 * @return the DataSources with the name, or null if there are none
+	 */
+	private List<DataSource> lookupByName(final String name) {
+		if (name == null && list.isEmpty()) {
+			return null;
+		}
+		return nameIndex().get(Objects.requireNonNull(name, "Target DataSource name cannot be null."));
+	}
+
+	/**
+	 * Returns the index of DataSources by name, building it if this is the first lookup. 
+	 * 
+	 * @return unmodifiable map of name to the unmodifiable list of DataSources with that name (in list order)
+	 */
+	private Map<String, List<DataSource>> nameIndex() {
+		Map<String, List<DataSource>> index = this.nameIndex;
+		if (index == null) {
+			index = buildNameIndex(this.list);
+			this.nameIndex = index;
+		}
+		return index;
+	}
+
+	private static Map<String, List<DataSource>> buildNameIndex(List<DataSource> list) {
+		Map<String, List<DataSource>> index = new HashMap<>(list.size() + list.size() / 3 + 1);
+		for (DataSource ds : list) {
+			List<DataSource> entries = index.get(ds.name());
+			if (entries == null) {
+				index.put(ds.name(), Collections.singletonList(ds));	// Most names are unique, so start with a singleton list. 
+			} else {
+				if (entries.size() == 1) {
+					entries = new ArrayList<>(entries);
+					index.put(ds.name(), entries);
+				}
+				entries.add(ds);
+			}
+		}
+		for (Map.Entry<String, List<DataSource>> entry : index.entrySet()) {
+			if (entry.getValue().size() > 1) {
+				entry.setValue(Collections.unmodifiableList(entry.getValue()));
+			}
+		}
+		return Collections.unmodifiableMap(index);
+	}
+
 	/**
 	 * Static constructor for DataSourceList.  A defensive copy is made of the list, so that subsequent changes
 	 * do not affect the list.
@@ -407,7 +467,7 @@ public class DataSourceList implements Iterable<DataSource> {
 		}
 
 		public Builder add(String name, DataSourceList dsl) {
-			underConstruction.add(new ByteArrayDataSource(dataSourceListToByteArray(dsl), Objects.requireNonNull(name, "Name cannot be null."), XmlDataSourceListEncoder.DSL_MIME_TYPE));
+			underConstruction.add(new DataSourceListDataSource(dsl, Objects.requireNonNull(name, "Name cannot be null.")));
 			return this;
 		}
 
@@ -471,7 +531,7 @@ public class DataSourceList implements Iterable<DataSource> {
 		}
 
 		public Builder add(String name, DataSourceList dsl, Map<String, String> attributes) {
-			underConstruction.add(new ByteArrayDataSource(dataSourceListToByteArray(dsl), Objects.requireNonNull(name, "Name cannot be null."), XmlDataSourceListEncoder.DSL_MIME_TYPE, attributes));
+			underConstruction.add(new DataSourceListDataSource(dsl, Objects.requireNonNull(name, "Name cannot be null."), attributes));
 			return this;
 		}
 
@@ -530,7 +590,7 @@ public class DataSourceList implements Iterable<DataSource> {
 		}
 
 		public Builder addDataSourceLists(String name, List<DataSourceList> lList) {
-			lList.forEach(l->underConstruction.add(new ByteArrayDataSource(dataSourceListToByteArray(l), Objects.requireNonNull(name, "Name cannot be null."), XmlDataSourceListEncoder.DSL_MIME_TYPE)));
+			lList.forEach(l->underConstruction.add(new DataSourceListDataSource(l, Objects.requireNonNull(name, "Name cannot be null."))));
 			return this;
 		}
 
@@ -580,22 +640,10 @@ public class DataSourceList implements Iterable<DataSource> {
 		}
 		
 		public Builder addDataSourceLists(String name, List<DataSourceList> lList, Map<String, String> attributes) {
-			lList.forEach(l->underConstruction.add(new ByteArrayDataSource(dataSourceListToByteArray(l), Objects.requireNonNull(name, "Name cannot be null."), XmlDataSourceListEncoder.DSL_MIME_TYPE, attributes)));
+			lList.forEach(l->underConstruction.add(new DataSourceListDataSource(l, Objects.requireNonNull(name, "Name cannot be null."), attributes)));
 			return this;
 		}
 		
-		private static byte[] dataSourceListToByteArray(DataSourceList dsl) {
-			ByteArrayOutputStream contents = new ByteArrayOutputStream();
-			try (XmlDataSourceListEncoder encoder = XmlDataSourceListEncoder.wrap(contents)) {
-				encoder.encode(dsl);
-			} catch (IOException | XMLStreamException | FactoryConfigurationError e) {
-				// This should never happen.
-				String msg = e.getMessage();
-				throw new IllegalStateException("Error while encoding DataSourceList (" + (msg != null ? msg : "null") + ").", e);
-			}
-			return contents.toByteArray();
-		}
-		
 		// Default registry is a immutable registry containing all the standard deconstructor functions.
 		private BuilderFunctionRegistry defaultRegistry = BuilderFunctionRegistry.from(StandardMappers.MAPPER_LIST.stream().collect(Collectors.toMap(Mapper::target, Mapper::to)));
 		// Normal registry contains any deconstructor functions registered by the user.
@@ -978,6 +1026,10 @@ public class DataSourceList implements Iterable<DataSource> {
 			if (!XmlDataSourceListDecoder.DSL_MIME_TYPE.equals(ds.contentType())) {
 				throw new IllegalArgumentException("Cannot convert DataSource with contentType '" + ds.contentType().asString() + "' to a DataSourceList.");
 			}
+			if (ds instanceof DataSourceListDataSource) {
+				// Nested DataSourceList that has not been serialized, so we can just return it.
+				return Optional.of(((DataSourceListDataSource) ds).contents());
+			}
 			try(XmlDataSourceListDecoder decoder = XmlDataSourceListDecoder.wrap(ds.inputStream())) {
 				return decoder.decode();
 			} catch (XMLStreamException | IOException | FactoryConfigurationError e) {
@@ -1367,7 +1419,7 @@ public class DataSourceList implements Iterable<DataSource> {
 		public static Mapper<DataSourceList> DATASOURCELIST = new Mapper<DataSourceList>() {
 
 			@Override
-			public BiFunction<String, DataSourceList, DataSource> to() { return (name, dsl)->new ByteArrayDataSource(Builder.dataSourceListToByteArray(dsl), Objects.requireNonNull(name, "Name cannot be null."), XmlDataSourceListEncoder.DSL_MIME_TYPE); }
+			public BiFunction<String, DataSourceList, DataSource> to() { return (name, dsl)->new DataSourceListDataSource(dsl, Objects.requireNonNull(name, "Name cannot be null.")); }
 
 			@Override
 			public Function<DataSource, DataSourceList> from() { return ds->Deconstructor.dsToDataSourceList(ds).orElseThrow(()->new IllegalStateException("Unable to decode DataSource '" + ds.name() + "' into DataSourceList.")); }
@@ -0,0 +1,137 @@
+package com._4point.aem.formsfeeder.core.datasource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.xml.stream.FactoryConfigurationError;
+import javax.xml.stream.XMLStreamException;
+
+import com._4point.aem.formsfeeder.core.datasource.serialization.XmlDataSourceListDecoder;
+import com._4point.aem.formsfeeder.core.datasource.serialization.XmlDataSourceListEncoder;
+
+/**
+ * DataSource that contains a nested DataSourceList.
+ *
+ * The DataSourceList object is held directly.  It is only serialized (using the XmlDataSourceListEncoder) if someone
+ * asks for the DataSource's InputStream (for example, when the DataSource is being written out to a client).  The
+ * serialized form is cached, so that happens at most once.  Code that understands nested DataSourceLists (i.e. the
+ * Deconstructor) retrieves the DataSourceList object without any serialization.
+ *
+ * Instances may be shared between request threads, so the DataSourceList and its serialized form are published together
+ * through a single volatile reference.
+ *
+ */
+/* package */ class DataSourceListDataSource extends AbstractDataSource implements DataSource {
+	private static final MimeType MIME_TYPE = XmlDataSourceListEncoder.DSL_MIME_TYPE;
+
+	private volatile Contents contents;
+
+	/* package */ DataSourceListDataSource(DataSourceList contents, String name) {
+		super(name, MIME_TYPE);
+		this.contents = new Contents(Objects.requireNonNull(contents, "DataSourceList cannot be null."), null);
+	}
+
+	/* package */ DataSourceListDataSource(DataSourceList contents, String name, Map<String, String> attributes) {
+		super(name, MIME_TYPE, attributes);
+		this.contents = new Contents(Objects.requireNonNull(contents, "DataSourceList cannot be null."), null);
+	}
+
+	/* package */ final DataSourceList contents() {
+		return contents.dsl;
+	}
+
+	@Override
+	public InputStream inputStream() {
+		return wrapInputStream(()->new ByteArrayInputStream(serializedContents()));
+	}
+
+	@Override
+	public OutputStream outputStream() {
+		return wrapOutputStream(()->new LocalByteArrayOutputStream(new ByteArrayOutputStream()));
+	}
+
+	private byte[] serializedContents() {
+		Contents current = contents;
+		byte[] result = current.serialized;
+		if (result == null) {
+			result = serialize(current.dsl);	// Racing threads produce identical bytes, so either may win.
+			current.serialized = result;
+		}
+		return result;
+	}
+
+	/* package */ static byte[] serialize(DataSourceList dsl) {
+		ByteArrayOutputStream contents = new ByteArrayOutputStream();
+		try (XmlDataSourceListEncoder encoder = XmlDataSourceListEncoder.wrap(contents)) {
+			encoder.encode(dsl);
+		} catch (IOException | XMLStreamException | FactoryConfigurationError e) {
+			// This should never happen.
+			String msg = e.getMessage();
+			throw new IllegalStateException("Error while encoding DataSourceList (" + (msg != null ? msg : "null") + ").", e);
+		}
+		return contents.toByteArray();
+	}
+
+	private static DataSourceList deserialize(byte[] bytes) throws IOException {
+		try (XmlDataSourceListDecoder decoder = XmlDataSourceListDecoder.wrap(new ByteArrayInputStream(bytes))) {
+			return decoder.decode().orElse(DataSourceList.emptyList());
+		} catch (XMLStreamException | FactoryConfigurationError e) {
+			String msg = e.getMessage();
+			throw new IOException("Error while decoding DataSourceList (" + (msg == null ? "null" : msg) + ").", e);
+		}
+	}
+
+	/**
+	 * A DataSourceList and its serialized form (if it has been serialized yet).
+	 */
+	private static final class Contents {
+		private final DataSourceList dsl;
+		private volatile byte[] serialized;	// Lazily created serialized version of dsl.
+
+		private Contents(DataSourceList dsl, byte[] serialized) {
+			this.dsl = dsl;
+			this.serialized = serialized;
+		}
+	}
+
+	private class LocalByteArrayOutputStream extends OutputStream {
+		private final ByteArrayOutputStream bos;
+
+		private LocalByteArrayOutputStream(ByteArrayOutputStream bos) {
+			super();
+			this.bos = bos;
+		}
+
+		@Override
+		public void write(byte[] b) throws IOException {
+			bos.write(b);
+		}
+
+		@Override
+		public void write(int b) {
+			bos.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			bos.write(b, off, len);
+		}
+
+		@Override
+		public void close() throws IOException {
+			bos.close();
+			byte[] bytes = bos.toByteArray();
+			DataSourceListDataSource.this.contents = new Contents(deserialize(bytes), bytes);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			bos.flush();
+		}
+	}
+}
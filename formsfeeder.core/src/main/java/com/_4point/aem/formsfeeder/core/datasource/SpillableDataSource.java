@@ -0,0 +1,200 @@
+package com._4point.aem.formsfeeder.core.datasource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * DataSource that holds its contents in memory until they grow beyond a threshold, at which point the contents
+ * are moved (i.e. "spilled") into a temporary file.
+ *
+ * The temporary file is owned by this DataSource and is removed when the DataSource is closed.  These are normally
+ * created (and closed) by a SpillableDataSourceFactory.
+ *
+ */
+/* package */ class SpillableDataSource extends AbstractDataSource implements DataSource, Closeable {
+	private static final String TEMP_FILE_PREFIX = "formsfeeder_";
+	private static final String TEMP_FILE_SUFFIX = ".tmp";
+	private static final byte[] EMPTY_CONTENTS = new byte[0];
+
+	private final int threshold;
+	private final Path tempDir;		// null means use the default temporary directory
+	private byte[] contents = EMPTY_CONTENTS;	// Used while contents are in memory
+	private Path tempFile = null;				// Used once contents have been spilled to disk
+	private Path pendingTempFile = null;		// Temporary file of an output stream that has not been closed yet
+	private Path filename = null;
+	private boolean closed = false;
+
+	/* package */ SpillableDataSource(int threshold, Path tempDir, String name, MimeType contentType) {
+		super(name, contentType);
+		this.threshold = threshold;
+		this.tempDir = tempDir;
+	}
+
+	/* package */ SpillableDataSource(int threshold, Path tempDir, String name, MimeType contentType, Map<String, String> attributes) {
+		super(name, contentType, attributes);
+		this.threshold = threshold;
+		this.tempDir = tempDir;
+	}
+
+	/**
+	 * Returns true if the contents of this DataSource have been written to a temporary file.
+	 *
+	 * @return
+	 */
+	/* package */ final boolean isSpilled() {
+		return tempFile != null;
+	}
+
+	/* package */ final Optional<Path> tempFile() {
+		return Optional.ofNullable(tempFile);
+	}
+
+	@Override
+	public InputStream inputStream() {
+		return wrapInputStream(this::internalInputStream);
+	}
+
+	// Need this to convert checked IOExceptions to unchecked IllegalStateExceptions
+	private InputStream internalInputStream() {
+		ensureOpen();
+		if (tempFile == null) {
+			return new ByteArrayInputStream(contents);
+		}
+		try {
+			return Files.newInputStream(tempFile);
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to open input stream on temporary file '" + tempFile + "'.", e);
+		}
+	}
+
+	@Override
+	public OutputStream outputStream() {
+		return wrapOutputStream(()->{ ensureOpen(); return new SpillingOutputStream(); });
+	}
+
+	@Override
+	public Optional<Path> filename() {
+		return Optional.ofNullable(filename);
+	}
+
+	final void filename(Path filename) {
+		this.filename = filename;
+	}
+
+	/**
+	 * Removes the temporary file (if one was created).  After this, the DataSource can no longer be read or written.
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		contents = EMPTY_CONTENTS;
+		Path fileToDelete = tempFile;
+		Path pendingFileToDelete = pendingTempFile;
+		tempFile = null;
+		pendingTempFile = null;
+		if (pendingFileToDelete != null) {
+			Files.deleteIfExists(pendingFileToDelete);
+		}
+		if (fileToDelete != null) {
+			Files.deleteIfExists(fileToDelete);
+		}
+	}
+
+	private void ensureOpen() {
+		if (closed) {
+			throw new IllegalStateException("DataSource '" + name() + "' has been closed.");
+		}
+	}
+
+	/**
+	 * Replaces the current contents with the newly written contents and removes any temporary file that
+	 * held the previous contents.
+	 */
+	private void commit(byte[] newContents, Path newTempFile) throws IOException {
+		Path oldTempFile = this.tempFile;
+		this.contents = newContents;
+		this.tempFile = newTempFile;
+		this.pendingTempFile = null;
+		if (oldTempFile != null && !oldTempFile.equals(newTempFile)) {
+			Files.deleteIfExists(oldTempFile);
+		}
+	}
+
+	/**
+	 * OutputStream that writes to memory until the threshold is exceeded and then switches over to a temporary file.
+	 *
+	 * The contents of the DataSource are not replaced until this stream is closed.
+	 */
+	private class SpillingOutputStream extends OutputStream {
+		private ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		private Path newTempFile = null;
+		private OutputStream fos = null;
+		private boolean streamClosed = false;
+
+		@Override
+		public void write(int b) throws IOException {
+			spillIfRequired(1);
+			current().write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			spillIfRequired(len);
+			current().write(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (!streamClosed) {
+				current().flush();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (streamClosed) {
+				return;
+			}
+			streamClosed = true;
+			if (fos != null) {
+				fos.close();
+				commit(EMPTY_CONTENTS, newTempFile);
+			} else {
+				commit(bos.toByteArray(), null);
+			}
+			bos = null;
+		}
+
+		private OutputStream current() throws IOException {
+			if (streamClosed) {
+				throw new IOException("OutputStream has been closed.");
+			}
+			return fos != null ? fos : bos;
+		}
+
+		private void spillIfRequired(int len) throws IOException {
+			if (!streamClosed && fos == null && (long)bos.size() + len > threshold) {
+				newTempFile = tempDir != null ? Files.createTempFile(tempDir, TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX)
+											  : Files.createTempFile(TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX);
+				pendingTempFile = newTempFile;
+				try {
+					fos = Files.newOutputStream(newTempFile);
+					bos.writeTo(fos);
+				} catch (IOException e) {
+					pendingTempFile = null;
+					Files.deleteIfExists(newTempFile);
+					throw e;
+				}
+				bos = new ByteArrayOutputStream(0);	// Release the in-memory buffer.
+			}
+		}
+	}
+}
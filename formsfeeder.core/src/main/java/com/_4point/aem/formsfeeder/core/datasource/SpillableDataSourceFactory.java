@@ -0,0 +1,167 @@
+package com._4point.aem.formsfeeder.core.datasource;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com._4point.aem.formsfeeder.core.support.Jdk8Utils;
+
+/**
+ * Creates DataSources whose contents are held in memory up to a threshold and are written to a temporary file
+ * beyond that threshold.  This allows large inputs (such as uploaded files) to be handled without requiring
+ * that the whole input be held in memory.
+ *
+ * The factory keeps track of the DataSources it creates.  Closing the factory closes those DataSources and
+ * removes any temporary files that they created, so a factory is intended to be scoped to a single unit of
+ * work (for example, a single HTTP request).  DataSources created by a factory cannot be read once the
+ * factory has been closed.
+ *
+ */
+public class SpillableDataSourceFactory implements Closeable {
+	/**
+	 * Default threshold (1 MB) beyond which DataSource contents are written to a temporary file.
+	 */
+	public static final int DEFAULT_THRESHOLD = 1024 * 1024;
+
+	private final int threshold;
+	private final Path tempDir;
+	private final List<SpillableDataSource> created = new ArrayList<>();
+	private boolean closed = false;
+
+	private SpillableDataSourceFactory(int threshold, Path tempDir) {
+		super();
+		if (threshold < 0) {
+			throw new IllegalArgumentException("Threshold cannot be negative (" + threshold + ").");
+		}
+		this.threshold = threshold;
+		this.tempDir = tempDir;
+	}
+
+	/**
+	 * Create a factory that uses the default threshold and the default temporary directory.
+	 *
+	 * @return
+	 */
+	public static SpillableDataSourceFactory create() {
+		return new SpillableDataSourceFactory(DEFAULT_THRESHOLD, null);
+	}
+
+	/**
+	 * Create a factory that uses the specified threshold and the default temporary directory.
+	 *
+	 * @param threshold	maximum number of bytes held in memory for each DataSource.
+	 * @return
+	 */
+	public static SpillableDataSourceFactory create(int threshold) {
+		return new SpillableDataSourceFactory(threshold, null);
+	}
+
+	/**
+	 * Create a factory that uses the specified threshold and temporary directory.
+	 *
+	 * @param threshold	maximum number of bytes held in memory for each DataSource.
+	 * @param tempDir	directory where temporary files are created.  If null, the default temporary directory is used.
+	 * @return
+	 */
+	public static SpillableDataSourceFactory create(int threshold, Path tempDir) {
+		return new SpillableDataSourceFactory(threshold, tempDir);
+	}
+
+	public int threshold() {
+		return threshold;
+	}
+
+	/**
+	 * Creates an empty DataSource.  Content can be written to it using its outputStream() method.
+	 *
+	 * @param name
+	 * @param contentType
+	 * @return
+	 */
+	public DataSource create(String name, MimeType contentType) {
+		return register(new SpillableDataSource(threshold, tempDir, name, contentType));
+	}
+
+	/**
+	 * Creates a DataSource containing the contents of an InputStream.  The InputStream is read to the end but is not closed.
+	 *
+	 * @param name
+	 * @param is
+	 * @param contentType
+	 * @return
+	 * @throws IOException
+	 */
+	public DataSource from(String name, InputStream is, MimeType contentType) throws IOException {
+		return populate(register(new SpillableDataSource(threshold, tempDir, name, contentType)), is);
+	}
+
+	public DataSource from(String name, InputStream is, MimeType contentType, Path filename) throws IOException {
+		SpillableDataSource ds = register(new SpillableDataSource(threshold, tempDir, name, contentType));
+		ds.filename(filename);
+		return populate(ds, is);
+	}
+
+	public DataSource from(String name, InputStream is, MimeType contentType, Map<String, String> attributes) throws IOException {
+		return populate(register(new SpillableDataSource(threshold, tempDir, name, contentType, attributes)), is);
+	}
+
+	public DataSource from(String name, InputStream is, MimeType contentType, Path filename, Map<String, String> attributes) throws IOException {
+		SpillableDataSource ds = register(new SpillableDataSource(threshold, tempDir, name, contentType, attributes));
+		ds.filename(filename);
+		return populate(ds, is);
+	}
+
+	/**
+	 * Closes all the DataSources created by this factory, removing any temporary files that were created.
+	 *
+	 * All DataSources are closed even if some of them fail.  The first failure is thrown with any subsequent
+	 * failures added as suppressed exceptions.
+	 */
+	@Override
+	public void close() throws IOException {
+		List<SpillableDataSource> toClose;
+		synchronized (created) {
+			closed = true;
+			toClose = new ArrayList<>(created);
+			created.clear();
+		}
+		IOException failure = null;
+		for (SpillableDataSource ds : toClose) {
+			try {
+				ds.close();
+			} catch (IOException e) {
+				if (failure == null) {
+					failure = e;
+				} else {
+					failure.addSuppressed(e);
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private SpillableDataSource register(SpillableDataSource ds) {
+		synchronized (created) {
+			if (closed) {
+				throw new IllegalStateException("SpillableDataSourceFactory has been closed.");
+			}
+			created.add(ds);
+		}
+		return ds;
+	}
+
+	private static DataSource populate(SpillableDataSource ds, InputStream is) throws IOException {
+		try (OutputStream os = ds.outputStream()) {
+			Jdk8Utils.transfer(Objects.requireNonNull(is, "InputStream cannot be null."), os);
+		}
+		return ds;
+	}
+}
@@ -32,6 +32,8 @@ public class StandardMimeTypes {
 	// Library Specific file types
 	public static final String APPLICATION_VND_4POINT_DATASOURCELIST_STR = "application/vnd.4point.datasourcelist+xml";
 	public static final MimeType APPLICATION_VND_4POINT_DATASOURCELIST_TYPE = MimeType.of(APPLICATION_VND_4POINT_DATASOURCELIST_STR);
+	public static final String APPLICATION_VND_4POINT_DATASOURCELIST_BINARY_STR = "application/vnd.4point.datasourcelist.binary";
+	public static final MimeType APPLICATION_VND_4POINT_DATASOURCELIST_BINARY_TYPE = MimeType.of(APPLICATION_VND_4POINT_DATASOURCELIST_BINARY_STR);
 	
 	// Default
 	public static final String APPLICATION_OCTET_STREAM_STR = "application/octet-stream";
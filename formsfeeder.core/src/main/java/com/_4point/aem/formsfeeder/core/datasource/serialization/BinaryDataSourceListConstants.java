@@ -0,0 +1,46 @@
+package com._4point.aem.formsfeeder.core.datasource.serialization;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import com._4point.aem.formsfeeder.core.datasource.MimeType;
+import com._4point.aem.formsfeeder.core.datasource.StandardMimeTypes;
+
+/**
+ * Constants that describe the binary DataSourceList format.
+ * 
+ * The format is:
+ * <pre>
+ *   DataSourceList := MAGIC VERSION Entries
+ *   Entries        := { ENTRY_DATASOURCE DataSource | ENTRY_DATASOURCELIST NestedList } END_OF_LIST
+ *   DataSource     := Header Content
+ *   NestedList     := Header Entries
+ *   Header         := String(name) String(contentType) Filename AttributeCount { String(name) String(value) }
+ *   Filename       := NO_FILENAME | HAS_FILENAME String(filename)
+ *   Content        := { int(chunkLength) byte[chunkLength] } int(0)
+ *   String         := int(byteLength) byte[byteLength] (UTF-8)
+ * </pre>
+ * All int values are 4-byte big-endian values.  Because every field is length-prefixed, a reader can skip an entry's
+ * content without decoding it.
+ *
+ */
+/* package */ class BinaryDataSourceListConstants {
+	static final MimeType DSL_MIME_TYPE = StandardMimeTypes.APPLICATION_VND_4POINT_DATASOURCELIST_BINARY_TYPE;
+	static final String DSL_MIME_TYPE_STR = StandardMimeTypes.APPLICATION_VND_4POINT_DATASOURCELIST_BINARY_STR;
+
+	static final byte[] MAGIC = { 'F', 'F', 'D', 'L' };
+	static final byte VERSION = 1;
+
+	static final byte END_OF_LIST = 0;
+	static final byte ENTRY_DATASOURCE = 1;
+	static final byte ENTRY_DATASOURCELIST = 2;
+
+	static final byte NO_FILENAME = 0;
+	static final byte HAS_FILENAME = 1;
+
+	static final int CHUNK_SIZE = 64 * 1024;	// Maximum chunk size written by the encoder.
+	static final int MAX_STRING_LENGTH = 16 * 1024 * 1024;	// Guards against allocating huge strings from corrupt input.
+	static final int MAX_NESTING_DEPTH = 64;	// Guards against unbounded recursion from corrupt input.
+
+	static final Charset STRING_ENCODING = StandardCharsets.UTF_8;
+}
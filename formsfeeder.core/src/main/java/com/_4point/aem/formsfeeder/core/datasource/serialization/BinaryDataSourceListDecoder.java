@@ -0,0 +1,230 @@
+package com._4point.aem.formsfeeder.core.datasource.serialization;
+
+import static com._4point.aem.formsfeeder.core.datasource.serialization.BinaryDataSourceListConstants.*;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+import com._4point.aem.formsfeeder.core.datasource.DataSource;
+import com._4point.aem.formsfeeder.core.datasource.DataSourceList;
+import com._4point.aem.formsfeeder.core.datasource.MimeType;
+import com._4point.aem.formsfeeder.core.datasource.SpillableDataSourceFactory;
+
+/**
+ * Reads a DataSourceList that was written in the compact binary format (see BinaryDataSourceListConstants).
+ * 
+ * Content is read a chunk at a time into a segmented buffer or, if a SpillableDataSourceFactory was supplied, into
+ * DataSources created by that factory.  Entries can be filtered by name, in which case the content of the entries that
+ * are not wanted is skipped over without being read into memory.
+ *
+ */
+public class BinaryDataSourceListDecoder implements Closeable {
+	public static final MimeType DSL_MIME_TYPE = BinaryDataSourceListConstants.DSL_MIME_TYPE;
+	public static final String DSL_MIME_TYPE_STR = BinaryDataSourceListConstants.DSL_MIME_TYPE_STR;
+
+	private final DataInputStream dis;
+	private final SpillableDataSourceFactory spillFactory;	// null if content should be held in memory
+	private final byte[] buffer = new byte[CHUNK_SIZE];
+
+	private BinaryDataSourceListDecoder(InputStream is, SpillableDataSourceFactory spillFactory) {
+		super();
+		this.dis = new DataInputStream(is);
+		this.spillFactory = spillFactory;
+	}
+
+	/**
+	 * Read and decode a DataSourceList.
+	 * 
+	 * @return the DataSourceList or an empty Optional if the InputStream was empty.
+	 * @throws IOException if there was an error reading the input or the input is not in the expected format.
+	 */
+	public Optional<DataSourceList> decode() throws IOException {
+		return decode(name->true);
+	}
+
+	/**
+	 * Read and decode a DataSourceList, only keeping the top level entries whose names match the filter.  The
+	 * content of the other entries is skipped.
+	 * 
+	 * @param nameFilter	returns true for the names of the entries that should be kept.
+	 * @return the DataSourceList or an empty Optional if the InputStream was empty.
+	 * @throws IOException if there was an error reading the input or the input is not in the expected format.
+	 */
+	public Optional<DataSourceList> decode(Predicate<String> nameFilter) throws IOException {
+		Objects.requireNonNull(nameFilter, "Name filter cannot be null.");
+		if (!readHeader()) {
+			return Optional.empty();
+		}
+		return Optional.of(decodeEntries(nameFilter, 0));
+	}
+
+	private boolean readHeader() throws IOException {
+		int first = dis.read();
+		if (first < 0) {
+			return false;	// Empty input
+		}
+		byte[] magic = new byte[MAGIC.length];
+		magic[0] = (byte)first;
+		dis.readFully(magic, 1, magic.length - 1);
+		if (!Arrays.equals(MAGIC, magic)) {
+			throw new IOException("Input is not a binary DataSourceList (invalid header).");
+		}
+		byte version = dis.readByte();
+		if (version != VERSION) {
+			throw new IOException("Unsupported binary DataSourceList version (" + version + ").");
+		}
+		return true;
+	}
+
+	private DataSourceList decodeEntries(Predicate<String> nameFilter, int depth) throws IOException {
+		if (depth > MAX_NESTING_DEPTH) {
+			throw new IOException("DataSourceLists are nested too deeply (more than " + MAX_NESTING_DEPTH + " levels).");
+		}
+		DataSourceList.Builder builder = DataSourceList.builder();
+		byte entryType;
+		while ((entryType = dis.readByte()) != END_OF_LIST) {
+			String name = readString();
+			MimeType contentType = MimeType.of(readString());
+			Path filename = readFilename();
+			Map<String, String> attributes = readAttributes();
+			boolean keep = nameFilter.test(name);
+			switch (entryType) {
+			case ENTRY_DATASOURCE:
+				if (keep) {
+					builder.add(readContent(name, contentType, filename, attributes));
+				} else {
+					skipContent();
+				}
+				break;
+			case ENTRY_DATASOURCELIST:
+				DataSourceList nested = decodeEntries(keep ? n->true : n->false, depth + 1);
+				if (keep) {
+					builder.add(name, nested, attributes);
+				}
+				break;
+			default:
+				throw new IOException("Invalid entry type (" + entryType + ") in binary DataSourceList.");
+			}
+		}
+		return builder.build();
+	}
+
+	private Path readFilename() throws IOException {
+		byte flag = dis.readByte();
+		switch (flag) {
+		case NO_FILENAME:
+			return null;
+		case HAS_FILENAME:
+			return Paths.get(readString());
+		default:
+			throw new IOException("Invalid filename flag (" + flag + ") in binary DataSourceList.");
+		}
+	}
+
+	private Map<String, String> readAttributes() throws IOException {
+		int count = dis.readInt();
+		if (count < 0) {
+			throw new IOException("Invalid attribute count (" + count + ") in binary DataSourceList.");
+		}
+		Map<String, String> attributes = new HashMap<>();
+		for (int i = 0; i < count; i++) {
+			String name = readString();
+			attributes.put(name, readString());
+		}
+		return attributes;
+	}
+
+	private String readString() throws IOException {
+		int length = dis.readInt();
+		if (length < 0 || length > MAX_STRING_LENGTH) {
+			throw new IOException("Invalid string length (" + length + ") in binary DataSourceList.");
+		}
+		byte[] bytes = new byte[length];
+		dis.readFully(bytes);
+		return new String(bytes, STRING_ENCODING);
+	}
+
+	private DataSource readContent(String name, MimeType contentType, Path filename, Map<String, String> attributes) throws IOException {
+		if (spillFactory != null) {
+			DataSource content = spillFactory.create("", contentType);
+			try (OutputStream os = content.outputStream()) {
+				copyContent(os);
+			}
+			return new DecodedDataSource(content, name, contentType, filename, attributes);
+		} else {
+			SegmentedByteBuffer content = new SegmentedByteBuffer();
+			copyContent(content);
+			return new DecodedDataSource(new SegmentedDataSource(content), name, contentType, filename, attributes);
+		}
+	}
+
+	private void copyContent(OutputStream out) throws IOException {
+		int chunkLength;
+		while ((chunkLength = readChunkLength()) > 0) {
+			while (chunkLength > 0) {
+				int toRead = Math.min(chunkLength, buffer.length);
+				dis.readFully(buffer, 0, toRead);
+				out.write(buffer, 0, toRead);
+				chunkLength -= toRead;
+			}
+		}
+	}
+
+	private void skipContent() throws IOException {
+		int chunkLength;
+		while ((chunkLength = readChunkLength()) > 0) {
+			while (chunkLength > 0) {
+				int skipped = dis.skipBytes(chunkLength);
+				if (skipped <= 0) {
+					// skipBytes() does not distinguish end of stream, so read a byte to find out.
+					if (dis.read() < 0) {
+						throw new EOFException("Unexpected end of binary DataSourceList while skipping content.");
+					}
+					skipped = 1;
+				}
+				chunkLength -= skipped;
+			}
+		}
+	}
+
+	private int readChunkLength() throws IOException {
+		int chunkLength = dis.readInt();
+		if (chunkLength < 0) {
+			throw new IOException("Invalid content chunk length (" + chunkLength + ") in binary DataSourceList.");
+		}
+		return chunkLength;
+	}
+
+	@Override
+	public void close() throws IOException {
+	}
+
+	public static BinaryDataSourceListDecoder wrap(InputStream is) {
+		return new BinaryDataSourceListDecoder(Objects.requireNonNull(is, "Input Stream cannot be null."), null);
+	}
+
+	/**
+	 * Creates a decoder that stores decoded DataSource content in DataSources created by the supplied factory
+	 * (so that large content may be written to temporary files rather than held in memory).  The decoded DataSources
+	 * are only usable until the factory is closed.
+	 * 
+	 * @param is
+	 * @param spillFactory
+	 * @return
+	 */
+	public static BinaryDataSourceListDecoder wrap(InputStream is, SpillableDataSourceFactory spillFactory) {
+		return new BinaryDataSourceListDecoder(Objects.requireNonNull(is, "Input Stream cannot be null."), Objects.requireNonNull(spillFactory, "SpillableDataSourceFactory cannot be null."));
+	}
+}
@@ -0,0 +1,124 @@
+package com._4point.aem.formsfeeder.core.datasource.serialization;
+
+import static com._4point.aem.formsfeeder.core.datasource.serialization.BinaryDataSourceListConstants.*;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Optional;
+
+import com._4point.aem.formsfeeder.core.datasource.DataSource;
+import com._4point.aem.formsfeeder.core.datasource.DataSourceList;
+import com._4point.aem.formsfeeder.core.datasource.MimeType;
+
+/**
+ * Writes a DataSourceList in the compact binary format (see BinaryDataSourceListConstants).
+ * 
+ * Content is copied from each DataSource's InputStream a chunk at a time, so memory usage is constant regardless
+ * of the size of the content.  Nested DataSourceLists are written inline in the binary format.
+ *
+ */
+public class BinaryDataSourceListEncoder implements Closeable {
+	public static final MimeType DSL_MIME_TYPE = BinaryDataSourceListConstants.DSL_MIME_TYPE;
+	public static final String DSL_MIME_TYPE_STR = BinaryDataSourceListConstants.DSL_MIME_TYPE_STR;
+
+	private final DataOutputStream dos;
+	private byte[] buffer = null;	// Allocated on first use and then reused for each DataSource encoded.
+
+	private BinaryDataSourceListEncoder(OutputStream os) {
+		super();
+		this.dos = new DataOutputStream(os);
+	}
+
+	public BinaryDataSourceListEncoder encode(DataSourceList dsl) throws IOException {
+		dos.write(MAGIC);
+		dos.writeByte(VERSION);
+		encodeEntries(dsl);
+		return this;
+	}
+
+	private void encodeEntries(DataSourceList dsl) throws IOException {
+		for (DataSource ds : dsl.list()) {
+			Optional<DataSourceList> nestedDsl = asNestedDataSourceList(ds);
+			if (nestedDsl.isPresent()) {
+				dos.writeByte(ENTRY_DATASOURCELIST);
+				encodeHeader(ds);
+				encodeEntries(nestedDsl.get());
+			} else {
+				dos.writeByte(ENTRY_DATASOURCE);
+				encodeHeader(ds);
+				try (InputStream is = ds.inputStream()) {
+					encodeContent(is);
+				}
+			}
+		}
+		dos.writeByte(END_OF_LIST);
+	}
+
+	private void encodeHeader(DataSource ds) throws IOException {
+		writeString(ds.name());
+		writeString(ds.contentType().asString());
+		Optional<Path> filename = ds.filename();
+		if (filename.isPresent()) {
+			dos.writeByte(HAS_FILENAME);
+			writeString(filename.get().toString());
+		} else {
+			dos.writeByte(NO_FILENAME);
+		}
+		Map<String, String> attributes = ds.attributes();
+		dos.writeInt(attributes.size());
+		for (Entry<String, String> attribute : attributes.entrySet()) {
+			writeString(attribute.getKey());
+			writeString(attribute.getValue());
+		}
+	}
+
+	private void encodeContent(InputStream is) throws IOException {
+		if (buffer == null) {
+			buffer = new byte[CHUNK_SIZE];
+		}
+		int bytesRead;
+		while ((bytesRead = is.read(buffer)) >= 0) {
+			if (bytesRead > 0) {
+				dos.writeInt(bytesRead);
+				dos.write(buffer, 0, bytesRead);
+			}
+		}
+		dos.writeInt(0);	// Zero length chunk marks the end of the content.
+	}
+
+	private void writeString(String s) throws IOException {
+		byte[] bytes = s.getBytes(STRING_ENCODING);
+		dos.writeInt(bytes.length);
+		dos.write(bytes);
+	}
+
+	/**
+	 * Nested DataSourceLists (without a filename, which the nested form does not carry) are written in binary form
+	 * rather than as their XML serialization.
+	 * 
+	 * @param ds
+	 * @return
+	 */
+	private static Optional<DataSourceList> asNestedDataSourceList(DataSource ds) {
+		if (!XmlDataSourceListConstants.DSL_MIME_TYPE.equals(ds.contentType()) || ds.filename().isPresent()) {
+			return Optional.empty();
+		}
+		return DataSourceList.Deconstructor.dsToDataSourceList(ds);
+	}
+
+	@Override
+	public void close() throws IOException {
+		dos.flush();
+	}
+
+	public static BinaryDataSourceListEncoder wrap(OutputStream os) {
+		return new BinaryDataSourceListEncoder(Objects.requireNonNull(os, "Output Stream cannot be null."));
+	}
+}
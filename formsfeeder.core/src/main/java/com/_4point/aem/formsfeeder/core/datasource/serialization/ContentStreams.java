@@ -0,0 +1,34 @@
+package com._4point.aem.formsfeeder.core.datasource.serialization;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Helpers for reading DataSource content in chunks.
+ *
+ */
+/* package */ final class ContentStreams {
+
+	private ContentStreams() {
+	}
+
+	/**
+	 * Fill the buffer from the InputStream.  Only returns less than a full buffer at the end of the stream.
+	 * 
+	 * @param is
+	 * @param buffer
+	 * @return number of bytes read
+	 * @throws IOException
+	 */
+	/* package */ static int readChunk(InputStream is, byte[] buffer) throws IOException {
+		int total = 0;
+		while (total < buffer.length) {
+			int read = is.read(buffer, total, buffer.length - total);
+			if (read < 0) {
+				break;
+			}
+			total += read;
+		}
+		return total;
+	}
+}
@@ -0,0 +1,53 @@
+package com._4point.aem.formsfeeder.core.datasource.serialization;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import com._4point.aem.formsfeeder.core.datasource.DataSource;
+import com._4point.aem.formsfeeder.core.datasource.DataSourceWrapper;
+import com._4point.aem.formsfeeder.core.datasource.MimeType;
+import com._4point.aem.formsfeeder.core.datasource.StandardMimeTypes;
+
+/**
+ * DataSource that supplies the name, content type, filename and attributes that were decoded from a serialized
+ * DataSourceList for content that was stored in a DataSource created by a SpillableDataSourceFactory (or in a
+ * SegmentedDataSource when there is no factory).
+ *
+ */
+/* package */ class DecodedDataSource extends DataSourceWrapper {
+	private final String name;
+	private final MimeType contentType;
+	private final Path filename;
+	private final Map<String, String> attributes;
+
+	/* package */ DecodedDataSource(DataSource content, String name, MimeType contentType, Path filename, Map<String, String> attributes) {
+		super(content);
+		this.name = name;
+		this.contentType = contentType != null ? contentType : StandardMimeTypes.APPLICATION_OCTET_STREAM_TYPE;
+		this.filename = filename;
+		this.attributes = Collections.unmodifiableMap(new HashMap<>(attributes));
+	}
+
+	@Override
+	public String name() {
+		return name;
+	}
+
+	@Override
+	public MimeType contentType() {
+		return contentType;
+	}
+
+	@Override
+	public Optional<Path> filename() {
+		return Optional.ofNullable(filename);
+	}
+
+	@Override
+	public Map<String, String> attributes() {
+		return attributes;
+	}
+}
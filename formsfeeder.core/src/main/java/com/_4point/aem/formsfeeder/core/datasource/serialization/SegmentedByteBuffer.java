@@ -0,0 +1,136 @@
+package com._4point.aem.formsfeeder.core.datasource.serialization;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Growable byte buffer that stores its contents in a list of fixed-size segments.
+ *
+ * Unlike a ByteArrayOutputStream, growing the buffer never copies the existing contents, so the memory used while
+ * filling the buffer stays close to the number of bytes written.  The contents are read back through an InputStream
+ * over the segments, so they are never copied into a single array either.
+ *
+ */
+/* package */ class SegmentedByteBuffer extends OutputStream {
+	private static final int SEGMENT_SIZE = 64 * 1024;	// 64Kb
+
+	private final List<byte[]> segments = new ArrayList<>();
+	private byte[] current = null;
+	private int currentPos = 0;
+	private long size = 0;
+
+	@Override
+	public void write(int b) {
+		if (current == null || currentPos == current.length) {
+			addSegment();
+		}
+		current[currentPos++] = (byte)b;
+		size++;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) {
+		while (len > 0) {
+			if (current == null || currentPos == current.length) {
+				addSegment();
+			}
+			int toCopy = Math.min(len, current.length - currentPos);
+			System.arraycopy(b, off, current, currentPos, toCopy);
+			currentPos += toCopy;
+			off += toCopy;
+			len -= toCopy;
+			size += toCopy;
+		}
+	}
+
+	/* package */ long size() {
+		return size;
+	}
+
+	/**
+	 * Returns an InputStream that reads the contents written so far.  Each call returns a new, independent stream.
+	 *
+	 * @return
+	 */
+	/* package */ InputStream inputStream() {
+		return new SegmentInputStream(segments.toArray(new byte[0][]), size);
+	}
+
+	private void addSegment() {
+		current = new byte[SEGMENT_SIZE];
+		currentPos = 0;
+		segments.add(current);
+	}
+
+	private static class SegmentInputStream extends InputStream {
+		private final byte[][] segments;
+		private long remaining;
+		private int segment = 0;
+		private int pos = 0;
+
+		private SegmentInputStream(byte[][] segments, long size) {
+			this.segments = segments;
+			this.remaining = size;
+		}
+
+		@Override
+		public int read() {
+			if (remaining == 0) {
+				return -1;
+			}
+			nextSegmentIfExhausted();
+			remaining--;
+			return segments[segment][pos++] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			if (remaining == 0) {
+				return -1;
+			}
+			int total = 0;
+			while (len > 0 && remaining > 0) {
+				nextSegmentIfExhausted();
+				int toCopy = (int)Math.min(Math.min(len, segments[segment].length - pos), remaining);
+				System.arraycopy(segments[segment], pos, b, off, toCopy);
+				pos += toCopy;
+				off += toCopy;
+				len -= toCopy;
+				remaining -= toCopy;
+				total += toCopy;
+			}
+			return total;
+		}
+
+		@Override
+		public long skip(long n) {
+			long toSkip = Math.max(0, Math.min(n, remaining));
+			long left = toSkip;
+			while (left > 0) {
+				nextSegmentIfExhausted();
+				int step = (int)Math.min(left, segments[segment].length - pos);
+				pos += step;
+				left -= step;
+			}
+			remaining -= toSkip;
+			return toSkip;
+		}
+
+		@Override
+		public int available() {
+			return (int)Math.min(Integer.MAX_VALUE, remaining);
+		}
+
+		private void nextSegmentIfExhausted() {
+			if (pos == segments[segment].length) {
+				segment++;
+				pos = 0;
+			}
+		}
+	}
+}
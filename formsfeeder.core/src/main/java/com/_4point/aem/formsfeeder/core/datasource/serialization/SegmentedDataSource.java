@@ -0,0 +1,59 @@
+package com._4point.aem.formsfeeder.core.datasource.serialization;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com._4point.aem.formsfeeder.core.datasource.AbstractDataSource;
+import com._4point.aem.formsfeeder.core.datasource.DataSource;
+
+/**
+ * DataSource whose content is held in a SegmentedByteBuffer.  Reading the content streams over the buffer's segments,
+ * so decoded content is never copied into one large array.
+ *
+ * Only the content is meaningful, the name, content type, filename and attributes are supplied by a DecodedDataSource
+ * that wraps this DataSource.
+ *
+ */
+/* package */ class SegmentedDataSource extends AbstractDataSource implements DataSource {
+	private volatile SegmentedByteBuffer contents;
+
+	/* package */ SegmentedDataSource(SegmentedByteBuffer contents) {
+		super();
+		this.contents = contents;
+	}
+
+	@Override
+	public InputStream inputStream() {
+		return wrapInputStream(()->contents.inputStream());
+	}
+
+	@Override
+	public OutputStream outputStream() {
+		return wrapOutputStream(()->new LocalSegmentedOutputStream(new SegmentedByteBuffer()));
+	}
+
+	private class LocalSegmentedOutputStream extends OutputStream {
+		private final SegmentedByteBuffer buffer;
+
+		private LocalSegmentedOutputStream(SegmentedByteBuffer buffer) {
+			super();
+			this.buffer = buffer;
+		}
+
+		@Override
+		public void write(int b) {
+			buffer.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			buffer.write(b, off, len);
+		}
+
+		@Override
+		public void close() throws IOException {
+			SegmentedDataSource.this.contents = buffer;
+		}
+	}
+}
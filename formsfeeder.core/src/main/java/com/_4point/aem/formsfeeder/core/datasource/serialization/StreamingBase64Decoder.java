@@ -0,0 +1,52 @@
+package com._4point.aem.formsfeeder.core.datasource.serialization;
+
+import static com._4point.aem.formsfeeder.core.datasource.serialization.XmlDataSourceListConstants.XmlDataSourceConstants.DECODER;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Decodes Base64 text that arrives in pieces (for example, a series of XML CHARACTERS events) and writes the
+ * decoded bytes to an OutputStream.
+ *
+ * Only a fixed-size buffer of encoded characters is held at any one time.  Whitespace is ignored.  The remaining
+ * characters are decoded when finish() is called.  The OutputStream is not closed.
+ *
+ */
+/* package */ class StreamingBase64Decoder {
+	private static final int BUFFER_SIZE = 4 * 8192;	// Must be a multiple of 4 (the size of a Base64 quantum).
+
+	private final OutputStream out;
+	private final byte[] encoded = new byte[BUFFER_SIZE];
+	private final byte[] decoded = new byte[BUFFER_SIZE / 4 * 3];
+	private int encodedLength = 0;
+
+	/* package */ StreamingBase64Decoder(OutputStream out) {
+		this.out = out;
+	}
+
+	/* package */ void decode(char[] chars, int start, int length) throws IOException {
+		int end = start + length;
+		for (int i = start; i < end; i++) {
+			char c = chars[i];
+			if (c > 0x7F) {
+				throw new IllegalArgumentException("Illegal base64 character 0x" + Integer.toHexString(c) + ".");
+			}
+			if (!Character.isWhitespace(c)) {
+				encoded[encodedLength++] = (byte)c;
+				if (encodedLength == BUFFER_SIZE) {
+					out.write(decoded, 0, DECODER.decode(encoded, decoded));
+					encodedLength = 0;
+				}
+			}
+		}
+	}
+
+	/* package */ void finish() throws IOException {
+		if (encodedLength > 0) {
+			out.write(decoded, 0, DECODER.decode(Arrays.copyOf(encoded, encodedLength), decoded));
+			encodedLength = 0;
+		}
+	}
+}
@@ -6,13 +6,13 @@ import static com._4point.aem.formsfeeder.core.datasource.serialization.XmlDataS
 import static com._4point.aem.formsfeeder.core.datasource.serialization.XmlDataSourceListConstants.XmlDataSourceConstants.ATTR_VALUE_ATTR_NAME;
 import static com._4point.aem.formsfeeder.core.datasource.serialization.XmlDataSourceListConstants.XmlDataSourceConstants.CONTENT_ELEMENT_NAME;
 import static com._4point.aem.formsfeeder.core.datasource.serialization.XmlDataSourceListConstants.XmlDataSourceConstants.CONTENT_TYPE_ATTR_NAME;
-import static com._4point.aem.formsfeeder.core.datasource.serialization.XmlDataSourceListConstants.XmlDataSourceConstants.DECODER;
 import static com._4point.aem.formsfeeder.core.datasource.serialization.XmlDataSourceListConstants.XmlDataSourceConstants.DS_ELEMENT_NAME;
 import static com._4point.aem.formsfeeder.core.datasource.serialization.XmlDataSourceListConstants.XmlDataSourceConstants.FILENAME_ATTR_NAME;
 import static com._4point.aem.formsfeeder.core.datasource.serialization.XmlDataSourceListConstants.XmlDataSourceConstants.NAME_ATTR_NAME;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -26,15 +26,21 @@ import javax.xml.stream.FactoryConfigurationError;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 
+import com._4point.aem.formsfeeder.core.datasource.DataSource;
 import com._4point.aem.formsfeeder.core.datasource.DataSourceList;
 import com._4point.aem.formsfeeder.core.datasource.MimeType;
+import com._4point.aem.formsfeeder.core.datasource.SpillableDataSourceFactory;
+import com._4point.aem.formsfeeder.core.datasource.StandardMimeTypes;
 
 public class XmlDataSourceListDecoder extends XmlDecoder {
 	public static final MimeType DSL_MIME_TYPE = XmlDataSourceListConstants.DSL_MIME_TYPE;
 	public static final String DSL_MIME_TYPE_STR = XmlDataSourceListConstants.DSL_MIME_TYPE_STR;
 
-	private XmlDataSourceListDecoder(XMLStreamReader xsr) {
+	private final SpillableDataSourceFactory spillFactory;	// null if content should be held in memory
+
+	private XmlDataSourceListDecoder(XMLStreamReader xsr, SpillableDataSourceFactory spillFactory) {
 		super(xsr);
+		this.spillFactory = spillFactory;
 	}
 
 	/**
@@ -44,13 +50,15 @@ public class XmlDataSourceListDecoder extends XmlDecoder {
 	 */
 	private static class DecoderContext {
 		private final XMLStreamReader xsr;
+		private final SpillableDataSourceFactory spillFactory;
 		private DataSourceList.Builder dslBuilder = null;
 		private DataSourceDecoderContext dsDc = null;
 		private ForeignElementDecoderContext feDc = null;
 		
-		private DecoderContext(XMLStreamReader xsr) {
+		private DecoderContext(XMLStreamReader xsr, SpillableDataSourceFactory spillFactory) {
 			super();
 			this.xsr = xsr;
+			this.spillFactory = spillFactory;
 		}
 
 		private DecoderContext initializeDslBuilder() {
@@ -58,8 +66,8 @@ public class XmlDataSourceListDecoder extends XmlDecoder {
 			return this;
 		}
 		
-		private static DecoderContext from(XMLStreamReader xsr) {
-			return new DecoderContext(xsr);
+		private static DecoderContext from(XMLStreamReader xsr, SpillableDataSourceFactory spillFactory) {
+			return new DecoderContext(xsr, spillFactory);
 		}
 		
 		private static class DataSourceDecoderContext {
@@ -68,10 +76,13 @@ public class XmlDataSourceListDecoder extends XmlDecoder {
 			Path filename = null;
 			Map<String, String> attributes = new HashMap<>();
 			byte[] content = new byte[0];
+			DataSource spilledContent = null;	// Used instead of content once a Content element has been decoded.
 			
 			public void moveDataSourceContextIntoDataSourceList(DataSourceList.Builder dslBuilder) {
 				if (name != null) {
-					if (contentType != null && !attributes.isEmpty() && filename != null) {
+					if (spilledContent != null) {
+						dslBuilder.add(new DecodedDataSource(spilledContent, name, contentType, filename, attributes));
+					} else if (contentType != null && !attributes.isEmpty() && filename != null) {
 						dslBuilder.add(name, content, contentType, filename, attributes);
 					} else if (contentType != null && attributes.isEmpty() && filename != null) {
 						dslBuilder.add(name, content, contentType, filename);		// No attributes
@@ -193,7 +204,7 @@ public class XmlDataSourceListDecoder extends XmlDecoder {
 					decodeAttribute(ctx, ctx.dsDc.attributes);
 					break;
 				case CONTENT_ELEMENT_NAME:
-					ctx.dsDc.content = decodeContent(ctx);
+					decodeContent(ctx);
 					break;
 				default:
 					// Some other element START_ELEMENT
@@ -256,17 +267,60 @@ public class XmlDataSourceListDecoder extends XmlDecoder {
 			}
 		}
 		
-		private static byte[] decodeContent(DecoderContext ctx) {
+		/**
+		 * Decodes the Base64 content of a Content element as the XML text arrives rather than collecting it all
+		 * into a single String first.  The decoded bytes go into a segmented buffer or, if a SpillableDataSourceFactory
+		 * was supplied, into a DataSource created by that factory.
+		 * 
+		 * Leaves the reader positioned on the Content END_ELEMENT (same as getElementText()).
+		 * 
+		 * @param ctx
+		 */
+		private static void decodeContent(DecoderContext ctx) {
 			try {
-				String elementText = ctx.xsr.getElementText();
-				if (elementText != null && !elementText.trim().isEmpty()) {
-					return DECODER.decode(elementText);
+				if (ctx.spillFactory != null) {
+					DataSource spilledContent = ctx.spillFactory.create("", StandardMimeTypes.APPLICATION_OCTET_STREAM_TYPE);
+					try (OutputStream os = spilledContent.outputStream()) {
+						decodeContent(ctx.xsr, os);
+					}
+					ctx.dsDc.spilledContent = spilledContent;
+				} else {
+					SegmentedByteBuffer buffer = new SegmentedByteBuffer();
+					decodeContent(ctx.xsr, buffer);
+					ctx.dsDc.spilledContent = new SegmentedDataSource(buffer);
 				}
-				return new byte[0];
 			} catch (XMLStreamException e) {
 				String msg = e.getMessage();
 				throw new IllegalStateException("XML Error while extracting DataSource content text. (" + (msg != null ? msg : "null") + ").", e);
+			} catch (IOException e) {
+				String msg = e.getMessage();
+				throw new IllegalStateException("I/O Error while storing DataSource content. (" + (msg != null ? msg : "null") + ").", e);
+			}
+		}
+
+		private static void decodeContent(XMLStreamReader xsr, OutputStream out) throws XMLStreamException, IOException {
+			StreamingBase64Decoder decoder = new StreamingBase64Decoder(out);
+			int event = xsr.next();
+			while (event != XMLStreamReader.END_ELEMENT) {
+				switch (event) {
+				case XMLStreamReader.CHARACTERS:
+				case XMLStreamReader.CDATA:
+				case XMLStreamReader.SPACE:
+					decoder.decode(xsr.getTextCharacters(), xsr.getTextStart(), xsr.getTextLength());
+					break;
+				case XMLStreamReader.PROCESSING_INSTRUCTION:
+				case XMLStreamReader.COMMENT:
+					break;	// Skip these
+				case XMLStreamReader.START_ELEMENT:
+					throw new XMLStreamException("Element text content may not contain START_ELEMENT.", xsr.getLocation());
+				case XMLStreamReader.END_DOCUMENT:
+					throw new XMLStreamException("Unexpected end of document when reading element text content.", xsr.getLocation());
+				default:
+					throw new XMLStreamException("Unexpected event type " + event + " while reading element text content.", xsr.getLocation());
+				}
+				event = xsr.next();
 			}
+			decoder.finish();
 		}
 	}
 	
@@ -278,7 +332,7 @@ public class XmlDataSourceListDecoder extends XmlDecoder {
 	 */
 	public Optional<DataSourceList> decode() throws XMLStreamException {
 
-		DecoderContext ctx = DecoderContext.from(xsr);
+		DecoderContext ctx = DecoderContext.from(xsr, spillFactory);
 		DecoderState currentState = DecoderState.InitialState;
 		while(xsr.hasNext()) {
 			if (currentState == DecoderState.InitialState || currentState == DecoderState.EndState || currentState == DecoderState.IgnoringForeignElement) {
@@ -307,7 +361,24 @@ public class XmlDataSourceListDecoder extends XmlDecoder {
 	}
 
 	public static XmlDataSourceListDecoder wrap(XMLStreamReader xsr) {
-		return new XmlDataSourceListDecoder(Objects.requireNonNull(xsr, "XMLStreamReader cannot be null."));
+		return new XmlDataSourceListDecoder(Objects.requireNonNull(xsr, "XMLStreamReader cannot be null."), null);
+	}
+
+	/**
+	 * Creates a decoder that stores decoded DataSource content in DataSources created by the supplied factory
+	 * (so that large content may be written to temporary files rather than held in memory).  The decoded DataSources
+	 * are only usable until the factory is closed.
+	 * 
+	 * @param xsr
+	 * @param spillFactory
+	 * @return
+	 */
+	public static XmlDataSourceListDecoder wrap(XMLStreamReader xsr, SpillableDataSourceFactory spillFactory) {
+		return new XmlDataSourceListDecoder(Objects.requireNonNull(xsr, "XMLStreamReader cannot be null."), Objects.requireNonNull(spillFactory, "SpillableDataSourceFactory cannot be null."));
+	}
+
+	public static XmlDataSourceListDecoder wrap(InputStream is, SpillableDataSourceFactory spillFactory) throws XMLStreamException, FactoryConfigurationError {
+		return wrap(toXmlStreamReader(is), spillFactory);
 	}
 	
 	public static XmlDataSourceListDecoder wrap(InputStream is) throws XMLStreamException, FactoryConfigurationError {
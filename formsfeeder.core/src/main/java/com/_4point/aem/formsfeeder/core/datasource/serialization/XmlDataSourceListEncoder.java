@@ -2,11 +2,14 @@ package com._4point.aem.formsfeeder.core.datasource.serialization;
 
 import static com._4point.aem.formsfeeder.core.datasource.serialization.XmlDataSourceListConstants.*;
 import static com._4point.aem.formsfeeder.core.datasource.serialization.XmlDataSourceListConstants.XmlDataSourceConstants.*;
+import static com._4point.aem.formsfeeder.core.datasource.serialization.ContentStreams.readChunk;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Writer;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
@@ -19,7 +22,6 @@ import javax.xml.stream.XMLStreamWriter;
 import com._4point.aem.formsfeeder.core.datasource.DataSource;
 import com._4point.aem.formsfeeder.core.datasource.DataSourceList;
 import com._4point.aem.formsfeeder.core.datasource.MimeType;
-import com._4point.aem.formsfeeder.core.support.Jdk8Utils;
 
 public class XmlDataSourceListEncoder extends XmlEncoder {
 	public static final MimeType DSL_MIME_TYPE = XmlDataSourceListConstants.DSL_MIME_TYPE;
@@ -70,7 +72,15 @@ public class XmlDataSourceListEncoder extends XmlEncoder {
 	}
 	
 	public static class XmlDataSourceEncoder extends XmlEncoder {
+		// Content is read in chunks of this size.  It must be a multiple of 3 so that Base64 padding only ever
+		// appears at the end of the content.
+		private static final int CHUNK_SIZE = 3 * 8192;	// 24Kb
+		private static final int ENCODED_CHUNK_SIZE = CHUNK_SIZE / 3 * 4;
 
+		// Buffers are allocated on first use and then reused for each DataSource encoded.
+		private byte[] inBuffer = null;
+		private byte[] outBuffer = null;
+		private char[] charBuffer = null;
 
 		private XmlDataSourceEncoder(XMLStreamWriter xsw) {
 			super(xsw);
@@ -93,11 +103,38 @@ public class XmlDataSourceListEncoder extends XmlEncoder {
 				}
 			}
 			xsw.writeStartElement(CONTENT_ELEMENT_NAME);
-			xsw.writeCharacters(ENCODER.encodeToString(Jdk8Utils.readAllBytes(ds.inputStream())));
+			try (InputStream is = ds.inputStream()) {
+				encodeContent(is);
+			}
 			xsw.writeEndElement();
 			xsw.writeEndElement();
 			return this;
 		}
+
+		/**
+		 * Base64 encodes the content a chunk at a time and writes each chunk out to the XMLStreamWriter.  This keeps
+		 * memory usage constant regardless of the size of the content.
+		 * 
+		 * @param is
+		 * @throws IOException
+		 * @throws XMLStreamException
+		 */
+		private void encodeContent(InputStream is) throws IOException, XMLStreamException {
+			if (inBuffer == null) {
+				inBuffer = new byte[CHUNK_SIZE];
+				outBuffer = new byte[ENCODED_CHUNK_SIZE];
+				charBuffer = new char[ENCODED_CHUNK_SIZE];
+			}
+			int bytesRead;
+			while ((bytesRead = readChunk(is, inBuffer)) > 0) {
+				int encodedLength = bytesRead == CHUNK_SIZE ? ENCODER.encode(inBuffer, outBuffer)
+															: ENCODER.encode(Arrays.copyOf(inBuffer, bytesRead), outBuffer);	// Last (partial) chunk
+				for (int i = 0; i < encodedLength; i++) {
+					charBuffer[i] = (char)outBuffer[i];	// Base64 output is always ASCII
+				}
+				xsw.writeCharacters(charBuffer, 0, encodedLength);
+			}
+		}
 	}
 
 }
@@ -0,0 +1,402 @@
+package com._4point.aem.formsfeeder.core.support;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import javax.xml.xpath.XPathFactoryConfigurationException;
+
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+/**
+ * This class is a helper class that makes XML processing (parsing, XPath and XSLT) cheap and safe to use from many
+ * threads at once.
+ *
+ * <p>The JAXP factories, DocumentBuilders, XPath objects and XPathExpressions are not thread-safe, so they cannot simply
+ * be stored in static fields and shared, but creating (or compiling) them for each request is expensive.  This class:</p>
+ * <ul>
+ * <li>compiles each XSLT stylesheet once and caches the resulting {@link Templates} (which are thread-safe),</li>
+ * <li>compiles each XPath expression once per thread (keyed by the expression and its namespaces), and</li>
+ * <li>keeps a pool of DocumentBuilders that are reset and reused.</li>
+ * </ul>
+ *
+ * <p>Both caches are bounded (least recently used entries are discarded), so callers that build stylesheets or
+ * expressions on the fly cannot grow them without limit.</p>
+ *
+ * <p>The XML being processed usually comes from outside (i.e. it is submitted by a client), so all of the factories are
+ * configured for secure processing: DOCTYPE declarations are rejected and external DTDs, schemas and stylesheets are not
+ * loaded.</p>
+ *
+ * <p>Plugins that process submitted XML can use it as well, for example:</p>
+ * <pre>
+ * Document doc = XmlProcessor.INSTANCE.parse(xmlBytes);
+ * String name = XmlProcessor.INSTANCE.evaluate("//FormsFeeder/Plugin", doc);
+ * </pre>
+ *
+ */
+public enum XmlProcessor {
+	INSTANCE;
+
+	private static final int MAX_POOLED_DOCUMENT_BUILDERS = 32;	// Per pool (namespace aware or not)
+	static final int MAX_CACHED_TEMPLATES = 100;
+	static final int MAX_CACHED_XPATHS = 500;					// Per thread
+
+	private final Map<String, Templates> templatesCache = Collections.synchronizedMap(new LruMap<>(MAX_CACHED_TEMPLATES));
+	private final ThreadLocal<Map<XPathKey, XPathExpression>> xpathCache = ThreadLocal.withInitial(()->new LruMap<>(MAX_CACHED_XPATHS));
+	private final ThreadLocal<XPathFactory> xpathFactory = ThreadLocal.withInitial(XmlProcessor::newXPathFactory);
+	private final DocumentBuilderPool namespaceAwareBuilders = new DocumentBuilderPool(true);
+	private final DocumentBuilderPool builders = new DocumentBuilderPool(false);
+
+	/**
+	 * Retrieve the compiled version of an XSLT stylesheet.  Each stylesheet is only compiled once.
+	 *
+	 * @param stylesheet the text of the stylesheet
+	 * @return the compiled stylesheet (which can be used by several threads at once)
+	 * @throws XmlProcessorException if the stylesheet cannot be compiled
+	 */
+	public Templates templates(String stylesheet) {
+		Objects.requireNonNull(stylesheet, "Stylesheet cannot be null.");
+		Templates templates = templatesCache.get(stylesheet);
+		if (templates == null) {
+			// Compile outside of the lock.  If two threads compile the same stylesheet at once, the last one wins (which is harmless).
+			templates = compileStylesheet(stylesheet);
+			templatesCache.put(stylesheet, templates);
+		}
+		return templates;
+	}
+
+	/**
+	 * Transform some XML using an XSLT stylesheet.
+	 *
+	 * @param stylesheet the text of the stylesheet
+	 * @param source the XML to be transformed
+	 * @param result where to write the transformed XML
+	 * @throws XmlProcessorException if the stylesheet cannot be compiled or the transformation fails
+	 */
+	public void transform(String stylesheet, Source source, Result result) {
+		try {
+			templates(stylesheet).newTransformer().transform(source, result);
+		} catch (TransformerException e) {
+			throw new XmlProcessorException("Error while transforming XML.", e);
+		}
+	}
+
+	/**
+	 * Retrieve the compiled version of an XPath expression that does not use any namespace prefixes.
+	 *
+	 * The expression that is returned belongs to the current thread and must not be passed to other threads.
+	 *
+	 * @param expression the XPath expression
+	 * @return the compiled expression
+	 * @throws XmlProcessorException if the expression cannot be compiled
+	 */
+	public XPathExpression xpath(String expression) {
+		return xpath(expression, Collections.emptyMap());
+	}
+
+	/**
+	 * Retrieve the compiled version of an XPath expression.  Each expression is compiled once per thread.
+	 *
+	 * The expression that is returned belongs to the current thread and must not be passed to other threads.
+	 *
+	 * @param expression the XPath expression
+	 * @param namespaces the namespaces used in the expression (prefix to namespace URI)
+	 * @return the compiled expression
+	 * @throws XmlProcessorException if the expression cannot be compiled
+	 */
+	public XPathExpression xpath(String expression, Map<String, String> namespaces) {
+		Objects.requireNonNull(expression, "XPath expression cannot be null.");
+		Objects.requireNonNull(namespaces, "Namespaces cannot be null.");
+		Map<XPathKey, XPathExpression> cache = xpathCache.get();
+		XPathKey key = new XPathKey(expression, namespaces);
+		XPathExpression xpathExpression = cache.get(key);
+		if (xpathExpression == null) {
+			try {
+				XPath xpath = xpathFactory.get().newXPath();
+				if (!namespaces.isEmpty()) {
+					xpath.setNamespaceContext(new MapNamespaceContext(key.namespaces));
+				}
+				xpathExpression = xpath.compile(expression);
+			} catch (XPathExpressionException e) {
+				throw new XmlProcessorException("Unable to compile XPath expression (" + expression + ").", e);
+			}
+			cache.put(key, xpathExpression);
+		}
+		return xpathExpression;
+	}
+
+	/**
+	 * Evaluate an XPath expression (that does not use any namespace prefixes) and return the result as a String.
+	 *
+	 * @param expression the XPath expression
+	 * @param item the node (or document) to evaluate the expression against
+	 * @return the result
+	 * @throws XmlProcessorException if the expression cannot be compiled or evaluated
+	 */
+	public String evaluate(String expression, Object item) {
+		return (String)evaluate(expression, Collections.emptyMap(), item, XPathConstants.STRING);
+	}
+
+	/**
+	 * Evaluate an XPath expression.
+	 *
+	 * @param expression the XPath expression
+	 * @param namespaces the namespaces used in the expression (prefix to namespace URI)
+	 * @param item the node (or document) to evaluate the expression against
+	 * @param returnType one of the {@link XPathConstants} types
+	 * @return the result (of the requested type)
+	 * @throws XmlProcessorException if the expression cannot be compiled or evaluated
+	 */
+	public Object evaluate(String expression, Map<String, String> namespaces, Object item, QName returnType) {
+		try {
+			return xpath(expression, namespaces).evaluate(item, returnType);
+		} catch (XPathExpressionException e) {
+			throw new XmlProcessorException("Unable to evaluate XPath expression (" + expression + ").", e);
+		}
+	}
+
+	/**
+	 * Parse XML into a (namespace aware) DOM using a pooled DocumentBuilder.
+	 *
+	 * @param xml the XML
+	 * @return the Document
+	 * @throws XmlProcessorException if the XML cannot be parsed
+	 */
+	public Document parse(byte[] xml) {
+		return parse(new ByteArrayInputStream(xml), true);
+	}
+
+	/**
+	 * Parse XML into a (namespace aware) DOM using a pooled DocumentBuilder.
+	 *
+	 * @param is the XML
+	 * @return the Document
+	 * @throws XmlProcessorException if the XML cannot be parsed
+	 */
+	public Document parse(InputStream is) {
+		return parse(is, true);
+	}
+
+	/**
+	 * Parse XML into a DOM using a pooled DocumentBuilder.
+	 *
+	 * @param is the XML
+	 * @param namespaceAware whether the DocumentBuilder should be namespace aware
+	 * @return the Document
+	 * @throws XmlProcessorException if the XML cannot be parsed
+	 */
+	public Document parse(InputStream is, boolean namespaceAware) {
+		DocumentBuilderPool pool = namespaceAware ? namespaceAwareBuilders : builders;
+		DocumentBuilder builder = pool.borrow();
+		try {
+			return builder.parse(is);
+		} catch (SAXException | IOException e) {
+			throw new XmlProcessorException("Unable to parse XML.", e);
+		} finally {
+			pool.giveBack(builder);
+		}
+	}
+
+	/**
+	 * The number of compiled stylesheets that have been cached.
+	 *
+	 * @return number of cached stylesheets
+	 */
+	public int cachedTemplates() {
+		return templatesCache.size();
+	}
+
+	private static Templates compileStylesheet(String stylesheet) {
+		try {
+			TransformerFactory factory = TransformerFactory.newInstance();
+			factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+			factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+			factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, "");
+			return factory.newTemplates(new StreamSource(new StringReader(stylesheet)));
+		} catch (TransformerConfigurationException e) {
+			throw new XmlProcessorException("Unable to compile XSLT stylesheet.", e);
+		}
+	}
+
+	private static XPathFactory newXPathFactory() {
+		try {
+			XPathFactory factory = XPathFactory.newInstance();
+			factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+			return factory;
+		} catch (XPathFactoryConfigurationException e) {
+			throw new XmlProcessorException("Unable to create XPathFactory.", e);
+		}
+	}
+
+	/**
+	 * A map that discards its least recently used entry once it holds more than maxEntries.  It is not thread-safe.
+	 */
+	@SuppressWarnings("serial")
+	private static class LruMap<K, V> extends LinkedHashMap<K, V> {
+		private final int maxEntries;
+
+		private LruMap(int maxEntries) {
+			super(16, 0.75f, true);
+			this.maxEntries = maxEntries;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+			return size() > maxEntries;
+		}
+	}
+
+	/**
+	 * A pool of DocumentBuilders.  Builders are reset when they are returned to the pool.
+	 */
+	private static class DocumentBuilderPool {
+		private final DocumentBuilderFactory factory;
+		private final Queue<DocumentBuilder> pool = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger size = new AtomicInteger();
+
+		private DocumentBuilderPool(boolean namespaceAware) {
+			this.factory = DocumentBuilderFactory.newInstance();
+			this.factory.setNamespaceAware(namespaceAware);
+			try {
+				this.factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+				this.factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+			} catch (ParserConfigurationException e) {
+				throw new XmlProcessorException("Unable to configure DocumentBuilderFactory for secure processing.", e);
+			}
+			try {
+				this.factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+				this.factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+			} catch (IllegalArgumentException e) {
+				// Some parsers (e.g. Xerces) do not support these attributes.  DOCTYPEs are rejected anyway, so no DTD will be loaded.
+			}
+			this.factory.setXIncludeAware(false);
+			this.factory.setExpandEntityReferences(false);
+		}
+
+		private DocumentBuilder borrow() {
+			DocumentBuilder builder = pool.poll();
+			if (builder != null) {
+				size.decrementAndGet();
+				return builder;
+			}
+			try {
+				synchronized (factory) {	// DocumentBuilderFactory is not thread-safe.
+					return factory.newDocumentBuilder();
+				}
+			} catch (ParserConfigurationException e) {
+				throw new XmlProcessorException("Unable to create DocumentBuilder.", e);
+			}
+		}
+
+		private void giveBack(DocumentBuilder builder) {
+			if (size.incrementAndGet() <= MAX_POOLED_DOCUMENT_BUILDERS) {
+				builder.reset();
+				pool.offer(builder);
+			} else {
+				size.decrementAndGet();		// The pool is full, so let this one go.
+			}
+		}
+	}
+
+	private static class XPathKey {
+		private final String expression;
+		private final Map<String, String> namespaces;
+		private final int hashCode;
+
+		private XPathKey(String expression, Map<String, String> namespaces) {
+			this.expression = expression;
+			this.namespaces = namespaces.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(new HashMap<>(namespaces));
+			this.hashCode = 31 * expression.hashCode() + this.namespaces.hashCode();
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof XPathKey)) {
+				return false;
+			}
+			XPathKey other = (XPathKey) obj;
+			return expression.equals(other.expression) && namespaces.equals(other.namespaces);
+		}
+	}
+
+	private static class MapNamespaceContext implements NamespaceContext {
+		private final Map<String, String> namespaces;
+
+		private MapNamespaceContext(Map<String, String> namespaces) {
+			this.namespaces = namespaces;
+		}
+
+		@Override
+		public String getNamespaceURI(String prefix) {
+			String uri = namespaces.get(prefix);
+			return uri != null ? uri : XMLConstants.NULL_NS_URI;
+		}
+
+		@Override
+		public String getPrefix(String namespaceURI) {
+			return namespaces.entrySet().stream().filter(e->e.getValue().equals(namespaceURI)).map(Map.Entry::getKey).findFirst().orElse(null);
+		}
+
+		@Override
+		public Iterator<String> getPrefixes(String namespaceURI) {
+			return namespaces.entrySet().stream().filter(e->e.getValue().equals(namespaceURI)).map(Map.Entry::getKey).iterator();
+		}
+	}
+
+	@SuppressWarnings("serial")
+	public static class XmlProcessorException extends RuntimeException {
+
+		public XmlProcessorException() {
+			super();
+		}
+
+		public XmlProcessorException(String message, Throwable cause) {
+			super(message, cause);
+		}
+
+		public XmlProcessorException(String message) {
+			super(message);
+		}
+
+		public XmlProcessorException(Throwable cause) {
+			super(cause);
+		}
+	}
+}
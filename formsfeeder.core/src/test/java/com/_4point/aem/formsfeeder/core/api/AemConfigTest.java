@@ -2,6 +2,8 @@ package com._4point.aem.formsfeeder.core.api;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.Collections;
+
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.NullAndEmptySource;
@@ -52,6 +54,7 @@ class AemConfigTest {
 		};
 		
 		assertEquals(protocol.toLowerCase() + "://" + expectedHost + ":" + Integer.toString(expectedPort) + "/", underTest.url());
+		assertEquals(Collections.singletonList(underTest.url()), underTest.urls());
 	}
 
 	@ParameterizedTest
@@ -25,6 +25,7 @@ import com._4point.aem.formsfeeder.core.datasource.DataSourceList.Builder;
 import com._4point.aem.formsfeeder.core.datasource.DataSourceList.Content;
 import com._4point.aem.formsfeeder.core.datasource.DataSourceList.Deconstructor;
 import com._4point.aem.formsfeeder.core.datasource.DataSourceList.Mapper;
+import com._4point.aem.formsfeeder.core.datasource.serialization.XmlDataSourceListDecoder;
 import com._4point.aem.formsfeeder.core.datasource.serialization.XmlDataSourceListDecoderTest;
 import com._4point.aem.formsfeeder.core.support.Jdk8Utils;
 
@@ -239,10 +240,20 @@ class DataSourceListBuilderTest {
 	 * @throws Exception 
 	 */
 	void validateDslData(DataSource resultDs) throws Exception {
-		assertTrue(resultDs instanceof ByteArrayDataSource, "Expected datasource to be instanceof BDataSource but it wasn't (" + resultDs.getClass().getName() + ").");
+		assertTrue(resultDs instanceof DataSourceListDataSource, "Expected datasource to be instanceof DataSourceListDataSource but it wasn't (" + resultDs.getClass().getName() + ").");
+		assertEquals(StandardMimeTypes.APPLICATION_VND_4POINT_DATASOURCELIST_TYPE, resultDs.contentType());
 		Optional<DataSourceList> dsl = DataSourceList.Deconstructor.dsToDataSourceList(resultDs);
 		assertTrue(dsl.isPresent(), "Expected DataSource to be present after decoding.");
-		DataSourceList resultDsl = dsl.get();
+		validateDslEntries(dsl.get());
+		// Make sure that the serialized form (i.e. what gets sent over the wire) still decodes to the same thing.
+		try (XmlDataSourceListDecoder decoder = XmlDataSourceListDecoder.wrap(resultDs.inputStream())) {
+			Optional<DataSourceList> decodedDsl = decoder.decode();
+			assertTrue(decodedDsl.isPresent(), "Expected DataSource to be present after decoding serialized form.");
+			validateDslEntries(decodedDsl.get());
+		}
+	}
+
+	private void validateDslEntries(DataSourceList resultDsl) throws Exception {
 		assertEquals(dslData.size(), resultDsl.size());
 		List<DataSource> resultList = resultDsl.list();
 		XmlDataSourceListDecoderTest.dsEquals(DS1, resultList.get(0), true);
@@ -0,0 +1,64 @@
+package com._4point.aem.formsfeeder.core.datasource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import com._4point.aem.formsfeeder.core.datasource.serialization.XmlDataSourceListDecoder;
+import com._4point.aem.formsfeeder.core.support.Jdk8Utils;
+
+class DataSourceListDataSourceTest {
+
+	private static final DataSourceList TEST_DSL = DataSourceList.builder()
+																 .add("StringEntry", "StringValue")
+																 .add("ByteArrayEntry", "ByteArrayValue".getBytes())
+																 .build();
+
+	@Test
+	void testDataSourceListDataSource() throws Exception {
+		String expectedName = "DataSource Test Name";
+		Map<String, String> expectedAttributes = Jdk8Utils.mapOf("TestAttribute1", "TestAttributeValue1");
+		DataSourceListDataSource underTest = new DataSourceListDataSource(TEST_DSL, expectedName, expectedAttributes);
+		assertAll(
+				()->assertSame(TEST_DSL, underTest.contents()),
+				()->assertSame(TEST_DSL, DataSourceList.Deconstructor.dsToDataSourceList(underTest).get()),
+				()->assertEquals(expectedName, underTest.name()),
+				()->assertEquals(StandardMimeTypes.APPLICATION_VND_4POINT_DATASOURCELIST_TYPE, underTest.contentType()),
+				()->assertEquals(expectedAttributes, underTest.attributes())
+				);
+	}
+
+	@Test
+	void testInputStream_Serialized() throws Exception {
+		DataSourceListDataSource underTest = new DataSourceListDataSource(TEST_DSL, "Test");
+		try (InputStream inputStream = underTest.inputStream(); XmlDataSourceListDecoder decoder = XmlDataSourceListDecoder.wrap(inputStream)) {
+			Optional<DataSourceList> result = decoder.decode();
+			assertTrue(result.isPresent(), "Expected DataSourceList to be decoded from serialized form.");
+			DataSourceList.Deconstructor d11r = result.get().deconstructor();
+			assertAll(
+					()->assertEquals("StringValue", d11r.getStringByName("StringEntry").get()),
+					()->assertArrayEquals("ByteArrayValue".getBytes(), d11r.getByteArrayByName("ByteArrayEntry").get())
+					);
+		}
+	}
+
+	@Test
+	void testOutputStream() throws Exception {
+		DataSourceList expectedDsl = DataSourceList.builder().add("NewEntry", "NewValue").build();
+		DataSourceListDataSource source = new DataSourceListDataSource(expectedDsl, "Source");
+		DataSourceListDataSource underTest = new DataSourceListDataSource(TEST_DSL, "Test");
+		try (InputStream is = source.inputStream(); OutputStream os = underTest.outputStream()) {
+			Jdk8Utils.transfer(is, os);
+		}
+		DataSourceList result = underTest.contents();
+		assertAll(
+				()->assertEquals(1, result.size()),
+				()->assertEquals("NewValue", result.deconstructor().getStringByName("NewEntry").get())
+				);
+	}
+}
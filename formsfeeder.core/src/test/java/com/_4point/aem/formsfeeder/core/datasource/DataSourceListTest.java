@@ -75,6 +75,48 @@ class DataSourceListTest {
 				);
 	}
 
+	@Test
+	void testGetDataSourcesByName_ReturnsSharedUnmodifiableList() {
+		List<DataSource> result = underTest.getDataSourcesByName(SECOND_NAME);
+		assertAll(
+				()->assertSame(result, underTest.getDataSourcesByName(SECOND_NAME)),	// Subsequent lookups should return the same list
+				()->assertThrows(UnsupportedOperationException.class, ()->result.add(DS1)),
+				()->assertThrows(UnsupportedOperationException.class, ()->underTest.getDataSourcesByName(FIRST_NAME).clear()),
+				()->assertThrows(UnsupportedOperationException.class, ()->underTest.getDataSourcesByName("SomethingNotThere").add(DS1))
+				);
+	}
+
+	@Test
+	void testGetDataSourceByName_NullName() {
+		NullPointerException ex1 = assertThrows(NullPointerException.class, ()->underTest.getDataSourceByName(null));
+		NullPointerException ex2 = assertThrows(NullPointerException.class, ()->underTest.getDataSourcesByName(null));
+		assertAll(
+				()->assertEquals("Target DataSource name cannot be null.", ex1.getMessage()),
+				()->assertEquals("Target DataSource name cannot be null.", ex2.getMessage()),
+				// A null name finds nothing in an empty list (as it did before the name index was added).
+				()->assertFalse(DataSourceList.emptyList().getDataSourceByName(null).isPresent()),
+				()->assertTrue(DataSourceList.emptyList().getDataSourcesByName(null).isEmpty()),
+				()->assertFalse(DataSourceList.from(new ArrayList<DataSource>()).getDataSourceByName(null).isPresent()),
+				()->assertFalse(DataSourceList.emptyList().deconstructor().getStringByName(null).isPresent())
+				);
+	}
+
+	@Test
+	void testGetDataSourcesByName_LargeList() {
+		final int numEntries = 10000;
+		List<DataSource> largeList = new ArrayList<>(numEntries);
+		for (int i = 0; i < numEntries; i++) {
+			largeList.add(new StringDataSource(Integer.toString(i), "Name" + (i % 100)));
+		}
+		DataSourceList largeDsl = DataSourceList.from(largeList);
+		List<DataSource> found = largeDsl.getDataSourcesByName("Name42");
+		assertEquals(numEntries / 100, found.size());
+		for (int i = 0; i < found.size(); i++) {
+			assertSame(largeList.get(42 + (i * 100)), found.get(i), "Expected entries to be returned in list order.");
+		}
+		assertSame(largeList.get(99), largeDsl.getDataSourceByName("Name99").get());
+	}
+
 	@Test
 	void testGetDataSources() {
 		assertAll(
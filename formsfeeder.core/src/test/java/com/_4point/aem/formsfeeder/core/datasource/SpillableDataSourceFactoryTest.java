@@ -0,0 +1,124 @@
+package com._4point.aem.formsfeeder.core.datasource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com._4point.aem.formsfeeder.core.support.Jdk8Utils;
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+
+class SpillableDataSourceFactoryTest {
+	private static final int TEST_THRESHOLD = 16;
+
+	private FileSystem fs;
+	private Path tempDir;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		fs = Jimfs.newFileSystem(Configuration.unix());
+		tempDir = Files.createDirectories(fs.getPath("SpillTests"));
+	}
+
+	@Test
+	void testFrom_BelowThreshold() throws Exception {
+		byte[] expectedBytes = "Small".getBytes();
+		String expectedName = "SmallDs";
+		try (SpillableDataSourceFactory underTest = SpillableDataSourceFactory.create(TEST_THRESHOLD, tempDir)) {
+			DataSource result = underTest.from(expectedName, new ByteArrayInputStream(expectedBytes), StandardMimeTypes.TEXT_PLAIN_UTF8_TYPE);
+			try (InputStream inputStream = result.inputStream()) {
+				assertAll(
+						()->assertArrayEquals(expectedBytes, Jdk8Utils.readAllBytes(inputStream)),
+						()->assertEquals(expectedName, result.name()),
+						()->assertEquals(StandardMimeTypes.TEXT_PLAIN_UTF8_TYPE, result.contentType()),
+						()->assertFalse(result.filename().isPresent()),
+						()->assertFalse(((SpillableDataSource)result).isSpilled()),
+						()->assertEquals(0, countTempFiles())
+						);
+			}
+		}
+	}
+
+	@Test
+	void testFrom_AboveThreshold() throws Exception {
+		byte[] expectedBytes = new byte[TEST_THRESHOLD * 10];
+		Arrays.fill(expectedBytes, (byte)'A');
+		Path expectedFilename = Paths.get("LargeFile.pdf");
+		Map<String, String> expectedAttributes = Jdk8Utils.mapOf("TestAttribute1", "TestAttributeValue1");
+		SpillableDataSourceFactory underTest = SpillableDataSourceFactory.create(TEST_THRESHOLD, tempDir);
+		DataSource result = underTest.from("LargeDs", new ByteArrayInputStream(expectedBytes), StandardMimeTypes.APPLICATION_PDF_TYPE, expectedFilename, expectedAttributes);
+		try (InputStream inputStream = result.inputStream()) {
+			assertAll(
+					()->assertArrayEquals(expectedBytes, Jdk8Utils.readAllBytes(inputStream)),
+					()->assertEquals(expectedFilename, result.filename().get()),
+					()->assertEquals(expectedAttributes, result.attributes()),
+					()->assertTrue(((SpillableDataSource)result).isSpilled()),
+					()->assertEquals(1, countTempFiles())
+					);
+		}
+		underTest.close();
+		assertAll(
+				()->assertEquals(0, countTempFiles(), "Expected temporary files to be removed when the factory is closed."),
+				()->assertThrows(IllegalStateException.class, ()->result.inputStream()),
+				()->assertThrows(IllegalStateException.class, ()->underTest.from("AfterClose", new ByteArrayInputStream(expectedBytes), StandardMimeTypes.APPLICATION_PDF_TYPE))
+				);
+	}
+
+	@Test
+	void testOutputStream_RewriteReplacesTempFile() throws Exception {
+		byte[] largeBytes = new byte[TEST_THRESHOLD * 2];
+		Arrays.fill(largeBytes, (byte)'B');
+		byte[] smallBytes = "Replaced".getBytes();
+		try (SpillableDataSourceFactory underTest = SpillableDataSourceFactory.create(TEST_THRESHOLD, tempDir)) {
+			DataSource result = underTest.from("RewriteDs", new ByteArrayInputStream(largeBytes), StandardMimeTypes.APPLICATION_OCTET_STREAM_TYPE);
+			assertEquals(1, countTempFiles());
+			try (OutputStream os = result.outputStream()) {
+				os.write(smallBytes);
+			}
+			try (InputStream inputStream = result.inputStream()) {
+				assertAll(
+						()->assertArrayEquals(smallBytes, Jdk8Utils.readAllBytes(inputStream)),
+						()->assertFalse(((SpillableDataSource)result).isSpilled()),
+						()->assertEquals(0, countTempFiles(), "Expected previous temporary file to be removed.")
+						);
+			}
+		}
+	}
+
+	@Test
+	void testOutputStream_UnclosedStreamRemovedOnClose() throws Exception {
+		SpillableDataSourceFactory underTest = SpillableDataSourceFactory.create(TEST_THRESHOLD, tempDir);
+		DataSource result = underTest.from("UnclosedDs", new ByteArrayInputStream(new byte[0]), StandardMimeTypes.APPLICATION_OCTET_STREAM_TYPE);
+		OutputStream os = result.outputStream();
+		os.write(new byte[TEST_THRESHOLD + 1]);
+		assertEquals(1, countTempFiles());
+		underTest.close();
+		assertEquals(0, countTempFiles(), "Expected in-progress temporary file to be removed when the factory is closed.");
+	}
+
+	@Test
+	void testCreate_NegativeThreshold() {
+		IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, ()->SpillableDataSourceFactory.create(-1));
+		String msg = ex.getMessage();
+		assertNotNull(msg);
+		assertTrue(msg.contains("-1"), "Expected message to contain threshold value. (" + msg + ").");
+	}
+
+	private long countTempFiles() throws Exception {
+		try (Stream<Path> files = Files.list(tempDir)) {
+			return files.count();
+		}
+	}
+}
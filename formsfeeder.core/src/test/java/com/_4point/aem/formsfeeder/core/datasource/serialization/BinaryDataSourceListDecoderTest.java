@@ -0,0 +1,210 @@
+package com._4point.aem.formsfeeder.core.datasource.serialization;
+
+import static com._4point.aem.formsfeeder.core.datasource.serialization.XmlDataSourceListDecoderTest.dslEquals;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com._4point.aem.formsfeeder.core.datasource.DataSource;
+import com._4point.aem.formsfeeder.core.datasource.DataSourceList;
+import com._4point.aem.formsfeeder.core.datasource.SpillableDataSourceFactory;
+import com._4point.aem.formsfeeder.core.datasource.StandardMimeTypes;
+import com._4point.aem.formsfeeder.core.support.Jdk8Utils;
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+
+class BinaryDataSourceListDecoderTest {
+
+	@ParameterizedTest
+	@EnumSource
+	void testRoundTrip(XmlDataSourceListTestConstants.TestScenario scenario) throws Exception {
+		try (BinaryDataSourceListDecoder underTest = BinaryDataSourceListDecoder.wrap(new ByteArrayInputStream(toBinary(scenario.dsList)))) {
+			Optional<DataSourceList> result = underTest.decode();
+
+			assertTrue(result.isPresent(), "Expected result to be present.");
+			dslEquals(scenario.dsList, result.get(), true);
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {0, 1, 64 * 1024 - 1, 64 * 1024, 64 * 1024 + 1, 200 * 1024 + 3})
+	void testRoundTrip_LargeContent(int size) throws Exception {
+		byte[] expectedBytes = new byte[size];
+		for (int i = 0; i < size; i++) {
+			expectedBytes[i] = (byte)i;
+		}
+		DataSourceList expectedDsl = DataSourceList.builder().add("LargeContent", expectedBytes).build();
+		try (BinaryDataSourceListDecoder underTest = BinaryDataSourceListDecoder.wrap(new ByteArrayInputStream(toBinary(expectedDsl)))) {
+			dslEquals(expectedDsl, underTest.decode().get(), true);
+		}
+	}
+
+	@Test
+	void testRoundTrip_NestedDataSourceList() throws Exception {
+		DataSourceList nestedDsl = DataSourceList.builder()
+												 .add("NestedString", "NestedValue")
+												 .add("NestedDsl", DataSourceList.builder().add("DeeplyNested", 23).build())
+												 .build();
+		DataSourceList expectedDsl = DataSourceList.builder()
+												   .add("Before", "BeforeValue")
+												   .add("Nested", nestedDsl, Jdk8Utils.mapOf("NestedAttr", "NestedAttrValue"))
+												   .add("After", "AfterValue")
+												   .build();
+		try (BinaryDataSourceListDecoder underTest = BinaryDataSourceListDecoder.wrap(new ByteArrayInputStream(toBinary(expectedDsl)))) {
+			DataSourceList result = underTest.decode().get();
+			DataSourceList.Deconstructor d11r = result.deconstructor();
+			DataSourceList resultNested = d11r.getDataSourceListByName("Nested").get();
+			assertAll(
+					()->dslEquals(expectedDsl, result, true),
+					()->assertEquals("NestedAttrValue", result.list().get(1).attributes().get("NestedAttr")),
+					()->assertEquals("NestedValue", resultNested.deconstructor().getStringByName("NestedString").get()),
+					()->assertEquals(23, resultNested.deconstructor().getDataSourceListByName("NestedDsl").get().deconstructor().getIntegerByName("DeeplyNested").get())
+					);
+		}
+	}
+
+	@Test
+	void testDecode_NameFilter() throws Exception {
+		byte[] largeBytes = new byte[200 * 1024];
+		Arrays.fill(largeBytes, (byte)'A');
+		DataSourceList dsl = DataSourceList.builder()
+										   .add("Skipped", largeBytes)
+										   .add("Kept", "KeptValue")
+										   .add("SkippedDsl", DataSourceList.builder().add("Inner", largeBytes).build())
+										   .add("AlsoKept", "AlsoKeptValue")
+										   .build();
+		try (BinaryDataSourceListDecoder underTest = BinaryDataSourceListDecoder.wrap(new ByteArrayInputStream(toBinary(dsl)))) {
+			DataSourceList result = underTest.decode(name->name.contains("Kept")).get();
+			DataSourceList.Deconstructor d11r = result.deconstructor();
+			assertAll(
+					()->assertEquals(2, result.size()),
+					()->assertEquals("KeptValue", d11r.getStringByName("Kept").get()),
+					()->assertEquals("AlsoKeptValue", d11r.getStringByName("AlsoKept").get())
+					);
+		}
+	}
+
+	@Test
+	void testDecode_SpillableDataSourceFactory() throws Exception {
+		FileSystem fs = Jimfs.newFileSystem(Configuration.unix());
+		Path tempDir = Files.createDirectories(fs.getPath("SpillTests"));
+		byte[] largeBytes = new byte[100 * 1024];
+		Arrays.fill(largeBytes, (byte)'A');
+		DataSourceList expectedDsl = DataSourceList.builder()
+												   .add("LargeContent", largeBytes, StandardMimeTypes.APPLICATION_PDF_TYPE, Paths.get("large.pdf"), Jdk8Utils.mapOf("DsAttr1", "DsAttrValue1"))
+												   .add("SmallContent", "DsValue1")
+												   .build();
+		SpillableDataSourceFactory spillFactory = SpillableDataSourceFactory.create(1024, tempDir);
+		try (BinaryDataSourceListDecoder underTest = BinaryDataSourceListDecoder.wrap(new ByteArrayInputStream(toBinary(expectedDsl)), spillFactory)) {
+			dslEquals(expectedDsl, underTest.decode().get(), true);
+			assertEquals(1, countFiles(tempDir), "Expected large content to be written to a temporary file.");
+		}
+		spillFactory.close();
+		assertEquals(0, countFiles(tempDir), "Expected temporary files to be removed when the factory is closed.");
+	}
+
+	@Test
+	void testDecode_EmptyInput() throws Exception {
+		try (BinaryDataSourceListDecoder underTest = BinaryDataSourceListDecoder.wrap(new ByteArrayInputStream(new byte[0]))) {
+			assertFalse(underTest.decode().isPresent());
+		}
+	}
+
+	@Test
+	void testDecode_InvalidHeader() throws Exception {
+		try (BinaryDataSourceListDecoder underTest = BinaryDataSourceListDecoder.wrap(new ByteArrayInputStream("<?xml version=\"1.0\" ?>".getBytes()))) {
+			IOException ex = assertThrows(IOException.class, ()->underTest.decode());
+			assertThat(ex.getMessage(), containsString("invalid header"));
+		}
+	}
+
+	@Test
+	void testDecode_UnsupportedVersion() throws Exception {
+		byte[] bytes = toBinary(DataSourceList.emptyList());
+		bytes[4] = 99;
+		try (BinaryDataSourceListDecoder underTest = BinaryDataSourceListDecoder.wrap(new ByteArrayInputStream(bytes))) {
+			IOException ex = assertThrows(IOException.class, ()->underTest.decode());
+			assertThat(ex.getMessage(), containsString("Unsupported binary DataSourceList version (99)"));
+		}
+	}
+
+	@Test
+	void testDecode_Truncated() throws Exception {
+		byte[] bytes = toBinary(DataSourceList.builder().add("DsName1", "DsValue1").build());
+		try (BinaryDataSourceListDecoder underTest = BinaryDataSourceListDecoder.wrap(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 3)))) {
+			assertThrows(EOFException.class, ()->underTest.decode());
+		}
+	}
+
+	@Test
+	void testEncode_NoXmlOrBase64() throws Exception {
+		byte[] content = "Some raw content".getBytes();
+		DataSource ds = DataSourceList.builder().add("DsName1", content).build().list().get(0);
+		byte[] bytes = toBinary(DataSourceList.builder().add("Nested", DataSourceList.builder().add(ds).build()).build());
+		String asString = new String(bytes, "ISO-8859-1");
+		assertAll(
+				()->assertThat(asString, containsString("Some raw content")),
+				()->assertFalse(asString.contains("<DataSourceList"), "Expected nested DataSourceList to be binary encoded.")
+				);
+	}
+
+	@Test
+	void test_NullInputStream() {
+		NullPointerException ex = assertThrows(NullPointerException.class, ()->BinaryDataSourceListDecoder.wrap(null));
+		assertThat(ex.getMessage(), containsString("Input Stream cannot be null."));
+	}
+
+	@Test
+	void test_NullOutputStream() {
+		NullPointerException ex = assertThrows(NullPointerException.class, ()->BinaryDataSourceListEncoder.wrap(null));
+		assertThat(ex.getMessage(), containsString("Output Stream cannot be null."));
+	}
+
+	@Test
+	void test_RoundTripBytesPreserved() throws Exception {
+		byte[] content = new byte[256];
+		for (int i = 0; i < content.length; i++) {
+			content[i] = (byte)i;
+		}
+		DataSourceList dsl = DataSourceList.builder().add("AllBytes", content).build();
+		try (BinaryDataSourceListDecoder underTest = BinaryDataSourceListDecoder.wrap(new ByteArrayInputStream(toBinary(dsl)))) {
+			assertArrayEquals(content, underTest.decode().get().deconstructor().getByteArrayByName("AllBytes").get());
+		}
+	}
+
+	private static byte[] toBinary(DataSourceList dsl) throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		try (BinaryDataSourceListEncoder encoder = BinaryDataSourceListEncoder.wrap(os)) {
+			encoder.encode(dsl);
+		}
+		return os.toByteArray();
+	}
+
+	private static long countFiles(Path dir) throws Exception {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files.count();
+		}
+	}
+}
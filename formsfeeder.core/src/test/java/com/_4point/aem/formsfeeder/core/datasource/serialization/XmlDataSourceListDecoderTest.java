@@ -13,22 +13,33 @@ import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.Reader;
 import java.io.StringReader;
+import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import javax.xml.stream.XMLStreamReader;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
 
 import com._4point.aem.formsfeeder.core.datasource.DataSource;
 import com._4point.aem.formsfeeder.core.datasource.DataSourceList;
+import com._4point.aem.formsfeeder.core.datasource.SpillableDataSourceFactory;
+import com._4point.aem.formsfeeder.core.datasource.StandardMimeTypes;
 import com._4point.aem.formsfeeder.core.support.Jdk8Utils;
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
 
 public class XmlDataSourceListDecoderTest {
 
@@ -135,6 +146,107 @@ public class XmlDataSourceListDecoderTest {
 				);
 	}
 
+	@ParameterizedTest
+	@ValueSource(ints = {0, 1, 2, 3, 24 * 1024 - 1, 24 * 1024, 24 * 1024 + 1, 100 * 1024 + 2})
+	void test_LargeContent(int size) throws Exception {
+		byte[] expectedBytes = new byte[size];
+		for (int i = 0; i < size; i++) {
+			expectedBytes[i] = (byte)i;
+		}
+		DataSourceList expectedDsl = DataSourceList.builder().add("LargeContent", expectedBytes).build();
+		try(XmlDataSourceListDecoder underTest = XmlDataSourceListDecoder.wrap(new StringReader(toXml(expectedDsl)))) {
+			Optional<DataSourceList> result = underTest.decode();
+
+			assertTrue(result.isPresent(), "Expected result to be present.");
+			dslEquals(expectedDsl, result.get(), true);
+		}
+	}
+
+	@Test
+	void test_ContentWithWhitespaceAndComments() throws Exception {
+		String xml = "<?xml version=\"1.0\" ?><DataSourceList><DataSource Name=\"DsName1\"><Content>\n  RHNW\r\n  YWx1<!-- comment -->ZTE=\n</Content></DataSource></DataSourceList>";
+		try(XmlDataSourceListDecoder underTest = XmlDataSourceListDecoder.wrap(new StringReader(xml))) {
+			Optional<DataSourceList> result = underTest.decode();
+
+			assertTrue(result.isPresent(), "Expected result to be present.");
+			assertArrayEquals("DsValue1".getBytes(), result.get().deconstructor().getByteArrayByName("DsName1").get());
+		}
+	}
+
+	@Test
+	void test_NestedElementInContent() throws Exception {
+		String xml = "<?xml version=\"1.0\" ?><DataSourceList><DataSource Name=\"DsName1\"><Content>RHNW<foo/>YWx1ZTE=</Content></DataSource></DataSourceList>";
+		try(XmlDataSourceListDecoder underTest = XmlDataSourceListDecoder.wrap(new StringReader(xml))) {
+			IllegalStateException ex = assertThrows(IllegalStateException.class, ()->underTest.decode());
+			assertThat(ex.getMessage(), containsString("XML Error while extracting DataSource content text"));
+		}
+	}
+
+	@Test
+	void test_SpillableDataSourceFactory() throws Exception {
+		FileSystem fs = Jimfs.newFileSystem(Configuration.unix());
+		Path tempDir = Files.createDirectories(fs.getPath("SpillTests"));
+		byte[] largeBytes = new byte[100 * 1024];
+		Arrays.fill(largeBytes, (byte)'A');
+		Map<String, String> expectedAttributes = Jdk8Utils.mapOf("DsAttr1", "DsAttrValue1");
+		DataSourceList expectedDsl = DataSourceList.builder()
+												   .add("LargeContent", largeBytes, StandardMimeTypes.APPLICATION_PDF_TYPE, Paths.get("large.pdf"), expectedAttributes)
+												   .add("SmallContent", "DsValue1")
+												   .build();
+		SpillableDataSourceFactory spillFactory = SpillableDataSourceFactory.create(1024, tempDir);
+		try(XmlDataSourceListDecoder underTest = XmlDataSourceListDecoder.wrap(new ByteArrayInputStream(toXml(expectedDsl).getBytes(StandardCharsets.UTF_8)), spillFactory)) {
+			Optional<DataSourceList> result = underTest.decode();
+
+			assertTrue(result.isPresent(), "Expected result to be present.");
+			dslEquals(expectedDsl, result.get(), true);
+			assertEquals(1, countFiles(tempDir), "Expected large content to be written to a temporary file.");
+		}
+		spillFactory.close();
+		assertEquals(0, countFiles(tempDir), "Expected temporary files to be removed when the factory is closed.");
+	}
+
+	@Test
+	void test_ContentSpanningSegments() throws Exception {
+		byte[] largeBytes = new byte[200 * 1024 + 17];		// Several segments, the last one partially filled.
+		for (int i = 0; i < largeBytes.length; i++) {
+			largeBytes[i] = (byte)i;
+		}
+		DataSourceList expectedDsl = DataSourceList.builder()
+												   .add("LargeContent", largeBytes, StandardMimeTypes.APPLICATION_PDF_TYPE, Paths.get("large.pdf"))
+												   .build();
+		try(XmlDataSourceListDecoder underTest = XmlDataSourceListDecoder.wrap(new ByteArrayInputStream(toXml(expectedDsl).getBytes(StandardCharsets.UTF_8)))) {
+			DataSourceList result = underTest.decode().get();
+
+			dslEquals(expectedDsl, result, true);
+			DataSource ds = result.list().get(0);
+			assertArrayEquals(largeBytes, Jdk8Utils.readAllBytes(ds.inputStream()), "Expected the content to be readable more than once.");
+			try (InputStream is = ds.inputStream()) {
+				assertEquals(64 * 1024, is.skip(64 * 1024));
+				assertEquals(largeBytes[64 * 1024] & 0xFF, is.read());
+			}
+		}
+	}
+
+	@Test
+	void test_NullSpillableDataSourceFactory() {
+		NullPointerException ex = assertThrows(NullPointerException.class, ()->XmlDataSourceListDecoder.wrap(new ByteArrayInputStream(new byte[0]), null));
+		assertThat(ex.getMessage(), containsString("SpillableDataSourceFactory cannot be null."));
+	}
+
+	private static String toXml(DataSourceList dsl) throws Exception {
+		StringWriter writer = new StringWriter();
+		try (XmlDataSourceListEncoder encoder = XmlDataSourceListEncoder.wrap(writer)) {
+			encoder.encode(dsl);
+		}
+		return writer.toString();
+	}
+
+	private static long countFiles(Path dir) throws Exception {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files.count();
+		}
+	}
+
 	/**
 	 * Returns true of the other DataSourceList is equal to this one.  The comparison can be shallow or deep.  
 	 * 
@@ -14,12 +14,15 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.util.Base64;
+import java.util.Random;
 
 import javax.xml.stream.XMLStreamWriter;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.xmlunit.matchers.CompareMatcher;
 
 import com._4point.aem.formsfeeder.core.datasource.DataSourceList;
@@ -71,6 +74,21 @@ class XmlDataSourceListEncoderTest {
 		assertThat(new String(bos.toByteArray(), StandardCharsets.UTF_8), CompareMatcher.isIdenticalTo(expectedResult));
 	}
 	
+	@ParameterizedTest
+	@ValueSource(ints = {0, 1, 2, 3, 24 * 1024 - 1, 24 * 1024, 24 * 1024 + 1, 100 * 1024 + 2})	// sizes around the encoder's 24Kb chunk boundaries
+	void test_LargeContent(int contentSize) throws Exception {
+		byte[] expectedBytes = new byte[contentSize];
+		new Random(contentSize).nextBytes(expectedBytes);
+		DataSourceList testDsl = DataSourceList.builder().add("LargeContent", expectedBytes).build();
+
+		try(XmlDataSourceListEncoder underTest = XmlDataSourceListEncoder.wrap(resultWriter)) {
+			underTest.encode(testDsl);
+		}
+
+		String expectedContent = "<Content>" + Base64.getEncoder().encodeToString(expectedBytes) + "</Content>";
+		assertThat(resultWriter.toString(), containsString(expectedContent));
+	}
+
 	@Test
 	void test_NullWriter() {
 		NullPointerException ex = assertThrows(NullPointerException.class, ()->XmlDataSourceListEncoder.wrap((Writer)null));
@@ -0,0 +1,162 @@
+package com._4point.aem.formsfeeder.core.support;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+import com._4point.aem.formsfeeder.core.support.XmlProcessor.XmlProcessorException;
+
+class XmlProcessorTest {
+
+	private static final String STYLESHEET = "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+			+ "<xsl:output method=\"text\"/>"
+			+ "<xsl:template match=\"/\">Hello <xsl:value-of select=\"/root/name\"/></xsl:template>"
+			+ "</xsl:stylesheet>";
+
+	private final XmlProcessor underTest = XmlProcessor.INSTANCE;
+
+	@Test
+	void testTemplates_Cached() throws Exception {
+		assertSame(underTest.templates(STYLESHEET), underTest.templates(STYLESHEET));
+	}
+
+	@Test
+	void testTransform() throws Exception {
+		assertEquals("Hello World", transform("World"));
+	}
+
+	@Test
+	void testTemplates_BadStylesheet() throws Exception {
+		XmlProcessorException ex = assertThrows(XmlProcessorException.class, ()->underTest.templates("<xsl:stylesheet>Not a stylesheet"));
+		assertTrue(ex.getMessage().contains("stylesheet"), ()->"Expected 'stylesheet' in '" + ex.getMessage() + "'.");
+	}
+
+	@Test
+	void testTemplates_CacheBounded() throws Exception {
+		for (int i = 0; i <= XmlProcessor.MAX_CACHED_TEMPLATES; i++) {
+			underTest.templates(STYLESHEET.replace("Hello", "Hello" + i));
+		}
+		assertTrue(underTest.cachedTemplates() <= XmlProcessor.MAX_CACHED_TEMPLATES, ()->"Expected at most " + XmlProcessor.MAX_CACHED_TEMPLATES + " cached stylesheets but found " + underTest.cachedTemplates() + ".");
+		assertEquals("Hello World", transform("World"));
+	}
+
+	@Test
+	void testTemplates_ExternalStylesheetNotLoaded() throws Exception {
+		String stylesheet = "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+				+ "<xsl:include href=\"file:///etc/passwd\"/>"
+				+ "</xsl:stylesheet>";
+		assertThrows(XmlProcessorException.class, ()->underTest.templates(stylesheet));
+	}
+
+	@Test
+	void testXPath_CachedPerThread() throws Exception {
+		assertSame(underTest.xpath("/root/name"), underTest.xpath("/root/name"));
+		assertNotSame(underTest.xpath("/root/name"), underTest.xpath("/root/name", Collections.singletonMap("ns", "http://example.com/ns")));
+	}
+
+	@Test
+	void testEvaluate() throws Exception {
+		Document doc = underTest.parse("<root><name>  Value </name></root>".getBytes(StandardCharsets.UTF_8));
+		assertEquals("  Value ", underTest.evaluate("/root/name", doc));
+	}
+
+	@Test
+	void testEvaluate_Namespaces() throws Exception {
+		Document doc = underTest.parse("<ex:root xmlns:ex=\"http://example.com/ns\"><ex:name>Value</ex:name></ex:root>".getBytes(StandardCharsets.UTF_8));
+		Map<String, String> namespaces = new HashMap<>();
+		namespaces.put("e", "http://example.com/ns");
+
+		assertAll(
+				()->assertEquals("Value", underTest.evaluate("/e:root/e:name", namespaces, doc, XPathConstants.STRING)),
+				()->assertEquals("", underTest.evaluate("/root/name", doc))	// Namespaces are significant
+				);
+	}
+
+	@Test
+	void testXPath_BadExpression() throws Exception {
+		assertThrows(XmlProcessorException.class, ()->underTest.xpath("/root/["));
+	}
+
+	@Test
+	void testParse_NotNamespaceAware() throws Exception {
+		Document doc = underTest.parse(new ByteArrayInputStream("<ex:root xmlns:ex=\"http://example.com/ns\"><ex:name>Value</ex:name></ex:root>".getBytes(StandardCharsets.UTF_8)), false);
+		assertNull(doc.getDocumentElement().getNamespaceURI());
+		assertEquals("ex:root", doc.getDocumentElement().getNodeName());
+	}
+
+	@Test
+	void testXPath_CacheBounded() throws Exception {
+		XPathExpression first = underTest.xpath("/root/name[1]");
+		for (int i = 0; i < XmlProcessor.MAX_CACHED_XPATHS; i++) {
+			underTest.xpath("/root/name[" + (i + 2) + "]");
+		}
+		assertNotSame(first, underTest.xpath("/root/name[1]"), "Expected the least recently used expression to have been discarded.");
+	}
+
+	@Test
+	void testParse_DoctypeRejected() throws Exception {
+		String xml = "<?xml version=\"1.0\"?><!DOCTYPE root [<!ENTITY xxe SYSTEM \"file:///etc/passwd\">]><root><name>&xxe;</name></root>";
+		assertThrows(XmlProcessorException.class, ()->underTest.parse(xml.getBytes(StandardCharsets.UTF_8)));
+		assertThrows(XmlProcessorException.class, ()->underTest.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), false));
+	}
+
+	@Test
+	void testParse_BadXml() throws Exception {
+		assertThrows(XmlProcessorException.class, ()->underTest.parse("<root><name></root>".getBytes(StandardCharsets.UTF_8)));
+		// The DocumentBuilder that failed must still be usable.
+		assertEquals("Value", underTest.evaluate("/root/name", underTest.parse("<root><name>Value</name></root>".getBytes(StandardCharsets.UTF_8))));
+	}
+
+	/**
+	 * Runs parses, XPaths and transformations on many threads at once and makes sure that each one gets its own result.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	void testConcurrentUse() throws Exception {
+		final int numTasks = 500;
+		ExecutorService executor = Executors.newFixedThreadPool(16);
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			for (int i = 0; i < numTasks; i++) {
+				final String name = "Name" + i;
+				Callable<String> task = ()->{
+					Document doc = underTest.parse(("<root><name>" + name + "</name></root>").getBytes(StandardCharsets.UTF_8));
+					return underTest.evaluate("/root/name", doc) + "/" + transform(name);
+				};
+				results.add(executor.submit(task));
+			}
+			for (int i = 0; i < numTasks; i++) {
+				assertEquals("Name" + i + "/Hello Name" + i, results.get(i).get());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private String transform(String name) {
+		StringWriter result = new StringWriter();
+		underTest.transform(STYLESHEET, new StreamSource(new StringReader("<root><name>" + name + "</name></root>")), new StreamResult(result));
+		return result.toString();
+	}
+}
@@ -17,6 +17,10 @@ package com._4point.aem.formsfeeder.pf4j;
 
 import org.pf4j.DefaultPluginManager;
 import org.pf4j.ExtensionFactory;
+import org.pf4j.PluginDescriptor;
+import org.pf4j.PluginRuntimeException;
+import org.pf4j.PluginState;
+import org.pf4j.PluginWrapper;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.support.AbstractAutowireCapableBeanFactory;
 import org.springframework.context.ApplicationContext;
@@ -25,6 +29,7 @@ import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import java.nio.file.Path;
+import java.util.Set;
 
 /**
  * @author Decebal Suiu
@@ -68,4 +73,94 @@ public class SpringPluginManager extends DefaultPluginManager implements Applica
         extensionsInjector.injectExtensions();
     }
 
+    /**
+     * Reads the descriptor of a plugin without loading it.  This allows the caller to find out which plugin (if any) a
+     * new plugin file would replace.
+     *
+     * @param pluginPath path to the plugin file
+     * @return the plugin's descriptor
+     * @throws PluginRuntimeException if the plugin's descriptor cannot be read
+     */
+    public PluginDescriptor readPluginDescriptor(Path pluginPath) {
+        return getPluginDescriptorFinder().find(pluginPath);
+    }
+
+    /**
+     * Stops and unloads a plugin but, unlike {@link #unloadPlugin(String)}, leaves its class loader open so that any
+     * extension instances that are still in use keep working.  The caller must close the class loader (if it is
+     * {@link java.io.Closeable}) once those extension instances are no longer in use.
+     *
+     * Any of the plugin's extensions that were registered as Spring singleton beans (see {@link #init()}) are destroyed,
+     * so that the application context does not keep the plugin's class loader reachable.
+     *
+     * @param pluginId id of the plugin to detach
+     * @return the plugin's class loader
+     * @throws IllegalArgumentException if the plugin is not loaded
+     * @throws PluginRuntimeException if the plugin could not be unloaded
+     */
+    public synchronized ClassLoader detachPlugin(String pluginId) {
+        if (getPlugin(pluginId) == null) {
+            throw new IllegalArgumentException("Unknown pluginId " + pluginId);
+        }
+        Set<String> extensionClassNames = getExtensionClassNames(pluginId);
+        // Remove the class loader first, so that unloadPlugin() does not close it.
+        ClassLoader classLoader = getPluginClassLoaders().remove(pluginId);
+        if (!unloadPlugin(pluginId)) {
+            getPluginClassLoaders().put(pluginId, classLoader);
+            throw new PluginRuntimeException("Unable to unload plugin '{}'", pluginId);
+        }
+        destroyExtensionBeans(extensionClassNames, classLoader);
+        return classLoader;
+    }
+
+    /**
+     * Puts a plugin that was detached by {@link #detachPlugin(String)} back, for example because the plugin that was
+     * meant to replace it could not be loaded.  The plugin is not started and its extensions are not registered as
+     * Spring beans again.
+     *
+     * @param plugin the detached plugin
+     * @param classLoader the class loader returned by {@link #detachPlugin(String)} (which must not have been closed)
+     * @throws IllegalArgumentException if a plugin with the same id is loaded
+     */
+    public synchronized void reattachPlugin(PluginWrapper plugin, ClassLoader classLoader) {
+        String pluginId = plugin.getPluginId();
+        if (getPlugin(pluginId) != null) {
+            throw new IllegalArgumentException("Plugin " + pluginId + " is already loaded");
+        }
+        plugins.put(pluginId, plugin);
+        getPluginClassLoaders().put(pluginId, classLoader);
+        resolvedPlugins.add(plugin);
+    }
+
+    /**
+     * Unloads a plugin (closing its class loader) even if it failed to start.  {@link #unloadPlugin(String)} tries to
+     * stop the plugin first, which fails if its Plugin class could not be created.
+     *
+     * @param pluginId id of the plugin to discard
+     * @return true if the plugin was unloaded
+     */
+    public synchronized boolean discardPlugin(String pluginId) {
+        PluginWrapper plugin = getPlugin(pluginId);
+        if (plugin == null) {
+            return false;
+        }
+        if (plugin.getPluginState() != PluginState.STARTED) {
+            plugin.setPluginState(PluginState.STOPPED);    // It never started, so there is nothing to stop.
+        }
+        return unloadPlugin(pluginId);
+    }
+
+    private void destroyExtensionBeans(Set<String> extensionClassNames, ClassLoader classLoader) {
+        if (applicationContext == null) {
+            return;
+        }
+        AbstractAutowireCapableBeanFactory beanFactory = (AbstractAutowireCapableBeanFactory) applicationContext.getAutowireCapableBeanFactory();
+        for (String beanName : extensionClassNames) {
+            // The ExtensionsInjector names each bean after its extension class.
+            if (beanFactory.containsSingleton(beanName) && beanFactory.getSingleton(beanName).getClass().getClassLoader() == classLoader) {
+                beanFactory.destroySingleton(beanName);
+            }
+        }
+    }
+
 }
\ No newline at end of file
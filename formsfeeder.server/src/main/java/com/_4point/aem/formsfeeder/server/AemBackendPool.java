@@ -0,0 +1,527 @@
+package com._4point.aem.formsfeeder.server;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.jersey.client.ClientProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import com._4point.aem.formsfeeder.core.api.AemConfig;
+
+/**
+ * The AEM servers that FormsFeeder sends requests to (see AemConfig.urls()).
+ *
+ * Each request is sent to the healthy server with the fewest outstanding requests (ties go to the server that is listed
+ * first).  A server is marked unhealthy after a number of consecutive connection failures and is marked healthy again
+ * once it passes a periodic health check.  If no servers are healthy, requests are sent to all of them as if they were.
+ *
+ * Idempotent GETs can optionally be hedged: if the first server has not responded after its 95th percentile latency, the
+ * request is also sent to a second server and whichever response arrives first is used.
+ *
+ * Latency and error counts for each server are available from stats().
+ *
+ * Every request also needs a permit from the AemCallGuard, so requests fail fast (with an AemUnavailableException) when
+ * AEM is overloaded or failing.
+ *
+ * The pool can be configured in the application.properties file:
+ *
+ * {@code
+ * formsfeeder.aem.backends=http://aem1:4503/,http://aem2:4503/
+ * formsfeeder.aem.backends.health-check-path=/libs/granite/core/content/login.html
+ * formsfeeder.aem.backends.health-check-interval=10000
+ * formsfeeder.aem.backends.unhealthy-threshold=3
+ * formsfeeder.aem.backends.hedge-enabled=false
+ * formsfeeder.aem.backends.hedge-min-delay=50
+ * formsfeeder.aem.backends.hedge-threads=20
+ * }
+ *
+ * (all times are in milliseconds).  Health checks and hedging only apply when there is more than one server.
+ *
+ * The list of servers is read from the AemConfig for each request, so if the configuration changes, the pool follows it
+ * (servers that remain in the list keep their statistics).
+ *
+ */
+@Component
+public class AemBackendPool implements Closeable {
+	private final static Logger logger = LoggerFactory.getLogger(AemBackendPool.class);
+
+	public static final String FF_HEALTH_CHECK_PATH_PROPERTY = "formsfeeder.aem.backends.health-check-path";
+	public static final String FF_HEALTH_CHECK_INTERVAL_PROPERTY = "formsfeeder.aem.backends.health-check-interval";
+	public static final String FF_UNHEALTHY_THRESHOLD_PROPERTY = "formsfeeder.aem.backends.unhealthy-threshold";
+	public static final String FF_HEDGE_ENABLED_PROPERTY = "formsfeeder.aem.backends.hedge-enabled";
+	public static final String FF_HEDGE_MIN_DELAY_PROPERTY = "formsfeeder.aem.backends.hedge-min-delay";
+	public static final String FF_HEDGE_THREADS_PROPERTY = "formsfeeder.aem.backends.hedge-threads";
+
+	private static final int LATENCY_SAMPLES = 100;
+	private static final int HEALTH_CHECK_TIMEOUT = 5_000;
+
+	private final AemHttpClient aemHttpClient;
+	private final AemConfig aemConfig;
+	private final AemCallGuard aemCallGuard;
+	private volatile Backends backends;
+	private final String healthCheckPath;
+	private final int unhealthyThreshold;
+	private final boolean hedgeEnabled;
+	private final long hedgeMinDelayMs;
+	private final ThreadPoolExecutor hedgeExecutor;				// null if hedging is disabled
+	private final ScheduledExecutorService healthCheckExecutor;	// null if there is only one server
+
+	public AemBackendPool(AemHttpClient aemHttpClient, AemConfig aemConfig, AemCallGuard aemCallGuard, Environment environment) {
+		this.aemHttpClient = aemHttpClient;
+		this.aemConfig = aemConfig;
+		this.aemCallGuard = aemCallGuard;
+		this.backends = new Backends(aemConfig.urls(), Collections.emptyList());
+		this.healthCheckPath = environment.getProperty(FF_HEALTH_CHECK_PATH_PROPERTY, "/libs/granite/core/content/login.html");
+		this.unhealthyThreshold = environment.getProperty(FF_UNHEALTHY_THRESHOLD_PROPERTY, Integer.class, 3);
+		this.hedgeEnabled = environment.getProperty(FF_HEDGE_ENABLED_PROPERTY, Boolean.class, false);
+		this.hedgeMinDelayMs = environment.getProperty(FF_HEDGE_MIN_DELAY_PROPERTY, Long.class, 50L);
+		if (hedgeEnabled) {
+			int hedgeThreads = environment.getProperty(FF_HEDGE_THREADS_PROPERTY, Integer.class, 20);
+			this.hedgeExecutor = new ThreadPoolExecutor(hedgeThreads, hedgeThreads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(hedgeThreads),
+														new AemHttpClient.AsyncThreadFactory("aem-backend-hedge-"));
+			this.hedgeExecutor.allowCoreThreadTimeOut(true);
+		} else {
+			this.hedgeExecutor = null;
+		}
+		long healthCheckInterval = environment.getProperty(FF_HEALTH_CHECK_INTERVAL_PROPERTY, Long.class, 10_000L);
+		if (healthCheckInterval > 0) {
+			this.healthCheckExecutor = Executors.newSingleThreadScheduledExecutor(new AemHttpClient.AsyncThreadFactory("aem-backend-health-check-"));
+			this.healthCheckExecutor.scheduleWithFixedDelay(this::checkHealth, healthCheckInterval, healthCheckInterval, TimeUnit.MILLISECONDS);
+		} else {
+			this.healthCheckExecutor = null;
+		}
+		logger.info("AEM backends are " + String.join(", ", backends.urls) + (hedgeEnabled ? " (GETs are hedged)." : "."));
+	}
+
+	/**
+	 * Makes a call to the AEM server that currently has the fewest outstanding requests.
+	 *
+	 * @param aemCall	the call to make, it is passed the base URL of the chosen server
+	 * @return AEM's response
+	 * @throws AemCallGuard.AemUnavailableException if the AemCallGuard does not allow the call
+	 */
+	public Response call(Function<String, Response> aemCall) {
+		return invoke(acquire(), aemCall);
+	}
+
+	/**
+	 * Makes an idempotent call to AEM, hedging it with a call to a second server if the first one is slow to respond
+	 * (if hedging is enabled).  The response that is not used is closed.
+	 *
+	 * @param aemCall	the call to make, it is passed the base URL of the chosen server
+	 * @return AEM's response
+	 * @throws AemCallGuard.AemUnavailableException if the AemCallGuard does not allow the call
+	 */
+	public Response hedgedCall(Function<String, Response> aemCall) {
+		if (!hedgeEnabled || currentBackends().list.size() < 2) {
+			return call(aemCall);
+		}
+		Lease primary = acquire();
+		CompletableFuture<Response> primaryResult;
+		try {
+			primaryResult = CompletableFuture.supplyAsync(()->invoke(primary, aemCall), hedgeExecutor);
+		} catch (RejectedExecutionException e) {
+			return invoke(primary, aemCall);	// Too busy to hedge, so just make the call on this thread.
+		}
+		try {
+			return primaryResult.get(Math.max(hedgeMinDelayMs, primary.backend.latencyPercentile(0.95)), TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			// Fall through and hedge
+		} catch (ExecutionException e) {
+			return join(primaryResult);		// Rethrows the failure
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ProcessingException("Interrupted while waiting for response from AEM.", e);
+		}
+
+		AemCallGuard.Permit secondaryPermit = aemCallGuard.tryAcquire();
+		if (secondaryPermit == null) {
+			return join(primaryResult);		// AEM is too busy to take on an extra request.
+		}
+		Lease secondary = acquire(primary.backend, secondaryPermit);
+		CompletableFuture<Response> secondaryResult;
+		try {
+			secondaryResult = CompletableFuture.supplyAsync(()->invoke(secondary, aemCall), hedgeExecutor);
+		} catch (RejectedExecutionException e) {
+			secondary.released();
+			return join(primaryResult);
+		}
+		logger.debug("Hedged request to " + primary.backend.url + " with a request to " + secondary.backend.url + ".");
+		secondary.backend.hedges.incrementAndGet();
+		return join(firstSuccessful(primaryResult, secondaryResult));
+	}
+
+	/**
+	 * Chooses a server for a request.  The caller must call one of the Lease's completion methods once the request is
+	 * complete.
+	 *
+	 * @return
+	 * @throws AemCallGuard.AemUnavailableException if the AemCallGuard does not allow the request
+	 */
+	public Lease acquire() {
+		return acquire(null, aemCallGuard.acquire());
+	}
+
+	/**
+	 * The AEM servers (in order of preference).
+	 *
+	 * @return
+	 */
+	public List<String> urls() {
+		return currentBackends().urls;
+	}
+
+	/**
+	 * Snapshot of the statistics for each server.
+	 *
+	 * @return
+	 */
+	public List<BackendStats> stats() {
+		return currentBackends().list.stream().map(Backend::stats).collect(Collectors.toList());
+	}
+
+	/**
+	 * Checks whether each server is up (a server is considered up if it responds without a 5xx status).
+	 */
+	/* package */ void checkHealth() {
+		List<Backend> backends = currentBackends().list;
+		if (backends.size() < 2) {
+			return;		// The only server is always used, so there's no point in checking it.
+		}
+		for (Backend backend : backends) {
+			boolean healthy;
+			try {
+				Response response = aemHttpClient.client().target(backend.url).path(healthCheckPath)
+												 .property(ClientProperties.CONNECT_TIMEOUT, HEALTH_CHECK_TIMEOUT)
+												 .property(ClientProperties.READ_TIMEOUT, HEALTH_CHECK_TIMEOUT)
+												 .request().get();
+				healthy = response.getStatus() < 500;
+				response.close();
+			} catch (ProcessingException e) {
+				healthy = false;
+			}
+			backend.setHealthy(healthy);
+		}
+	}
+
+	@Override
+	public void close() {
+		if (healthCheckExecutor != null) {
+			healthCheckExecutor.shutdownNow();
+		}
+		if (hedgeExecutor != null) {
+			hedgeExecutor.shutdownNow();
+		}
+	}
+
+	private Lease acquire(Backend excluded, AemCallGuard.Permit permit) {
+		List<Backend> backends = currentBackends().list;
+		Backend chosen = null;
+		for (int pass = 0; pass < 2 && chosen == null; pass++) {
+			boolean healthyOnly = pass == 0;	// If no servers are healthy, try them anyway.
+			for (Backend backend : backends) {
+				if (backend != excluded && (!healthyOnly || backend.healthy) && (chosen == null || backend.outstanding.get() < chosen.outstanding.get())) {
+					chosen = backend;
+				}
+			}
+		}
+		return new Lease(chosen != null ? chosen : excluded, permit);
+	}
+
+	/**
+	 * The current servers (re-created if the configured list has changed).
+	 */
+	private Backends currentBackends() {
+		Backends current = backends;
+		List<String> urls = aemConfig.urls();
+		if (!current.urls.equals(urls)) {
+			synchronized (this) {
+				current = backends;
+				if (!current.urls.equals(urls)) {
+					logger.info("AEM backends changed to " + String.join(", ", urls) + ".");
+					current = new Backends(urls, current.list);
+					backends = current;
+				}
+			}
+		}
+		return current;
+	}
+
+	private static Response invoke(Lease lease, Function<String, Response> aemCall) {
+		try {
+			Response response = aemCall.apply(lease.url());
+			lease.completed(response.getStatus());
+			return response;
+		} catch (RuntimeException e) {
+			lease.failed(e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Completes with the first of two responses to arrive (or the last failure if both fail).  The other response is closed.
+	 */
+	private static CompletableFuture<Response> firstSuccessful(CompletableFuture<Response> first, CompletableFuture<Response> second) {
+		CompletableFuture<Response> winner = new CompletableFuture<>();
+		AtomicInteger failures = new AtomicInteger();
+		for (CompletableFuture<Response> result : Arrays.asList(first, second)) {
+			result.whenComplete((response, throwable)->{
+				if (throwable == null) {
+					if (!winner.complete(response)) {
+						response.close();
+					}
+				} else if (failures.incrementAndGet() == 2) {
+					winner.completeExceptionally(throwable);
+				}
+			});
+		}
+		return winner;
+	}
+
+	private static Response join(CompletableFuture<Response> result) {
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ProcessingException("Interrupted while waiting for response from AEM.", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			throw new ProcessingException("Error while waiting for response from AEM.", cause);
+		}
+	}
+
+	/**
+	 * A request that has been assigned to a server.
+	 */
+	public final class Lease {
+		private final Backend backend;
+		private final AemCallGuard.Permit permit;
+		private final long startNanos = System.nanoTime();
+		private final AtomicBoolean done = new AtomicBoolean();
+
+		private Lease(Backend backend, AemCallGuard.Permit permit) {
+			this.backend = backend;
+			this.permit = permit;
+			backend.outstanding.incrementAndGet();
+		}
+
+		/**
+		 * Base URL of the server.
+		 *
+		 * @return
+		 */
+		public String url() {
+			return backend.url;
+		}
+
+		/**
+		 * The server responded (a 5xx status counts as an error).
+		 *
+		 * @param status
+		 */
+		public void completed(int status) {
+			if (done.compareAndSet(false, true)) {
+				backend.completed(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), status >= 500);
+				permit.completed(status == 502 || status == 503 || status == 504);
+			}
+		}
+
+		/**
+		 * The request to the server failed (for example, the server could not be reached).
+		 *
+		 * @param throwable
+		 */
+		public void failed(Throwable throwable) {
+			if (done.compareAndSet(false, true)) {
+				backend.failed();
+				permit.completed(true);
+				if (backend.consecutiveFailures.get() >= unhealthyThreshold && currentBackends().list.size() > 1) {
+					backend.setHealthy(false);
+				}
+			}
+		}
+
+		/**
+		 * The request was never sent.
+		 */
+		public void released() {
+			if (done.compareAndSet(false, true)) {
+				backend.outstanding.decrementAndGet();
+				permit.released();
+			}
+		}
+	}
+
+	/**
+	 * An immutable list of servers along with the URLs that it was created from.
+	 */
+	private static class Backends {
+		private final List<String> urls;
+		private final List<Backend> list;
+
+		private Backends(List<String> urls, List<Backend> previous) {
+			this.urls = Collections.unmodifiableList(new ArrayList<>(urls));
+			this.list = Collections.unmodifiableList(urls.stream()
+														 .map(url->previous.stream().filter(b->b.url.equals(url)).findFirst().orElseGet(()->new Backend(url)))
+														 .collect(Collectors.toList()));
+		}
+	}
+
+	private static class Backend {
+		private final String url;
+		private final AtomicInteger outstanding = new AtomicInteger();
+		private final AtomicInteger consecutiveFailures = new AtomicInteger();
+		private final AtomicLong requests = new AtomicLong();
+		private final AtomicLong errors = new AtomicLong();
+		private final AtomicLong hedges = new AtomicLong();
+		private final long[] latencies = new long[LATENCY_SAMPLES];	// Most recent latencies (a ring buffer)
+		private int latencyCount;
+		private volatile boolean healthy = true;
+
+		private Backend(String url) {
+			this.url = url;
+		}
+
+		private void completed(long latencyMs, boolean error) {
+			outstanding.decrementAndGet();
+			requests.incrementAndGet();
+			if (error) {
+				errors.incrementAndGet();
+			}
+			consecutiveFailures.set(0);
+			synchronized (latencies) {
+				latencies[latencyCount++ % LATENCY_SAMPLES] = latencyMs;
+			}
+		}
+
+		private void failed() {
+			outstanding.decrementAndGet();
+			requests.incrementAndGet();
+			errors.incrementAndGet();
+			consecutiveFailures.incrementAndGet();
+		}
+
+		private void setHealthy(boolean healthy) {
+			if (this.healthy != healthy) {
+				if (healthy) {
+					logger.info("AEM server " + url + " is healthy again.");
+					consecutiveFailures.set(0);
+				} else {
+					logger.error("AEM server " + url + " is unhealthy, no requests will be sent to it until it recovers.");
+				}
+				this.healthy = healthy;
+			}
+		}
+
+		/**
+		 * Latency (in ms) that the given fraction of the recent requests completed within (0 if there have been none).
+		 */
+		private long latencyPercentile(double fraction) {
+			long[] recent;
+			synchronized (latencies) {
+				recent = Arrays.copyOf(latencies, Math.min(latencyCount, LATENCY_SAMPLES));
+			}
+			if (recent.length == 0) {
+				return 0;
+			}
+			Arrays.sort(recent);
+			return recent[Math.min(recent.length - 1, (int)Math.ceil(fraction * recent.length) - 1)];
+		}
+
+		private BackendStats stats() {
+			return new BackendStats(url, healthy, outstanding.get(), requests.get(), errors.get(), hedges.get(), latencyPercentile(0.5), latencyPercentile(0.95));
+		}
+	}
+
+	/**
+	 * Snapshot of the statistics for one AEM server.
+	 */
+	public static class BackendStats {
+		private final String url;
+		private final boolean healthy;
+		private final int outstanding;
+		private final long requests;
+		private final long errors;
+		private final long hedges;
+		private final long p50LatencyMs;
+		private final long p95LatencyMs;
+
+		private BackendStats(String url, boolean healthy, int outstanding, long requests, long errors, long hedges, long p50LatencyMs, long p95LatencyMs) {
+			this.url = url;
+			this.healthy = healthy;
+			this.outstanding = outstanding;
+			this.requests = requests;
+			this.errors = errors;
+			this.hedges = hedges;
+			this.p50LatencyMs = p50LatencyMs;
+			this.p95LatencyMs = p95LatencyMs;
+		}
+
+		public String url() {
+			return url;
+		}
+
+		public boolean healthy() {
+			return healthy;
+		}
+
+		public int outstanding() {
+			return outstanding;
+		}
+
+		public long requests() {
+			return requests;
+		}
+
+		public long errors() {
+			return errors;
+		}
+
+		/**
+		 * Number of hedged requests that were sent to this server.
+		 */
+		public long hedges() {
+			return hedges;
+		}
+
+		public long p50LatencyMs() {
+			return p50LatencyMs;
+		}
+
+		public long p95LatencyMs() {
+			return p95LatencyMs;
+		}
+
+		@Override
+		public String toString() {
+			return url + " [healthy=" + healthy + ", outstanding=" + outstanding + ", requests=" + requests + ", errors=" + errors
+					+ ", hedges=" + hedges + ", p50=" + p50LatencyMs + "ms, p95=" + p95LatencyMs + "ms]";
+		}
+	}
+}
@@ -0,0 +1,382 @@
+package com._4point.aem.formsfeeder.server;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Limits the calls that are made to AEM so that a struggling AEM is not buried under a growing backlog of requests.
+ *
+ * There are two mechanisms:
+ *
+ * An adaptive concurrency limit caps the number of calls that can be in flight at once.  The limit is adjusted after
+ * each call by comparing the recent round trip time with the long term round trip time (a gradient limit, similar to
+ * TCP Vegas).  When AEM starts to queue requests, its latency rises and the limit shrinks, when latency returns to normal
+ * the limit grows again.  Calls that fail shrink the limit.
+ *
+ * A circuit breaker stops calls altogether when too many of the recent calls have failed.  After a while it lets a few
+ * trial calls through (half open) and closes again once they succeed.
+ *
+ * Calls that are not allowed fail fast with an AemUnavailableException (which is returned to the browser as a "Service
+ * Unavailable" response with a Retry-After header).  A call counts as failed if AEM cannot be reached or responds with
+ * a 502, 503 or 504 status.
+ *
+ * The calls that FormsFeeder makes itself (through the AemBackendPool) are always guarded.  Plugins that call AEM with
+ * their own client (such as the example RenderPdf, RenderHtml5 and RenderAdaptiveForm plugins) are guarded by
+ * listing them in formsfeeder.aem.guard.plugins.  Each invocation of a listed plugin counts as one call to AEM, it
+ * fails if the plugin fails (other than with a bad request) or times out (see PluginTimeouts).  A guarded call holds
+ * its permit until AEM responds, so calls should always have a read timeout (see AemHttpClient's socket timeout) or a
+ * plugin timeout.
+ *
+ * The guard can be configured in the application.properties file:
+ *
+ * {@code
+ * formsfeeder.aem.guard.enabled=true
+ * formsfeeder.aem.guard.initial-limit=20
+ * formsfeeder.aem.guard.min-limit=4
+ * formsfeeder.aem.guard.max-limit=200
+ * formsfeeder.aem.guard.window-size=20
+ * formsfeeder.aem.guard.minimum-calls=10
+ * formsfeeder.aem.guard.failure-rate-threshold=50
+ * formsfeeder.aem.guard.open-duration=30000
+ * formsfeeder.aem.guard.half-open-calls=3
+ * formsfeeder.aem.guard.plugins=RenderPdf,RenderHtml5,RenderAdaptiveForm
+ * }
+ *
+ * (the failure rate threshold is a percentage of the last window-size calls and the open duration is in milliseconds).
+ * The window size must be at least 1.
+ *
+ */
+@Component
+public class AemCallGuard {
+	private final static Logger logger = LoggerFactory.getLogger(AemCallGuard.class);
+
+	public static final String FF_GUARD_ENABLED_PROPERTY = "formsfeeder.aem.guard.enabled";
+	public static final String FF_INITIAL_LIMIT_PROPERTY = "formsfeeder.aem.guard.initial-limit";
+	public static final String FF_MIN_LIMIT_PROPERTY = "formsfeeder.aem.guard.min-limit";
+	public static final String FF_MAX_LIMIT_PROPERTY = "formsfeeder.aem.guard.max-limit";
+	public static final String FF_WINDOW_SIZE_PROPERTY = "formsfeeder.aem.guard.window-size";
+	public static final String FF_MINIMUM_CALLS_PROPERTY = "formsfeeder.aem.guard.minimum-calls";
+	public static final String FF_FAILURE_RATE_THRESHOLD_PROPERTY = "formsfeeder.aem.guard.failure-rate-threshold";
+	public static final String FF_OPEN_DURATION_PROPERTY = "formsfeeder.aem.guard.open-duration";
+	public static final String FF_HALF_OPEN_CALLS_PROPERTY = "formsfeeder.aem.guard.half-open-calls";
+	public static final String FF_GUARDED_PLUGINS_PROPERTY = "formsfeeder.aem.guard.plugins";
+
+	// The example plugins that call AEM directly.
+	private static final String DEFAULT_GUARDED_PLUGINS = "RenderPdf,RenderHtml5,RenderAdaptiveForm";
+
+	// Gradient limit tuning
+	private static final double SMOOTHING = 0.2;			// How quickly the limit moves towards a new estimate
+	private static final double RTT_TOLERANCE = 1.5;		// How much the short term RTT may exceed the long term RTT before the limit shrinks
+	private static final double BACKOFF_RATIO = 0.9;		// How much the limit shrinks after a failed call
+	private static final int SHORT_RTT_WINDOW = 10;		// Calls in the short term RTT average
+	private static final int LONG_RTT_WINDOW = 600;		// Calls in the long term RTT average
+
+	public enum State { CLOSED, OPEN, HALF_OPEN }
+
+	private final boolean enabled;
+	private final int minLimit;
+	private final int maxLimit;
+	private final int minimumCalls;
+	private final int failureRateThreshold;
+	private final long openDurationMs;
+	private final int halfOpenCalls;
+	private final Set<String> guardedPlugins;
+
+	// All of the following are guarded by "this"
+	private double limit;
+	private double shortRtt;
+	private double longRtt;
+	private int inFlight;
+	private State state = State.CLOSED;
+	private long openedAt;
+	private int halfOpenPermits;		// Trial calls that have been let through while half open
+	private int halfOpenSuccesses;
+	private final boolean[] outcomes;	// Ring buffer of the most recent calls (true = failed)
+	private int outcomeCount;
+	private int failureCount;			// Failures in outcomes
+	private long rejected;
+	private long trips;
+
+	public AemCallGuard(Environment environment) {
+		this.enabled = environment.getProperty(FF_GUARD_ENABLED_PROPERTY, Boolean.class, true);
+		this.minLimit = environment.getProperty(FF_MIN_LIMIT_PROPERTY, Integer.class, 4);
+		this.maxLimit = environment.getProperty(FF_MAX_LIMIT_PROPERTY, Integer.class, 200);
+		this.limit = Math.max(minLimit, Math.min(maxLimit, environment.getProperty(FF_INITIAL_LIMIT_PROPERTY, Integer.class, 20)));
+		int windowSize = environment.getProperty(FF_WINDOW_SIZE_PROPERTY, Integer.class, 20);
+		if (windowSize < 1) {
+			throw new IllegalArgumentException("AemCallGuard window size must be greater than zero (" + FF_WINDOW_SIZE_PROPERTY + "=" + windowSize + ").");
+		}
+		this.outcomes = new boolean[windowSize];
+		this.minimumCalls = Math.min(outcomes.length, environment.getProperty(FF_MINIMUM_CALLS_PROPERTY, Integer.class, 10));
+		this.failureRateThreshold = environment.getProperty(FF_FAILURE_RATE_THRESHOLD_PROPERTY, Integer.class, 50);
+		this.openDurationMs = environment.getProperty(FF_OPEN_DURATION_PROPERTY, Long.class, 30_000L);
+		this.halfOpenCalls = environment.getProperty(FF_HALF_OPEN_CALLS_PROPERTY, Integer.class, 3);
+		this.guardedPlugins = Arrays.stream(environment.getProperty(FF_GUARDED_PLUGINS_PROPERTY, DEFAULT_GUARDED_PLUGINS).split(","))
+									.map(String::strip)
+									.filter(name->!name.isEmpty())
+									.collect(Collectors.toUnmodifiableSet());
+	}
+
+	/**
+	 * Determines whether invocations of a plugin are calls to AEM that must be allowed by this guard.
+	 *
+	 * @param pluginName	name of the plugin (FeedConsumer)
+	 * @return
+	 */
+	public boolean guardsPlugin(String pluginName) {
+		return guardedPlugins.contains(pluginName);
+	}
+
+	/**
+	 * Obtains permission to make a call to AEM.  One of the Permit's completion methods must be called once the call is
+	 * complete.
+	 *
+	 * @return
+	 * @throws AemUnavailableException if the call is not allowed
+	 */
+	public Permit acquire() {
+		Permit permit = tryAcquire();
+		if (permit == null) {
+			throw new AemUnavailableException(retryAfterSeconds());
+		}
+		return permit;
+	}
+
+	/**
+	 * Obtains permission to make a call to AEM, if it is allowed.
+	 *
+	 * @return the Permit, or null if the call is not allowed
+	 */
+	public Permit tryAcquire() {
+		if (!enabled) {
+			return new Permit(0);
+		}
+		synchronized (this) {
+			if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openDurationMs) {
+				logger.info("AEM circuit breaker is half open, letting " + halfOpenCalls + " trial calls through.");
+				state = State.HALF_OPEN;
+				halfOpenPermits = 0;
+				halfOpenSuccesses = 0;
+			}
+			boolean allowed = (state == State.CLOSED && inFlight < (int)limit)
+							  || (state == State.HALF_OPEN && halfOpenPermits < halfOpenCalls);
+			if (!allowed) {
+				rejected++;
+				return null;
+			}
+			if (state == State.HALF_OPEN) {
+				halfOpenPermits++;
+			}
+			inFlight++;
+			return new Permit(inFlight);
+		}
+	}
+
+	/**
+	 * Snapshot of the guard's state.
+	 *
+	 * @return
+	 */
+	public synchronized Stats stats() {
+		return new Stats(state, (int)limit, inFlight, rejected, trips, outcomeCount == 0 ? 0 : failureCount * 100 / Math.min(outcomeCount, outcomes.length));
+	}
+
+	private synchronized long retryAfterSeconds() {
+		long remainingMs = state == State.OPEN ? openDurationMs - (System.currentTimeMillis() - openedAt) : 0;
+		return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(remainingMs + 999));
+	}
+
+	private synchronized void completed(long rttNanos, int inFlightAtStart, boolean failed) {
+		inFlight--;
+		updateLimit(rttNanos, inFlightAtStart, failed);
+		if (state == State.HALF_OPEN) {
+			if (failed) {
+				open("a trial call failed");
+			} else if (++halfOpenSuccesses >= halfOpenCalls) {
+				logger.info("AEM circuit breaker is closed again.");
+				state = State.CLOSED;
+				resetOutcomes();
+			}
+		} else if (state == State.CLOSED) {
+			recordOutcome(failed);
+			int calls = Math.min(outcomeCount, outcomes.length);
+			if (calls >= minimumCalls && failureCount * 100 >= failureRateThreshold * calls) {
+				open(failureCount + " of the last " + calls + " calls failed");
+			}
+		}
+	}
+
+	private synchronized void released() {
+		inFlight--;
+		if (state == State.HALF_OPEN) {
+			halfOpenPermits--;		// The trial call was never made.
+		}
+	}
+
+	private void open(String reason) {
+		logger.error("AEM circuit breaker is open (" + reason + "), calls to AEM will be rejected for " + openDurationMs + "ms.");
+		state = State.OPEN;
+		openedAt = System.currentTimeMillis();
+		trips++;
+		resetOutcomes();
+	}
+
+	private void recordOutcome(boolean failed) {
+		int index = outcomeCount++ % outcomes.length;
+		if (outcomeCount > outcomes.length && outcomes[index]) {
+			failureCount--;		// The outcome being overwritten was a failure.
+		}
+		outcomes[index] = failed;
+		if (failed) {
+			failureCount++;
+		}
+	}
+
+	private void resetOutcomes() {
+		outcomeCount = 0;
+		failureCount = 0;
+	}
+
+	/**
+	 * Adjusts the concurrency limit based on the round trip time of a call (a simplified gradient limit).
+	 */
+	private void updateLimit(long rttNanos, int inFlightAtStart, boolean failed) {
+		if (failed) {
+			limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+			return;
+		}
+		double rtt = rttNanos;
+		shortRtt = shortRtt == 0 ? rtt : shortRtt + (rtt - shortRtt) / SHORT_RTT_WINDOW;
+		longRtt = longRtt == 0 ? rtt : longRtt + (rtt - longRtt) / LONG_RTT_WINDOW;
+		if (longRtt / shortRtt > 2) {
+			longRtt *= 0.95;	// Let the long term RTT drift down after a latency spike has passed.
+		}
+		if (inFlightAtStart < limit / 2) {
+			return;				// Too little traffic to say anything about the limit.
+		}
+		double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * longRtt / shortRtt));
+		double estimate = limit * gradient + Math.sqrt(limit);		// Allow a small queue so that the limit can grow.
+		limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + estimate * SMOOTHING));
+	}
+
+	/**
+	 * Permission to make one call to AEM.
+	 */
+	public final class Permit {
+		private final long startNanos = System.nanoTime();
+		private final int inFlightAtStart;
+		private final AtomicBoolean done = new AtomicBoolean();
+
+		private Permit(int inFlightAtStart) {
+			this.inFlightAtStart = inFlightAtStart;
+		}
+
+		/**
+		 * The call has completed.
+		 *
+		 * @param failed	true if AEM could not be reached or was unable to handle the call
+		 */
+		public void completed(boolean failed) {
+			if (enabled && done.compareAndSet(false, true)) {
+				AemCallGuard.this.completed(System.nanoTime() - startNanos, inFlightAtStart, failed);
+			}
+		}
+
+		/**
+		 * The call was never made.
+		 */
+		public void released() {
+			if (enabled && done.compareAndSet(false, true)) {
+				AemCallGuard.this.released();
+			}
+		}
+	}
+
+	/**
+	 * Thrown when a call to AEM is not allowed.
+	 */
+	@SuppressWarnings("serial")
+	public static class AemUnavailableException extends RuntimeException {
+		private final long retryAfterSeconds;
+
+		public AemUnavailableException(long retryAfterSeconds) {
+			super("AEM is unavailable, retry after " + retryAfterSeconds + " seconds.");
+			this.retryAfterSeconds = retryAfterSeconds;
+		}
+
+		public long retryAfterSeconds() {
+			return retryAfterSeconds;
+		}
+	}
+
+	/**
+	 * Snapshot of the guard's state.
+	 */
+	public static class Stats {
+		private final State state;
+		private final int limit;
+		private final int inFlight;
+		private final long rejected;
+		private final long trips;
+		private final int failureRate;
+
+		private Stats(State state, int limit, int inFlight, long rejected, long trips, int failureRate) {
+			this.state = state;
+			this.limit = limit;
+			this.inFlight = inFlight;
+			this.rejected = rejected;
+			this.trips = trips;
+			this.failureRate = failureRate;
+		}
+
+		public State state() {
+			return state;
+		}
+
+		/**
+		 * Current concurrency limit.
+		 */
+		public int limit() {
+			return limit;
+		}
+
+		public int inFlight() {
+			return inFlight;
+		}
+
+		/**
+		 * Number of calls that have been rejected.
+		 */
+		public long rejected() {
+			return rejected;
+		}
+
+		/**
+		 * Number of times the circuit breaker has opened.
+		 */
+		public long trips() {
+			return trips;
+		}
+
+		/**
+		 * Percentage of the recent calls that failed.
+		 */
+		public int failureRate() {
+			return failureRate;
+		}
+
+		@Override
+		public String toString() {
+			return "AemCallGuard.Stats [state=" + state + ", limit=" + limit + ", inFlight=" + inFlight + ", rejected=" + rejected
+					+ ", trips=" + trips + ", failureRate=" + failureRate + "%]";
+		}
+	}
+}
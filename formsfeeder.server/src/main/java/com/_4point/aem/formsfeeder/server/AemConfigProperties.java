@@ -1,6 +1,9 @@
 package com._4point.aem.formsfeeder.server;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,6 +22,9 @@ import com._4point.aem.formsfeeder.pf4j.spring.EnvironmentConsumer;
 public class AemConfigProperties implements AemConfig, EnvironmentAware {
 	private final static Logger logger = LoggerFactory.getLogger(AemConfigProperties.class);
 
+	// Comma separated list of AEM base URLs (e.g. http://aem1:4503/,http://aem2:4503/).  Overrides host, port and protocol.
+	public static final String AEM_BACKENDS_PROPERTY = "formsfeeder.aem.backends";
+
 	private Environment environment;
 	
 	@Override
@@ -53,6 +59,17 @@ public class AemConfigProperties implements AemConfig, EnvironmentAware {
 		return (serverTypeStr == null || serverTypeStr.isBlank()) ? AemServerType.OSGI : AemServerType.from(serverTypeStr).orElseThrow(()->new IllegalArgumentException("Invalid server type string (" + serverTypeStr + ").")); 
 	}
 
+	@Override
+	public List<String> urls() {
+		String[] backends = Objects.requireNonNull(environment, "Environment has not been populated!").getProperty(AEM_BACKENDS_PROPERTY, String[].class);
+		List<String> urls = backends == null ? List.of() : Arrays.stream(backends)
+																 .map(String::trim)
+																 .filter(b->!b.isEmpty())
+																 .map(b->b.endsWith("/") ? b : b + "/")
+																 .collect(Collectors.toList());
+		return urls.isEmpty() ? AemConfig.super.urls() : urls;
+	}
+
 	@Override
 	public void setEnvironment(Environment environment) {
 		logger.debug("Initializing Environment Variable in AemConfig. Environment is " + (environment == null ? "" : "not ") + "null.");
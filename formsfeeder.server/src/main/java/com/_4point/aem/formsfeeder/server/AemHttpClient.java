@@ -0,0 +1,236 @@
+package com._4point.aem.formsfeeder.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+
+import org.apache.http.client.HttpRequestRetryHandler;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.client.LaxRedirectStrategy;
+import org.apache.http.impl.client.StandardHttpRequestRetryHandler;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.authentication.HttpAuthenticationFeature;
+import org.glassfish.jersey.media.multipart.MultiPartFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com._4point.aem.formsfeeder.core.api.AemConfig;
+
+/**
+ * The HTTP client that is used for all traffic to AEM.
+ *
+ * There is one instance of this class (see AemHttpClientConfiguration) which maintains a pool of keep-alive connections
+ * to AEM.  Everything that talks to AEM should use the JAX-RS client returned by client() rather than creating its own
+ * so that connections are reused across requests.
+ *
+ * Asynchronous requests (i.e. client().target(...).request().async()) are run on a fixed number of threads with a
+ * bounded queue.  Once the queue is full, further asynchronous requests are rejected with a RejectedExecutionException
+ * rather than creating more threads.
+ *
+ */
+public class AemHttpClient implements Closeable {
+	private final static Logger logger = LoggerFactory.getLogger(AemHttpClient.class);
+
+	// A pooled connection that the server has closed shows up as the server failing to respond.  Idempotent requests
+	// (GET, HEAD, PUT, DELETE, OPTIONS and TRACE) are retried once on a new connection.  Other requests (i.e. POSTs) may
+	// already have been processed by AEM, so they are not retried once they have been sent.  Stale connections are
+	// normally caught before they are used by checking connections that have been idle (see validateAfterInactivity).
+	private static final HttpRequestRetryHandler STALE_CONNECTION_RETRY_HANDLER = new StandardHttpRequestRetryHandler(1, false);
+
+	private static final String ASYNC_THREAD_NAME_PREFIX = "aem-client-async-";
+
+	private final PoolingHttpClientConnectionManager connectionManager;
+	private final CloseableHttpClient httpClient;
+	private final ThreadPoolExecutor asyncExecutor;
+	private final Client client;
+
+	private AemHttpClient(PoolingHttpClientConnectionManager connectionManager, CloseableHttpClient httpClient, ThreadPoolExecutor asyncExecutor, Client client) {
+		this.connectionManager = connectionManager;
+		this.httpClient = httpClient;
+		this.asyncExecutor = asyncExecutor;
+		this.client = client;
+	}
+
+	/**
+	 * Creates a client that uses the AEM credentials from the AemConfig provided.
+	 *
+	 * @param aemConfig
+	 * @param settings
+	 * @return
+	 */
+	public static AemHttpClient create(AemConfig aemConfig, Settings settings) {
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(settings.maxTotal);
+		connectionManager.setDefaultMaxPerRoute(settings.maxPerRoute);
+		connectionManager.setValidateAfterInactivity(settings.validateAfterInactivityMs);
+
+		RequestConfig requestConfig = RequestConfig.custom()
+												   .setConnectionRequestTimeout(settings.connectionRequestTimeoutMs)
+												   .setSocketTimeout(settings.socketTimeoutMs)	// Individual requests can override this (see ClientProperties.READ_TIMEOUT).
+												   .build();
+
+		CloseableHttpClient httpClient = HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(requestConfig)
+				.setKeepAliveStrategy((response, context)->{
+					long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+					return keepAlive > 0 ? Math.min(keepAlive, settings.keepAliveMs) : settings.keepAliveMs;
+				})
+				.evictExpiredConnections()
+				.evictIdleConnections(settings.idleTimeoutMs, TimeUnit.MILLISECONDS)
+				.setRetryHandler(STALE_CONNECTION_RETRY_HANDLER)
+				.setRedirectStrategy(LaxRedirectStrategy.INSTANCE)	// Follow POST redirects the way HttpURLConnection does.
+				.disableCookieManagement()		// The client is shared between users, so cookies must never be stored in it.
+				.disableContentCompression()	// Proxied content should be passed along exactly as AEM sent it.
+				.disableAuthCaching()
+				.build();
+
+		ThreadPoolExecutor asyncExecutor = new ThreadPoolExecutor(settings.asyncThreads, settings.asyncThreads, 60, TimeUnit.SECONDS, 
+																  new ArrayBlockingQueue<>(settings.asyncQueueSize), new AsyncThreadFactory(ASYNC_THREAD_NAME_PREFIX));
+		asyncExecutor.allowCoreThreadTimeOut(true);
+
+		Client client = ClientBuilder.newBuilder()
+									 .withConfig(new ClientConfig().connectorProvider(ApacheHttpClientConnector.provider(httpClient, requestConfig)))
+									 .executorService(asyncExecutor)
+									 .build()
+									 .register(HttpAuthenticationFeature.basic(aemConfig.username(), aemConfig.secret()))
+									 .register(MultiPartFeature.class);
+
+		logger.info("Created AEM HTTP client with a pool of " + settings.maxTotal + " connections (" + settings.maxPerRoute + " per route) and " + settings.asyncThreads + " asynchronous request threads.");
+		return new AemHttpClient(connectionManager, httpClient, asyncExecutor, client);
+	}
+
+	/**
+	 * JAX-RS client for communicating with AEM.  It adds the AEM credentials to each request.
+	 *
+	 * @return
+	 */
+	public Client client() {
+		return client;
+	}
+
+	/**
+	 * Current utilization of the connection pool (connections leased, available and pending as well as the maximum).
+	 *
+	 * @return
+	 */
+	public PoolStats poolStats() {
+		return connectionManager.getTotalStats();
+	}
+
+	/**
+	 * Runs a (blocking) call to AEM on the asynchronous request threads so that the calling thread is not tied up while
+	 * waiting on AEM.
+	 *
+	 * @param aemCall	the call to make
+	 * @return future that completes with the call's result
+	 * @throws RejectedExecutionException if too many asynchronous requests are already waiting for a thread
+	 */
+	public <T> CompletableFuture<T> supplyAsync(Supplier<T> aemCall) {
+		return CompletableFuture.supplyAsync(aemCall, asyncExecutor);
+	}
+
+	/**
+	 * Number of asynchronous requests that are currently being executed.
+	 *
+	 * @return
+	 */
+	public int asyncActive() {
+		return asyncExecutor.getActiveCount();
+	}
+
+	/**
+	 * Number of asynchronous requests that are waiting for a thread.
+	 *
+	 * @return
+	 */
+	public int asyncQueued() {
+		return asyncExecutor.getQueue().size();
+	}
+
+	@Override
+	public void close() throws IOException {
+		logger.info("Closing AEM HTTP client, " + poolStats() + ".");
+		client.close();
+		asyncExecutor.shutdownNow();
+		httpClient.close();	// Also shuts down the connection manager.
+	}
+
+	/**
+	 * Creates named daemon threads for running asynchronous requests.
+	 */
+	/* package */ static class AsyncThreadFactory implements ThreadFactory {
+		private final String namePrefix;
+		private final AtomicInteger threadCount = new AtomicInteger();
+
+		/* package */ AsyncThreadFactory(String namePrefix) {
+			this.namePrefix = namePrefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, namePrefix + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	/**
+	 * Connection pool settings.
+	 */
+	public static class Settings {
+		private final int maxTotal;
+		private final int maxPerRoute;
+		private final long idleTimeoutMs;
+		private final long keepAliveMs;
+		private final int validateAfterInactivityMs;
+		private final int connectionRequestTimeoutMs;
+		private final int socketTimeoutMs;
+		private final int asyncThreads;
+		private final int asyncQueueSize;
+
+		/**
+		 * @param maxTotal	maximum number of connections in the pool.
+		 * @param maxPerRoute	maximum number of connections to a single host.
+		 * @param idleTimeoutMs	connections that have been idle this long are closed.
+		 * @param keepAliveMs	maximum time a connection is kept alive (if the server specifies a shorter time, that is used).
+		 * @param validateAfterInactivityMs	connections idle this long are checked before they are reused.
+		 * @param connectionRequestTimeoutMs	maximum time to wait for a connection from the pool.
+		 * @param socketTimeoutMs	maximum time to wait for data from AEM when a request does not set its own read timeout.
+		 * @param asyncThreads	number of threads used to run asynchronous requests.
+		 * @param asyncQueueSize	maximum number of asynchronous requests waiting for a thread.
+		 */
+		public Settings(int maxTotal, int maxPerRoute, long idleTimeoutMs, long keepAliveMs, int validateAfterInactivityMs, int connectionRequestTimeoutMs, int socketTimeoutMs, int asyncThreads, int asyncQueueSize) {
+			if (maxTotal < 1 || maxPerRoute < 1) {
+				throw new IllegalArgumentException("Connection pool sizes must be greater than zero (maxTotal=" + maxTotal + ", maxPerRoute=" + maxPerRoute + ").");
+			}
+			if (asyncThreads < 1 || asyncQueueSize < 1) {
+				throw new IllegalArgumentException("Asynchronous request thread and queue sizes must be greater than zero (asyncThreads=" + asyncThreads + ", asyncQueueSize=" + asyncQueueSize + ").");
+			}
+			this.maxTotal = maxTotal;
+			this.maxPerRoute = maxPerRoute;
+			this.idleTimeoutMs = idleTimeoutMs;
+			this.keepAliveMs = keepAliveMs;
+			this.validateAfterInactivityMs = validateAfterInactivityMs;
+			this.connectionRequestTimeoutMs = connectionRequestTimeoutMs;
+			this.socketTimeoutMs = socketTimeoutMs;
+			this.asyncThreads = asyncThreads;
+			this.asyncQueueSize = asyncQueueSize;
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package com._4point.aem.formsfeeder.server;
+
+import javax.ws.rs.client.Client;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import com._4point.aem.formsfeeder.core.api.AemConfig;
+
+/**
+ * Creates the shared AemHttpClient.
+ *
+ * The connection pool can be configured in the application.properties file:
+ *
+ * {@code
+ * formsfeeder.aem.client.max-total=50
+ * formsfeeder.aem.client.max-per-route=20
+ * formsfeeder.aem.client.idle-timeout=30000
+ * formsfeeder.aem.client.keep-alive=60000
+ * formsfeeder.aem.client.validate-after-inactivity=1000
+ * formsfeeder.aem.client.connection-request-timeout=30000
+ * formsfeeder.aem.client.socket-timeout=120000
+ * formsfeeder.aem.client.async-threads=50
+ * formsfeeder.aem.client.async-queue-size=1000
+ * }
+ *
+ * (all times are in milliseconds).
+ *
+ * The asynchronous request threads also carry the requests that are proxied to AEM (see AemProxyRelay), so there
+ * should be enough of them to make use of the connection pool.
+ *
+ * The JAX-RS Client is also made available as a bean so that plugins can share the pooled connections by autowiring it.
+ *
+ */
+@Configuration
+public class AemHttpClientConfiguration {
+	public static final String FF_MAX_TOTAL_PROPERTY = "formsfeeder.aem.client.max-total";
+	public static final String FF_MAX_PER_ROUTE_PROPERTY = "formsfeeder.aem.client.max-per-route";
+	public static final String FF_IDLE_TIMEOUT_PROPERTY = "formsfeeder.aem.client.idle-timeout";
+	public static final String FF_KEEP_ALIVE_PROPERTY = "formsfeeder.aem.client.keep-alive";
+	public static final String FF_VALIDATE_AFTER_INACTIVITY_PROPERTY = "formsfeeder.aem.client.validate-after-inactivity";
+	public static final String FF_CONNECTION_REQUEST_TIMEOUT_PROPERTY = "formsfeeder.aem.client.connection-request-timeout";
+	public static final String FF_SOCKET_TIMEOUT_PROPERTY = "formsfeeder.aem.client.socket-timeout";
+	public static final String FF_ASYNC_THREADS_PROPERTY = "formsfeeder.aem.client.async-threads";
+	public static final String FF_ASYNC_QUEUE_SIZE_PROPERTY = "formsfeeder.aem.client.async-queue-size";
+
+	@Bean(destroyMethod = "close")
+	public AemHttpClient aemHttpClient(AemConfig aemConfig, Environment environment) {
+		AemHttpClient.Settings settings = new AemHttpClient.Settings(
+				environment.getProperty(FF_MAX_TOTAL_PROPERTY, Integer.class, 50),
+				environment.getProperty(FF_MAX_PER_ROUTE_PROPERTY, Integer.class, 20),
+				environment.getProperty(FF_IDLE_TIMEOUT_PROPERTY, Long.class, 30_000L),
+				environment.getProperty(FF_KEEP_ALIVE_PROPERTY, Long.class, 60_000L),
+				environment.getProperty(FF_VALIDATE_AFTER_INACTIVITY_PROPERTY, Integer.class, 1_000),
+				environment.getProperty(FF_CONNECTION_REQUEST_TIMEOUT_PROPERTY, Integer.class, 30_000),
+				environment.getProperty(FF_SOCKET_TIMEOUT_PROPERTY, Integer.class, 120_000),
+				environment.getProperty(FF_ASYNC_THREADS_PROPERTY, Integer.class, 50),
+				environment.getProperty(FF_ASYNC_QUEUE_SIZE_PROPERTY, Integer.class, 1_000)
+				);
+		return AemHttpClient.create(aemConfig, settings);
+	}
+
+	@Bean(destroyMethod = "")	// Closed by the AemHttpClient
+	public Client aemClient(AemHttpClient aemHttpClient) {
+		return aemHttpClient.client();
+	}
+}
@@ -5,7 +5,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.Objects;
-import java.util.stream.Collectors;
 
 import javax.naming.ConfigurationException;
 import javax.ws.rs.GET;
@@ -14,152 +13,99 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
-import javax.ws.rs.core.GenericType;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
-import org.glassfish.jersey.client.ChunkedInput;
-import org.glassfish.jersey.client.authentication.HttpAuthenticationFeature;
-import org.glassfish.jersey.media.multipart.MultiPartFeature;
-import org.glassfish.jersey.server.ChunkedOutput;
+import org.glassfish.jersey.client.ClientProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.env.Environment;
 
-import com._4point.aem.formsfeeder.core.api.AemConfig;
+import com._4point.aem.formsfeeder.server.AemProxyRelay.Route;
+import com._4point.aem.formsfeeder.server.ReplacingInputStream.Replacements;
 
 @Path("/aem")
 public class AemProxyEndpoint {
 
 	private final static Logger logger = LoggerFactory.getLogger(AemProxyEndpoint.class);
 
-	private final AemConfig aemConfig = Objects.requireNonNull(Objects.requireNonNull(Application.getApplicationContext(), "Application Context cannot be null.")
-																  .getBean(AemConfig.class), "AemConfig cannot be null");
+	private final AemBackendPool aemBackendPool = Objects.requireNonNull(Objects.requireNonNull(Application.getApplicationContext(), "Application Context cannot be null.")
+																  .getBean(AemBackendPool.class), "AemBackendPool cannot be null");
 	
 	private static final String FORMSFEEDER_AF_BASE_LOCATION_PROP = "formsfeeder.af-base-location";
 	private static final String AEM_APP_PREFIX = "/";
-	private Client httpClient;
+	private final Client httpClient = Objects.requireNonNull(Objects.requireNonNull(Application.getApplicationContext(), "Application Context cannot be null.")
+																  .getBean(AemHttpClient.class), "AemHttpClient cannot be null").client();
+	private final ProxyResponseCache proxyResponseCache = Objects.requireNonNull(Objects.requireNonNull(Application.getApplicationContext(), "Application Context cannot be null.")
+																.getBean(ProxyResponseCache.class), "ProxyResponseCache cannot be null");
+	private final AemProxyRelay aemProxyRelay = Objects.requireNonNull(Objects.requireNonNull(Application.getApplicationContext(), "Application Context cannot be null.")
+																  .getBean(AemProxyRelay.class), "AemProxyRelay cannot be null");
+	private final CsrfTokenRelay csrfTokenRelay = Objects.requireNonNull(Objects.requireNonNull(Application.getApplicationContext(), "Application Context cannot be null.")
+																  .getBean(CsrfTokenRelay.class), "CsrfTokenRelay cannot be null");
+
+	// Rewrite for the most recent af-base-location value (shared because a new endpoint is created for each request).
+	private static volatile ProxyResponseCache.Rewrite utilsJsRewrite;
 
 	@Autowired
 	Environment environment;
 
-	private HttpAuthenticationFeature feature = HttpAuthenticationFeature.basic(aemConfig.username(), aemConfig.secret());
-
-    /**
-     * 
-     */
-    public AemProxyEndpoint() {
-		super();
-    	httpClient = ClientBuilder.newClient().register(feature).register(MultiPartFeature.class);
-	}
-
     @Path("libs/granite/csrf/token.json")
     @GET
-    public ChunkedOutput<byte[]> proxyOsgiCsrfToken() throws IOException {
-    	final String path = AEM_APP_PREFIX + "libs/granite/csrf/token.json";
-    	return getCsrfToken(path);
+    public void proxyOsgiCsrfToken(@Suspended final AsyncResponse asyncResponse) {
+    	logger.debug("Proxying GET request. CSRF token");
+    	csrfTokenRelay.relay(AEM_APP_PREFIX + "libs/granite/csrf/token.json", asyncResponse);
     }
 
     @Path("lc/libs/granite/csrf/token.json")
 	@GET
-	public ChunkedOutput<byte[]> proxyJeeCsrfToken() throws IOException {
-		final String path = "/lc/libs/granite/csrf/token.json";
-	  	return getCsrfToken(path);
-	}
-
-	private ChunkedOutput<byte[]> getCsrfToken(final String path) {
+	public void proxyJeeCsrfToken(@Suspended final AsyncResponse asyncResponse) {
 		logger.debug("Proxying GET request. CSRF token");
-		WebTarget webTarget = httpClient.target(aemConfig.url())
-								.path(path);
-		logger.debug("Proxying GET request for CSRF token '" + webTarget.getUri().toString() + "'.");
-		Response result = webTarget.request()
-		   .get();
-
-		logger.debug("CSRF token GET response status = " + result.getStatus());
-		final ChunkedInput<byte[]> chunkedInput = result.readEntity(new GenericType<ChunkedInput<byte[]>>() {});
-		final ChunkedOutput<byte[]> output = new ChunkedOutput<byte[]>(byte[].class);
-		
-		new Thread() {
-            public void run() {
-            	try {
-					try (chunkedInput; output) {
-					    byte[] chunk;
- 
-					    while ((chunk = chunkedInput.read()) != null) {
-					        output.write(chunk);
-					        logger.debug("Returning GET chunk for CSRF token.");
-					    }
-					}
-				} catch (IllegalStateException | IOException e) {
-					e.printStackTrace();
-				}
-            }
-        }.start();
-		
-        logger.debug("Returning GET response for CSRF token.");
-		return output;
+		csrfTokenRelay.relay("/lc/libs/granite/csrf/token.json", asyncResponse);
 	}
 
-
-
 	/**
      * This function acts as a reverse proxy for anything under clientlibs.  It just forwards
      * anything it receives on AEM and then returns the response.  
      * 
+     * The request to AEM is made asynchronously (see AemProxyRelay), so the servlet thread is released while waiting on AEM.
+     * 
      * @param remainder
-     * @return
      * @throws ConfigurationException
      */
     @Path("{remainder : .+}")
     @GET
-    public Response proxyGet(@PathParam("remainder") String remainder) {
+    public void proxyGet(@PathParam("remainder") String remainder, @Context Request request, @Suspended final AsyncResponse asyncResponse) {
     	logger.debug("Proxying GET request. remainder=" + remainder);
-		WebTarget webTarget = httpClient.target(aemConfig.url())
-								.path(AEM_APP_PREFIX + remainder);
-		logger.debug("Proxying GET request for target '" + webTarget.getUri().toString() + "'.");
-		Response result = webTarget.request()
-		   .get();
-		if (logger.isDebugEnabled()) {
-			result.getHeaders().forEach((h, l)->logger.debug("For " + webTarget.getUri().toString() + ", Header:" + h + "=" + l.stream().map(o->(String)o).collect(Collectors.joining("','", "'", "'"))));
-		}
-
-		logger.debug("Returning GET response from target '" + webTarget.getUri().toString() + "' status code=" + result.getStatus() + ".");
-		
-		return Response.fromResponse(result)
-					   .header("Transfer-Encoding", null)			// Remove the Transfer-Encoding header
-					   .entity(result.readEntity(InputStream.class))
-					   .build();
+    	int timeoutMs = aemProxyRelay.timeout(Route.GET);
+    	aemProxyRelay.relay(Route.GET, asyncResponse, ()->proxyResponseCache.get(AEM_APP_PREFIX + remainder, request, timeoutMs));
     }
 
     /**
      * The following routine replaces a line in the utils.js file to enable links with absolute URLs.
      * 
-     * @return
+     * The rewritten utils.js is computed once per version of the AEM file (and per af-base-location value) and is
+     * cached by the ProxyResponseCache, which serves it with a strong ETag and a precompressed gzip variant.
+     * 
      */
     @Path("/etc.clientlibs/clientlibs/granite/utils.js")
     @GET
-    public Response proxyGet_Utils_Js() {
+    public void proxyGet_Utils_Js(@Context Request request, @Context HttpHeaders httpHeaders, @Suspended final AsyncResponse asyncResponse) {
     	logger.debug("Proxying Utils GET request. remainder=/etc.clientlibs/clientlibs/granite/utils.js");
-		WebTarget webTarget = httpClient.target(aemConfig.url())
-								.path(AEM_APP_PREFIX + "etc.clientlibs/clientlibs/granite/utils.js");
-		logger.debug("Proxying Utils GET request for target '" + webTarget.getUri().toString() + "'.");
-		Response result = webTarget.request()
-		   .get();
-		
-//		System.out.println("Received GET response from target '" + webTarget.getUri().toString() + "'. contentType='" + result.getMediaType().toString() + "'.  transfer-encoding='" + result.getHeaderString("Transfer-Encoding") + "'.");
-		logger.debug("Returning Utils GET response from target '" + webTarget.getUri().toString() + "' status code=" + result.getStatus() + ".");
-		
-		return Response.fromResponse(result)
-					   .entity(substituteAfBaseLocation(result.readEntity(InputStream.class)))
-					   .build();
+    	ProxyResponseCache.Rewrite rewrite = afBaseLocationRewrite();
+    	int timeoutMs = aemProxyRelay.timeout(Route.UTILS_JS);
+    	aemProxyRelay.relay(Route.UTILS_JS, asyncResponse, ()->proxyResponseCache.get(AEM_APP_PREFIX + "etc.clientlibs/clientlibs/granite/utils.js", request, httpHeaders, rewrite, timeoutMs));
     }
 
     /**
-     * Wraps an InputStream with a wrapper that replaces some code in the Adobe utils.js code.
+     * Returns a rewrite that replaces some code in the Adobe utils.js code.
      * 
      * The detectContextPath function in utils.js has the following line: 
      * contextPath = result[1];
@@ -168,29 +114,45 @@ public class AemProxyEndpoint {
      * contextPath = FORMSFEEDER_AF_BASE_LOCATION_PROP + result[1];
      * (where FORMSFEEDER_AF_BASE_LOCATION_PROP is whatever value is in the application.properties file)
      * 
-     * @param is
-     * @return
+     * The property is read on each request, so if it is refreshed, the new value produces a new rewrite (and a new
+     * cache entry).
+     * 
+     * @return the rewrite, or null if there is no af-base-location
      */
-    private InputStream substituteAfBaseLocation(InputStream is) {
-    	logger.debug("substituteAfBaseLocation: environment is " + (environment == null ? "" : "not ") + "null.");
+    private ProxyResponseCache.Rewrite afBaseLocationRewrite() {
+    	logger.debug("afBaseLocationRewrite: environment is " + (environment == null ? "" : "not ") + "null.");
     	if (environment == null) { 
-    		return is; 
+    		return null; 
     	}
 		String afBaseLocation = environment.getProperty(FORMSFEEDER_AF_BASE_LOCATION_PROP);
-    	logger.debug("substituteAfBaseLocation: afBaseLocation is " + (afBaseLocation == null ? "null" : "'" + afBaseLocation + "'") + ".");
+    	logger.debug("afBaseLocationRewrite: afBaseLocation is " + (afBaseLocation == null ? "null" : "'" + afBaseLocation + "'") + ".");
     	if (afBaseLocation == null || afBaseLocation.isBlank()) {
-    		return is;
-    	} else {
-    		return new ReplacingInputStream(is, "contextPath = result[1];", "contextPath = \""+ afBaseLocation + "\" + result[1];");
+    		return null;
     	}
+    	ProxyResponseCache.Rewrite rewrite = utilsJsRewrite;
+    	if (rewrite == null || !rewrite.id().equals(afBaseLocation)) {
+    		Replacements replacements = Replacements.builder()
+    												.replace("contextPath = result[1];", "contextPath = \""+ afBaseLocation + "\" + result[1];")
+    												.build();
+    		rewrite = new ProxyResponseCache.Rewrite(afBaseLocation, is->new ReplacingInputStream(is, replacements));
+    		utilsJsRewrite = rewrite;
+    	}
+    	return rewrite;
     }
     
     @Path("{remainder : .+}")
     @POST
-    public Response proxyPost(@PathParam("remainder") String remainder, @HeaderParam("Content-Type") String contentType, InputStream in) {
+    public void proxyPost(@PathParam("remainder") String remainder, @HeaderParam("Content-Type") String contentType, InputStream in, @Suspended final AsyncResponse asyncResponse) {
     	logger.debug("Proxying POST request. remainder={}", remainder);
-		WebTarget webTarget = httpClient.target(aemConfig.url())
-								.path(AEM_APP_PREFIX + remainder);
+    	Route route = remainder.contains("af.submit.jsp") ? Route.SUBMIT : Route.POST;
+		int timeoutMs = aemProxyRelay.timeout(route);
+		aemProxyRelay.relay(route, asyncResponse, ()->aemBackendPool.call(url->post(httpClient.target(url)
+																								 .path(AEM_APP_PREFIX + remainder)
+																								 .property(ClientProperties.READ_TIMEOUT, timeoutMs),
+																						  remainder, contentType, in)));
+    }
+
+    private Response post(WebTarget webTarget, String remainder, String contentType, InputStream in) {
 		logger.debug("Proxying POST request for target '{}'.  ContentType='{}'.", webTarget.getUri().toString(), contentType );
 		Response result = webTarget.request()
 				.post(Entity.entity(
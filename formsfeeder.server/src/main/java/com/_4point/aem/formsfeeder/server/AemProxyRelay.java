@@ -0,0 +1,196 @@
+package com._4point.aem.formsfeeder.server;
+
+import java.io.Closeable;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.CompletionCallback;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Relays requests that are proxied to AEM without tying up the servlet threads.
+ *
+ * The call to AEM is made on the AemHttpClient's asynchronous request threads and the caller's AsyncResponse is resumed
+ * once AEM has responded.  The response is then streamed back to the browser on a separate, bounded pool of streaming
+ * threads, so a slow browser does not hold up the threads that talk to AEM (and a slow AEM does not hold up the
+ * servlet threads that serve the rest of FormsFeeder).
+ *
+ * If AEM does not respond within the route's timeout, the caller receives a "Gateway Timeout" response.  If AEM cannot
+ * be reached, the caller receives a "Bad Gateway" response and if there are too many requests waiting on AEM (or
+ * waiting to be streamed), the caller receives a "Service Unavailable" response.
+ *
+ * The timeouts (in milliseconds) and the streaming pool can be configured in the application.properties file:
+ *
+ * {@code
+ * formsfeeder.aem.proxy.timeout=60000
+ * formsfeeder.aem.proxy.get.timeout=60000
+ * formsfeeder.aem.proxy.utils-js.timeout=60000
+ * formsfeeder.aem.proxy.post.timeout=60000
+ * formsfeeder.aem.proxy.submit.timeout=60000
+ * formsfeeder.aem.proxy.streaming-threads=20
+ * formsfeeder.aem.proxy.streaming-queue-size=1000
+ * }
+ *
+ * The route timeouts default to formsfeeder.aem.proxy.timeout.
+ *
+ */
+@Component
+public class AemProxyRelay implements Closeable {
+	private final static Logger logger = LoggerFactory.getLogger(AemProxyRelay.class);
+
+	public static final String FF_PROXY_TIMEOUT_PROPERTY = "formsfeeder.aem.proxy.timeout";
+	public static final String FF_STREAMING_THREADS_PROPERTY = "formsfeeder.aem.proxy.streaming-threads";
+	public static final String FF_STREAMING_QUEUE_SIZE_PROPERTY = "formsfeeder.aem.proxy.streaming-queue-size";
+	public static final int DEFAULT_PROXY_TIMEOUT = 60_000;
+
+	private static final String STREAMING_THREAD_NAME_PREFIX = "aem-proxy-streaming-";
+
+	/**
+	 * The kinds of requests that are proxied to AEM.  Each one has its own timeout.
+	 */
+	public enum Route {
+		GET("get"),				// Resources (clientlibs, etc.)
+		UTILS_JS("utils-js"),	// The rewritten utils.js
+		POST("post"),			// Everything that is posted, apart from submissions
+		SUBMIT("submit");		// Adaptive Form submissions (af.submit.jsp)
+
+		private final String timeoutProperty;
+
+		private Route(String name) {
+			this.timeoutProperty = "formsfeeder.aem.proxy." + name + ".timeout";
+		}
+
+		public String timeoutProperty() {
+			return timeoutProperty;
+		}
+	}
+
+	private final AemHttpClient aemHttpClient;
+	private final Map<Route, Integer> timeouts = new EnumMap<>(Route.class);
+	private final ThreadPoolExecutor streamingExecutor;
+	private final AtomicInteger relaysInFlight = new AtomicInteger();
+
+	public AemProxyRelay(AemHttpClient aemHttpClient, Environment environment) {
+		this.aemHttpClient = aemHttpClient;
+		int defaultTimeout = environment.getProperty(FF_PROXY_TIMEOUT_PROPERTY, Integer.class, DEFAULT_PROXY_TIMEOUT);
+		for (Route route : Route.values()) {
+			timeouts.put(route, environment.getProperty(route.timeoutProperty(), Integer.class, defaultTimeout));
+		}
+		int streamingThreads = environment.getProperty(FF_STREAMING_THREADS_PROPERTY, Integer.class, 20);
+		this.streamingExecutor = new ThreadPoolExecutor(streamingThreads, streamingThreads, 60, TimeUnit.SECONDS,
+														new ArrayBlockingQueue<>(environment.getProperty(FF_STREAMING_QUEUE_SIZE_PROPERTY, Integer.class, 1_000)),
+														new AemHttpClient.AsyncThreadFactory(STREAMING_THREAD_NAME_PREFIX));
+		this.streamingExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Makes a call to AEM on the asynchronous request threads and resumes the AsyncResponse with its result.
+	 *
+	 * @param route	the kind of request (determines the timeout)
+	 * @param asyncResponse	the suspended response of the incoming request
+	 * @param aemCall	the (blocking) call to AEM, which returns the response to send to the browser
+	 */
+	public void relay(final Route route, final AsyncResponse asyncResponse, final Supplier<Response> aemCall) {
+		final int timeoutMs = timeout(route);
+		relaysInFlight.incrementAndGet();
+		asyncResponse.register((CompletionCallback)t->relaysInFlight.decrementAndGet());
+		asyncResponse.setTimeoutHandler(ar->{
+			logger.error("Timed out after " + timeoutMs + "ms waiting for " + route + " response from AEM, Returning \"Gateway Timeout\" status code.");
+			ar.resume(errorResponse(Response.Status.GATEWAY_TIMEOUT, "Timed out waiting for response from AEM."));
+		});
+		asyncResponse.setTimeout(timeoutMs, TimeUnit.MILLISECONDS);
+
+		try {
+			aemHttpClient.supplyAsync(aemCall).whenComplete((response, throwable)->{
+				if (throwable == null) {
+					stream(asyncResponse, response);
+				} else {
+					failed(asyncResponse, throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			logger.error("Too many requests waiting on AEM, Returning \"Service Unavailable\" status code.");
+			asyncResponse.resume(errorResponse(Response.Status.SERVICE_UNAVAILABLE, "Too many requests waiting on AEM."));
+		}
+	}
+
+	/**
+	 * Timeout (in milliseconds) for a route.
+	 *
+	 * @param route
+	 * @return
+	 */
+	public int timeout(Route route) {
+		return timeouts.get(route);
+	}
+
+	/**
+	 * Number of proxied requests that have not yet been completed.
+	 *
+	 * @return
+	 */
+	public int relaysInFlight() {
+		return relaysInFlight.get();
+	}
+
+	/**
+	 * Number of responses that are currently being streamed to the browser.
+	 *
+	 * @return
+	 */
+	public int streamingActive() {
+		return streamingExecutor.getActiveCount();
+	}
+
+	@Override
+	public void close() {
+		streamingExecutor.shutdownNow();
+	}
+
+	private void stream(AsyncResponse asyncResponse, Response response) {
+		try {
+			streamingExecutor.execute(()->resume(asyncResponse, response));
+		} catch (RejectedExecutionException e) {
+			response.close();
+			logger.error("Too many responses waiting to be streamed, Returning \"Service Unavailable\" status code.");
+			asyncResponse.resume(errorResponse(Response.Status.SERVICE_UNAVAILABLE, "Too many responses waiting to be streamed."));
+		}
+	}
+
+	private static void failed(AsyncResponse asyncResponse, Throwable throwable) {
+		if (throwable instanceof ProcessingException) {
+			logger.error("Unable to retrieve response from AEM (" + throwable.getMessage() + "), Returning \"Bad Gateway\" status code.", throwable);
+			asyncResponse.resume(errorResponse(Response.Status.BAD_GATEWAY, "Unable to retrieve response from AEM."));
+		} else {
+			asyncResponse.resume(throwable);	// Handled the same way as if it had been thrown by the resource method.
+		}
+	}
+
+	/**
+	 * Resumes the AsyncResponse (which writes the response to the browser on this thread).
+	 */
+	private static void resume(AsyncResponse asyncResponse, Response response) {
+		if (!asyncResponse.resume(response)) {
+			response.close();	// Already timed out, so release the connection to AEM.
+		}
+	}
+
+	private static Response errorResponse(Response.Status status, String message) {
+		return Response.status(status).entity(message).type(MediaType.TEXT_PLAIN_TYPE).build();
+	}
+}
@@ -0,0 +1,31 @@
+package com._4point.aem.formsfeeder.server;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com._4point.aem.formsfeeder.server.AemCallGuard.AemUnavailableException;
+
+/**
+ * Turns calls to AEM that the AemCallGuard did not allow into "Service Unavailable" responses with a Retry-After header.
+ *
+ */
+@Provider
+public class AemUnavailableExceptionMapper implements ExceptionMapper<AemUnavailableException> {
+	private final static Logger logger = LoggerFactory.getLogger(AemUnavailableExceptionMapper.class);
+
+	@Override
+	public Response toResponse(AemUnavailableException exception) {
+		logger.error(exception.getMessage() + " Returning \"Service Unavailable\" status code.");
+		return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+					   .entity("AEM is unavailable, please try again later.")
+					   .type(MediaType.TEXT_PLAIN_TYPE)
+					   .header(HttpHeaders.RETRY_AFTER, exception.retryAfterSeconds())
+					   .build();
+	}
+}
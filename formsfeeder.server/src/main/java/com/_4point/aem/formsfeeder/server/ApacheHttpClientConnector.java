@@ -0,0 +1,288 @@
+package com._4point.aem.formsfeeder.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.Configuration;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.ClientRequest;
+import org.glassfish.jersey.client.ClientResponse;
+import org.glassfish.jersey.client.RequestEntityProcessing;
+import org.glassfish.jersey.client.spi.AsyncConnectorCallback;
+import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.client.spi.ConnectorProvider;
+import org.glassfish.jersey.media.multipart.Boundary;
+
+/**
+ * Jersey Connector that sends requests using a (shared, connection pooling) Apache HttpClient.
+ *
+ * Request entities are streamed to AEM (using chunked transfer encoding) as they are written, so large documents are
+ * not copied into memory first.  Because the headers are sent before the entity is written, headers that a
+ * MessageBodyWriter adds while writing the entity are not sent.  The one case of this that matters (the multipart
+ * boundary) is handled by adding the boundary to the Content-Type before the entity is written.  A caller that needs
+ * the entity to be buffered (so that other headers added while writing make it through, or so that a Content-Length
+ * is sent) can set the ClientProperties.REQUEST_ENTITY_PROCESSING property to RequestEntityProcessing.BUFFERED.
+ *
+ * Response entities are streamed, the underlying connection is returned to the pool when the response entity stream
+ * is closed.
+ *
+ * The CONNECT_TIMEOUT, READ_TIMEOUT and FOLLOW_REDIRECTS client properties are honoured.  The HttpClient is owned by
+ * the caller, closing the connector does not close it.
+ *
+ */
+/* package */ class ApacheHttpClientConnector implements Connector {
+	private final CloseableHttpClient httpClient;
+	private final RequestConfig defaultRequestConfig;
+
+	/* package */ ApacheHttpClientConnector(CloseableHttpClient httpClient, RequestConfig defaultRequestConfig) {
+		this.httpClient = httpClient;
+		this.defaultRequestConfig = defaultRequestConfig;
+	}
+
+	/**
+	 * Create a ConnectorProvider that provides connectors that use the HttpClient provided.
+	 *
+	 * @param httpClient
+	 * @param defaultRequestConfig
+	 * @return
+	 */
+	/* package */ static ConnectorProvider provider(CloseableHttpClient httpClient, RequestConfig defaultRequestConfig) {
+		return (Client client, Configuration runtimeConfig)->new ApacheHttpClientConnector(httpClient, defaultRequestConfig);
+	}
+
+	@Override
+	public ClientResponse apply(ClientRequest request) {
+		try {
+			HttpUriRequest httpRequest = toHttpRequest(request);
+			CloseableHttpResponse httpResponse = httpClient.execute(httpRequest, HttpClientContext.create());
+			return toClientResponse(request, httpResponse);
+		} catch (IOException e) {
+			throw new ProcessingException("Error while sending request to '" + request.getUri() + "' (" + e.getMessage() + ").", e);
+		}
+	}
+
+	/**
+	 * Jersey already runs asynchronous requests on the client's executor service, so the request is executed on the
+	 * calling thread rather than handing it off to yet another thread.
+	 */
+	@Override
+	public Future<?> apply(ClientRequest request, AsyncConnectorCallback callback) {
+		CompletableFuture<ClientResponse> result = new CompletableFuture<>();
+		try {
+			ClientResponse response = apply(request);
+			callback.response(response);
+			result.complete(response);
+		} catch (Throwable t) {
+			callback.failure(t);
+			result.completeExceptionally(t);
+		}
+		return result;
+	}
+
+	@Override
+	public String getName() {
+		return "Apache HttpClient";
+	}
+
+	@Override
+	public void close() {
+		// The HttpClient is shared, so it is closed by its owner.
+	}
+
+	private HttpUriRequest toHttpRequest(ClientRequest request) throws IOException {
+		RequestBuilder builder = RequestBuilder.create(request.getMethod())
+											   .setUri(request.getUri())
+											   .setConfig(requestConfig(request));
+		HttpEntity entity = entity(request);	// Must happen before the headers are copied because buffering the entity can add headers.
+		if (entity != null) {
+			builder.setEntity(entity);
+		}
+		for (Entry<String, List<String>> header : request.getStringHeaders().entrySet()) {
+			String name = header.getKey();
+			// HttpClient generates the framing headers itself.
+			if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name) && !"Transfer-Encoding".equalsIgnoreCase(name)) {
+				header.getValue().forEach(value->builder.addHeader(name, value));
+			}
+		}
+		return builder.build();
+	}
+
+	private RequestConfig requestConfig(ClientRequest request) {
+		RequestConfig.Builder config = RequestConfig.copy(defaultRequestConfig);
+		int connectTimeout = request.resolveProperty(ClientProperties.CONNECT_TIMEOUT, 0);
+		if (connectTimeout > 0) {
+			config.setConnectTimeout(connectTimeout);
+		}
+		int readTimeout = request.resolveProperty(ClientProperties.READ_TIMEOUT, 0);
+		if (readTimeout > 0) {
+			config.setSocketTimeout(readTimeout);
+		}
+		return config.setRedirectsEnabled(request.resolveProperty(ClientProperties.FOLLOW_REDIRECTS, Boolean.TRUE))
+					 .build();
+	}
+
+	private static HttpEntity entity(ClientRequest request) throws IOException {
+		if (!request.hasEntity()) {
+			return null;
+		}
+		if (request.resolveProperty(ClientProperties.REQUEST_ENTITY_PROCESSING, RequestEntityProcessing.class) == RequestEntityProcessing.BUFFERED) {
+			EntityBuffer buffer = new EntityBuffer();
+			request.setStreamProvider(contentLength->buffer);
+			request.writeEntity();
+			return buffer.asEntity();
+		}
+		// The headers are sent before the entity is written, so the multipart boundary has to be chosen now.
+		MediaType mediaType = request.getMediaType();
+		if (mediaType != null && "multipart".equalsIgnoreCase(mediaType.getType())) {
+			request.getHeaders().putSingle(HttpHeaders.CONTENT_TYPE, Boundary.addBoundary(mediaType));
+		}
+		return new StreamingEntity(request);
+	}
+
+	private static ClientResponse toClientResponse(ClientRequest request, CloseableHttpResponse httpResponse) throws IOException {
+		ClientResponse response = new ClientResponse(new ResponseStatus(httpResponse.getStatusLine().getStatusCode(), httpResponse.getStatusLine().getReasonPhrase()), request);
+		for (Header header : httpResponse.getAllHeaders()) {
+			response.getHeaders().add(header.getName(), header.getValue());
+		}
+		HttpEntity entity = httpResponse.getEntity();
+		if (entity == null) {
+			httpResponse.close();	// Nothing to read, so return the connection to the pool now.
+			response.setEntityStream(new ByteArrayInputStream(new byte[0]));
+		} else {
+			response.setEntityStream(new ResponseInputStream(entity.getContent(), httpResponse));
+		}
+		return response;
+	}
+
+	/**
+	 * The status returned by AEM.  The reason phrase AEM sent is kept, if AEM didn't send one then the standard
+	 * reason phrase (if there is one) is used.
+	 */
+	private static class ResponseStatus implements Response.StatusType {
+		private final int statusCode;
+		private final String reasonPhrase;
+
+		private ResponseStatus(int statusCode, String reasonPhrase) {
+			this.statusCode = statusCode;
+			this.reasonPhrase = reasonPhrase != null && !reasonPhrase.isEmpty() ? reasonPhrase : standardReasonPhrase(statusCode);
+		}
+
+		private static String standardReasonPhrase(int statusCode) {
+			Response.Status status = Response.Status.fromStatusCode(statusCode);
+			return status != null ? status.getReasonPhrase() : "";
+		}
+
+		@Override
+		public int getStatusCode() {
+			return statusCode;
+		}
+
+		@Override
+		public Response.Status.Family getFamily() {
+			return Response.Status.Family.familyOf(statusCode);
+		}
+
+		@Override
+		public String getReasonPhrase() {
+			return reasonPhrase;
+		}
+
+		@Override
+		public String toString() {
+			return reasonPhrase;
+		}
+	}
+
+	/**
+	 * Request entity that is written directly to the connection by Jersey.  It can only be written once, so HttpClient
+	 * never resends it.
+	 */
+	private static class StreamingEntity extends AbstractHttpEntity {
+		private final ClientRequest request;
+
+		private StreamingEntity(ClientRequest request) {
+			this.request = request;
+			setChunked(true);
+		}
+
+		@Override
+		public boolean isRepeatable() {
+			return false;
+		}
+
+		@Override
+		public long getContentLength() {
+			return -1;
+		}
+
+		@Override
+		public InputStream getContent() {
+			throw new UnsupportedOperationException("Request entity can only be written to an OutputStream.");
+		}
+
+		@Override
+		public void writeTo(OutputStream outstream) throws IOException {
+			request.setStreamProvider(contentLength->outstream);
+			request.writeEntity();
+		}
+
+		@Override
+		public boolean isStreaming() {
+			return false;
+		}
+	}
+
+	/**
+	 * ByteArrayOutputStream that can turn its contents into an HttpEntity without copying them.
+	 */
+	private static class EntityBuffer extends ByteArrayOutputStream {
+		private HttpEntity asEntity() {
+			return new ByteArrayEntity(buf, 0, count);
+		}
+	}
+
+	/**
+	 * Response entity stream that closes the HttpClient response (returning the connection to the pool) when it is closed.
+	 */
+	private static class ResponseInputStream extends FilterInputStream {
+		private final CloseableHttpResponse httpResponse;
+
+		private ResponseInputStream(InputStream in, CloseableHttpResponse httpResponse) {
+			super(in);
+			this.httpResponse = httpResponse;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				httpResponse.close();
+			}
+		}
+	}
+}
@@ -19,7 +19,7 @@ public class CorsResponseFilter implements ContainerResponseFilter {
 	private static final String FF_ENABLE_CORS_PROPERTY = "formsfeeder.enable_cors";
 	private static final String FF_CORS_ALLOWED_HEADERS_PROPERTY = "formsfeeder.cors_add_headers";
 	private static final String ALLOWED_METHODS = String.join(", ", "GET", "POST", "OPTIONS", "HEAD");
-	private static final String ALLOWED_HEADERS = String.join(", ", "origin", "content-type", "accept", "authorization", CorrelationId.CORRELATION_ID_HDR);
+	private static final String ALLOWED_HEADERS = String.join(", ", "origin", "content-type", "accept", "authorization", CorrelationId.CORRELATION_ID_HDR, PluginInvoker.REQUEST_TIMEOUT_HDR);
 	
 	@Autowired
 	Environment environment;
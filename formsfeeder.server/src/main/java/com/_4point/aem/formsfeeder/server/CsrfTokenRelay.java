@@ -0,0 +1,147 @@
+package com._4point.aem.formsfeeder.server;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.client.InvocationCallback;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.CompletionCallback;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.jersey.client.ClientProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Relays CSRF token requests to AEM.
+ *
+ * CSRF tokens are requested every time a user opens a form, so a login storm can produce a large number of simultaneous
+ * token requests.  Rather than tying up a thread for each one, the request to AEM is made asynchronously (on the
+ * AemHttpClient's bounded executor) and the caller's AsyncResponse is resumed once AEM has responded.
+ *
+ * If AEM does not respond within the timeout, the caller receives a "Gateway Timeout" response.  If AEM cannot be
+ * reached, the caller receives a "Bad Gateway" response and if there are too many token requests waiting on AEM, the
+ * caller receives a "Service Unavailable" response.
+ *
+ * The timeout can be configured in the application.properties file (in milliseconds):
+ *
+ * {@code
+ * formsfeeder.aem.csrf-token.timeout=10000
+ * }
+ *
+ */
+@Component
+public class CsrfTokenRelay {
+	private final static Logger logger = LoggerFactory.getLogger(CsrfTokenRelay.class);
+
+	public static final String FF_CSRF_TOKEN_TIMEOUT_PROPERTY = "formsfeeder.aem.csrf-token.timeout";
+	public static final int DEFAULT_CSRF_TOKEN_TIMEOUT = 10_000;
+
+	private final AemHttpClient aemHttpClient;
+	private final AemBackendPool aemBackendPool;
+	private final int timeoutMs;
+	private final AtomicInteger relaysInFlight = new AtomicInteger();
+
+	public CsrfTokenRelay(AemHttpClient aemHttpClient, AemBackendPool aemBackendPool, Environment environment) {
+		this.aemHttpClient = aemHttpClient;
+		this.aemBackendPool = aemBackendPool;
+		this.timeoutMs = environment.getProperty(FF_CSRF_TOKEN_TIMEOUT_PROPERTY, Integer.class, DEFAULT_CSRF_TOKEN_TIMEOUT);
+	}
+
+	/**
+	 * Requests a CSRF token from AEM and resumes the AsyncResponse with AEM's response once it arrives.
+	 *
+	 * @param path	path of the CSRF token on the AEM server
+	 * @param asyncResponse	the suspended response of the incoming request
+	 */
+	public void relay(final String path, final AsyncResponse asyncResponse) {
+		relaysInFlight.incrementAndGet();
+		asyncResponse.register((CompletionCallback)t->relaysInFlight.decrementAndGet());
+		asyncResponse.setTimeoutHandler(ar->{
+			logger.error("Timed out after " + timeoutMs + "ms waiting for CSRF token from AEM, Returning \"Gateway Timeout\" status code.");
+			ar.resume(errorResponse(Response.Status.GATEWAY_TIMEOUT, "Timed out waiting for CSRF token from AEM."));
+		});
+		asyncResponse.setTimeout(timeoutMs, TimeUnit.MILLISECONDS);
+
+		final AemBackendPool.Lease lease;
+		try {
+			lease = aemBackendPool.acquire();
+		} catch (AemCallGuard.AemUnavailableException e) {
+			asyncResponse.resume(e);	// Mapped to a "Service Unavailable" response by the AemUnavailableExceptionMapper.
+			return;
+		}
+		WebTarget webTarget = aemHttpClient.client().target(lease.url())
+													.path(path)
+													.property(ClientProperties.CONNECT_TIMEOUT, timeoutMs)
+													.property(ClientProperties.READ_TIMEOUT, timeoutMs);
+		logger.debug("Proxying GET request for CSRF token '" + webTarget.getUri().toString() + "'.");
+		try {
+			webTarget.request().async().get(new InvocationCallback<Response>() {
+				@Override
+				public void completed(Response result) {
+					logger.debug("CSRF token GET response status = " + result.getStatus());
+					lease.completed(result.getStatus());
+					try {
+						asyncResponse.resume(Response.status(result.getStatus())
+													 .entity(result.readEntity(byte[].class))
+													 .type(result.getMediaType())
+													 .header(HttpHeaders.CACHE_CONTROL, result.getHeaderString(HttpHeaders.CACHE_CONTROL))
+													 .header(HttpHeaders.EXPIRES, result.getHeaderString(HttpHeaders.EXPIRES))
+													 .build());
+					} catch (RuntimeException e) {
+						failed(e);
+					}
+				}
+
+				@Override
+				public void failed(Throwable throwable) {
+					if (hasCause(throwable, RejectedExecutionException.class)) {
+						lease.released();
+						rejected(asyncResponse);
+					} else {
+						lease.failed(throwable);
+						logger.error("Unable to retrieve CSRF token from AEM (" + throwable.getMessage() + "), Returning \"Bad Gateway\" status code.", throwable);
+						asyncResponse.resume(errorResponse(Response.Status.BAD_GATEWAY, "Unable to retrieve CSRF token from AEM."));
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			lease.released();
+			rejected(asyncResponse);
+		}
+	}
+
+	/**
+	 * Number of CSRF token requests that are currently waiting on AEM.
+	 *
+	 * @return
+	 */
+	public int relaysInFlight() {
+		return relaysInFlight.get();
+	}
+
+	private static void rejected(AsyncResponse asyncResponse) {
+		logger.error("Too many CSRF token requests waiting on AEM, Returning \"Service Unavailable\" status code.");
+		asyncResponse.resume(errorResponse(Response.Status.SERVICE_UNAVAILABLE, "Too many CSRF token requests waiting on AEM."));
+	}
+
+	private static boolean hasCause(Throwable throwable, Class<? extends Throwable> causeClass) {
+		for (Throwable t = throwable; t != null; t = t.getCause()) {
+			if (causeClass.isInstance(t)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static Response errorResponse(Response.Status status, String message) {
+		return Response.status(status).entity(message).type(MediaType.TEXT_PLAIN_TYPE).build();
+	}
+}
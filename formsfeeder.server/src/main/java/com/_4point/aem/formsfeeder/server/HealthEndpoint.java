@@ -0,0 +1,147 @@
+package com._4point.aem.formsfeeder.server;
+
+import java.util.List;
+import java.util.Objects;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.apache.http.pool.PoolStats;
+
+import com._4point.aem.formsfeeder.server.AemBackendPool.BackendStats;
+import com._4point.aem.formsfeeder.server.pf4j.FeedConsumers;
+import com._4point.aem.formsfeeder.server.pf4j.FeedConsumers.ConsumerStats;
+
+/**
+ * Reports on the health of FormsFeeder's connection to AEM.
+ *
+ * The status is "UP" if calls to AEM are flowing normally, "DEGRADED" if the AemCallGuard's circuit breaker is letting
+ * trial calls through or one of the AEM servers is unhealthy, and "DOWN" if the circuit breaker is open (in which case
+ * the response has a "Service Unavailable" status code so that load balancers can act on it).  The AemCallGuard, the
+ * AEM servers, the AEM connection pool, the CsrfTokenRelay, the AemProxyRelay, the ProxyResponseCache, the plugin
+ * (FeedConsumer), the plugin bulkhead and the plugin timeout statistics are included in the response.
+ *
+ */
+@Path("/health")
+public class HealthEndpoint {
+
+	private final AemCallGuard aemCallGuard = Objects.requireNonNull(Objects.requireNonNull(Application.getApplicationContext(), "Application Context cannot be null.")
+																  .getBean(AemCallGuard.class), "AemCallGuard cannot be null");
+	private final AemBackendPool aemBackendPool = Objects.requireNonNull(Objects.requireNonNull(Application.getApplicationContext(), "Application Context cannot be null.")
+																  .getBean(AemBackendPool.class), "AemBackendPool cannot be null");
+	private final AemHttpClient aemHttpClient = Objects.requireNonNull(Objects.requireNonNull(Application.getApplicationContext(), "Application Context cannot be null.")
+																  .getBean(AemHttpClient.class), "AemHttpClient cannot be null");
+	private final CsrfTokenRelay csrfTokenRelay = Objects.requireNonNull(Objects.requireNonNull(Application.getApplicationContext(), "Application Context cannot be null.")
+																  .getBean(CsrfTokenRelay.class), "CsrfTokenRelay cannot be null");
+	private final AemProxyRelay aemProxyRelay = Objects.requireNonNull(Objects.requireNonNull(Application.getApplicationContext(), "Application Context cannot be null.")
+																  .getBean(AemProxyRelay.class), "AemProxyRelay cannot be null");
+	private final FeedConsumers feedConsumers = Objects.requireNonNull(Objects.requireNonNull(Application.getApplicationContext(), "Application Context cannot be null.")
+																  .getBean(FeedConsumers.class), "FeedConsumers cannot be null");
+	private final ProxyResponseCache proxyResponseCache = Objects.requireNonNull(Objects.requireNonNull(Application.getApplicationContext(), "Application Context cannot be null.")
+																  .getBean(ProxyResponseCache.class), "ProxyResponseCache cannot be null");
+	private final PluginBulkheads pluginBulkheads = Objects.requireNonNull(Objects.requireNonNull(Application.getApplicationContext(), "Application Context cannot be null.")
+																  .getBean(PluginBulkheads.class), "PluginBulkheads cannot be null");
+	private final PluginTimeouts pluginTimeouts = Objects.requireNonNull(Objects.requireNonNull(Application.getApplicationContext(), "Application Context cannot be null.")
+																  .getBean(PluginTimeouts.class), "PluginTimeouts cannot be null");
+
+	@GET
+	@Produces(MediaType.APPLICATION_JSON)
+	public Response health() {
+		AemCallGuard.Stats guard = aemCallGuard.stats();
+		List<BackendStats> backends = aemBackendPool.stats();
+		ProxyResponseCache.Stats cache = proxyResponseCache.stats();
+		PoolStats pool = aemHttpClient.poolStats();
+
+		String status = guard.state() == AemCallGuard.State.OPEN ? "DOWN"
+					  : guard.state() == AemCallGuard.State.HALF_OPEN || backends.stream().anyMatch(b->!b.healthy()) ? "DEGRADED"
+					  : "UP";
+
+		JsonArrayBuilder backendsJson = Json.createArrayBuilder();
+		for (BackendStats backend : backends) {
+			backendsJson.add(Json.createObjectBuilder()
+								 .add("url", backend.url())
+								 .add("healthy", backend.healthy())
+								 .add("outstanding", backend.outstanding())
+								 .add("requests", backend.requests())
+								 .add("errors", backend.errors())
+								 .add("hedges", backend.hedges())
+								 .add("p50LatencyMs", backend.p50LatencyMs())
+								 .add("p95LatencyMs", backend.p95LatencyMs()));
+		}
+		JsonArrayBuilder pluginsJson = Json.createArrayBuilder();
+		for (ConsumerStats plugin : feedConsumers.stats()) {
+			pluginsJson.add(Json.createObjectBuilder()
+								.add("name", plugin.name())
+								.add("lookups", plugin.lookups())
+								.add("invocations", plugin.invocations())
+								.add("failures", plugin.failures()));
+		}
+		JsonArrayBuilder bulkheadsJson = Json.createArrayBuilder();
+		for (PluginBulkheads.Stats bulkhead : pluginBulkheads.stats()) {
+			bulkheadsJson.add(Json.createObjectBuilder()
+								  .add("name", bulkhead.name())
+								  .add("maxConcurrent", bulkhead.maxConcurrent())
+								  .add("maxQueued", bulkhead.maxQueued())
+								  .add("active", bulkhead.active())
+								  .add("queued", bulkhead.queued())
+								  .add("rejected", bulkhead.rejected())
+								  .add("timedOut", bulkhead.timedOut()));
+		}
+		JsonArrayBuilder timeoutsJson = Json.createArrayBuilder();
+		for (PluginTimeouts.Stats timeout : pluginTimeouts.stats()) {
+			timeoutsJson.add(Json.createObjectBuilder()
+								 .add("name", timeout.name())
+								 .add("timeoutMs", timeout.timeoutMs())
+								 .add("timedOut", timeout.timedOut())
+								 .add("rejected", timeout.rejected())
+								 .add("overdue", timeout.overdue()));
+		}
+		JsonObject health = Json.createObjectBuilder()
+								.add("status", status)
+								.add("aemCallGuard", Json.createObjectBuilder()
+														 .add("state", guard.state().name())
+														 .add("limit", guard.limit())
+														 .add("inFlight", guard.inFlight())
+														 .add("rejected", guard.rejected())
+														 .add("trips", guard.trips())
+														 .add("failureRate", guard.failureRate()))
+								.add("aemBackends", backendsJson)
+								.add("aemConnectionPool", Json.createObjectBuilder()
+															  .add("leased", pool.getLeased())
+															  .add("available", pool.getAvailable())
+															  .add("pending", pool.getPending())
+															  .add("max", pool.getMax())
+															  .add("asyncActive", aemHttpClient.asyncActive())
+															  .add("asyncQueued", aemHttpClient.asyncQueued()))
+								.add("csrfTokenRelay", Json.createObjectBuilder()
+														   .add("inFlight", csrfTokenRelay.relaysInFlight()))
+								.add("aemProxyRelay", Json.createObjectBuilder()
+														  .add("inFlight", aemProxyRelay.relaysInFlight())
+														  .add("streamingActive", aemProxyRelay.streamingActive()))
+								.add("plugins", pluginsJson)
+								.add("pluginsNotFound", feedConsumers.notFound())
+								.add("pluginBulkheads", bulkheadsJson)
+								.add("pluginTimeouts", timeoutsJson)
+								.add("proxyResponseCache", Json.createObjectBuilder()
+															   .add("hits", cache.hits())
+															   .add("revalidations", cache.revalidations())
+															   .add("misses", cache.misses())
+															   .add("evictions", cache.evictions())
+															   .add("memoryEntries", cache.memoryEntries())
+															   .add("memorySize", cache.memorySize())
+															   .add("diskEntries", cache.diskEntries())
+															   .add("diskSize", cache.diskSize()))
+								.build();
+
+		return Response.status(guard.state() == AemCallGuard.State.OPEN ? Response.Status.SERVICE_UNAVAILABLE : Response.Status.OK)
+					   .entity(health.toString())
+					   .type(MediaType.APPLICATION_JSON_TYPE)
+					   .build();
+	}
+}
@@ -4,16 +4,16 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.function.Function;
 
+import javax.inject.Singleton;
+import javax.ws.rs.BadRequestException;
 import javax.ws.rs.HEAD;
 import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.MediaType;
@@ -21,12 +21,11 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.xml.parsers.ParserConfigurationException;
 
-import org.glassfish.jersey.client.authentication.HttpAuthenticationFeature;
 import org.glassfish.jersey.media.multipart.FormDataMultiPart;
-import org.glassfish.jersey.media.multipart.MultiPartFeature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
 
 import com._4point.aem.formsfeeder.core.api.AemConfig;
 import com._4point.aem.formsfeeder.core.api.AemConfig.AemServerType;
@@ -37,15 +36,25 @@ import com._4point.aem.formsfeeder.server.PluginInvoker.PluginInvokerInternalErr
 import com._4point.aem.formsfeeder.server.PluginInvoker.PluginInvokerPluginNotFoundException;
 import com._4point.aem.formsfeeder.server.support.CorrelationId;
 import com._4point.aem.formsfeeder.server.support.FfLoggerFactory;
-import com._4point.aem.formsfeeder.server.support.FormsFeederData;
+import com._4point.aem.formsfeeder.server.support.SizeLimitedInputStream;
 import com._4point.aem.formsfeeder.server.support.XmlDataFile;
 
 
 /**
  * Html5SubmitProxy is the class that handles submissions from HTML5 forms.
  *
+ * A single instance handles all submissions concurrently, so anything that is specific to one submission is kept in a
+ * SubmitContext rather than in instance fields.
+ *
+ * AEM's response to the submission is streamed directly into the XFA data extractor without being buffered.  The size of
+ * the response is limited (to 256MB by default) while it is being read:
+ * <pre>
+ * formsfeeder.submit.max-aem-response-size=268435456
+ * </pre>
+ *
  */
 @Path("")
+@Singleton
 public class Html5SubmitProxy extends AbstractSubmitProxy {
 	private final static Logger baseLogger = LoggerFactory.getLogger(Html5SubmitProxy.class);
 	
@@ -54,25 +63,25 @@ public class Html5SubmitProxy extends AbstractSubmitProxy {
 	private static final String CONTENT_ROOT_DS_NAME = PluginInvoker.FORMSFEEDER_PREFIX + "ContentRoot";
 	private static final String SUBMIT_URL_DS_NAME = PluginInvoker.FORMSFEEDER_PREFIX + "SubmitUrl";
 
+	public static final String FF_MAX_AEM_RESPONSE_SIZE_PROPERTY = "formsfeeder.submit.max-aem-response-size";
+	public static final long DEFAULT_MAX_AEM_RESPONSE_SIZE = 256L * 1024 * 1024;	// 256 MB
+
 	private static final String AEM_URL = "/content/xfaforms/profiles/";
 	private final AemConfig aemConfig = Objects.requireNonNull(Objects.requireNonNull(Application.getApplicationContext(), "Application Context cannot be null.")
 																	.getBean(AemConfig.class), "AemConfig cannot be null");
+	private final AemBackendPool aemBackendPool = Objects.requireNonNull(Objects.requireNonNull(Application.getApplicationContext(), "Application Context cannot be null.")
+																	.getBean(AemBackendPool.class), "AemBackendPool cannot be null");
 
-	private Logger logger;
 	private final Client httpClient;
-	
-	private String template;	// Template location (as specified in the incoming data) - pass in as formsfeeder: variable
-	private String contentRoot;	// Content Root (as specified in the incoming data) - pass in as formsfeeder: variable
-	private String submitUrl;	// SubmitUrl (as specified in the incoming data) - pass in as formsfeeder: variable
-
-	private PluginInvoker pluginInvoker;
+	private final PluginInvoker pluginInvoker;
+	private final long maxAemResponseSize;
 
 	@Autowired
-    public Html5SubmitProxy(PluginInvoker pluginInvoker) {
+    public Html5SubmitProxy(PluginInvoker pluginInvoker, AemHttpClient aemHttpClient, Environment environment) {
 		super();
 		this.pluginInvoker = pluginInvoker;
-    	HttpAuthenticationFeature feature = HttpAuthenticationFeature.basic(aemConfig.username(), aemConfig.secret());
-		httpClient = ClientBuilder.newClient().register(feature).register(MultiPartFeature.class);
+		httpClient = aemHttpClient.client();
+		this.maxAemResponseSize = environment.getProperty(FF_MAX_AEM_RESPONSE_SIZE_PROPERTY, Long.class, DEFAULT_MAX_AEM_RESPONSE_SIZE);
 	}
 
     @Path("/content/xfaforms/profiles/{remainder : .+}")
@@ -113,46 +122,60 @@ public class Html5SubmitProxy extends AbstractSubmitProxy {
 
 	private Response proxySubmitPost(String remainder, final String correlationIdHdr, String contentType,
 			final FormDataMultiPart inFormData) throws IOException, ParserConfigurationException {
-		final String correlationId = CorrelationId.generate(correlationIdHdr);
-		logger = FfLoggerFactory.wrap(correlationId, baseLogger);
+		final SubmitContext context = new SubmitContext(CorrelationId.generate(correlationIdHdr));
+		final Logger logger = context.logger;
 		logger.debug("Proxying HTML5 Form Submit POST request.");
     	
-		WebTarget webTarget = httpClient.target(aemConfig.url())
-										.path((aemConfig.serverType() == AemServerType.JEE ? "/lc" : "") + AEM_URL + remainder);
-		logger.info("Proxying Submit HTML5 POST request for target '" + webTarget.getUri().toString() + "'.");
+		String aemPath = (aemConfig.serverType() == AemServerType.JEE ? "/lc" : "") + AEM_URL + remainder;
+		logger.info("Proxying Submit HTML5 POST request for path '" + aemPath + "'.");
 		logger.info("Content-Type= '" + contentType + "'.");
 		
 		// Transform some of the parts.
     	final Map<String, Function<byte[], byte[]>> fieldFunctions = 		// Create a table of functions that will be called to transform specific fields in the incoming AF submission.
         								Map.of(
-        										"submitUrl", 	(su)->{submitUrl = new String(su, StandardCharsets.UTF_8); return null;},	// Squirrel away the submitUrl, and return null so that no submit Url is passed to AEM
-        										"template",		(t)->{ this.template = new String(t); return t;},		// Squirrel away a copy
-        										"contentRoot",	(cr)->{ this.contentRoot = new String(cr); return cr;}	// Squirrel away a copy
+        										"submitUrl", 	(su)->{ context.submitUrl = new String(su, StandardCharsets.UTF_8); return null;},	// Squirrel away the submitUrl, and return null so that no submit Url is passed to AEM
+        										"template",		(t)->{ context.template = new String(t, StandardCharsets.UTF_8); return t;},		// Squirrel away a copy
+        										"contentRoot",	(cr)->{ context.contentRoot = new String(cr, StandardCharsets.UTF_8); return cr;}	// Squirrel away a copy
         									  );		// Specify functions that transform parts of the incoming multi-part transaction.
     	FormDataMultiPart outFormData = SubmitProxyUtils.transformFormData(inFormData, fieldFunctions, logger);	// transform any fields with associated functions.
 
     	// Transfer to AEM
-		Response result = webTarget.request()
-					   .post(Entity.entity(outFormData, contentType));
+		Response result = aemBackendPool.call(url->{
+			WebTarget webTarget = httpClient.target(url).path(aemPath);
+			logger.debug("Sending HTML5 submission to '" + webTarget.getUri().toString() + "'.");
+			return webTarget.request().post(Entity.entity(outFormData, contentType));
+		});
 		
 		logger.debug("AEM Response = " + result.getStatus());
 		logger.debug("AEM Response Location = " + result.getLocation());
 
-		// Get back the XML data from AEM
-		byte[] xmlData = SubmitProxyUtils.transferFromAem(result, logger);
-		logger.debug("AEM Response data retrieved.");
-		logger.trace("AEM Response data is '" + new String(xmlData, StandardCharsets.UTF_8) + "'.");
-		
 		// Generate the various returns and then return them.
-		if (result.getStatus() == Response.Status.OK.getStatusCode() && xmlData != null) {
-			// Remove the XFA xdp: wrapper.
-			byte[] extractedXmlData = XmlDataFile.extractData(xmlData, logger);
+		if (result.getStatus() == Response.Status.OK.getStatusCode() && result.hasEntity()) {
+			// Remove the XFA xdp: wrapper and extract the plugin name from the xml data as it is streamed from AEM.
+			XmlDataFile.FormData formData;
+			try (SizeLimitedInputStream xmlData = SubmitProxyUtils.streamFromAem(result, maxAemResponseSize, logger)) {
+				try {
+					formData = XmlDataFile.extractFormData(xmlData, logger);
+				} catch (BadRequestException e) {
+					if (xmlData.exceeded()) {	// The parser wraps the SizeLimitExceededException, so check the stream itself.
+						String msg = "AEM response exceeds the maximum size of " + xmlData.maxSize() + " bytes";
+						logger.error(msg + ", Returning \"Payload Too Large\" status code.");
+						return Response.status(Response.Status.REQUEST_ENTITY_TOO_LARGE).entity(msg + ".").type(MediaType.TEXT_PLAIN_TYPE).build();
+					}
+					throw e;
+				}
+			} finally {
+				result.close();		// We stop reading at the end of the form data, so release the connection.
+			}
+			byte[] extractedXmlData = formData.data();
+			logger.debug("AEM Response data retrieved.");
+			logger.trace("Extracted data is '" + new String(extractedXmlData, StandardCharsets.UTF_8) + "'.");
 
-			ResponseBuilder pluginResult = extractPluginName(extractedXmlData)	// Extract the plugin name from the xml dat.
-												.map(name->invokePluginCreateResponse(name, createInputDsl(extractedXmlData), logger))	// Invoke the plugin and get a ResponseBuilder
+			ResponseBuilder pluginResult = formData.pluginName()
+												.map(name->invokePluginCreateResponse(name, createInputDsl(extractedXmlData, context), logger))	// Invoke the plugin and get a ResponseBuilder
 												.orElse(Response.status(Response.Status.NOT_FOUND).entity("Plugin name could not be found.").type(MediaType.TEXT_PLAIN_TYPE));;
 			
-			return PluginInvoker.buildResponse(pluginResult, correlationId);
+			return PluginInvoker.buildResponse(pluginResult, context.correlationId);
 		} else  { 
 			logger.debug("AEM returned status code '" + result.getStatus() + "'. Returning response from AEM.");
 			return Response.fromResponse(result).build();
@@ -163,10 +186,11 @@ public class Html5SubmitProxy extends AbstractSubmitProxy {
      * Creates a DataSourceList from the incoming XML data.  This is intended to be passed to the plugin we call.
      * 
      * @param xmlData
+     * @param context
      * @return
      */
-    private DataSourceList createInputDsl(byte[] xmlData) {
-		return DataSourceList.build(b->this.populateInputDsl(b, xmlData));
+    private static DataSourceList createInputDsl(byte[] xmlData, SubmitContext context) {
+		return DataSourceList.build(b->populateInputDsl(b, xmlData, context));
     }
 
     /**
@@ -179,25 +203,16 @@ public class Html5SubmitProxy extends AbstractSubmitProxy {
      * 
      * @param builder
      * @param xmlData
+     * @param context
      * @return
      */
-    private DataSourceList.Builder populateInputDsl(DataSourceList.Builder builder, byte[] xmlData) {
+    private static DataSourceList.Builder populateInputDsl(DataSourceList.Builder builder, byte[] xmlData, SubmitContext context) {
     	return builder.add(SUBMITTED_DATA_DS_NAME, xmlData, StandardMimeTypes.APPLICATION_XML_TYPE)
-    				  .add(TEMPLATE_DS_NAME, this.template)
-    				  .add(CONTENT_ROOT_DS_NAME, this.contentRoot)
-    				  .add(SUBMIT_URL_DS_NAME, this.submitUrl);
+    				  .add(TEMPLATE_DS_NAME, context.template)
+    				  .add(CONTENT_ROOT_DS_NAME, context.contentRoot)
+    				  .add(SUBMIT_URL_DS_NAME, context.submitUrl);
     }
     
-	/**
-	 * Extract the plugin name from the incoming XML.
-	 * 
-	 * @param xmlData
-	 * @return the name (if we find it in the data)
-	 */
-	private Optional<String> extractPluginName(byte[] xmlData) {
-		return FormsFeederData.from(xmlData).flatMap(FormsFeederData::pluginName);
-	}
-
 	/**
 	 * Determines if there is a plug-in associated with an Url provided and, if so, then invokes that plug-in.  Also
 	 * captures any exceptions that a plugin throws and converts it to a response.
@@ -245,5 +260,23 @@ public class Html5SubmitProxy extends AbstractSubmitProxy {
 		String msg = "Plugin returned multiple datasources which cannot be turned into a valid response.";
 		logger.error(msg);
 		return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(msg).type(MediaType.TEXT_PLAIN_TYPE);
-	}	
+	}
+
+	/**
+	 * The state of a single submission.
+	 *
+	 */
+	private static final class SubmitContext {
+		private final String correlationId;
+		private final Logger logger;
+
+		private String template;	// Template location (as specified in the incoming data) - pass in as formsfeeder: variable
+		private String contentRoot;	// Content Root (as specified in the incoming data) - pass in as formsfeeder: variable
+		private String submitUrl;	// SubmitUrl (as specified in the incoming data) - pass in as formsfeeder: variable
+
+		private SubmitContext(String correlationId) {
+			this.correlationId = correlationId;
+			this.logger = FfLoggerFactory.wrap(correlationId, baseLogger);
+		}
+	}
 }
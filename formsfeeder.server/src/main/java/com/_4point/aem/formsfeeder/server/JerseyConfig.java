@@ -26,6 +26,13 @@ public class JerseyConfig extends ResourceConfig {
     	register(AemProxyEndpoint.class);
     	register(CorsResponseFilter.class);
     	register(Html5SubmitProxy.class);
+    	register(JsonDataSourceListReader.class);
+    	register(AemUnavailableExceptionMapper.class);
+    	register(PluginBulkheadExceptionMapper.class);
+    	register(PluginTimeoutExceptionMapper.class);
+    	register(PluginTimeoutRejectedExceptionMapper.class);
+    	register(HealthEndpoint.class);
+    	register(PluginAdminEndpoint.class);
     	
     	// Add properties that we want set
     	// Turn of Wadl generation (this was interfering with some CORS functionality
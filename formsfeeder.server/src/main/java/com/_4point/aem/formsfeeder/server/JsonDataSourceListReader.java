@@ -0,0 +1,100 @@
+package com._4point.aem.formsfeeder.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Collections;
+import java.util.Objects;
+
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParserFactory;
+import javax.json.stream.JsonParsingException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.Provider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com._4point.aem.formsfeeder.core.datasource.DataSourceList;
+import com._4point.aem.formsfeeder.server.support.DataSourceListJsonUtils;
+import com._4point.aem.formsfeeder.server.support.SizeLimitedInputStream;
+import com._4point.aem.formsfeeder.server.support.SizeLimitedInputStream.SizeLimitExceededException;
+
+/**
+ * Reads an application/json request body directly into a DataSourceList.
+ *
+ * The body is parsed with a JsonParser and the DataSourceList is built from the parser events, so no intermediate
+ * JsonObject is created.  The nesting depth and the total size of the body are checked as the body is read.  A body that
+ * is not valid Json or is nested too deeply results in a "Bad Request" response, a body that is too large results in a
+ * "Payload Too Large" response and a body in a charset that is not supported results in an "Unsupported Media Type"
+ * response.
+ *
+ */
+@Provider
+@Consumes(MediaType.APPLICATION_JSON)
+public class JsonDataSourceListReader implements MessageBodyReader<DataSourceList> {
+	private final static Logger logger = LoggerFactory.getLogger(JsonDataSourceListReader.class);
+
+	// We pre-create and cache the parserFactory to speed up the creation of JsonParsers.
+	private static final JsonParserFactory jsonParserFactory = Json.createParserFactory(Collections.emptyMap());
+
+	private final RequestBufferingProperties requestBufferingProperties;
+
+	@Autowired
+	public JsonDataSourceListReader(RequestBufferingProperties requestBufferingProperties) {
+		super();
+		this.requestBufferingProperties = requestBufferingProperties;
+	}
+
+	@Override
+	public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+		return DataSourceList.class.equals(type);
+	}
+
+	@Override
+	public DataSourceList readFrom(Class<DataSourceList> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+			MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException, WebApplicationException {
+		RequestBufferingProperties properties = Objects.requireNonNull(requestBufferingProperties, "RequestBufferingProperties have not been populated!");
+		long maxSize = properties.jsonMaxSize();
+		Charset charset = charset(mediaType);
+		try (JsonParser parser = jsonParserFactory.createParser(new SizeLimitedInputStream(entityStream, maxSize, "Json request body"), charset)) {
+			return DataSourceListJsonUtils.asDataSourceList(parser, properties.jsonMaxDepth(), logger);
+		} catch (JsonParsingException e) {
+			logger.error("Unable to parse Json request body (" + e.getMessage() + "), Returning \"Bad Request\" status code.");
+			throw new WebApplicationException(errorResponse(Response.Status.BAD_REQUEST, "Unable to parse Json request body (" + e.getMessage() + ")."));
+		} catch (JsonException e) {
+			if (e.getCause() instanceof SizeLimitExceededException) {
+				logger.error(e.getCause().getMessage() + ", Returning \"Payload Too Large\" status code.");
+				throw new WebApplicationException(errorResponse(Response.Status.REQUEST_ENTITY_TOO_LARGE, e.getCause().getMessage() + "."));
+			}
+			throw e;
+		}
+	}
+
+	private static Charset charset(MediaType mediaType) {
+		String charsetName = mediaType != null ? mediaType.getParameters().get(MediaType.CHARSET_PARAMETER) : null;
+		try {
+			return charsetName != null ? Charset.forName(charsetName) : StandardCharsets.UTF_8;
+		} catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+			logger.error("Unsupported charset '" + charsetName + "' on Json request body, Returning \"Unsupported Media Type\" status code.");
+			throw new WebApplicationException(errorResponse(Response.Status.UNSUPPORTED_MEDIA_TYPE, "Unsupported charset '" + charsetName + "' on Json request body."));
+		}
+	}
+
+	private static Response errorResponse(Response.Status status, String message) {
+		return Response.status(status).entity(message).type(MediaType.TEXT_PLAIN_TYPE).build();
+	}
+}
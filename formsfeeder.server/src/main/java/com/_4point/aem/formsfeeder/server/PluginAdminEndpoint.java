@@ -0,0 +1,154 @@
+package com._4point.aem.formsfeeder.server;
+
+import java.nio.file.Files;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObjectBuilder;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com._4point.aem.formsfeeder.pf4j.SpringPluginManager;
+import com._4point.aem.formsfeeder.server.pf4j.PluginReloader;
+import com._4point.aem.formsfeeder.server.pf4j.PluginReloader.PluginInfo;
+import com._4point.aem.formsfeeder.server.pf4j.PluginReloader.PluginNotFoundException;
+import com._4point.aem.formsfeeder.server.pf4j.PluginReloader.PluginReloaderException;
+
+/**
+ * Allows individual plugins to be loaded, started, stopped, reloaded and unloaded without restarting the server.
+ *
+ * GET /admin/plugins lists the loaded plugins.  POST /admin/plugins (with the name of a plugin file in the plugins
+ * directory as a text/plain body) loads a plugin, replacing any plugin with the same plugin id.  POST
+ * /admin/plugins/{pluginId}/start, /stop and /reload act on a loaded plugin and DELETE /admin/plugins/{pluginId} unloads it.
+ *
+ * This endpoint is disabled (it returns "Not Found") unless formsfeeder.plugins.admin.enabled=true and authentication
+ * is turned on.  It requires a user with the admin role (see WebSecurityConfig).
+ *
+ */
+@Path("/admin/plugins")
+public class PluginAdminEndpoint {
+	private final static Logger logger = LoggerFactory.getLogger(PluginAdminEndpoint.class);
+
+	private final PluginReloader pluginReloader = Objects.requireNonNull(Objects.requireNonNull(Application.getApplicationContext(), "Application Context cannot be null.")
+																   .getBean(PluginReloader.class), "PluginReloader cannot be null");
+	private final SpringPluginManager pluginManager = Objects.requireNonNull(Objects.requireNonNull(Application.getApplicationContext(), "Application Context cannot be null.")
+																   .getBean(SpringPluginManager.class), "SpringPluginManager cannot be null");
+
+	@GET
+	@Produces(MediaType.APPLICATION_JSON)
+	public Response plugins() {
+		return invoke(()->{
+			JsonArrayBuilder plugins = Json.createArrayBuilder();
+			for (PluginInfo plugin : pluginReloader.plugins()) {
+				plugins.add(toJson(plugin));
+			}
+			return jsonResponse(Json.createObjectBuilder()
+									.add("plugins", plugins)
+									.add("draining", pluginReloader.draining()));
+		});
+	}
+
+	@POST
+	@Consumes(MediaType.TEXT_PLAIN)
+	@Produces(MediaType.APPLICATION_JSON)
+	public Response load(String pluginFileName) {
+		return invoke(()->jsonResponse(toJson(pluginReloader.load(pluginFile(pluginFileName)))));
+	}
+
+	@POST
+	@Path("{pluginId}/start")
+	@Produces(MediaType.APPLICATION_JSON)
+	public Response start(@PathParam("pluginId") String pluginId) {
+		return invoke(()->jsonResponse(toJson(pluginReloader.start(pluginId))));
+	}
+
+	@POST
+	@Path("{pluginId}/stop")
+	@Produces(MediaType.APPLICATION_JSON)
+	public Response stop(@PathParam("pluginId") String pluginId) {
+		return invoke(()->jsonResponse(toJson(pluginReloader.stop(pluginId))));
+	}
+
+	@POST
+	@Path("{pluginId}/reload")
+	@Produces(MediaType.APPLICATION_JSON)
+	public Response reload(@PathParam("pluginId") String pluginId) {
+		return invoke(()->jsonResponse(toJson(pluginReloader.reload(pluginId))));
+	}
+
+	@DELETE
+	@Path("{pluginId}")
+	public Response unload(@PathParam("pluginId") String pluginId) {
+		return invoke(()->{
+			pluginReloader.unload(pluginId);
+			return Response.noContent().build();
+		});
+	}
+
+	private Response invoke(Supplier<Response> operation) {
+		if (!pluginReloader.adminEnabled()) {
+			return errorResponse(Response.Status.NOT_FOUND, "Plugin administration is disabled.");
+		}
+		try {
+			return operation.get();
+		} catch (PluginNotFoundException e) {
+			logger.error(e.getMessage() + " Returning \"Not Found\" status code.");
+			return errorResponse(Response.Status.NOT_FOUND, e.getMessage());
+		} catch (IllegalArgumentException e) {
+			logger.error(e.getMessage() + " Returning \"Bad Request\" status code.");
+			return errorResponse(Response.Status.BAD_REQUEST, e.getMessage());
+		} catch (PluginReloaderException e) {
+			logger.error(e.getMessage() + " Returning \"Internal Server Error\" status code.", e);
+			return errorResponse(Response.Status.INTERNAL_SERVER_ERROR, e.getMessage());
+		}
+	}
+
+	/**
+	 * Plugin files can only be loaded from the plugins directory.
+	 */
+	private java.nio.file.Path pluginFile(String pluginFileName) {
+		String fileName = pluginFileName == null ? "" : pluginFileName.strip();
+		if (fileName.isEmpty()) {
+			throw new IllegalArgumentException("Plugin file name must be provided.");
+		}
+		for (java.nio.file.Path root : pluginManager.getPluginsRoots()) {
+			java.nio.file.Path normalizedRoot = root.toAbsolutePath().normalize();
+			java.nio.file.Path file = normalizedRoot.resolve(fileName).normalize();
+			if (!Objects.equals(file.getParent(), normalizedRoot)) {	// The file system root has no parent.
+				throw new IllegalArgumentException("Plugin file '" + fileName + "' must be in the plugins directory.");
+			}
+			if (Files.isRegularFile(file)) {
+				return file;
+			}
+		}
+		throw new IllegalArgumentException("Plugin file '" + fileName + "' does not exist in the plugins directory.");
+	}
+
+	private static JsonObjectBuilder toJson(PluginInfo plugin) {
+		return Json.createObjectBuilder()
+				   .add("id", plugin.id())
+				   .add("version", plugin.version())
+				   .add("state", plugin.state().toString())
+				   .add("path", plugin.path());
+	}
+
+	private static Response jsonResponse(JsonObjectBuilder json) {
+		return Response.ok(json.build().toString(), MediaType.APPLICATION_JSON_TYPE).build();
+	}
+
+	private static Response errorResponse(Response.Status status, String message) {
+		return Response.status(status).entity(message).type(MediaType.TEXT_PLAIN_TYPE).build();
+	}
+}
@@ -0,0 +1,34 @@
+package com._4point.aem.formsfeeder.server;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com._4point.aem.formsfeeder.server.PluginBulkheads.PluginBulkheadException;
+import com._4point.aem.formsfeeder.server.PluginBulkheads.PluginBulkheadFullException;
+
+/**
+ * Turns plugin invocations that a PluginBulkheads bulkhead did not allow into responses with a Retry-After header.  A full
+ * queue results in a "Too Many Requests" response, waiting in the queue for too long results in a "Service Unavailable" response.
+ *
+ */
+@Provider
+public class PluginBulkheadExceptionMapper implements ExceptionMapper<PluginBulkheadException> {
+	private final static Logger logger = LoggerFactory.getLogger(PluginBulkheadExceptionMapper.class);
+
+	@Override
+	public Response toResponse(PluginBulkheadException exception) {
+		Response.Status status = exception instanceof PluginBulkheadFullException ? Response.Status.TOO_MANY_REQUESTS : Response.Status.SERVICE_UNAVAILABLE;
+		logger.error(exception.getMessage() + " Returning \"" + status.getReasonPhrase() + "\" status code.");
+		return Response.status(status)
+					   .entity("Service is busy, please try again later.")
+					   .type(MediaType.TEXT_PLAIN_TYPE)
+					   .header(HttpHeaders.RETRY_AFTER, exception.retryAfterSeconds())
+					   .build();
+	}
+}
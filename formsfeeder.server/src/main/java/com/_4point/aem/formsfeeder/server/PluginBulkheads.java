@@ -0,0 +1,331 @@
+package com._4point.aem.formsfeeder.server;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Limits the number of requests that each plugin can be processing at once, so that one slow plugin (for example, one
+ * that is waiting on AEM) cannot tie up every servlet thread and starve the other plugins.
+ *
+ * Each plugin (FeedConsumer) has its own bulkhead: a maximum number of concurrent invocations and a bounded queue of
+ * requests that wait (for up to max-wait milliseconds) for one of those invocations to finish.  A request that arrives
+ * when the queue is already full is rejected immediately with a "Too Many Requests" response.  A request that waits in
+ * the queue for too long is rejected with a "Service Unavailable" response.  Both responses include a Retry-After header
+ * based on how long the plugin's recent invocations have taken.
+ *
+ * The limits are configured in the application.properties file, either for all plugins or for an individual plugin
+ * (by plugin name):
+ *
+ * {@code
+ * formsfeeder.plugins.bulkhead.default.max-concurrent=0
+ * formsfeeder.plugins.bulkhead.default.max-queued=0
+ * formsfeeder.plugins.bulkhead.default.max-wait=1000
+ * formsfeeder.plugins.bulkhead.RenderPdf.max-concurrent=20
+ * formsfeeder.plugins.bulkhead.RenderPdf.max-queued=40
+ * formsfeeder.plugins.bulkhead.RenderPdf.max-wait=5000
+ * }
+ *
+ * A max-concurrent of 0 (the default) means that the plugin's invocations are not limited.  A request never waits past its
+ * own deadline (see PluginTimeouts), even if that is sooner than max-wait.
+ *
+ */
+@Component
+public class PluginBulkheads {
+	private final static Logger logger = LoggerFactory.getLogger(PluginBulkheads.class);
+
+	public static final String FF_BULKHEAD_PROPERTY_PREFIX = "formsfeeder.plugins.bulkhead.";
+	public static final String DEFAULT_BULKHEAD_NAME = "default";
+	public static final String MAX_CONCURRENT_SUFFIX = ".max-concurrent";
+	public static final String MAX_QUEUED_SUFFIX = ".max-queued";
+	public static final String MAX_WAIT_SUFFIX = ".max-wait";
+
+	private static final int LATENCY_WINDOW = 20;		// Invocations in the average latency used for Retry-After
+
+	private final Environment environment;
+	private final int defaultMaxConcurrent;
+	private final int defaultMaxQueued;
+	private final long defaultMaxWaitMs;
+	private final ConcurrentMap<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+	public PluginBulkheads(Environment environment) {
+		this.environment = environment;
+		this.defaultMaxConcurrent = environment.getProperty(propertyName(DEFAULT_BULKHEAD_NAME, MAX_CONCURRENT_SUFFIX), Integer.class, 0);
+		this.defaultMaxQueued = environment.getProperty(propertyName(DEFAULT_BULKHEAD_NAME, MAX_QUEUED_SUFFIX), Integer.class, 0);
+		this.defaultMaxWaitMs = environment.getProperty(propertyName(DEFAULT_BULKHEAD_NAME, MAX_WAIT_SUFFIX), Long.class, 1_000L);
+	}
+
+	/**
+	 * Obtains permission to invoke a plugin, waiting in the plugin's queue if it is already running as many invocations as
+	 * it is allowed to.  The Permit must be released once the invocation is complete.
+	 *
+	 * @param pluginName	name of the plugin (FeedConsumer) being invoked
+	 * @return
+	 * @throws PluginBulkheadFullException if the plugin's queue is full
+	 * @throws PluginBulkheadTimeoutException if the request waited in the plugin's queue for too long
+	 */
+	public Permit acquire(String pluginName) {
+		return acquire(pluginName, Optional.empty());
+	}
+
+	/**
+	 * Obtains permission to invoke a plugin (see {@link #acquire(String)}), waiting in the plugin's queue for no longer
+	 * than the time remaining before the invocation's deadline.
+	 *
+	 * @param pluginName	name of the plugin (FeedConsumer) being invoked
+	 * @param remaining		time remaining before the invocation's deadline (empty if there is no deadline)
+	 * @return
+	 * @throws PluginBulkheadFullException if the plugin's queue is full
+	 * @throws PluginBulkheadTimeoutException if the request waited in the plugin's queue for too long
+	 */
+	public Permit acquire(String pluginName, Optional<Duration> remaining) {
+		Bulkhead bulkhead = bulkheads.computeIfAbsent(pluginName, this::createBulkhead);
+		long waitMs = remaining.map(r->Math.min(bulkhead.maxWaitMs, Math.max(0, r.toMillis()))).orElse(bulkhead.maxWaitMs);
+		return bulkhead.acquire(waitMs);
+	}
+
+	/**
+	 * Snapshot of each plugin's bulkhead.  Only plugins that have been invoked are included.
+	 *
+	 * @return
+	 */
+	public List<Stats> stats() {
+		return bulkheads.values().stream().map(Bulkhead::stats).sorted((a, b)->a.name().compareTo(b.name())).collect(Collectors.toList());
+	}
+
+	private Bulkhead createBulkhead(String pluginName) {
+		int maxConcurrent = environment.getProperty(propertyName(pluginName, MAX_CONCURRENT_SUFFIX), Integer.class, defaultMaxConcurrent);
+		int maxQueued = environment.getProperty(propertyName(pluginName, MAX_QUEUED_SUFFIX), Integer.class, defaultMaxQueued);
+		long maxWaitMs = environment.getProperty(propertyName(pluginName, MAX_WAIT_SUFFIX), Long.class, defaultMaxWaitMs);
+		if (maxConcurrent > 0) {
+			logger.info("Plugin '" + pluginName + "' is limited to " + maxConcurrent + " concurrent invocations with " + maxQueued + " queued for up to " + maxWaitMs + "ms.");
+		}
+		return new Bulkhead(pluginName, maxConcurrent, Math.max(0, maxQueued), maxWaitMs);
+	}
+
+	private static String propertyName(String pluginName, String suffix) {
+		return FF_BULKHEAD_PROPERTY_PREFIX + pluginName + suffix;
+	}
+
+	private static class Bulkhead {
+		private final String name;
+		private final int maxConcurrent;
+		private final int maxQueued;
+		private final long maxWaitMs;
+		private final Semaphore semaphore;		// null if the plugin is not limited
+		private final AtomicInteger active = new AtomicInteger();
+		private final AtomicInteger queued = new AtomicInteger();
+		private final AtomicLong rejected = new AtomicLong();
+		private final AtomicLong timedOut = new AtomicLong();
+		private volatile double averageLatencyMs = 0;
+
+		private Bulkhead(String name, int maxConcurrent, int maxQueued, long maxWaitMs) {
+			this.name = name;
+			this.maxConcurrent = maxConcurrent;
+			this.maxQueued = maxQueued;
+			this.maxWaitMs = maxWaitMs;
+			this.semaphore = maxConcurrent > 0 ? new Semaphore(maxConcurrent, true) : null;
+		}
+
+		private Permit acquire(long waitMs) {
+			if (semaphore != null) {
+				try {
+					// Unlike tryAcquire(), a timed tryAcquire() honours the semaphore's fairness, so a new request cannot
+					// barge ahead of the requests that are already waiting in the queue.
+					if (!semaphore.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+						waitInQueue(waitMs);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					timedOut.incrementAndGet();
+					throw new PluginBulkheadTimeoutException(name, waitMs, retryAfterSeconds());
+				}
+			}
+			active.incrementAndGet();
+			return new Permit(this);
+		}
+
+		private void waitInQueue(long waitMs) throws InterruptedException {
+			if (queued.incrementAndGet() > maxQueued) {
+				queued.decrementAndGet();
+				rejected.incrementAndGet();
+				throw new PluginBulkheadFullException(name, retryAfterSeconds());
+			}
+			try {
+				if (!semaphore.tryAcquire(waitMs, TimeUnit.MILLISECONDS)) {
+					timedOut.incrementAndGet();
+					throw new PluginBulkheadTimeoutException(name, waitMs, retryAfterSeconds());
+				}
+			} finally {
+				queued.decrementAndGet();
+			}
+		}
+
+		private void released(long durationNanos) {
+			active.decrementAndGet();
+			if (semaphore != null) {
+				semaphore.release();
+			}
+			double latencyMs = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+			double average = averageLatencyMs;		// Lost updates are harmless, this is only an estimate.
+			averageLatencyMs = average == 0 ? latencyMs : average + (latencyMs - average) / LATENCY_WINDOW;
+		}
+
+		/**
+		 * Estimates how long it will take for the requests that are already queued to be processed.
+		 */
+		private long retryAfterSeconds() {
+			double waitMs = averageLatencyMs * (queued.get() + 1) / Math.max(1, maxConcurrent);
+			return Math.max(1, (long)Math.ceil(waitMs / 1000));
+		}
+
+		private Stats stats() {
+			return new Stats(name, maxConcurrent, maxQueued, active.get(), queued.get(), rejected.get(), timedOut.get());
+		}
+	}
+
+	/**
+	 * Permission to make one plugin invocation.
+	 */
+	public static final class Permit implements AutoCloseable {
+		private final Bulkhead bulkhead;
+		private final long startNanos = System.nanoTime();
+		private final AtomicBoolean done = new AtomicBoolean();
+
+		private Permit(Bulkhead bulkhead) {
+			this.bulkhead = bulkhead;
+		}
+
+		/**
+		 * The invocation is complete.
+		 */
+		@Override
+		public void close() {
+			if (done.compareAndSet(false, true)) {
+				bulkhead.released(System.nanoTime() - startNanos);
+			}
+		}
+	}
+
+	/**
+	 * Thrown when a plugin invocation is not allowed by the plugin's bulkhead.
+	 */
+	@SuppressWarnings("serial")
+	public static abstract class PluginBulkheadException extends RuntimeException {
+		private final long retryAfterSeconds;
+
+		private PluginBulkheadException(String message, long retryAfterSeconds) {
+			super(message);
+			this.retryAfterSeconds = retryAfterSeconds;
+		}
+
+		public long retryAfterSeconds() {
+			return retryAfterSeconds;
+		}
+	}
+
+	/**
+	 * Thrown when a plugin's queue is full.
+	 */
+	@SuppressWarnings("serial")
+	public static class PluginBulkheadFullException extends PluginBulkheadException {
+		public PluginBulkheadFullException(String pluginName, long retryAfterSeconds) {
+			super("Too many requests waiting on plugin '" + pluginName + "', retry after " + retryAfterSeconds + " seconds.", retryAfterSeconds);
+		}
+	}
+
+	/**
+	 * Thrown when a request waits in a plugin's queue for too long.
+	 */
+	@SuppressWarnings("serial")
+	public static class PluginBulkheadTimeoutException extends PluginBulkheadException {
+		public PluginBulkheadTimeoutException(String pluginName, long maxWaitMs, long retryAfterSeconds) {
+			super("Request waited more than " + maxWaitMs + "ms for plugin '" + pluginName + "', retry after " + retryAfterSeconds + " seconds.", retryAfterSeconds);
+		}
+	}
+
+	/**
+	 * Snapshot of a plugin's bulkhead.
+	 */
+	public static class Stats {
+		private final String name;
+		private final int maxConcurrent;
+		private final int maxQueued;
+		private final int active;
+		private final int queued;
+		private final long rejected;
+		private final long timedOut;
+
+		private Stats(String name, int maxConcurrent, int maxQueued, int active, int queued, long rejected, long timedOut) {
+			this.name = name;
+			this.maxConcurrent = maxConcurrent;
+			this.maxQueued = maxQueued;
+			this.active = active;
+			this.queued = queued;
+			this.rejected = rejected;
+			this.timedOut = timedOut;
+		}
+
+		public String name() {
+			return name;
+		}
+
+		/**
+		 * Maximum number of concurrent invocations (0 if not limited).
+		 */
+		public int maxConcurrent() {
+			return maxConcurrent;
+		}
+
+		public int maxQueued() {
+			return maxQueued;
+		}
+
+		/**
+		 * Number of invocations currently running.
+		 */
+		public int active() {
+			return active;
+		}
+
+		/**
+		 * Number of requests currently waiting in the queue.
+		 */
+		public int queued() {
+			return queued;
+		}
+
+		/**
+		 * Number of requests rejected because the queue was full.
+		 */
+		public long rejected() {
+			return rejected;
+		}
+
+		/**
+		 * Number of requests rejected because they waited in the queue for too long.
+		 */
+		public long timedOut() {
+			return timedOut;
+		}
+
+		@Override
+		public String toString() {
+			return "PluginBulkheads.Stats [name=" + name + ", maxConcurrent=" + maxConcurrent + ", maxQueued=" + maxQueued + ", active="
+					+ active + ", queued=" + queued + ", rejected=" + rejected + ", timedOut=" + timedOut + "]";
+		}
+	}
+}
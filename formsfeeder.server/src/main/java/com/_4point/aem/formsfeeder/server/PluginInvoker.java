@@ -2,11 +2,14 @@ package com._4point.aem.formsfeeder.server;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.Duration;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.Callable;
 import java.util.function.BiFunction;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -23,6 +26,8 @@ import com._4point.aem.formsfeeder.core.api.FeedConsumer.FeedConsumerInternalErr
 import com._4point.aem.formsfeeder.core.datasource.DataSource;
 import com._4point.aem.formsfeeder.core.datasource.DataSourceList;
 import com._4point.aem.formsfeeder.core.datasource.StandardMimeTypes;
+import com._4point.aem.formsfeeder.server.PluginTimeouts.PluginTimeoutException;
+import com._4point.aem.formsfeeder.server.PluginTimeouts.PluginTimeoutRejectedException;
 import com._4point.aem.formsfeeder.server.pf4j.FeedConsumers;
 import com._4point.aem.formsfeeder.server.support.CorrelationId;
 import com._4point.aem.formsfeeder.server.support.DataSourceListJaxRsUtils;
@@ -38,16 +43,28 @@ public class PluginInvoker {
 	// names provided by user applications.  Users should avoid using this prefix.
 	public static final String FORMSFEEDER_PREFIX = "formsfeeder:";
 	private static final String REDIRECT_LOCATION_DS_NAME = FORMSFEEDER_PREFIX + "RedirectLocation";
+	// DataSource that tells a plugin how many milliseconds it has left before its invocation times out.  It is only
+	// present when the invocation has a timeout.
+	public static final String TIME_BUDGET_DS_NAME = FORMSFEEDER_PREFIX + "TimeBudget";
+
+	// Header that a client can use to supply a timeout (in milliseconds) for a plugin invocation.
+	public static final String REQUEST_TIMEOUT_HDR = "x-request-timeout";
 
 	// Path that all plug-in services reside under.
 	/* package */ static final String API_V1_PATH = "/api/v1";
 
 	private final FeedConsumers feedConsumers;
+	private final PluginBulkheads pluginBulkheads;
+	private final PluginTimeouts pluginTimeouts;
+	private final AemCallGuard aemCallGuard;
 
 	@Autowired
-	public PluginInvoker(FeedConsumers feedConsumers) {
+	public PluginInvoker(FeedConsumers feedConsumers, PluginBulkheads pluginBulkheads, PluginTimeouts pluginTimeouts, AemCallGuard aemCallGuard) {
 		super();
 		this.feedConsumers = feedConsumers;
+		this.pluginBulkheads = pluginBulkheads;
+		this.pluginTimeouts = pluginTimeouts;
+		this.aemCallGuard = aemCallGuard;
 	}
 
 	/**
@@ -69,6 +86,20 @@ public class PluginInvoker {
 	 * We just pass back the exception message.  Full details (and a stack trace) are written to the log.  That's where
 	 * someone should go in order to get a fuller picture of what the issue is.
 	 * 
+	 * The invocation is subject to the plugin's bulkhead (see PluginBulkheads), so this may wait for other invocations of the
+	 * same plugin to finish.  If the plugin is too busy, a PluginBulkheadException is thrown (which the
+	 * PluginBulkheadExceptionMapper turns into a "Too Many Requests" or "Service Unavailable" response).
+	 * 
+	 * The invocation is also subject to the plugin's timeout (see PluginTimeouts).  Time spent waiting on the bulkhead counts
+	 * against the timeout.  If the plugin does not finish in time, a PluginTimeoutException is thrown (which the
+	 * PluginTimeoutExceptionMapper turns into a "Gateway Timeout" response).  If there is no thread available to run the
+	 * plugin with a timeout, a PluginTimeoutRejectedException is thrown (which the PluginTimeoutRejectedExceptionMapper
+	 * turns into a "Service Unavailable" response).
+	 * 
+	 * Plugins that call AEM directly are also subject to the AemCallGuard (see AemCallGuard.guardsPlugin()).  If AEM is
+	 * not accepting calls, an AemUnavailableException is thrown (which the AemUnavailableExceptionMapper turns into a
+	 * "Service Unavailable" response).
+	 * 
 	 * @param consumerName  Name of the consumer (i.e. plugin) to invoke.
 	 * @param dataSourceList  DataSources that are the inputs to the consumer (i.e plugin)
 	 * @param logger   Logger for method to log to.
@@ -78,13 +109,60 @@ public class PluginInvoker {
 	 * @throws PluginInvokerBadRequestException 
 	 */
 	protected final DataSourceList invokePlugin(final String consumerName, final DataSourceList dataSourceList, final Logger logger) throws PluginInvokerPluginNotFoundException, PluginInvokerInternalErrorException, PluginInvokerBadRequestException {
-		Optional<FeedConsumer> optConsumer = feedConsumers.consumer(consumerName);
+		return invokePlugin(consumerName, dataSourceList, Optional.empty(), logger);
+	}
+
+	/**
+	 * Determines if there is a plug-in associated with an Url provided and, if so, then invokes that plug-in with a timeout
+	 * supplied by the client.  See {@link #invokePlugin(String, DataSourceList, Logger)}.
+	 * 
+	 * @param consumerName  Name of the consumer (i.e. plugin) to invoke.
+	 * @param dataSourceList  DataSources that are the inputs to the consumer (i.e plugin)
+	 * @param clientTimeout  Timeout supplied by the client (see {@link #requestTimeout(String)}).
+	 * @param logger   Logger for method to log to.
+	 * @return
+	 * @throws PluginInvokerPluginNotFoundException 
+	 * @throws PluginInvokerInternalErrorException 
+	 * @throws PluginInvokerBadRequestException 
+	 */
+	protected final DataSourceList invokePlugin(final String consumerName, final DataSourceList dataSourceList, final Optional<Duration> clientTimeout, final Logger logger) throws PluginInvokerPluginNotFoundException, PluginInvokerInternalErrorException, PluginInvokerBadRequestException {
+		Optional<FeedConsumers.ConsumerLease> optConsumer = feedConsumers.consumer(consumerName);
 		if (optConsumer.isEmpty()) {
 			String msg = "Resource '" + API_V1_PATH + "/" + consumerName + "' does not exist.";
 			throw new PluginInvokerPluginNotFoundException(msg);
 		} else {
+			final FeedConsumers.ConsumerLease consumer = optConsumer.get();
+			final Optional<Duration> timeout = pluginTimeouts.timeout(consumerName, clientTimeout);
+			final long startNanos = System.nanoTime();
+			final PluginBulkheads.Permit permit;
+			try {
+				permit = pluginBulkheads.acquire(consumerName, timeout);	// Don't wait past the deadline.
+			} catch (RuntimeException e) {
+				consumer.close();
+				throw e;
+			}
+			final AemCall aemCall;
+			try {
+				aemCall = aemCallGuard.guardsPlugin(consumerName) ? new AemCall(aemCallGuard.acquire()) : AemCall.UNGUARDED;
+			} catch (RuntimeException e) {
+				permit.close();
+				consumer.close();
+				throw e;
+			}
+			final Optional<Duration> remaining = timeout.map(t->t.minusNanos(System.nanoTime() - startNanos));
+			final DataSourceList inputs = withTimeBudget(dataSourceList, remaining);
 			try {
-				return invokeConsumer(dataSourceList, optConsumer.get(), logger);
+				// The permit and the lease are only released once the plugin has finished, even if the invocation times out.
+				return pluginTimeouts.invoke(consumerName, remaining, ()->aemCall.invoke(()->invokeConsumer(inputs, consumer, logger)), ()->{
+					aemCall.finished();
+					permit.close();
+					consumer.close();
+				});
+			} catch (PluginTimeoutException e) {
+				aemCall.timedOut();
+				throw e;
+			} catch (PluginTimeoutRejectedException e) {
+				throw e;
 			} catch (FeedConsumerInternalErrorException e) {
 				String msg = String.format("Plugin processor experienced an Internal Server Error. (%s)", e.getMessage());
 				throw new PluginInvokerInternalErrorException(msg, e);
@@ -118,6 +196,93 @@ public class PluginInvoker {
 		return accept;
 	}
 	
+	/**
+	 * Tracks the outcome of an invocation of a plugin that calls AEM so that it can be reported to the AemCallGuard.
+	 */
+	private static class AemCall {
+		private static final AemCall UNGUARDED = new AemCall(null);
+
+		private final AemCallGuard.Permit permit;		// null if the plugin is not guarded
+		private volatile Boolean failed = null;			// null until the plugin has run
+
+		private AemCall(AemCallGuard.Permit permit) {
+			this.permit = permit;
+		}
+
+		private DataSourceList invoke(Callable<DataSourceList> invocation) throws Exception {
+			try {
+				DataSourceList result = invocation.call();
+				failed = false;
+				return result;
+			} catch (FeedConsumerBadRequestException e) {
+				failed = false;		// A bad request is not AEM's fault.
+				throw e;
+			} catch (Exception e) {
+				failed = true;
+				throw e;
+			}
+		}
+
+		// The plugin has finished (or will never run).
+		private void finished() {
+			if (permit != null) {
+				Boolean outcome = failed;
+				if (outcome == null) {
+					permit.released();
+				} else {
+					permit.completed(outcome);
+				}
+			}
+		}
+
+		// The caller has given up on the plugin.  A plugin that does not stop when it is interrupted must not hold on to
+		// the permit, so the call is counted as failed now.
+		private void timedOut() {
+			if (permit != null) {
+				permit.completed(true);
+			}
+		}
+	}
+
+	/**
+	 * Replaces any time budget DataSource that was supplied by the client with the actual time remaining for the invocation.
+	 * 
+	 * @param dataSourceList  DataSources that are the inputs to the consumer (i.e plugin)
+	 * @param remaining  time remaining for the invocation, or empty if it does not time out
+	 * @return
+	 */
+	private static final DataSourceList withTimeBudget(final DataSourceList dataSourceList, final Optional<Duration> remaining) {
+		if (remaining.isEmpty() && dataSourceList.list().stream().noneMatch(DataSourceList.byName(TIME_BUDGET_DS_NAME))) {
+			return dataSourceList;
+		}
+		DataSourceList.Builder builder = DataSourceList.builder()
+				.addDataSources(dataSourceList.list().stream().filter(DataSourceList.byName(TIME_BUDGET_DS_NAME).negate()).collect(Collectors.toList()));
+		remaining.ifPresent(r->builder.add(TIME_BUDGET_DS_NAME, Math.max(0, r.toMillis())));
+		return builder.build();
+	}
+
+	/**
+	 * Converts the value of a REQUEST_TIMEOUT_HDR header into a timeout.
+	 * 
+	 * @param requestTimeoutHdr  value of the header (may be null)
+	 * @return the timeout, or empty if there was no header
+	 * @throws PluginInvokerBadRequestException if the header is not a positive number of milliseconds
+	 */
+	public static final Optional<Duration> requestTimeout(final String requestTimeoutHdr) throws PluginInvokerBadRequestException {
+		if (requestTimeoutHdr == null || requestTimeoutHdr.isBlank()) {
+			return Optional.empty();
+		}
+		try {
+			long timeoutMs = Long.parseLong(requestTimeoutHdr.strip());
+			if (timeoutMs > 0) {
+				return Optional.of(Duration.ofMillis(timeoutMs));
+			}
+		} catch (NumberFormatException e) {
+			// Fall through to the exception below.
+		}
+		throw new PluginInvokerBadRequestException("Invalid " + REQUEST_TIMEOUT_HDR + " header value '" + requestTimeoutHdr + "', it must be a positive number of milliseconds.");
+	}
+
 	// The next few public static routines are helper functions that are typically used by classes that utilize the
 	// pluginInvoker object.
 	
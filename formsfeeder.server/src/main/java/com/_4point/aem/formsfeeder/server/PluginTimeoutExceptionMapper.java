@@ -0,0 +1,29 @@
+package com._4point.aem.formsfeeder.server;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com._4point.aem.formsfeeder.server.PluginTimeouts.PluginTimeoutException;
+
+/**
+ * Turns plugin invocations that did not finish before their deadline into "Gateway Timeout" responses.
+ *
+ */
+@Provider
+public class PluginTimeoutExceptionMapper implements ExceptionMapper<PluginTimeoutException> {
+	private final static Logger logger = LoggerFactory.getLogger(PluginTimeoutExceptionMapper.class);
+
+	@Override
+	public Response toResponse(PluginTimeoutException exception) {
+		logger.error(exception.getMessage() + " Returning \"Gateway Timeout\" status code.");
+		return Response.status(Response.Status.GATEWAY_TIMEOUT)
+					   .entity(exception.getMessage())
+					   .type(MediaType.TEXT_PLAIN_TYPE)
+					   .build();
+	}
+}
@@ -0,0 +1,31 @@
+package com._4point.aem.formsfeeder.server;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com._4point.aem.formsfeeder.server.PluginTimeouts.PluginTimeoutRejectedException;
+
+/**
+ * Turns plugin invocations that PluginTimeouts had no thread to run into "Service Unavailable" responses.
+ *
+ */
+@Provider
+public class PluginTimeoutRejectedExceptionMapper implements ExceptionMapper<PluginTimeoutRejectedException> {
+	private final static Logger logger = LoggerFactory.getLogger(PluginTimeoutRejectedExceptionMapper.class);
+
+	@Override
+	public Response toResponse(PluginTimeoutRejectedException exception) {
+		logger.error(exception.getMessage() + " Returning \"Service Unavailable\" status code.");
+		return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+					   .entity("Service is busy, please try again later.")
+					   .type(MediaType.TEXT_PLAIN_TYPE)
+					   .header(HttpHeaders.RETRY_AFTER, 1)
+					   .build();
+	}
+}
@@ -0,0 +1,343 @@
+package com._4point.aem.formsfeeder.server;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Enforces a deadline on plugin invocations so that a plugin that hangs does not hold on to the caller's thread (and
+ * connection) indefinitely.
+ *
+ * Each plugin (FeedConsumer) can have a default timeout.  A client can also supply a (shorter) timeout of its own (see
+ * PluginInvoker.REQUEST_TIMEOUT_HDR).  When an invocation has a timeout, it is run on a separate thread while the
+ * caller waits for it.  If the timeout expires, the plugin's thread is interrupted and the caller gets a
+ * PluginTimeoutException (which is returned as a "Gateway Timeout" response).  A plugin that ignores the interrupt
+ * keeps running in the background and is counted as overdue until it finishes.  Invocations without a timeout are run on
+ * the caller's thread, as before.
+ *
+ * The timeouts (in milliseconds) are configured in the application.properties file, either for all plugins or for an
+ * individual plugin (by plugin name):
+ *
+ * {@code
+ * formsfeeder.plugins.timeout.default=0
+ * formsfeeder.plugins.timeout.RenderPdf=60000
+ * }
+ *
+ * A timeout of 0 (the default) means that the plugin's invocations only time out if the client supplies a timeout.
+ *
+ * The threads that run invocations with a timeout come from a pool of at most max-threads threads:
+ *
+ * {@code
+ * formsfeeder.plugins.timeout.max-threads=200
+ * }
+ *
+ * Invocations are not queued for a thread (a queue would use up their time), so an invocation that arrives when all of
+ * the threads are busy is rejected with a PluginTimeoutRejectedException (which is returned as a "Service Unavailable"
+ * response).  Threads that are overdue (i.e. running plugins that ignored the interrupt) still count against the limit.
+ * Use PluginBulkheads to limit how many invocations of each plugin can be running at once.
+ *
+ */
+@Component
+public class PluginTimeouts implements Closeable {
+	private final static Logger logger = LoggerFactory.getLogger(PluginTimeouts.class);
+
+	public static final String FF_TIMEOUT_PROPERTY_PREFIX = "formsfeeder.plugins.timeout.";
+	public static final String DEFAULT_TIMEOUT_NAME = "default";
+	public static final String FF_MAX_THREADS_PROPERTY = FF_TIMEOUT_PROPERTY_PREFIX + "max-threads";
+
+	private final Environment environment;
+	private final long defaultTimeoutMs;
+	private final ConcurrentMap<String, PluginTimeout> timeouts = new ConcurrentHashMap<>();
+	private final AtomicInteger threadCount = new AtomicInteger();
+	private final ExecutorService executor;
+
+	public PluginTimeouts(Environment environment) {
+		this.environment = environment;
+		this.defaultTimeoutMs = environment.getProperty(FF_TIMEOUT_PROPERTY_PREFIX + DEFAULT_TIMEOUT_NAME, Long.class, 0L);
+		int maxThreads = environment.getProperty(FF_MAX_THREADS_PROPERTY, Integer.class, 200);
+		this.executor = new ThreadPoolExecutor(0, maxThreads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r->{
+			Thread thread = new Thread(r, "plugin-invoker-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Determines the timeout for an invocation of a plugin.  This is the shorter of the plugin's timeout and the timeout
+	 * provided by the client.
+	 *
+	 * @param pluginName	name of the plugin (FeedConsumer) being invoked
+	 * @param clientTimeout	timeout provided by the client (if any)
+	 * @return the timeout, or empty if the invocation should not time out
+	 */
+	public Optional<Duration> timeout(String pluginName, Optional<Duration> clientTimeout) {
+		long pluginTimeoutMs = pluginTimeout(pluginName).timeoutMs;
+		Optional<Duration> pluginTimeout = pluginTimeoutMs > 0 ? Optional.of(Duration.ofMillis(pluginTimeoutMs)) : Optional.empty();
+		if (clientTimeout.isEmpty()) {
+			return pluginTimeout;
+		}
+		return pluginTimeout.isEmpty() || clientTimeout.get().compareTo(pluginTimeout.get()) < 0 ? clientTimeout : pluginTimeout;
+	}
+
+	/**
+	 * Invokes a plugin, interrupting it if it has not finished within the time remaining.
+	 *
+	 * The completion is run exactly once, when the invocation finishes or when it is certain that it will never run.  This
+	 * allows resources (like a PluginBulkheads.Permit) to be held until a plugin that has timed out has actually stopped.
+	 *
+	 * @param pluginName	name of the plugin (FeedConsumer) being invoked
+	 * @param remaining		time remaining for the invocation, or empty if it should not time out
+	 * @param invocation	the plugin invocation
+	 * @param completion	run once the invocation has finished (or will never be run)
+	 * @return the result of the invocation
+	 * @throws PluginTimeoutException if the invocation did not finish in time
+	 * @throws PluginTimeoutRejectedException if there was no thread available to run the invocation
+	 * @throws Exception whatever the invocation throws
+	 */
+	public <T> T invoke(String pluginName, Optional<Duration> remaining, Callable<T> invocation, Runnable completion) throws Exception {
+		Invocation<T> task = new Invocation<>(pluginTimeout(pluginName), invocation, completion);
+		if (remaining.isEmpty()) {
+			return task.call();		// No deadline, so just run it on this thread.
+		}
+		long remainingNanos = remaining.get().toNanos();
+		if (remainingNanos <= 0) {
+			task.abandon();
+			throw task.timedOut();
+		}
+		Future<T> future;
+		try {
+			future = executor.submit(task);
+		} catch (RejectedExecutionException e) {
+			task.abandon();		// It will never run.
+			throw task.rejected();
+		}
+		try {
+			return future.get(remainingNanos, TimeUnit.NANOSECONDS);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw cause instanceof Exception ? (Exception)cause : e;
+		} catch (TimeoutException e) {
+			if (task.abandon()) {
+				future.cancel(true);
+				throw task.timedOut();
+			}
+			return future.get();	// It finished just as the deadline was reached.
+		} catch (InterruptedException e) {
+			task.abandon();
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw e;
+		}
+	}
+
+	/**
+	 * Snapshot of each plugin's timeout statistics.  Only plugins that have been invoked are included.
+	 *
+	 * @return
+	 */
+	public List<Stats> stats() {
+		return timeouts.values().stream().map(PluginTimeout::stats).sorted((a, b)->a.name().compareTo(b.name())).collect(Collectors.toList());
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	private PluginTimeout pluginTimeout(String pluginName) {
+		return timeouts.computeIfAbsent(pluginName, name->new PluginTimeout(name, environment.getProperty(FF_TIMEOUT_PROPERTY_PREFIX + name, Long.class, defaultTimeoutMs)));
+	}
+
+	private static class PluginTimeout {
+		private final String name;
+		private final long timeoutMs;
+		private final AtomicLong timedOut = new AtomicLong();
+		private final AtomicLong rejected = new AtomicLong();
+		private final AtomicInteger overdue = new AtomicInteger();
+
+		private PluginTimeout(String name, long timeoutMs) {
+			this.name = name;
+			this.timeoutMs = timeoutMs;
+		}
+
+		private Stats stats() {
+			return new Stats(name, timeoutMs, timedOut.get(), rejected.get(), overdue.get());
+		}
+	}
+
+	/**
+	 * One plugin invocation.  Whichever of the invocation and the caller gets to it first decides whether it runs.
+	 */
+	private static class Invocation<T> implements Callable<T> {
+		private enum State { PENDING, RUNNING, ABANDONED, DONE }
+
+		private final PluginTimeout pluginTimeout;
+		private final Callable<T> invocation;
+		private final Runnable completion;
+		private final AtomicBoolean completed = new AtomicBoolean();
+		private final AtomicReference<State> state = new AtomicReference<>(State.PENDING);
+		private final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+
+		private Invocation(PluginTimeout pluginTimeout, Callable<T> invocation, Runnable completion) {
+			this.pluginTimeout = pluginTimeout;
+			this.invocation = invocation;
+			this.completion = completion;
+		}
+
+		@Override
+		public T call() throws Exception {
+			if (!state.compareAndSet(State.PENDING, State.RUNNING)) {
+				return null;	// The caller has given up on it already.
+			}
+			Thread thread = Thread.currentThread();
+			ClassLoader originalClassLoader = thread.getContextClassLoader();
+			thread.setContextClassLoader(contextClassLoader);
+			try {
+				return invocation.call();
+			} finally {
+				thread.setContextClassLoader(originalClassLoader);
+				if (!state.compareAndSet(State.RUNNING, State.DONE)) {
+					pluginTimeout.overdue.decrementAndGet();	// The caller gave up on it while it was running.
+					logger.warn("Plugin '" + pluginTimeout.name + "' finished after its invocation timed out.");
+				}
+				complete();
+			}
+		}
+
+		/**
+		 * The caller is giving up on the invocation.
+		 *
+		 * @return false if the invocation has already finished
+		 */
+		private boolean abandon() {
+			if (state.compareAndSet(State.PENDING, State.ABANDONED)) {
+				complete();		// It will never run.
+				return true;
+			}
+			pluginTimeout.overdue.incrementAndGet();
+			if (state.compareAndSet(State.RUNNING, State.ABANDONED)) {
+				return true;
+			}
+			pluginTimeout.overdue.decrementAndGet();
+			return false;
+		}
+
+		private PluginTimeoutException timedOut() {
+			pluginTimeout.timedOut.incrementAndGet();
+			return new PluginTimeoutException(pluginTimeout.name);
+		}
+
+		private PluginTimeoutRejectedException rejected() {
+			pluginTimeout.rejected.incrementAndGet();
+			logger.warn("No thread available to run plugin '" + pluginTimeout.name + "'.");
+			return new PluginTimeoutRejectedException(pluginTimeout.name);
+		}
+
+		private void complete() {
+			if (completed.compareAndSet(false, true)) {
+				completion.run();
+			}
+		}
+	}
+
+	/**
+	 * Thrown when a plugin invocation does not finish before its deadline.
+	 */
+	@SuppressWarnings("serial")
+	public static class PluginTimeoutException extends RuntimeException {
+		public PluginTimeoutException(String pluginName) {
+			super("Plugin '" + pluginName + "' did not finish before its deadline.");
+		}
+	}
+
+	/**
+	 * Thrown when there is no thread available to run a plugin invocation that has a timeout.
+	 */
+	@SuppressWarnings("serial")
+	public static class PluginTimeoutRejectedException extends RuntimeException {
+		public PluginTimeoutRejectedException(String pluginName) {
+			super("No thread available to run plugin '" + pluginName + "'.");
+		}
+	}
+
+	/**
+	 * Snapshot of a plugin's timeout statistics.
+	 */
+	public static class Stats {
+		private final String name;
+		private final long timeoutMs;
+		private final long timedOut;
+		private final long rejected;
+		private final int overdue;
+
+		private Stats(String name, long timeoutMs, long timedOut, long rejected, int overdue) {
+			this.name = name;
+			this.timeoutMs = timeoutMs;
+			this.timedOut = timedOut;
+			this.rejected = rejected;
+			this.overdue = overdue;
+		}
+
+		public String name() {
+			return name;
+		}
+
+		/**
+		 * The plugin's timeout in milliseconds (0 if it only times out when the client supplies a timeout).
+		 */
+		public long timeoutMs() {
+			return timeoutMs;
+		}
+
+		/**
+		 * Number of invocations that have timed out.
+		 */
+		public long timedOut() {
+			return timedOut;
+		}
+
+		/**
+		 * Number of invocations that were rejected because there was no thread available to run them.
+		 */
+		public long rejected() {
+			return rejected;
+		}
+
+		/**
+		 * Number of invocations that have timed out but are still running.
+		 */
+		public int overdue() {
+			return overdue;
+		}
+
+		@Override
+		public String toString() {
+			return "PluginTimeouts.Stats [name=" + name + ", timeoutMs=" + timeoutMs + ", timedOut=" + timedOut + ", rejected=" + rejected + ", overdue=" + overdue + "]";
+		}
+	}
+}
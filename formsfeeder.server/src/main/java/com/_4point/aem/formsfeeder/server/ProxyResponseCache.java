@@ -0,0 +1,818 @@
+package com._4point.aem.formsfeeder.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.UnaryOperator;
+import java.util.zip.GZIPOutputStream;
+import java.util.stream.Collectors;
+
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.jersey.client.ClientProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Cache for GET requests that are proxied to AEM (client libraries, static form assets, etc.).
+ *
+ * Responses are held in a bounded LRU memory cache.  If a disk directory is configured, entries evicted from memory are
+ * written to disk (which is also bounded) and brought back into memory the next time they are requested.
+ *
+ * AEM's Cache-Control, Expires, ETag and Last-Modified headers are honoured.  Responses marked no-store or private are
+ * never cached.  Once a cached response is stale, it is revalidated with a conditional request (If-None-Match and/or
+ * If-Modified-Since) and the cached body is reused if AEM responds with "Not Modified".  Browsers that send a matching
+ * If-None-Match (or If-Modified-Since) receive a "Not Modified" response from the cache.
+ *
+ * Entries are keyed by path only.  The proxy does not forward the browser's request headers to AEM, so AEM's response
+ * cannot vary by them.
+ *
+ * A response body can be rewritten before it is cached (see Rewrite).  The rewritten body is computed once per version
+ * of the AEM response and is served with a strong ETag (a hash of the rewritten body) instead of AEM's validators.  A
+ * gzip compressed copy is also precomputed and served to browsers that accept it.
+ *
+ * The cache can be configured in the application.properties file:
+ *
+ * {@code
+ * formsfeeder.aem.proxy-cache.enabled=true
+ * formsfeeder.aem.proxy-cache.max-memory-size=67108864
+ * formsfeeder.aem.proxy-cache.max-entry-size=8388608
+ * formsfeeder.aem.proxy-cache.max-heuristic-age=300000
+ * formsfeeder.aem.proxy-cache.disk-directory=
+ * formsfeeder.aem.proxy-cache.max-disk-size=536870912
+ * }
+ *
+ * (sizes are in bytes, times are in milliseconds).  The disk tier is only used if disk-directory is set.
+ *
+ */
+@Component
+public class ProxyResponseCache implements Closeable {
+	private final static Logger logger = LoggerFactory.getLogger(ProxyResponseCache.class);
+
+	public static final String FF_ENABLED_PROPERTY = "formsfeeder.aem.proxy-cache.enabled";
+	public static final String FF_MAX_MEMORY_SIZE_PROPERTY = "formsfeeder.aem.proxy-cache.max-memory-size";
+	public static final String FF_MAX_ENTRY_SIZE_PROPERTY = "formsfeeder.aem.proxy-cache.max-entry-size";
+	public static final String FF_MAX_HEURISTIC_AGE_PROPERTY = "formsfeeder.aem.proxy-cache.max-heuristic-age";
+	public static final String FF_DISK_DIRECTORY_PROPERTY = "formsfeeder.aem.proxy-cache.disk-directory";
+	public static final String FF_MAX_DISK_SIZE_PROPERTY = "formsfeeder.aem.proxy-cache.max-disk-size";
+
+	// Headers that describe the connection rather than the response, plus cookies (which must never be shared between users).
+	private static final Set<String> UNCACHED_HEADERS = caseInsensitiveSet("Connection", "Keep-Alive", "Transfer-Encoding", "TE", "Trailer", "Upgrade",
+																		   "Proxy-Authenticate", "Proxy-Authorization", "Content-Length", "Set-Cookie", "Date", "Age");
+	// Headers that are sent with a "Not Modified" response (the ETag is added by evaluatePreconditions()).
+	private static final Set<String> NOT_MODIFIED_HEADERS = caseInsensitiveSet("Cache-Control", "Content-Location", "Expires", "Last-Modified", "Vary");
+	// Headers from AEM that describe the original body rather than a rewritten one (the proxy sets its own Vary).
+	private static final Set<String> REWRITTEN_BODY_HEADERS = caseInsensitiveSet("ETag", "Last-Modified", "Content-MD5", "Content-Encoding", "Vary");
+	private static final String GZIP_ENCODING = "gzip";
+
+	private final AemHttpClient aemHttpClient;
+	private final AemBackendPool aemBackendPool;
+	private final boolean enabled;
+	private final long maxMemorySize;
+	private final long maxEntrySize;
+	private final long maxHeuristicAge;
+	private final Path diskDirectory;
+	private final long maxDiskSize;
+
+	// Both maps are in access order (i.e. LRU order), access to them is synchronized on this object.
+	private final LinkedHashMap<String, CachedResponse> memoryEntries = new LinkedHashMap<>(16, 0.75f, true);
+	private final LinkedHashMap<String, CachedResponse> diskEntries = new LinkedHashMap<>(16, 0.75f, true);
+	private long memorySize = 0;
+	private long diskSize = 0;
+	private long diskFileCount = 0;
+	private long hits = 0;
+	private long revalidations = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	public ProxyResponseCache(AemHttpClient aemHttpClient, AemBackendPool aemBackendPool, Environment environment) {
+		this.aemHttpClient = aemHttpClient;
+		this.aemBackendPool = aemBackendPool;
+		this.enabled = environment.getProperty(FF_ENABLED_PROPERTY, Boolean.class, Boolean.TRUE);
+		this.maxMemorySize = environment.getProperty(FF_MAX_MEMORY_SIZE_PROPERTY, Long.class, 64L * 1024 * 1024);
+		this.maxEntrySize = environment.getProperty(FF_MAX_ENTRY_SIZE_PROPERTY, Long.class, 8L * 1024 * 1024);
+		this.maxHeuristicAge = environment.getProperty(FF_MAX_HEURISTIC_AGE_PROPERTY, Long.class, 300_000L);
+		this.maxDiskSize = environment.getProperty(FF_MAX_DISK_SIZE_PROPERTY, Long.class, 512L * 1024 * 1024);
+		String directory = environment.getProperty(FF_DISK_DIRECTORY_PROPERTY);
+		this.diskDirectory = (enabled && directory != null && !directory.isBlank()) ? createDiskDirectory(Paths.get(directory)) : null;
+	}
+
+	private static Path createDiskDirectory(Path parent) {
+		try {
+			Files.createDirectories(parent);
+			return Files.createTempDirectory(parent, "ff-proxy-cache");
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to create proxy cache directory in '" + parent + "'.", e);
+		}
+	}
+
+	/**
+	 * Returns the response for a GET request to AEM, from the cache if possible.
+	 *
+	 * @param path	path on the AEM server
+	 * @param request	the incoming request (used to evaluate the browser's conditional headers)
+	 * @param readTimeoutMs	maximum time to wait for data from AEM
+	 * @return
+	 */
+	public Response get(String path, Request request, int readTimeoutMs) {
+		return get(path, request, null, null, readTimeoutMs);
+	}
+
+	/**
+	 * Returns the response for a GET request to AEM, from the cache if possible.
+	 *
+	 * If a rewrite is provided, it is applied to the body that is returned by AEM before it is cached, so cached entries
+	 * hold the rewritten body.
+	 *
+	 * @param path	path on the AEM server
+	 * @param request	the incoming request (used to evaluate the browser's conditional headers)
+	 * @param httpHeaders	the incoming request's headers (used to choose the content encoding, may be null)
+	 * @param rewrite	rewrite that is applied to the response body (or null for none)
+	 * @param readTimeoutMs	maximum time to wait for data from AEM
+	 * @return
+	 */
+	public Response get(String path, Request request, HttpHeaders httpHeaders, Rewrite rewrite, int readTimeoutMs) {
+		String key = rewrite == null ? path : path + "#" + rewrite.id;
+		UnaryOperator<InputStream> bodyTransformer = rewrite == null ? null : rewrite.transformer;
+		CachedResponse cached = enabled ? lookup(key) : null;
+		long now = System.currentTimeMillis();
+		if (cached != null && cached.isFresh(now)) {
+			logger.debug("Returning cached GET response for '{}'.", key);
+			countHit();
+			return respond(cached, request, httpHeaders);
+		}
+
+		Response result = aemBackendPool.hedgedCall(url->{
+			WebTarget webTarget = aemHttpClient.client().target(url).path(path).property(ClientProperties.READ_TIMEOUT, readTimeoutMs);
+			logger.debug("Proxying GET request for target '{}'.", webTarget.getUri());
+			Invocation.Builder builder = webTarget.request();
+			if (cached != null) {
+				if (cached.etag != null) {
+					builder.header(HttpHeaders.IF_NONE_MATCH, cached.etag);
+				}
+				if (cached.lastModified != null) {
+					builder.header(HttpHeaders.IF_MODIFIED_SINCE, cached.lastModified);
+				}
+			}
+			Response response = builder.get();
+			if (logger.isDebugEnabled()) {
+				response.getHeaders().forEach((h, l)->logger.debug("For " + webTarget.getUri().toString() + ", Header:" + h + "=" + l.stream().map(o->(String)o).collect(Collectors.joining("','", "'", "'"))));
+			}
+			return response;
+		});
+
+		if (cached != null && result.getStatus() == Response.Status.NOT_MODIFIED.getStatusCode()) {
+			result.close();
+			CachedResponse refreshed = cached.revalidated(result.getStringHeaders(), now, maxHeuristicAge);
+			logger.debug("Cached GET response for '{}' revalidated.", key);
+			countRevalidation();
+			store(key, refreshed);
+			return respond(refreshed, request, httpHeaders);
+		}
+
+		countMiss();
+		MultivaluedMap<String, String> headers = cacheableHeaders(result.getStringHeaders());
+		long lifetime = freshnessLifetime(headers, now, maxHeuristicAge);
+		int contentLength = result.getLength();
+		boolean cacheable = enabled
+							&& result.getStatus() == Response.Status.OK.getStatusCode()
+							&& lifetime != NOT_STORABLE
+							&& (lifetime > 0 || headers.containsKey(HttpHeaders.ETAG) || headers.containsKey(HttpHeaders.LAST_MODIFIED))
+							&& contentLength <= maxEntrySize;
+		if (!cacheable) {
+			if (cached != null) {
+				remove(key);
+			}
+			return passThrough(result, bodyTransformer);
+		}
+
+		InputStream body = transform(result.readEntity(InputStream.class), bodyTransformer);
+		byte[] bytes = readAtMost(body, maxEntrySize + 1);
+		if (bytes.length > maxEntrySize) {
+			logger.debug("GET response for '{}' is too large to cache.", path);
+			return Response.fromResponse(result)
+						   .header("Transfer-Encoding", null)
+						   .header(HttpHeaders.CONTENT_LENGTH, null)
+						   .entity(new SequenceInputStream(new ByteArrayInputStream(bytes), body))
+						   .build();
+		}
+		closeQuietly(body);
+		CachedResponse entry = rewrite == null ? new CachedResponse(result.getStatus(), headers, bytes, now + lifetime)
+											   : CachedResponse.rewritten(result.getStatus(), headers, bytes, now + lifetime);
+		store(key, entry);
+		return respond(entry, request, httpHeaders);
+	}
+
+	/**
+	 * Current cache statistics.
+	 *
+	 * @return
+	 */
+	public synchronized Stats stats() {
+		return new Stats(hits, revalidations, misses, evictions, memoryEntries.size(), memorySize, diskEntries.size(), diskSize);
+	}
+
+	/**
+	 * Removes all entries from the cache.
+	 */
+	public void clear() {
+		List<CachedResponse> removed;
+		synchronized (this) {
+			removed = new ArrayList<>(diskEntries.values());
+			memoryEntries.clear();
+			diskEntries.clear();
+			memorySize = 0;
+			diskSize = 0;
+		}
+		removed.forEach(CachedResponse::deleteFile);
+	}
+
+	@Override
+	public void close() throws IOException {
+		clear();
+		if (diskDirectory != null) {
+			Files.deleteIfExists(diskDirectory);
+		}
+	}
+
+	private Response passThrough(Response result, UnaryOperator<InputStream> bodyTransformer) {
+		logger.debug("Returning uncached GET response, status code={}.", result.getStatus());
+		Response.ResponseBuilder builder = Response.fromResponse(result)
+												   .header("Transfer-Encoding", null)			// Remove the Transfer-Encoding header
+												   .entity(transform(result.readEntity(InputStream.class), bodyTransformer));
+		if (bodyTransformer != null) {
+			builder.header(HttpHeaders.CONTENT_LENGTH, null);	// The transformer may change the length
+		}
+		return builder.build();
+	}
+
+	private static InputStream transform(InputStream body, UnaryOperator<InputStream> bodyTransformer) {
+		return bodyTransformer != null ? bodyTransformer.apply(body) : body;
+	}
+
+	private Response respond(CachedResponse cached, Request request, HttpHeaders httpHeaders) {
+		boolean gzip = cached.gzipBody != null && acceptsGzip(httpHeaders);
+		EntityTag entityTag = cached.entityTag(gzip);
+		Date lastModified = cached.isRewritten() ? null : cached.lastModifiedDate();	// Rewritten bodies are only validated by their ETag
+		Response.ResponseBuilder notModified = entityTag != null && lastModified != null ? request.evaluatePreconditions(lastModified, entityTag)
+											 : entityTag != null ? request.evaluatePreconditions(entityTag)
+											 : lastModified != null ? request.evaluatePreconditions(lastModified)
+											 : null;
+		if (notModified != null) {
+			logger.debug("Returning \"Not Modified\" response from cache.");
+			cached.headers.forEach((name, values)->{
+				if (NOT_MODIFIED_HEADERS.contains(name) && cached.isServed(name)) {
+					values.forEach(value->notModified.header(name, value));
+				}
+			});
+			if (cached.gzipBody != null) {
+				notModified.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+			}
+			return notModified.build();
+		}
+		Response.ResponseBuilder builder = Response.status(cached.status).entity(gzip ? cached.gzipBody : cached.body());
+		cached.headers.forEach((name, values)->{
+			if (cached.isServed(name)) {
+				values.forEach(value->builder.header(name, value));
+			}
+		});
+		if (cached.isRewritten()) {
+			builder.tag(entityTag);
+		}
+		if (cached.gzipBody != null) {
+			builder.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		}
+		if (gzip) {
+			builder.encoding(GZIP_ENCODING);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Determines whether the browser accepts gzip encoded responses.
+	 *
+	 * @param httpHeaders
+	 * @return
+	 */
+	/* package */ static boolean acceptsGzip(HttpHeaders httpHeaders) {
+		String acceptEncoding = httpHeaders != null ? httpHeaders.getHeaderString(HttpHeaders.ACCEPT_ENCODING) : null;
+		if (acceptEncoding == null) {
+			return false;
+		}
+		Boolean wildcard = null;
+		for (String coding : acceptEncoding.split(",")) {
+			String[] parts = coding.split(";");
+			String name = parts[0].trim();
+			boolean accepted = qualityOf(parts) > 0;
+			if (name.equalsIgnoreCase(GZIP_ENCODING)) {
+				return accepted;	// An explicit entry takes precedence over a wildcard
+			} else if (name.equals("*")) {
+				wildcard = accepted;
+			}
+		}
+		return Boolean.TRUE.equals(wildcard);
+	}
+
+	private static double qualityOf(String[] codingParts) {
+		for (int i = 1; i < codingParts.length; i++) {
+			String param = codingParts[i].trim();
+			if (param.startsWith("q=")) {
+				try {
+					return Double.parseDouble(param.substring(2).trim());
+				} catch (NumberFormatException e) {
+					return 0;
+				}
+			}
+		}
+		return 1;
+	}
+
+	private CachedResponse lookup(String path) {
+		CachedResponse onDisk;
+		synchronized (this) {
+			CachedResponse cached = memoryEntries.get(path);
+			if (cached != null) {
+				return cached;
+			}
+			onDisk = diskEntries.remove(path);
+			if (onDisk == null) {
+				return null;
+			}
+			diskSize -= onDisk.size;
+		}
+		// Bring it back into memory.
+		CachedResponse loaded = onDisk.loadFromDisk();
+		if (loaded != null) {
+			store(path, loaded);
+		}
+		return loaded;
+	}
+
+	private void store(String path, CachedResponse entry) {
+		List<CachedResponse> evicted = new ArrayList<>();
+		List<Map.Entry<String, CachedResponse>> demoted = new ArrayList<>();
+		synchronized (this) {
+			CachedResponse oldDisk = diskEntries.remove(path);
+			if (oldDisk != null) {
+				diskSize -= oldDisk.size;
+				evicted.add(oldDisk);
+			}
+			putInMemory(path, entry);
+			Iterator<Map.Entry<String, CachedResponse>> lru = memoryEntries.entrySet().iterator();
+			while (memorySize > maxMemorySize && lru.hasNext()) {
+				Map.Entry<String, CachedResponse> eldest = lru.next();
+				lru.remove();
+				memorySize -= eldest.getValue().size;
+				if (diskDirectory != null) {
+					demoted.add(eldest);
+				} else {
+					evictions++;
+				}
+			}
+		}
+		demoted.forEach(e->storeOnDisk(e.getKey(), e.getValue(), evicted));
+		evicted.forEach(CachedResponse::deleteFile);
+	}
+
+	private void storeOnDisk(String path, CachedResponse entry, List<CachedResponse> evicted) {
+		CachedResponse onDisk = entry.writeToDisk(diskDirectory.resolve(nextDiskFileName()));
+		synchronized (this) {
+			if (onDisk == null || memoryEntries.containsKey(path)) {	// Couldn't be written or has been replaced in the meantime
+				evictions++;
+				if (onDisk != null) {
+					evicted.add(onDisk);
+				}
+				return;
+			}
+			CachedResponse old = diskEntries.put(path, onDisk);
+			if (old != null) {
+				diskSize -= old.size;
+				evicted.add(old);
+			}
+			diskSize += onDisk.size;
+			Iterator<CachedResponse> lru = diskEntries.values().iterator();
+			while (diskSize > maxDiskSize && lru.hasNext()) {
+				CachedResponse eldest = lru.next();
+				lru.remove();
+				diskSize -= eldest.size;
+				evictions++;
+				evicted.add(eldest);
+			}
+		}
+	}
+
+	private synchronized String nextDiskFileName() {
+		return "entry-" + (diskFileCount++) + ".bin";
+	}
+
+	private void putInMemory(String path, CachedResponse entry) {
+		CachedResponse old = memoryEntries.put(path, entry);
+		if (old != null) {
+			memorySize -= old.size;
+		}
+		memorySize += entry.size;
+	}
+
+	private synchronized void remove(String path) {
+		CachedResponse old = memoryEntries.remove(path);
+		if (old != null) {
+			memorySize -= old.size;
+		}
+		old = diskEntries.remove(path);
+		if (old != null) {
+			diskSize -= old.size;
+			old.deleteFile();
+		}
+	}
+
+	private synchronized void countHit() {
+		hits++;
+	}
+
+	private synchronized void countRevalidation() {
+		revalidations++;
+	}
+
+	private synchronized void countMiss() {
+		misses++;
+	}
+
+	private static final long NOT_STORABLE = -1;
+
+	/**
+	 * Determines how long a response is fresh for (in milliseconds), based on its Cache-Control, Expires and
+	 * Last-Modified headers (in that order of precedence).
+	 *
+	 * @param headers
+	 * @param now
+	 * @param maxHeuristicAge	upper limit on the freshness lifetime that is calculated from the Last-Modified header.
+	 * @return the freshness lifetime or NOT_STORABLE if the response must not be cached.
+	 */
+	/* package */ static long freshnessLifetime(MultivaluedMap<String, String> headers, long now, long maxHeuristicAge) {
+		List<String> vary = headers.get(HttpHeaders.VARY);
+		if (vary != null && vary.stream().anyMatch(v->v.trim().equals("*"))) {
+			return NOT_STORABLE;
+		}
+		List<String> cacheControlHeaders = headers.get(HttpHeaders.CACHE_CONTROL);
+		if (cacheControlHeaders != null) {
+			CacheControl cacheControl;
+			try {
+				cacheControl = CacheControl.valueOf(String.join(", ", cacheControlHeaders));
+			} catch (IllegalArgumentException e) {
+				return NOT_STORABLE;
+			}
+			if (cacheControl.isNoStore() || cacheControl.isPrivate()) {
+				return NOT_STORABLE;
+			}
+			if (cacheControl.isNoCache()) {
+				return 0;
+			}
+			if (cacheControl.getSMaxAge() >= 0) {
+				return cacheControl.getSMaxAge() * 1000L;
+			}
+			if (cacheControl.getMaxAge() >= 0) {
+				return cacheControl.getMaxAge() * 1000L;
+			}
+		}
+		long date = parseDate(headers.getFirst(HttpHeaders.DATE), now);
+		String expires = headers.getFirst(HttpHeaders.EXPIRES);
+		if (expires != null) {
+			return Math.max(0, parseDate(expires, 0) - date);	// An invalid date means "already expired"
+		}
+		long lastModified = parseDate(headers.getFirst(HttpHeaders.LAST_MODIFIED), date);
+		return Math.min(Math.max(0, (date - lastModified) / 10), maxHeuristicAge);
+	}
+
+	private static long parseDate(String date, long defaultValue) {
+		if (date == null) {
+			return defaultValue;
+		}
+		try {
+			return ZonedDateTime.parse(date.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+		} catch (DateTimeParseException e) {
+			return defaultValue;
+		}
+	}
+
+	private static MultivaluedMap<String, String> cacheableHeaders(MultivaluedMap<String, String> headers) {
+		MultivaluedMap<String, String> result = new MultivaluedHashMap<>();
+		headers.forEach((name, values)->{
+			if (!UNCACHED_HEADERS.contains(name)) {
+				result.put(name, new ArrayList<>(values));
+			}
+		});
+		return result;
+	}
+
+	private static byte[] readAtMost(InputStream in, long maxBytes) {
+		try {
+			return in.readNBytes((int)Math.min(maxBytes, Integer.MAX_VALUE - 8));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Error while reading response from AEM.", e);
+		}
+	}
+
+	private static void closeQuietly(InputStream in) {
+		try {
+			in.close();
+		} catch (IOException e) {
+			logger.warn("Error while closing response from AEM (" + e.getMessage() + ").");
+		}
+	}
+
+	private static Set<String> caseInsensitiveSet(String... values) {
+		Set<String> result = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+		result.addAll(List.of(values));
+		return result;
+	}
+
+	/**
+	 * A cached response.  The body is either held in memory or in a file.
+	 */
+	private static class CachedResponse {
+		private final int status;
+		private final MultivaluedMap<String, String> headers;	// Headers from AEM
+		private final byte[] body;		// null if the body is on disk
+		private final byte[] gzipBody;	// null if there is no compressed copy or the body is on disk
+		private final Path file;		// null if the body is in memory
+		private final String contentHash;	// Hash of a rewritten body, null if the body has not been rewritten
+		private final long size;
+		private final long expiresAt;
+		private final String etag;			// AEM's validators, used when revalidating with AEM
+		private final String lastModified;
+
+		private CachedResponse(int status, MultivaluedMap<String, String> headers, byte[] body, long expiresAt) {
+			this(status, headers, body, null, null, null, body.length, expiresAt);
+		}
+
+		private CachedResponse(int status, MultivaluedMap<String, String> headers, byte[] body, byte[] gzipBody, Path file, String contentHash, long size, long expiresAt) {
+			this.status = status;
+			this.headers = headers;
+			this.body = body;
+			this.gzipBody = gzipBody;
+			this.file = file;
+			this.contentHash = contentHash;
+			this.size = size;
+			this.expiresAt = expiresAt;
+			this.etag = headers.getFirst(HttpHeaders.ETAG);
+			this.lastModified = headers.getFirst(HttpHeaders.LAST_MODIFIED);
+		}
+
+		/**
+		 * Creates an entry for a rewritten body, along with its hash and compressed copy.
+		 */
+		private static CachedResponse rewritten(int status, MultivaluedMap<String, String> headers, byte[] body, long expiresAt) {
+			byte[] gzipBody = gzip(body);
+			return new CachedResponse(status, headers, body, gzipBody, null, sha256(body), body.length + (gzipBody != null ? gzipBody.length : 0), expiresAt);
+		}
+
+		private boolean isRewritten() {
+			return contentHash != null;
+		}
+
+		/**
+		 * Determines whether one of AEM's headers is sent to the browser.
+		 */
+		private boolean isServed(String headerName) {
+			return !isRewritten() || !REWRITTEN_BODY_HEADERS.contains(headerName);
+		}
+
+		private boolean isFresh(long now) {
+			return now < expiresAt;
+		}
+
+		private byte[] body() {
+			return body;
+		}
+
+		/**
+		 * Creates a new entry with the headers from a "Not Modified" response merged in and a new expiry time.
+		 */
+		private CachedResponse revalidated(MultivaluedMap<String, String> notModifiedHeaders, long now, long maxHeuristicAge) {
+			MultivaluedMap<String, String> merged = new MultivaluedHashMap<>(headers);
+			cacheableHeaders(notModifiedHeaders).forEach(merged::put);
+			long lifetime = freshnessLifetime(merged, now, maxHeuristicAge);
+			return new CachedResponse(status, merged, body, gzipBody, file, contentHash, size, now + Math.max(0, lifetime));
+		}
+
+		private EntityTag entityTag(boolean gzip) {
+			if (isRewritten()) {
+				return new EntityTag(gzip ? contentHash + "-" + GZIP_ENCODING : contentHash);	// Each encoding needs its own strong ETag
+			}
+			if (etag == null) {
+				return null;
+			}
+			try {
+				return EntityTag.valueOf(etag);
+			} catch (IllegalArgumentException e) {
+				return null;	// Not a valid entity tag, so the browser's If-None-Match header can't be evaluated.
+			}
+		}
+
+		private Date lastModifiedDate() {
+			long date = parseDate(lastModified, -1);
+			return date < 0 ? null : new Date(date);
+		}
+
+		private CachedResponse writeToDisk(Path target) {
+			try {
+				Files.write(target, body);
+				if (gzipBody != null) {
+					Files.write(gzipFile(target), gzipBody);
+				}
+				return new CachedResponse(status, headers, null, null, target, contentHash, size, expiresAt);
+			} catch (IOException e) {
+				logger.warn("Unable to write proxy cache entry to '" + target + "' (" + e.getMessage() + ").");
+				return null;
+			}
+		}
+
+		private CachedResponse loadFromDisk() {
+			try {
+				byte[] bytes = Files.readAllBytes(file);
+				Path gzipFile = gzipFile(file);
+				byte[] gzipBytes = Files.exists(gzipFile) ? Files.readAllBytes(gzipFile) : null;
+				deleteFile();
+				return new CachedResponse(status, headers, bytes, gzipBytes, null, contentHash, size, expiresAt);
+			} catch (IOException e) {
+				logger.warn("Unable to read proxy cache entry from '" + file + "' (" + e.getMessage() + ").");
+				deleteFile();
+				return null;
+			}
+		}
+
+		private void deleteFile() {
+			if (file != null) {
+				try {
+					Files.deleteIfExists(file);
+					Files.deleteIfExists(gzipFile(file));
+				} catch (IOException e) {
+					logger.warn("Unable to delete proxy cache entry '" + file + "' (" + e.getMessage() + ").");
+				}
+			}
+		}
+	}
+
+	private static Path gzipFile(Path file) {
+		return file.resolveSibling(file.getFileName() + ".gz");
+	}
+
+	/**
+	 * Compresses a body.  Returns null if compressing it doesn't make it any smaller.
+	 */
+	private static byte[] gzip(byte[] body) {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+			gzip.write(body);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Error while compressing response body.", e);	// Should never happen with a ByteArrayOutputStream
+		}
+		return compressed.size() < body.length ? compressed.toByteArray() : null;
+	}
+
+	private static String sha256(byte[] body) {
+		try {
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(MessageDigest.getInstance("SHA-256").digest(body));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available.", e);	// Every JVM is required to support SHA-256
+		}
+	}
+
+	/**
+	 * A rewrite that is applied to a response body before it is cached.
+	 *
+	 * The id identifies the rewrite (for example, it includes any configuration values that the rewrite depends on) and
+	 * is part of the cache key, so if the id changes, the body is rewritten again.  The transformer must always produce
+	 * the same output for the same input.
+	 */
+	public static final class Rewrite {
+		private final String id;
+		private final UnaryOperator<InputStream> transformer;
+
+		public Rewrite(String id, UnaryOperator<InputStream> transformer) {
+			this.id = Objects.requireNonNull(id, "Rewrite id cannot be null.");
+			this.transformer = Objects.requireNonNull(transformer, "Rewrite transformer cannot be null.");
+		}
+
+		public String id() {
+			return id;
+		}
+	}
+
+	/**
+	 * Snapshot of the cache statistics.
+	 */
+	public static class Stats {
+		private final long hits;
+		private final long revalidations;
+		private final long misses;
+		private final long evictions;
+		private final int memoryEntries;
+		private final long memorySize;
+		private final int diskEntries;
+		private final long diskSize;
+
+		private Stats(long hits, long revalidations, long misses, long evictions, int memoryEntries, long memorySize, int diskEntries, long diskSize) {
+			this.hits = hits;
+			this.revalidations = revalidations;
+			this.misses = misses;
+			this.evictions = evictions;
+			this.memoryEntries = memoryEntries;
+			this.memorySize = memorySize;
+			this.diskEntries = diskEntries;
+			this.diskSize = diskSize;
+		}
+
+		/**
+		 * Number of requests answered from the cache without contacting AEM.
+		 */
+		public long hits() {
+			return hits;
+		}
+
+		/**
+		 * Number of requests answered from the cache after AEM confirmed that the cached response was still valid.
+		 */
+		public long revalidations() {
+			return revalidations;
+		}
+
+		/**
+		 * Number of requests where the response had to be retrieved from AEM.
+		 */
+		public long misses() {
+			return misses;
+		}
+
+		/**
+		 * Number of entries that have been dropped from the cache to make room for others.
+		 */
+		public long evictions() {
+			return evictions;
+		}
+
+		/**
+		 * Proportion of requests whose body came from the cache (including revalidated ones).
+		 */
+		public double hitRatio() {
+			long total = hits + revalidations + misses;
+			return total == 0 ? 0.0 : (double)(hits + revalidations) / total;
+		}
+
+		public int memoryEntries() {
+			return memoryEntries;
+		}
+
+		public long memorySize() {
+			return memorySize;
+		}
+
+		public int diskEntries() {
+			return diskEntries;
+		}
+
+		public long diskSize() {
+			return diskSize;
+		}
+
+		@Override
+		public String toString() {
+			return "ProxyResponseCache.Stats [hits=" + hits + ", revalidations=" + revalidations + ", misses=" + misses + ", evictions=" + evictions
+					+ ", hitRatio=" + hitRatio() + ", memoryEntries=" + memoryEntries + ", memorySize=" + memorySize + ", diskEntries=" + diskEntries
+					+ ", diskSize=" + diskSize + "]";
+		}
+	}
+}
@@ -1,155 +1,396 @@
-package com._4point.aem.formsfeeder.server;
-
-import java.io.FilterInputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayDeque;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
-import java.util.Objects;
-import java.util.Queue;
-
-// Simple FilterInputStream that can replace occurrences of bytes with something else. This is based on inbot-utils. (MIT licensed)
-
-public class ReplacingInputStream extends FilterInputStream {
-
-    // while matching, this is where the bytes go.
-    private final byte[] pattern;
-    private final List<Integer> replacement;
-    private Queue<Integer> queue = new ArrayDeque<>();
-
-    /**
-     * @param is input
-     * @return nested replacing stream that replaces \n\r (DOS) and \r (MAC) line endings with UNIX ones "\n".
-     */
-    public static InputStream newLineNormalizingInputStream(InputStream is) {
-        return new ReplacingInputStream(new ReplacingInputStream(is, "\r\n", "\n"), "\r", "\n");
-    }
-
-    /**
-     * Replace occurances of pattern in the input. Note: input is assumed to be UTF-8 encoded. If not the case use byte[] based pattern and replacement.
-     * @param in input
-     * @param pattern pattern to replace.
-     * @param replacement the replacement or null
-     */
-    public ReplacingInputStream(InputStream in, String pattern, String replacement) {
-        this(in,pattern.getBytes(StandardCharsets.UTF_8), replacement==null ? null : replacement.getBytes(StandardCharsets.UTF_8));
-    }
-    
-    /**
-     * Replace occurances of pattern in the output.
-     * @param in input
-     * @param pattern pattern to replace
-     * @param replacement the replacement or null
-     */
-    public ReplacingInputStream(InputStream out, byte[] pattern, byte[] replacement) {
-		super(out);
-		this.pattern = Arrays.copyOf(Objects.requireNonNull(pattern, "Pattern cannot be null."), pattern.length);
-		this.replacement = replacement == null ? Collections.emptyList() : Arrays.asList(toIntArray(replacement));
-	}
-
-    private Integer[] toIntArray(byte[] bytes) {
-    	Integer[] result = new Integer[bytes.length];
-    	for (int i = 0; i < bytes.length; i++) {
-    		result[i] = Integer.valueOf(bytes[i]);
-    	}
-    	return result;
-    }
-    
-	private int readCodepoint() throws IOException {
-		// Start of a match, we know the queue is empty at this point.
-		for (byte p : pattern) {
-			int b = super.read();
-			if (b == -1 || b != p) {
-				// No match, exit the for loop.
-				if (queue.isEmpty()) {
-					// We haven't added anything to the queue at this point, so just return the byte
-					return b;
-				} else {
-					// There's something in the queue, so add this byte to the end and return the first byte.
-					queue.add(b);
-					return queue.remove();
-				}
-			} else {
-				// There's a match, add it to the queue
-				queue.add(b);
-			}
-		}
-		// If we're reached the end of the pattern, then we must have matched the whole thing.
-		// replace the current queue with the replacement.
-		queue.clear();
-		if (replacement.isEmpty()) {
-			// We're removing the pattern, so we need to keep reading
-			return readCodepoint();
-		} else {
-			queue.addAll(replacement);
-			return queue.remove();
-		}
-	}
-
-    
-
-	@Override
-	public int read() throws IOException {
-		// Call the appropriate function based on the current state.
-		if (!queue.isEmpty()) {
-			return queue.remove();
-		} else {
-			return readCodepoint();
-		}
-	}
-
-	@Override
-	public int read(byte[] ba) throws IOException {
-		return this.read(ba, 0, ba.length);
-	}
-
-	@Override
-	public int read(byte[] ba, int off, int len) throws IOException {
-		for (int i = off; i < len; i++) {
-			int b = read();
-			if (b == -1) return i == 0 ? -1 : i;	// If we haven't read anything, return -1 otherwise, return the number of bytes we have read.
-			ba[i] = (byte)b;
-		}
-		return len;
-	}
-
-	@Override
-	public long skip(long n) throws IOException {
-		// remove any from queue
-		long q = Math.min(n, queue.size());
-		for (int i = 0; i < q; i++) {
-			queue.remove();
-		}
-		// If we've got any left over then skip otherwise return 
-		return n > q ? super.skip(n - q) : q;
-	}
-
-	@Override
-	public int available() throws IOException {
-		return super.available() + queue.size();
-	}
-
-	@Override
-	public void close() throws IOException {
-		queue.clear();
-		super.close();
-	}
-
-	@Override
-	public synchronized void mark(int readlimit) {
-	}
-
-	@Override
-	public synchronized void reset() throws IOException {
-	}
-
-	@Override
-	public boolean markSupported() {
-		return false;
-	}
-
-	
-}
+package com._4point.aem.formsfeeder.server;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+
+/**
+ * FilterInputStream that replaces occurrences of one or more byte patterns with something else.
+ *
+ * All the patterns are matched in a single pass using an Aho-Corasick automaton (see Replacements).  The input is read
+ * in blocks and the output is built up in a buffer, so there is no per-byte allocation.  Matches that span the
+ * boundaries between blocks are handled.
+ *
+ * Matching is leftmost-longest and non-overlapping: if two patterns match at different positions, the one that starts
+ * first is replaced, if two patterns match at the same position, the longest one is replaced.  Replaced text is not
+ * scanned again.
+ *
+ */
+public class ReplacingInputStream extends FilterInputStream {
+	private static final int READ_BUFFER_SIZE = 8192;
+	private static final Replacements NEWLINE_NORMALIZING_REPLACEMENTS = Replacements.builder().replace("\r\n", "\n").replace("\r", "\n").build();
+
+	private final Replacements replacements;
+	private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+
+	// Output buffer.  Bytes [outPos, releaseLimit) are ready to be returned to the reader, bytes [releaseLimit, limit)
+	// have been scanned but may still turn out to be part of a match.
+	private byte[] buf;
+	private int outPos = 0;
+	private int releaseLimit = 0;
+	private int limit = 0;
+
+	// Bytes that have already been scanned once but need to be scanned again because they followed a match.
+	private byte[] pushback;
+	private byte[] spare;
+	private int pbPos = 0;
+	private int pbLimit = 0;
+
+	private int state = 0;				// Current state of the automaton
+	private int candStart = -1;			// Start of the best match found so far (or -1 if there isn't one)
+	private int candLength = 0;
+	private int candReplacement = 0;
+	private boolean eof = false;
+
+	/**
+	 * @param is input
+	 * @return replacing stream that replaces \r\n (DOS) and \r (MAC) line endings with UNIX ones "\n".
+	 */
+	public static InputStream newLineNormalizingInputStream(InputStream is) {
+		return new ReplacingInputStream(is, NEWLINE_NORMALIZING_REPLACEMENTS);
+	}
+
+	/**
+	 * Replace occurances of pattern in the input. Note: input is assumed to be UTF-8 encoded. If not the case use byte[] based pattern and replacement.
+	 * @param in input
+	 * @param pattern pattern to replace.
+	 * @param replacement the replacement or null
+	 */
+	public ReplacingInputStream(InputStream in, String pattern, String replacement) {
+		this(in, Replacements.builder().replace(pattern, replacement).build());
+	}
+
+	/**
+	 * Replace occurances of pattern in the input.
+	 * @param in input
+	 * @param pattern pattern to replace
+	 * @param replacement the replacement or null
+	 */
+	public ReplacingInputStream(InputStream in, byte[] pattern, byte[] replacement) {
+		this(in, Replacements.builder().replace(pattern, replacement).build());
+	}
+
+	/**
+	 * Replace occurances of all the patterns in a set of replacements in the input.
+	 * @param in input
+	 * @param replacements patterns to replace and their replacements
+	 */
+	public ReplacingInputStream(InputStream in, Replacements replacements) {
+		super(in);
+		this.replacements = Objects.requireNonNull(replacements, "Replacements cannot be null.");
+		this.buf = new byte[READ_BUFFER_SIZE + replacements.maxPatternLength];
+		this.pushback = new byte[replacements.maxPatternLength + 1];
+		this.spare = new byte[replacements.maxPatternLength + 1];
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (outPos == releaseLimit && !fill()) {
+			return -1;
+		}
+		return buf[outPos++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] ba) throws IOException {
+		return this.read(ba, 0, ba.length);
+	}
+
+	@Override
+	public int read(byte[] ba, int off, int len) throws IOException {
+		Objects.checkFromIndexSize(off, len, ba.length);
+		if (len == 0) {
+			return 0;
+		}
+		if (outPos == releaseLimit && !fill()) {
+			return -1;
+		}
+		int count = Math.min(len, releaseLimit - outPos);
+		System.arraycopy(buf, outPos, ba, off, count);
+		outPos += count;
+		return count;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = 0;
+		while (skipped < n && (outPos < releaseLimit || fill())) {
+			int count = (int)Math.min(n - skipped, releaseLimit - outPos);
+			outPos += count;
+			skipped += count;
+		}
+		return skipped;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return releaseLimit - outPos;
+	}
+
+	@Override
+	public synchronized void mark(int readlimit) {
+	}
+
+	@Override
+	public synchronized void reset() throws IOException {
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	/**
+	 * Reads and scans input until there are bytes ready to be returned.
+	 *
+	 * @return false if the end of the input has been reached and all the output has been returned.
+	 * @throws IOException
+	 */
+	private boolean fill() throws IOException {
+		while (outPos == releaseLimit) {
+			compact();
+			if (eof) {
+				if (candStart >= 0) {
+					replaceCandidate();
+					drainPushback();
+				} else if (limit > outPos) {
+					// Nothing more is coming, so whatever is left can't be part of a match.
+					releaseLimit = limit;
+					state = 0;
+				} else {
+					return false;
+				}
+			} else {
+				int n = super.read(readBuffer, 0, readBuffer.length);
+				if (n < 0) {
+					eof = true;
+				}
+				for (int i = 0; i < n; i++) {
+					scan(readBuffer[i]);
+					drainPushback();
+				}
+			}
+		}
+		return true;
+	}
+
+	private void drainPushback() {
+		while (pbPos < pbLimit) {
+			scan(pushback[pbPos++]);
+		}
+	}
+
+	/**
+	 * Adds a byte to the output buffer and runs it through the automaton.
+	 *
+	 * @param b
+	 */
+	private void scan(byte b) {
+		if (limit == buf.length) {
+			buf = Arrays.copyOf(buf, buf.length * 2);
+		}
+		buf[limit++] = b;
+		state = replacements.next(state, b);
+		int matchLength = replacements.matchLength[state];
+		if (matchLength > 0) {
+			int matchStart = limit - matchLength;
+			if (candStart < 0 || matchStart <= candStart) {	// Leftmost, then longest
+				candStart = matchStart;
+				candLength = matchLength;
+				candReplacement = replacements.matchIndex[state];
+			}
+		}
+		int partialStart = limit - replacements.depth[state];	// Start of a match that may still be in progress
+		if (candStart < 0) {
+			releaseLimit = partialStart;
+		} else if (partialStart > candStart) {
+			// No longer match can start at or before the candidate, so the candidate is final.
+			replaceCandidate();
+		}
+	}
+
+	/**
+	 * Replaces the current candidate match in the output buffer with its replacement.  Any bytes that were scanned after
+	 * the match are queued up to be scanned again because they may be the start of another match.
+	 */
+	private void replaceCandidate() {
+		int tailStart = candStart + candLength;
+		int tailLength = limit - tailStart;
+		int remaining = pbLimit - pbPos;
+		if (spare.length < tailLength + remaining) {
+			spare = new byte[tailLength + remaining];
+		}
+		System.arraycopy(buf, tailStart, spare, 0, tailLength);
+		System.arraycopy(pushback, pbPos, spare, tailLength, remaining);
+		byte[] temp = pushback;
+		pushback = spare;
+		spare = temp;
+		pbPos = 0;
+		pbLimit = tailLength + remaining;
+
+		byte[] replacement = replacements.replacements[candReplacement];
+		limit = candStart;
+		if (limit + replacement.length > buf.length) {
+			buf = Arrays.copyOf(buf, Math.max(buf.length * 2, limit + replacement.length));
+		}
+		System.arraycopy(replacement, 0, buf, limit, replacement.length);
+		limit += replacement.length;
+		releaseLimit = limit;
+		state = 0;
+		candStart = -1;
+	}
+
+	/**
+	 * Moves any bytes that have not been returned to the start of the output buffer.
+	 */
+	private void compact() {
+		if (outPos > 0) {
+			System.arraycopy(buf, outPos, buf, 0, limit - outPos);
+			limit -= outPos;
+			releaseLimit -= outPos;
+			if (candStart >= 0) {
+				candStart -= outPos;
+			}
+			outPos = 0;
+		}
+	}
+
+	/**
+	 * A set of patterns and their replacements compiled into an Aho-Corasick automaton.
+	 *
+	 * Building the automaton is relatively expensive, so a Replacements object that will be used repeatedly should be
+	 * built once and reused.  It is immutable and can be shared between threads.
+	 *
+	 */
+	public static final class Replacements {
+		private final int[] transitions;	// 256 entries per state, the next state for each byte value
+		private final int[] depth;			// Length of the pattern prefix that each state represents
+		private final int[] matchLength;	// Length of the longest pattern that ends at each state (or 0 if none)
+		private final int[] matchIndex;		// Index of the replacement for that pattern
+		private final byte[][] replacements;
+		private final int maxPatternLength;
+
+		private Replacements(List<byte[]> patterns, List<byte[]> replacements) {
+			int maxStates = 1 + patterns.stream().mapToInt(p->p.length).sum();
+			int[] trie = new int[maxStates * 256];
+			Arrays.fill(trie, -1);
+			int[] depth = new int[maxStates];
+			int[] matchLength = new int[maxStates];
+			int[] matchIndex = new int[maxStates];
+
+			// Build the trie of patterns.
+			int numStates = 1;
+			for (int i = 0; i < patterns.size(); i++) {
+				int s = 0;
+				for (byte b : patterns.get(i)) {
+					int index = (s << 8) | (b & 0xff);
+					if (trie[index] < 0) {
+						depth[numStates] = depth[s] + 1;
+						trie[index] = numStates++;
+					}
+					s = trie[index];
+				}
+				if (matchLength[s] > 0) {
+					throw new IllegalArgumentException("Duplicate pattern '" + new String(patterns.get(i), StandardCharsets.UTF_8) + "'.");
+				}
+				matchLength[s] = depth[s];
+				matchIndex[s] = i;
+			}
+
+			// Turn the trie into a DFA by filling in the missing transitions using the failure links (breadth first, so
+			// that a state's failure state is always complete before the state itself is).
+			int[] fail = new int[numStates];
+			Queue<Integer> queue = new ArrayDeque<>();
+			for (int c = 0; c < 256; c++) {
+				int t = trie[c];
+				if (t < 0) {
+					trie[c] = 0;
+				} else {
+					queue.add(t);
+				}
+			}
+			while (!queue.isEmpty()) {
+				int s = queue.remove();
+				if (matchLength[s] == 0) {
+					// Not the end of a pattern itself, so inherit the longest pattern that is a suffix of this one.
+					matchLength[s] = matchLength[fail[s]];
+					matchIndex[s] = matchIndex[fail[s]];
+				}
+				for (int c = 0; c < 256; c++) {
+					int index = (s << 8) | c;
+					int t = trie[index];
+					int failNext = trie[(fail[s] << 8) | c];
+					if (t < 0) {
+						trie[index] = failNext;
+					} else {
+						fail[t] = failNext;
+						queue.add(t);
+					}
+				}
+			}
+
+			this.transitions = Arrays.copyOf(trie, numStates * 256);
+			this.depth = Arrays.copyOf(depth, numStates);
+			this.matchLength = Arrays.copyOf(matchLength, numStates);
+			this.matchIndex = Arrays.copyOf(matchIndex, numStates);
+			this.replacements = replacements.toArray(new byte[replacements.size()][]);
+			this.maxPatternLength = patterns.stream().mapToInt(p->p.length).max().orElse(0);
+		}
+
+		private int next(int state, byte b) {
+			return transitions[(state << 8) | (b & 0xff)];
+		}
+
+		public static Builder builder() {
+			return new Builder();
+		}
+
+		public static final class Builder {
+			private final List<byte[]> patterns = new ArrayList<>();
+			private final List<byte[]> replacements = new ArrayList<>();
+
+			private Builder() {
+			}
+
+			/**
+			 * Replace occurances of pattern. Note: input is assumed to be UTF-8 encoded. If not the case use byte[] based pattern and replacement.
+			 * @param pattern pattern to replace.
+			 * @param replacement the replacement or null
+			 * @return
+			 */
+			public Builder replace(String pattern, String replacement) {
+				return replace(Objects.requireNonNull(pattern, "Pattern cannot be null.").getBytes(StandardCharsets.UTF_8), replacement == null ? null : replacement.getBytes(StandardCharsets.UTF_8));
+			}
+
+			/**
+			 * Replace occurances of pattern.
+			 * @param pattern pattern to replace.
+			 * @param replacement the replacement or null
+			 * @return
+			 */
+			public Builder replace(byte[] pattern, byte[] replacement) {
+				Objects.requireNonNull(pattern, "Pattern cannot be null.");
+				if (pattern.length == 0) {
+					throw new IllegalArgumentException("Pattern cannot be empty.");
+				}
+				patterns.add(Arrays.copyOf(pattern, pattern.length));
+				replacements.add(replacement == null ? new byte[0] : Arrays.copyOf(replacement, replacement.length));
+				return this;
+			}
+
+			public Replacements build() {
+				if (patterns.isEmpty()) {
+					throw new IllegalStateException("At least one pattern must be provided.");
+				}
+				return new Replacements(patterns, replacements);
+			}
+		}
+	}
+}
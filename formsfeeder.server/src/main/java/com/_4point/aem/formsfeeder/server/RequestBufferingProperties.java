@@ -0,0 +1,87 @@
+package com._4point.aem.formsfeeder.server;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import com._4point.aem.formsfeeder.core.datasource.SpillableDataSourceFactory;
+
+/**
+ * Settings that control how incoming request bodies are buffered.
+ *
+ * Request bodies are held in memory up to the spill threshold.  Anything larger is written to a temporary file
+ * that is removed once the response has been sent.
+ *
+ */
+@Component
+public class RequestBufferingProperties implements EnvironmentAware {
+	private final static Logger logger = LoggerFactory.getLogger(RequestBufferingProperties.class);
+
+	public static final String FF_SPILL_THRESHOLD_PROPERTY = "formsfeeder.request.spill-threshold";
+	public static final String FF_SPILL_DIRECTORY_PROPERTY = "formsfeeder.request.spill-directory";
+	public static final String FF_JSON_MAX_DEPTH_PROPERTY = "formsfeeder.request.json.max-depth";
+	public static final String FF_JSON_MAX_SIZE_PROPERTY = "formsfeeder.request.json.max-size";
+
+	public static final int DEFAULT_JSON_MAX_DEPTH = 64;
+	public static final long DEFAULT_JSON_MAX_SIZE = 256L * 1024 * 1024;	// 256 MB
+
+	private Environment environment;
+
+	/**
+	 * Maximum number of bytes of each request body part that will be held in memory.
+	 *
+	 * @return
+	 */
+	public int spillThreshold() {
+		return Objects.requireNonNull(environment, "Environment has not been populated!").getProperty(FF_SPILL_THRESHOLD_PROPERTY, Integer.class, SpillableDataSourceFactory.DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * Directory where temporary files are written.  Returns null if the system default temporary directory should be used.
+	 *
+	 * @return
+	 */
+	public Path spillDirectory() {
+		String directory = Objects.requireNonNull(environment, "Environment has not been populated!").getProperty(FF_SPILL_DIRECTORY_PROPERTY);
+		return (directory == null || directory.isBlank()) ? null : Paths.get(directory);
+	}
+
+	/**
+	 * Maximum nesting depth of Json objects and arrays in a Json request body.
+	 *
+	 * @return
+	 */
+	public int jsonMaxDepth() {
+		return Objects.requireNonNull(environment, "Environment has not been populated!").getProperty(FF_JSON_MAX_DEPTH_PROPERTY, Integer.class, DEFAULT_JSON_MAX_DEPTH);
+	}
+
+	/**
+	 * Maximum number of bytes in a Json request body.
+	 *
+	 * @return
+	 */
+	public long jsonMaxSize() {
+		return Objects.requireNonNull(environment, "Environment has not been populated!").getProperty(FF_JSON_MAX_SIZE_PROPERTY, Long.class, DEFAULT_JSON_MAX_SIZE);
+	}
+
+	/**
+	 * Create a new factory for buffering the bodies of a single request.
+	 *
+	 * @return
+	 */
+	public SpillableDataSourceFactory newSpillableDataSourceFactory() {
+		return SpillableDataSourceFactory.create(spillThreshold(), spillDirectory());
+	}
+
+	@Override
+	public void setEnvironment(Environment environment) {
+		logger.debug("Initializing Environment Variable in RequestBufferingProperties. Environment is " + (environment == null ? "" : "not ") + "null.");
+		this.environment = environment;
+	}
+}
@@ -8,7 +8,6 @@ import java.util.List;
 import java.util.Map.Entry;
 import java.util.function.BiFunction;
 
-import javax.json.JsonObject;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
 import javax.ws.rs.HeaderParam;
@@ -21,16 +20,21 @@ import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 import org.glassfish.jersey.media.multipart.ContentDisposition;
 import org.glassfish.jersey.media.multipart.FormDataMultiPart;
+import org.glassfish.jersey.server.CloseableService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import com._4point.aem.formsfeeder.core.datasource.DataSourceList;
 import com._4point.aem.formsfeeder.core.datasource.DataSourceList.Builder;
+import com._4point.aem.formsfeeder.core.datasource.SpillableDataSourceFactory;
+import com._4point.aem.formsfeeder.core.datasource.serialization.BinaryDataSourceListDecoder;
+import com._4point.aem.formsfeeder.core.datasource.serialization.BinaryDataSourceListEncoder;
 import com._4point.aem.formsfeeder.server.PluginInvoker.PluginInvokerBadRequestException;
 import com._4point.aem.formsfeeder.server.PluginInvoker.PluginInvokerInternalErrorException;
 import com._4point.aem.formsfeeder.server.PluginInvoker.PluginInvokerPluginNotFoundException;
@@ -59,12 +63,16 @@ public class ServicesEndpoint {
 	// Data Source Name we use to pass in the bytes from a POST body that does not include name. 
 	private static final String FORMSFEEDER_BODY_BYTES_DS_NAME = PluginInvoker.FORMSFEEDER_PREFIX + "BodyBytes";
 
+	private static final MediaType BINARY_DSL_MEDIA_TYPE = MediaType.valueOf(BinaryDataSourceListEncoder.DSL_MIME_TYPE_STR);
+
 	private final PluginInvoker pluginInvoker;
+	private final RequestBufferingProperties requestBufferingProperties;
 
 	@Autowired
-	public ServicesEndpoint(PluginInvoker pluginInvoker) {
+	public ServicesEndpoint(PluginInvoker pluginInvoker, RequestBufferingProperties requestBufferingProperties) {
 		super();
 		this.pluginInvoker = pluginInvoker;
+		this.requestBufferingProperties = requestBufferingProperties;
 	}
 
 	/**
@@ -76,13 +84,14 @@ public class ServicesEndpoint {
 	 * 
 	 * @param remainder
 	 * @param correlationIdHdr
+	 * @param requestTimeoutHdr
 	 * @param uriInfo
 	 * @return
 	 */
 	@Path(PLUGIN_NAME_REMAINDER_PATH)
 	@Produces({MediaType.MULTIPART_FORM_DATA})
 	@GET
-    public Response invokeNoBodyMultipartFormResponse(@PathParam("remainder") String remainder, @Context HttpHeaders httpHeaders, @HeaderParam(CorrelationId.CORRELATION_ID_HDR) final String correlationIdHdr, @Context UriInfo uriInfo) {
+    public Response invokeNoBodyMultipartFormResponse(@PathParam("remainder") String remainder, @Context HttpHeaders httpHeaders, @HeaderParam(CorrelationId.CORRELATION_ID_HDR) final String correlationIdHdr, @HeaderParam(PluginInvoker.REQUEST_TIMEOUT_HDR) final String requestTimeoutHdr, @Context UriInfo uriInfo) {
 		final String correlationId = CorrelationId.generate(correlationIdHdr);
 		final ProcessingMetadataBuilder metadataBuilder = ProcessingMetadata.start(correlationId);
 		final Logger logger = FfLoggerFactory.wrap(correlationId, baseLogger);
@@ -90,7 +99,7 @@ public class ServicesEndpoint {
 		final DataSourceList dataSourceList1 = convertQueryParamsToDataSourceList(uriInfo.getQueryParameters().entrySet(), logger);
 		final DataSourceList dataSourceList2 = generateFormsFeederDataSourceList(correlationId);
 		final DataSourceList dataSourceList3 = convertRequestHeaderParamsToDataSourceList(httpHeaders, logger);
-		return logMetadata(invokePluginConvertResponse(remainder, DataSourceList.from(dataSourceList1, dataSourceList2, dataSourceList3), logger, correlationId, ServicesEndpoint::toMultipartFormData),
+		return logMetadata(invokePluginConvertResponse(remainder, DataSourceList.from(dataSourceList1, dataSourceList2, dataSourceList3), requestTimeoutHdr, logger, correlationId, ServicesEndpoint::toMultipartFormData),
 						   logger, 
 						   metadataBuilder.finish()
 						   );
@@ -106,7 +115,9 @@ public class ServicesEndpoint {
 	 * 
 	 * @param remainder
 	 * @param correlationIdHdr
+	 * @param requestTimeoutHdr
 	 * @param uriInfo
+	 * @param closeableService
 	 * @param formData
 	 * @return
 	 * @throws IOException 
@@ -115,16 +126,16 @@ public class ServicesEndpoint {
 	@Consumes(MediaType.MULTIPART_FORM_DATA)
 	@Produces({MediaType.MULTIPART_FORM_DATA, "*/*;qs=0.2"})
 	@POST
-    public Response invokeWithMultipartFormDataBody(@PathParam("remainder") String remainder, @Context HttpHeaders httpHeaders, @HeaderParam(CorrelationId.CORRELATION_ID_HDR) final String correlationIdHdr, @Context UriInfo uriInfo, FormDataMultiPart formData) throws IOException {
+    public Response invokeWithMultipartFormDataBody(@PathParam("remainder") String remainder, @Context HttpHeaders httpHeaders, @HeaderParam(CorrelationId.CORRELATION_ID_HDR) final String correlationIdHdr, @HeaderParam(PluginInvoker.REQUEST_TIMEOUT_HDR) final String requestTimeoutHdr, @Context UriInfo uriInfo, @Context CloseableService closeableService, FormDataMultiPart formData) throws IOException {
 		final String correlationId = CorrelationId.generate(correlationIdHdr);
 		final ProcessingMetadataBuilder metadataBuilder = ProcessingMetadata.start(correlationId);
 		final Logger logger = FfLoggerFactory.wrap(correlationId, baseLogger);
 		logger.info("Received " + MediaType.MULTIPART_FORM_DATA + " POST request to '" + PluginInvoker.API_V1_PATH + "/" + remainder + "' to produce multipart/form-data.");
-		final DataSourceList dataSourceList1 = DataSourceListJaxRsUtils.asDataSourceList(formData, logger);
+		final DataSourceList dataSourceList1 = DataSourceListJaxRsUtils.asDataSourceList(formData, requestScopedSpillFactory(closeableService), logger);
 		final DataSourceList dataSourceList2 = convertQueryParamsToDataSourceList(uriInfo.getQueryParameters().entrySet(), logger);
 		final DataSourceList dataSourceList3 = generateFormsFeederDataSourceList(correlationId);
 		final DataSourceList dataSourceList4 = convertRequestHeaderParamsToDataSourceList(httpHeaders, logger);
-		return logMetadata(invokePluginConvertResponse(remainder, DataSourceList.from(dataSourceList1, dataSourceList2, dataSourceList3, dataSourceList4), logger, correlationId, ServicesEndpoint::toMultipartFormData),
+		return logMetadata(invokePluginConvertResponse(remainder, DataSourceList.from(dataSourceList1, dataSourceList2, dataSourceList3, dataSourceList4), requestTimeoutHdr, logger, correlationId, ServicesEndpoint::toMultipartFormData),
 				   logger, 
 				   metadataBuilder.finish()
 				   );
@@ -141,7 +152,9 @@ public class ServicesEndpoint {
 	 * @param remainder
 	 * @param httpHeaders
 	 * @param correlationIdHdr
+	 * @param requestTimeoutHdr
 	 * @param uriInfo
+	 * @param closeableService
 	 * @param in
 	 * @return
 	 * @throws IOException
@@ -150,7 +163,7 @@ public class ServicesEndpoint {
 	@Consumes(MediaType.WILDCARD)
 	@Produces({MediaType.MULTIPART_FORM_DATA})
 	@POST
-    public Response invokeWithAnyBodyMultipartFormResponse(@PathParam("remainder") String remainder, @Context HttpHeaders httpHeaders, @HeaderParam(CorrelationId.CORRELATION_ID_HDR) final String correlationIdHdr, @Context UriInfo uriInfo, InputStream in) throws IOException {
+    public Response invokeWithAnyBodyMultipartFormResponse(@PathParam("remainder") String remainder, @Context HttpHeaders httpHeaders, @HeaderParam(CorrelationId.CORRELATION_ID_HDR) final String correlationIdHdr, @HeaderParam(PluginInvoker.REQUEST_TIMEOUT_HDR) final String requestTimeoutHdr, @Context UriInfo uriInfo, @Context CloseableService closeableService, InputStream in) throws IOException {
 		final String correlationId = CorrelationId.generate(correlationIdHdr);
 		final ProcessingMetadataBuilder metadataBuilder = ProcessingMetadata.start(correlationId);
 		final Logger logger = FfLoggerFactory.wrap(correlationId, baseLogger);
@@ -158,11 +171,11 @@ public class ServicesEndpoint {
 		logger.info("Received '" + mediaType.toString() + "' POST request to '" + PluginInvoker.API_V1_PATH + "/" + remainder + "' to produce multipart/form-data.");
 		try {
 			final ContentDisposition contentDisposition = determineContentDisposition(httpHeaders);
-			final DataSourceList dataSourceList1 = DataSourceListJaxRsUtils.asDataSourceList(in, mediaType, contentDisposition, FORMSFEEDER_BODY_BYTES_DS_NAME, logger);
+			final DataSourceList dataSourceList1 = DataSourceListJaxRsUtils.asDataSourceList(in, mediaType, contentDisposition, FORMSFEEDER_BODY_BYTES_DS_NAME, requestScopedSpillFactory(closeableService), logger);
 			final DataSourceList dataSourceList2 = convertQueryParamsToDataSourceList(uriInfo.getQueryParameters().entrySet(), logger);
 			final DataSourceList dataSourceList3 = generateFormsFeederDataSourceList(correlationId);
 			final DataSourceList dataSourceList4 = convertRequestHeaderParamsToDataSourceList(httpHeaders, logger);
-			return logMetadata(invokePluginConvertResponse(remainder, DataSourceList.from(dataSourceList1, dataSourceList2, dataSourceList3, dataSourceList4), logger, correlationId, ServicesEndpoint::toMultipartFormData),
+			return logMetadata(invokePluginConvertResponse(remainder, DataSourceList.from(dataSourceList1, dataSourceList2, dataSourceList3, dataSourceList4), requestTimeoutHdr, logger, correlationId, ServicesEndpoint::toMultipartFormData),
 					   logger, 
 					   metadataBuilder.finish()
 					   );
@@ -185,13 +198,14 @@ public class ServicesEndpoint {
 	 * 
 	 * @param remainder
 	 * @param correlationIdHdr
+	 * @param requestTimeoutHdr
 	 * @param uriInfo
 	 * @return
 	 */
 	@Path(PLUGIN_NAME_REMAINDER_PATH)
 	@Produces({MediaType.APPLICATION_JSON, "*/*;qs=0.8"}) 
 	@GET
-    public Response invokeNoBodyJsonResponse(@PathParam("remainder") String remainder, @Context HttpHeaders httpHeaders, @HeaderParam(CorrelationId.CORRELATION_ID_HDR) final String correlationIdHdr, @Context UriInfo uriInfo) {
+    public Response invokeNoBodyJsonResponse(@PathParam("remainder") String remainder, @Context HttpHeaders httpHeaders, @HeaderParam(CorrelationId.CORRELATION_ID_HDR) final String correlationIdHdr, @HeaderParam(PluginInvoker.REQUEST_TIMEOUT_HDR) final String requestTimeoutHdr, @Context UriInfo uriInfo) {
 		final String correlationId = CorrelationId.generate(correlationIdHdr);
 		final ProcessingMetadataBuilder metadataBuilder = ProcessingMetadata.start(correlationId);
 		final Logger logger = FfLoggerFactory.wrap(correlationId, baseLogger);
@@ -199,7 +213,7 @@ public class ServicesEndpoint {
 		final DataSourceList dataSourceList1 = convertQueryParamsToDataSourceList(uriInfo.getQueryParameters().entrySet(), logger);
 		final DataSourceList dataSourceList2 = generateFormsFeederDataSourceList(correlationId);
 		final DataSourceList dataSourceList3 = convertRequestHeaderParamsToDataSourceList(httpHeaders, logger);
-		return logMetadata(invokePluginConvertResponse(remainder, DataSourceList.from(dataSourceList1, dataSourceList2, dataSourceList3), logger, correlationId, ServicesEndpoint::toJson),
+		return logMetadata(invokePluginConvertResponse(remainder, DataSourceList.from(dataSourceList1, dataSourceList2, dataSourceList3), requestTimeoutHdr, logger, correlationId, ServicesEndpoint::toJson),
 				   logger, 
 				   metadataBuilder.finish()
 				   );
@@ -218,8 +232,11 @@ public class ServicesEndpoint {
 	 * 
 	 * Any json arrays or dictionaries are converted into DataSourceList objects that are added to the parent DataSourceList.  
 	 * 
+	 * The json is parsed directly into a DataSourceList by the JsonDataSourceListReader as it is read.
+	 * 
 	 * @param remainder
 	 * @param correlationIdHdr
+	 * @param requestTimeoutHdr
 	 * @param uriInfo
 	 * @param formData
 	 * @return
@@ -229,16 +246,15 @@ public class ServicesEndpoint {
 	@Consumes(MediaType.APPLICATION_JSON)
 	@Produces({MediaType.APPLICATION_JSON, "*/*;qs=0.3"})
 	@POST
-    public Response invokeWithJsonBody(@PathParam("remainder") String remainder, @Context HttpHeaders httpHeaders, @HeaderParam(CorrelationId.CORRELATION_ID_HDR) final String correlationIdHdr, @Context UriInfo uriInfo, JsonObject json) throws IOException {
+    public Response invokeWithJsonBody(@PathParam("remainder") String remainder, @Context HttpHeaders httpHeaders, @HeaderParam(CorrelationId.CORRELATION_ID_HDR) final String correlationIdHdr, @HeaderParam(PluginInvoker.REQUEST_TIMEOUT_HDR) final String requestTimeoutHdr, @Context UriInfo uriInfo, DataSourceList json) throws IOException {
 		final String correlationId = CorrelationId.generate(correlationIdHdr);
 		final ProcessingMetadataBuilder metadataBuilder = ProcessingMetadata.start(correlationId);
 		final Logger logger = FfLoggerFactory.wrap(correlationId, baseLogger);
 		logger.info("Received " + MediaType.APPLICATION_JSON + " POST request to '" + PluginInvoker.API_V1_PATH + "/" + remainder + "' to produce JSON.");
-		final DataSourceList dataSourceList1 = DataSourceListJsonUtils.asDataSourceList(json, logger);
 		final DataSourceList dataSourceList2 = convertQueryParamsToDataSourceList(uriInfo.getQueryParameters().entrySet(), logger);
 		final DataSourceList dataSourceList3 = generateFormsFeederDataSourceList(correlationId);
 		final DataSourceList dataSourceList4 = convertRequestHeaderParamsToDataSourceList(httpHeaders, logger);
-		return logMetadata(invokePluginConvertResponse(remainder, DataSourceList.from(dataSourceList1, dataSourceList2, dataSourceList3, dataSourceList4), logger, correlationId, ServicesEndpoint::toJson),
+		return logMetadata(invokePluginConvertResponse(remainder, DataSourceList.from(json, dataSourceList2, dataSourceList3, dataSourceList4), requestTimeoutHdr, logger, correlationId, ServicesEndpoint::toJson),
 				   logger, 
 				   metadataBuilder.finish()
 				   );
@@ -255,7 +271,9 @@ public class ServicesEndpoint {
 	 * @param remainder
 	 * @param httpHeaders
 	 * @param correlationIdHdr
+	 * @param requestTimeoutHdr
 	 * @param uriInfo
+	 * @param closeableService
 	 * @param in
 	 * @return
 	 * @throws IOException
@@ -264,7 +282,7 @@ public class ServicesEndpoint {
 	@Consumes(MediaType.WILDCARD)
 	@Produces({MediaType.APPLICATION_JSON, "*/*;qs=0.3"})
 	@POST
-    public Response invokeWithAnyBodyJsonResponse(@PathParam("remainder") String remainder, @Context HttpHeaders httpHeaders, @HeaderParam(CorrelationId.CORRELATION_ID_HDR) final String correlationIdHdr, @Context UriInfo uriInfo, InputStream in) throws IOException {
+    public Response invokeWithAnyBodyJsonResponse(@PathParam("remainder") String remainder, @Context HttpHeaders httpHeaders, @HeaderParam(CorrelationId.CORRELATION_ID_HDR) final String correlationIdHdr, @HeaderParam(PluginInvoker.REQUEST_TIMEOUT_HDR) final String requestTimeoutHdr, @Context UriInfo uriInfo, @Context CloseableService closeableService, InputStream in) throws IOException {
 		final String correlationId = CorrelationId.generate(correlationIdHdr);
 		final ProcessingMetadataBuilder metadataBuilder = ProcessingMetadata.start(correlationId);
 		final Logger logger = FfLoggerFactory.wrap(correlationId, baseLogger);
@@ -272,11 +290,11 @@ public class ServicesEndpoint {
 		logger.info("Received '" + mediaType.toString() + "' POST request to '" + PluginInvoker.API_V1_PATH + "/" + remainder + "' to produce JSON.");
 		try {
 			final ContentDisposition contentDisposition = determineContentDisposition(httpHeaders);
-			final DataSourceList dataSourceList1 = DataSourceListJaxRsUtils.asDataSourceList(in, mediaType, contentDisposition, FORMSFEEDER_BODY_BYTES_DS_NAME, logger);
+			final DataSourceList dataSourceList1 = DataSourceListJaxRsUtils.asDataSourceList(in, mediaType, contentDisposition, FORMSFEEDER_BODY_BYTES_DS_NAME, requestScopedSpillFactory(closeableService), logger);
 			final DataSourceList dataSourceList2 = convertQueryParamsToDataSourceList(uriInfo.getQueryParameters().entrySet(), logger);
 			final DataSourceList dataSourceList3 = generateFormsFeederDataSourceList(correlationId);
 			final DataSourceList dataSourceList4 = convertRequestHeaderParamsToDataSourceList(httpHeaders, logger);
-			return logMetadata(invokePluginConvertResponse(remainder, DataSourceList.from(dataSourceList1, dataSourceList2, dataSourceList3, dataSourceList4), logger, correlationId, ServicesEndpoint::toJson),
+			return logMetadata(invokePluginConvertResponse(remainder, DataSourceList.from(dataSourceList1, dataSourceList2, dataSourceList3, dataSourceList4), requestTimeoutHdr, logger, correlationId, ServicesEndpoint::toJson),
 					   logger, 
 					   metadataBuilder.finish()
 					   );
@@ -290,6 +308,87 @@ public class ServicesEndpoint {
 		}
 	}
 
+	/**
+	 * Method that gets invoked for GET transactions that request the binary DataSourceList format
+	 *  
+	 * This converts the query parameters into DataSources and then calls the appropriate plug-in.  It then returns
+	 * the results of the plug-in as either a single response (if the plug-in returned just one DataSource) or as a
+	 * binary DataSourceList response (if the plug-in returned multiple DataSources).
+	 * 
+	 * The qs value is below that of application/json, so this is only chosen when a client explicitly asks for the
+	 * binary format (and not when it accepts anything).
+	 * 
+	 * @param remainder
+	 * @param correlationIdHdr
+	 * @param requestTimeoutHdr
+	 * @param uriInfo
+	 * @return
+	 */
+	@Path(PLUGIN_NAME_REMAINDER_PATH)
+	@Produces({BinaryDataSourceListEncoder.DSL_MIME_TYPE_STR + ";qs=0.9"}) 
+	@GET
+    public Response invokeNoBodyBinaryResponse(@PathParam("remainder") String remainder, @Context HttpHeaders httpHeaders, @HeaderParam(CorrelationId.CORRELATION_ID_HDR) final String correlationIdHdr, @HeaderParam(PluginInvoker.REQUEST_TIMEOUT_HDR) final String requestTimeoutHdr, @Context UriInfo uriInfo) {
+		final String correlationId = CorrelationId.generate(correlationIdHdr);
+		final ProcessingMetadataBuilder metadataBuilder = ProcessingMetadata.start(correlationId);
+		final Logger logger = FfLoggerFactory.wrap(correlationId, baseLogger);
+		logger.info("Recieved GET request to '" + PluginInvoker.API_V1_PATH + "/" + remainder + "' to produce " + BinaryDataSourceListEncoder.DSL_MIME_TYPE_STR + ".");
+		final DataSourceList dataSourceList1 = convertQueryParamsToDataSourceList(uriInfo.getQueryParameters().entrySet(), logger);
+		final DataSourceList dataSourceList2 = generateFormsFeederDataSourceList(correlationId);
+		final DataSourceList dataSourceList3 = convertRequestHeaderParamsToDataSourceList(httpHeaders, logger);
+		return logMetadata(invokePluginConvertResponse(remainder, DataSourceList.from(dataSourceList1, dataSourceList2, dataSourceList3), requestTimeoutHdr, logger, correlationId, ServicesEndpoint::toBinary),
+				   logger, 
+				   metadataBuilder.finish()
+				   );
+	}
+
+	/**
+	 * Method that gets invoked for POST transactions that contain a binary DataSourceList.
+	 * 
+	 * This decodes the binary DataSourceList into DataSources.  It merges the DataSources from the query parameters
+	 * with the decoded DataSources and then calls the appropriate plug-in.  It then returns the results of the plug-in
+	 * as either a single response (if the plug-in returned just one DataSource) or as a binary DataSourceList response
+	 * (if the plug-in returned multiple DataSources).
+	 * 
+	 * @param remainder
+	 * @param httpHeaders
+	 * @param correlationIdHdr
+	 * @param requestTimeoutHdr
+	 * @param uriInfo
+	 * @param closeableService
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	@Path(PLUGIN_NAME_REMAINDER_PATH)
+	@Consumes(BinaryDataSourceListDecoder.DSL_MIME_TYPE_STR)
+	@Produces({BinaryDataSourceListEncoder.DSL_MIME_TYPE_STR, "*/*;qs=0.2"})
+	@POST
+    public Response invokeWithBinaryBody(@PathParam("remainder") String remainder, @Context HttpHeaders httpHeaders, @HeaderParam(CorrelationId.CORRELATION_ID_HDR) final String correlationIdHdr, @HeaderParam(PluginInvoker.REQUEST_TIMEOUT_HDR) final String requestTimeoutHdr, @Context UriInfo uriInfo, @Context CloseableService closeableService, InputStream in) throws IOException {
+		final String correlationId = CorrelationId.generate(correlationIdHdr);
+		final ProcessingMetadataBuilder metadataBuilder = ProcessingMetadata.start(correlationId);
+		final Logger logger = FfLoggerFactory.wrap(correlationId, baseLogger);
+		logger.info("Received " + BinaryDataSourceListDecoder.DSL_MIME_TYPE_STR + " POST request to '" + PluginInvoker.API_V1_PATH + "/" + remainder + "' to produce " + BinaryDataSourceListEncoder.DSL_MIME_TYPE_STR + ".");
+		final DataSourceList dataSourceList1;
+		try (BinaryDataSourceListDecoder decoder = BinaryDataSourceListDecoder.wrap(in, requestScopedSpillFactory(closeableService))) {
+			dataSourceList1 = decoder.decode().orElse(DataSourceList.emptyList());
+		} catch (IOException | IllegalArgumentException e) {
+			// If we can't decode the body, it must be a BadRequest.
+			String msg = "Error while decoding " + BinaryDataSourceListDecoder.DSL_MIME_TYPE_STR + " body (" + e.getMessage() + ").";
+			logger.error(msg + ", Returning \"Bad Request\" status code.", e);
+			return logMetadata(PluginInvoker.buildResponse(Response.status(Response.Status.BAD_REQUEST).entity(msg).type(MediaType.TEXT_PLAIN_TYPE), correlationId),
+					   logger, 
+					   metadataBuilder.finish()
+					   );
+		}
+		final DataSourceList dataSourceList2 = convertQueryParamsToDataSourceList(uriInfo.getQueryParameters().entrySet(), logger);
+		final DataSourceList dataSourceList3 = generateFormsFeederDataSourceList(correlationId);
+		final DataSourceList dataSourceList4 = convertRequestHeaderParamsToDataSourceList(httpHeaders, logger);
+		return logMetadata(invokePluginConvertResponse(remainder, DataSourceList.from(dataSourceList1, dataSourceList2, dataSourceList3, dataSourceList4), requestTimeoutHdr, logger, correlationId, ServicesEndpoint::toBinary),
+				   logger, 
+				   metadataBuilder.finish()
+				   );
+	}
+
 	/**
 	 * Determines if there is a plug-in associated with an Url provided and, if so, then invokes that plug-in.  Also
 	 * captures any exceptions that a plugin throws and converts it to a response.
@@ -301,8 +400,8 @@ public class ServicesEndpoint {
 	 * @param multiReturnConverter
 	 * @return
 	 */
-	private final Response invokePluginConvertResponse(final String remainder, final DataSourceList dataSourceList, final Logger logger, final String correlationId, final BiFunction<DataSourceList, Logger, ResponseData> multiReturnConverter) {
-		return PluginInvoker.buildResponse(invokePluginCreateResponse(determineConsumerName(remainder), dataSourceList, logger, multiReturnConverter), correlationId);
+	private final Response invokePluginConvertResponse(final String remainder, final DataSourceList dataSourceList, final String requestTimeoutHdr, final Logger logger, final String correlationId, final BiFunction<DataSourceList, Logger, ResponseData> multiReturnConverter) {
+		return PluginInvoker.buildResponse(invokePluginCreateResponse(determineConsumerName(remainder), dataSourceList, requestTimeoutHdr, logger, multiReturnConverter), correlationId);
 	}
 
 	/**
@@ -315,13 +414,14 @@ public class ServicesEndpoint {
 	 * 
 	 * @param consumerName  Name of the consumer (i.e. plugin) to invoke.
 	 * @param dataSourceList  DataSources that are the inputs to the consumer (i.e plugin)
+	 * @param requestTimeoutHdr  Timeout supplied by the client in the PluginInvoker.REQUEST_TIMEOUT_HDR header (may be null).
 	 * @param logger   Logger for method to log to.
 	 * @param multiReturnConverter  Function for converting multiple DataSources into a single Response.  Can be null when multiple DataSource responses is not allowed (for example, when processing a submission).
 	 * @return
 	 */
-	protected final ResponseBuilder invokePluginCreateResponse(final String consumerName, final DataSourceList dataSourceList, final Logger logger, final BiFunction<DataSourceList, Logger, ResponseData> multiReturnConverter) {
+	protected final ResponseBuilder invokePluginCreateResponse(final String consumerName, final DataSourceList dataSourceList, final String requestTimeoutHdr, final Logger logger, final BiFunction<DataSourceList, Logger, ResponseData> multiReturnConverter) {
 		try {
-			return PluginInvoker.convertToResponseBuilder(pluginInvoker.invokePlugin(consumerName, dataSourceList, logger), logger, (dsl, l)->PluginInvoker.multipleDsHandler(dsl, l, multiReturnConverter), ()->Response.noContent());
+			return PluginInvoker.convertToResponseBuilder(pluginInvoker.invokePlugin(consumerName, dataSourceList, PluginInvoker.requestTimeout(requestTimeoutHdr), logger), logger, (dsl, l)->PluginInvoker.multipleDsHandler(dsl, l, multiReturnConverter), ()->Response.noContent());
 		} catch (PluginInvokerPluginNotFoundException e) {
 			String msg = e.getMessage();
 			logger.error(msg + " Returning \"Not Found\" status code.");
@@ -337,6 +437,20 @@ public class ServicesEndpoint {
 		}
 	}
 
+	/**
+	 * Creates a factory for buffering incoming request bodies.  Bodies larger than the configured threshold are
+	 * written to temporary files.  The factory is registered with Jersey's CloseableService so that those temporary
+	 * files are removed once the response has been written.
+	 * 
+	 * @param closeableService
+	 * @return
+	 */
+	private final SpillableDataSourceFactory requestScopedSpillFactory(final CloseableService closeableService) {
+		SpillableDataSourceFactory spillFactory = requestBufferingProperties.newSpillableDataSourceFactory();
+		closeableService.add(spillFactory);
+		return spillFactory;
+	}
+
 	/**
 	 * Converts the incoming Query Parameters into a DataSourceList so that they can be processed by a plug-in
 	 * 
@@ -451,12 +565,14 @@ public class ServicesEndpoint {
 	/**
 	 * Convert a DataSourceList to a Json object and return that in a ResponseData object. 
 	 * 
+	 * The Json is generated as the response is written, so the Json object is never held in memory. 
+	 * 
 	 * @param outputs
 	 * @param logger
 	 * @return
 	 */
 	private static ResponseData toJson(DataSourceList outputs, Logger logger) {
-		JsonObject json = DataSourceListJsonUtils.asJson(outputs, logger);
+		StreamingOutput json = DataSourceListJsonUtils.asJsonStreamingOutput(outputs, logger);
 		return new ResponseData() {
 			
 			@Override
@@ -471,6 +587,36 @@ public class ServicesEndpoint {
 		};
 	}
 	
+	/**
+	 * Convert a DataSourceList to the binary DataSourceList format and return that in a ResponseData object.
+	 * 
+	 * The DataSourceList is encoded as the response is written, so the encoded form is never held in memory. 
+	 * 
+	 * @param outputs
+	 * @param logger
+	 * @return
+	 */
+	private static ResponseData toBinary(DataSourceList outputs, Logger logger) {
+		logger.debug("Returning multiple data sources as {}.", BinaryDataSourceListEncoder.DSL_MIME_TYPE_STR);
+		StreamingOutput binary = os->{
+			try (BinaryDataSourceListEncoder encoder = BinaryDataSourceListEncoder.wrap(os)) {
+				encoder.encode(outputs);
+			}
+		};
+		return new ResponseData() {
+			
+			@Override
+			public MediaType mediaType() {
+				return BINARY_DSL_MEDIA_TYPE;
+			}
+			
+			@Override
+			public Object data() {
+				return binary;
+			}
+		};
+	}
+	
 	private static Response logMetadata(Response response, Logger logger, ProcessingMetadata metadata) {
 		MediaType responseType = response.getMediaType();
 		int responseStatus = response.getStatus();
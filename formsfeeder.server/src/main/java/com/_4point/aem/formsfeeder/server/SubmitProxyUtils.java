@@ -1,6 +1,6 @@
 package com._4point.aem.formsfeeder.server;
 
-import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
@@ -9,16 +9,16 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.function.Function;
 
-import javax.ws.rs.core.GenericType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 
-import org.glassfish.jersey.client.ChunkedInput;
 import org.glassfish.jersey.media.multipart.BodyPartEntity;
 import org.glassfish.jersey.media.multipart.FormDataBodyPart;
 import org.glassfish.jersey.media.multipart.FormDataMultiPart;
 import org.slf4j.Logger;
 
+import com._4point.aem.formsfeeder.server.support.SizeLimitedInputStream;
+
 /**
  * Submit Proxy Utils class is a set of utilities common across the various SubmitProxy classes.
  *
@@ -32,6 +32,10 @@ public class SubmitProxyUtils {
 	 * parts and if it finds a function in the Map with the same name it executes that function on the the data from the corresponding part.
 	 * It accumulates and returns the result in another FormDataMultiPart object.
 	 * 
+	 * Only the parts that have a function are read into memory.  All other parts (which may include large attachments) are
+	 * streamed straight through to the outgoing FormDataMultiPart with their original media type and content disposition, so
+	 * their contents are never buffered or converted to a String.
+	 * 
 	 * @param inFormData	incoming form data
 	 * @param fieldFunctions	set of functions that correspond to specific parts
 	 * @param logger	logger for logging messages
@@ -45,29 +49,53 @@ public class SubmitProxyUtils {
     	
 		for (var fieldEntry : fields.entrySet()) {
 			String fieldName = fieldEntry.getKey();
+			var fieldFn = fieldFunctions.get(fieldName);	// Look for an entry in fieldFunctions table for this field.
 			for (FormDataBodyPart fieldData : fieldEntry.getValue()) {
-				logger.debug("Copying '" + fieldName  + "' field");
-				byte[] fieldBytes = ((BodyPartEntity)fieldData.getEntity()).getInputStream().readAllBytes();
-				logger.trace("Fieldname '" + fieldName + "' is '" + new String(fieldBytes) + "'.");
-				var fieldFn = fieldFunctions.getOrDefault(fieldName, Function.identity());	// Look for an entry in fieldFunctions table for this field.  Return the Identity function if we don't find one.
-				byte[] modifiedFieldBytes = fieldFn.apply(fieldBytes);
-				if (modifiedFieldBytes != null) {	// If the function returned bytes (if not, then remove that part)
-					outFormData.field(fieldName, new String(modifiedFieldBytes, StandardCharsets.UTF_8));	// Apply the field function to bytes.
+				if (fieldFn == null) {
+					// No function, so pass the part through untouched (without reading it into memory).
+					logger.debug("Streaming '" + fieldName  + "' field");
+					outFormData.bodyPart(new FormDataBodyPart(fieldData.getFormDataContentDisposition(), entityStream(fieldData), fieldData.getMediaType()));
+				} else {
+					logger.debug("Transforming '" + fieldName  + "' field");
+					byte[] fieldBytes = entityStream(fieldData).readAllBytes();
+					logger.trace("Fieldname '" + fieldName + "' is '" + new String(fieldBytes, StandardCharsets.UTF_8) + "'.");
+					byte[] modifiedFieldBytes = fieldFn.apply(fieldBytes);
+					if (modifiedFieldBytes != null) {	// If the function returned bytes (if not, then remove that part)
+						outFormData.bodyPart(new FormDataBodyPart(fieldData.getFormDataContentDisposition(), modifiedFieldBytes, fieldData.getMediaType()));
+					}
 				}
 			}
 		}
 		return outFormData;
 	}
 
+	private static InputStream entityStream(FormDataBodyPart fieldData) {
+		Object entity = fieldData.getEntity();
+		if (entity instanceof BodyPartEntity) {
+			return ((BodyPartEntity)entity).getInputStream();
+		} else if (entity instanceof InputStream) {
+			return (InputStream)entity;
+		} else if (entity instanceof byte[]) {
+			return new ByteArrayInputStream((byte[])entity);
+		} else {
+			// Parts that were created locally (rather than read from a request) hold their value as a String.
+			return new ByteArrayInputStream(fieldData.getValue().getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
 	/**
-	 * Transfers a response from AEM and returns it in a byte array.  It handles chunked responses.
+	 * Returns the body of a response from AEM as a stream that can be processed as it arrives.
+	 * 
+	 * The body is not buffered, so processing can start as soon as AEM starts sending its response.  Chunked responses are
+	 * de-chunked by the HTTP client.  The stream fails (with a SizeLimitExceededException) once more than maxSize bytes
+	 * have been read from it, so that the amount of memory used to process a response is bounded.
 	 * 
 	 * @param result	Response object from AEM
+	 * @param maxSize	Maximum number of bytes that can be read from the response
 	 * @param logger	Logger for logging any errors/warnings/etc.
 	 * @return
-	 * @throws IOException
 	 */
-	public static byte[] transferFromAem(Response result, Logger logger) throws IOException {
+	public static SizeLimitedInputStream streamFromAem(Response result, long maxSize, Logger logger) {
 		if (logger.isDebugEnabled()) {
 			logger.debug("AEM Response Mediatype=" + (result.getMediaType() != null ? result.getMediaType().toString(): "null"));
 			MultivaluedMap<String, Object> headers = result.getHeaders();
@@ -79,26 +107,6 @@ public class SubmitProxyUtils {
 				logger.debug(msgLine);
 			}
 		}
-		
-		String aemResponseEncoding = result.getHeaderString("Transfer-Encoding");
-		if (aemResponseEncoding != null && aemResponseEncoding.equalsIgnoreCase("chunked")) {
-			// They've sent back chunked response.
-			logger.debug("Found a chunked encoding.");
-			final ChunkedInput<byte[]> chunkedInput = result.readEntity(new GenericType<ChunkedInput<byte[]>>() {});
-			byte[] chunk;
-			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-			try (buffer) {
-				while ((chunk = chunkedInput.read()) != null) {
-					buffer.writeBytes(chunk);
-					logger.debug("Read chunk from AEM response.");
-				}
-			}
-			
-			return buffer.toByteArray();
-		} else {
-			return ((InputStream)result.getEntity()).readAllBytes();
-		}
+		return new SizeLimitedInputStream(result.readEntity(InputStream.class), maxSize, "AEM response");
 	}
-
-
 }
@@ -1,9 +1,12 @@
 package com._4point.aem.formsfeeder.server;
 
+import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import javax.servlet.http.HttpServletResponse;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -43,15 +46,21 @@ import org.springframework.security.web.SecurityFilterChain;
  *   Basic Authentication - Callers must pass in credentials via basic authentication.
  *   
  *   The list of available users is controlled via application.properties. 
+ *   
+ *   In both settings, the administration endpoints (under /admin) require a user with the admin role
+ *   (formsfeeder.auth.admin-role, ADMIN by default).  With no security there are no users, so they are never accessible.
  *
  */
 @Configuration
 @EnableWebSecurity
 public class WebSecurityConfig  {
 
-	private static final String AUTH_PROPERTY = "formsfeeder.auth";
+	public static final String AUTH_PROPERTY = "formsfeeder.auth";
+	public static final String AUTH_NONE = "none";
 	private static final String AUTH_USERS_PROPERTY = "formsfeeder.auth.users";
 	private static final String AUTH_OVERRIDES_PROPERTY = "formsfeeder.auth.overrides";
+	private static final String AUTH_ADMIN_ROLE_PROPERTY = "formsfeeder.auth.admin-role";
+	private static final String ADMIN_PATHS = "/admin/**";
 	
 	private static final Logger logger = LoggerFactory.getLogger(WebSecurityConfig.class);
 
@@ -64,6 +73,9 @@ public class WebSecurityConfig  {
 	@Value("#{${" + AUTH_OVERRIDES_PROPERTY + ":{}}}")
 	List<List<String>> pluginExceptions = List.of();	// List of List of exception properties defined in application.properties 
 
+	@Value("${" + AUTH_ADMIN_ROLE_PROPERTY + ":ADMIN}")
+	String adminRole = "ADMIN";							// Role required to use the administration endpoints (e.g. /admin/plugins)
+
 	@Bean
 	@ConditionalOnProperty(name=AUTH_PROPERTY, havingValue="basic")
 	public SecurityFilterChain basicAuthOn(HttpSecurity http) throws Exception {
@@ -71,10 +83,18 @@ public class WebSecurityConfig  {
 		return http
 			.csrf(csrf->csrf.disable())											// Don't think I need this turned off, so leave it on.
 			.authorizeRequests(authReq->defaultRequestAuthorizations(customRequestAuthorizations(authReq)))
+			.exceptionHandling(exHandling->exHandling.accessDeniedHandler((req, resp, ex)->forbidden(resp)))
 			.httpBasic(Customizer.withDefaults())
 			.build();
 	}
 
+	// Write the response directly.  Using sendError() would forward to /error, which Jersey answers with "Not Found".
+	private static void forbidden(HttpServletResponse response) throws IOException {
+		response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+		response.setContentType("text/plain");
+		response.getWriter().write("Access is denied.");
+	}
+
 	private static class PluginAuthException {
 		private static final String PLUGIN_PATH_PREFIX = "/api/v1/";
 		String pluginName;
@@ -145,9 +165,10 @@ public class WebSecurityConfig  {
 		}
 	}
 
-	private static ExpressionUrlAuthorizationConfigurer<HttpSecurity>.ExpressionInterceptUrlRegistry defaultRequestAuthorizations(
+	private ExpressionUrlAuthorizationConfigurer<HttpSecurity>.ExpressionInterceptUrlRegistry defaultRequestAuthorizations(
 			ExpressionUrlAuthorizationConfigurer<HttpSecurity>.ExpressionInterceptUrlRegistry authReq) {
 		return authReq
+				.antMatchers(ADMIN_PATHS).hasRole(adminRole)				// Administration requests require the admin role
 				.antMatchers("/aem/**").permitAll()							// Allow anonymous access to all proxied AEM links
 				.antMatchers("/content/xfaforms/profiles/**").permitAll()	// Allow anonymous access to AEM proxied links we could not transform
 				.anyRequest().authenticated()								// All other requests must be authenticated.
@@ -156,14 +177,16 @@ public class WebSecurityConfig  {
 
 	
 	@Bean
-	@ConditionalOnProperty(name=AUTH_PROPERTY, havingValue="none", matchIfMissing = true)
+	@ConditionalOnProperty(name=AUTH_PROPERTY, havingValue=AUTH_NONE, matchIfMissing = true)
 	public SecurityFilterChain noSecurity(HttpSecurity http) throws Exception {
 		logger.warn("Basic Authentication is off.");
 		return http
 				.csrf(csrf->csrf.disable())									// This needs to be disabled for some reason (see https://stackoverflow.com/questions/61761499/how-to-allow-all-and-any-requests-with-spring-security)
 				.authorizeRequests(authReq->authReq
-						.anyRequest().permitAll()							// Allow all requests
+						.antMatchers(ADMIN_PATHS).hasRole(adminRole)		// There are no users, so this denies all administration requests
+						.anyRequest().permitAll()							// Allow all other requests
 						)
+				.exceptionHandling(exHandling->exHandling.authenticationEntryPoint((req, resp, ex)->forbidden(resp)))
 				.build();
 	}
 	
@@ -225,7 +248,7 @@ public class WebSecurityConfig  {
 	}
 
     @Bean
-	@ConditionalOnProperty(name=AUTH_PROPERTY, havingValue="none", matchIfMissing = true)
+	@ConditionalOnProperty(name=AUTH_PROPERTY, havingValue=AUTH_NONE, matchIfMissing = true)
     public InMemoryUserDetailsManager noUsers() {
         return new InMemoryUserDetailsManager();	// Set up a "no users" manager to prevent Spring from automatically creating a user.
     }
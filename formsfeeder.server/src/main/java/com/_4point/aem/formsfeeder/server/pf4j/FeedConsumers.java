@@ -1,8 +1,18 @@
 package com._4point.aem.formsfeeder.server.pf4j;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
 
 import javax.annotation.PostConstruct;
 
@@ -16,10 +26,26 @@ import org.springframework.stereotype.Component;
 import com._4point.aem.formsfeeder.core.api.FeedConsumer;
 import com._4point.aem.formsfeeder.core.api.NamedFeedConsumer;
 import com._4point.aem.formsfeeder.core.api.PluginsConsumer;
+import com._4point.aem.formsfeeder.core.datasource.DataSourceList;
 import com._4point.aem.formsfeeder.pf4j.SpringPluginManager;
 import com._4point.aem.formsfeeder.pf4j.spring.ApplicationContextConsumer;
 import com._4point.aem.formsfeeder.pf4j.spring.EnvironmentConsumer;
 
+/**
+ * Registry of the FeedConsumer extensions provided by plugins, indexed by name.
+ *
+ * The registry is an immutable snapshot that is built once (at startup) and published through an AtomicReference, so
+ * lookups never lock and never see a partially built registry.  A new snapshot can be built and swapped in with
+ * {@link #refresh()} (for example, after a plugin has been loaded or stopped by the PluginReloader).  Two extensions with
+ * the same name are an error, so building a snapshot fails rather than silently picking one of them.
+ *
+ * Lookup and invocation counts are kept for each FeedConsumer and are available from {@link #stats()}.
+ *
+ * A lookup returns a {@link ConsumerLease}, which counts as in flight (see {@link #inFlight(ClassLoader)}) from the
+ * lookup until it is closed.  This means a plugin that is replaced between a request's lookup and its invocation is
+ * not treated as drained while that request is still running.
+ *
+ */
 @Component
 public class FeedConsumers {
 	private final Logger logger = LoggerFactory.getLogger(this.getClass());
@@ -33,7 +59,8 @@ public class FeedConsumers {
 	@Autowired
 	private ApplicationContext applicationContext;
 	
-	private List<NamedFeedConsumer> consumers = null;
+	private final AtomicReference<Map<String, RegisteredConsumer>> consumers = new AtomicReference<>();
+	private final AtomicLong notFound = new AtomicLong();
 	
 	/* package */ FeedConsumers() {
 		super();
@@ -41,24 +68,74 @@ public class FeedConsumers {
 	
 	private void consumersInfo() {
 		logger.debug("Found {} extensions for extension point '{}'", consumers().size(), NamedFeedConsumer.class.getName());
-		for (NamedFeedConsumer consumer : consumers()) {
-				logger.info("Found FeedConsumer extension named '{}'.", consumer.name());
+		for (String name : consumers().keySet()) {
+				logger.info("Found FeedConsumer extension named '{}'.", name);
 		}
 	}
 	
-	private List<NamedFeedConsumer> consumers() {
-		if (this.consumers != null) {
-			return this.consumers;
-		} else {
-			return this.consumers = initializeExtensions();
+	private Map<String, RegisteredConsumer> consumers() {
+		Map<String, RegisteredConsumer> current = this.consumers.get();
+		if (current != null) {
+			return current;
+		}
+		synchronized (this.consumers) {		// Make sure that only one thread initializes the extensions.
+			current = this.consumers.get();
+			if (current == null) {
+				current = buildRegistry(Collections.emptyMap());
+				this.consumers.set(current);
+			}
+			return current;
 		}
 	}
 
-	private List<NamedFeedConsumer> initializeExtensions() {
-		
+	/**
+	 * Rebuilds the registry from the extensions that the plugin manager currently provides and swaps it in.  Requests
+	 * that are already running continue to use the FeedConsumer that they looked up.  FeedConsumers from plugins that
+	 * have not changed are kept (and are not re-initialized).  Counts are carried over for FeedConsumers that are still
+	 * present.
+	 * 
+	 * @throws IllegalStateException if two extensions have the same name (in which case the current registry is kept)
+	 */
+	public void refresh() {
+		synchronized (this.consumers) {
+			Map<String, RegisteredConsumer> previous = this.consumers.get();
+			this.consumers.set(buildRegistry(previous != null ? previous : Collections.emptyMap()));
+		}
+	}
+
+	private Map<String, RegisteredConsumer> buildRegistry(Map<String, RegisteredConsumer> previous) {
 		List<NamedFeedConsumer> extensions = Objects.requireNonNull(springPluginManager, "SpringPluginManager has not been initialized!").getExtensions(NamedFeedConsumer.class);
-		// Populate extensions with Spring beans
-		for (NamedFeedConsumer extension:extensions) {
+		Map<String, RegisteredConsumer> registry = new LinkedHashMap<>();
+		List<NamedFeedConsumer> newExtensions = new ArrayList<>();
+		List<String> duplicates = new ArrayList<>();
+		for (NamedFeedConsumer extension : extensions) {
+			String name = Objects.requireNonNull(extension.name(), ()->"FeedConsumer extension '" + extension.getClass().getName() + "' has a null name.");
+			RegisteredConsumer prev = previous.get(name);
+			RegisteredConsumer registered;
+			if (prev != null && prev.consumer.getClass() == extension.getClass()) {
+				registered = prev;		// Same class (and so the same class loader), so the plugin hasn't changed.  Keep using the existing instance.
+			} else {
+				registered = new RegisteredConsumer(name, extension, prev);
+				newExtensions.add(extension);
+			}
+			if (registry.putIfAbsent(name, registered) != null) {
+				duplicates.add(name);
+			}
+		}
+		if (!duplicates.isEmpty()) {
+			String msg = "Found multiple FeedConsumer extensions named " + duplicates.stream().distinct().map(n->"'" + n + "'").collect(Collectors.joining(", ")) + ".";
+			logger.error(msg);
+			throw new IllegalStateException(msg);
+		}
+		initializeExtensions(newExtensions, registry.values().stream().map(c->c.consumer).collect(Collectors.toList()));
+		return Map.copyOf(registry);
+	}
+
+	/**
+	 * Populate the new extensions with Spring beans and let all PluginsConsumers know about the current set of extensions.
+	 */
+	private void initializeExtensions(List<NamedFeedConsumer> newExtensions, List<NamedFeedConsumer> extensions) {
+		for (NamedFeedConsumer extension:newExtensions) {
 			if (extension instanceof EnvironmentConsumer) {
 				EnvironmentConsumer envConsumer = (EnvironmentConsumer)extension;
 				logger.info("Initializing EnvironmentConsumer extension '{}'.", extension.name());
@@ -69,22 +146,67 @@ public class FeedConsumers {
 				logger.info("Initializing ApplicationContextConsumer extension '{}'.", extension.name());
 				ctxConsumer.accept(applicationContext);
 			}
+		}
+		for (NamedFeedConsumer extension:extensions) {
 			if (extension instanceof PluginsConsumer) {
 				PluginsConsumer pluginsConsumer = (PluginsConsumer)extension;
 				logger.info("Initializing PluginsConsumer extension '{}'.", extension.name());
 				pluginsConsumer.accept(extensions);
 			}
 		}
-		return extensions;
 	}
 	
-	public Optional<FeedConsumer> consumer(String name) {
-		for (NamedFeedConsumer consumer : consumers()) {
-			if (Objects.requireNonNull(name, "name argument cannot be null.").equals(consumer.name())) {
-				return Optional.of(consumer);
-			}
+	/**
+	 * Looks up a FeedConsumer by name.  The FeedConsumer that is returned counts its invocations.  It is in flight until
+	 * it is closed, so the caller must close it once it is finished with it.
+	 * 
+	 * @param name
+	 * @return
+	 */
+	public Optional<ConsumerLease> consumer(String name) {
+		RegisteredConsumer consumer = consumers().get(Objects.requireNonNull(name, "name argument cannot be null."));
+		if (consumer == null) {
+			notFound.incrementAndGet();
+			return Optional.empty();
 		}
-		return Optional.empty();
+		consumer.lookups.incrementAndGet();
+		return Optional.of(new ConsumerLease(consumer));
+	}
+
+	/**
+	 * Snapshot of the counts for each FeedConsumer.
+	 * 
+	 * @return
+	 */
+	public List<ConsumerStats> stats() {
+		return consumers().values().stream()
+							.map(RegisteredConsumer::stats)
+							.sorted((a, b)->a.name().compareTo(b.name()))
+							.collect(Collectors.toList());
+	}
+
+	/**
+	 * Returns a supplier of the number of leases that are currently open on the FeedConsumers (in the current
+	 * registry) that were loaded by a particular class loader.  Calling this before a plugin is replaced lets the caller
+	 * find out when the requests using the old plugin have finished.
+	 * 
+	 * @param classLoader	the plugin's class loader
+	 * @return
+	 */
+	public IntSupplier inFlight(ClassLoader classLoader) {
+		List<RegisteredConsumer> fromClassLoader = consumers().values().stream()
+															  .filter(c->c.consumer.getClass().getClassLoader() == classLoader)
+															  .collect(Collectors.toList());
+		return ()->fromClassLoader.stream().mapToInt(c->c.inFlight.get()).sum();
+	}
+
+	/**
+	 * Number of lookups for a FeedConsumer name that does not exist.
+	 * 
+	 * @return
+	 */
+	public long notFound() {
+		return notFound.get();
 	}
 	
     /**
@@ -95,4 +217,116 @@ public class FeedConsumers {
     	logger.debug("PostConstruct of FeedConsumers, SpringPluginManager is " + (springPluginManager != null ? "not " : "") + "null.");
     	consumersInfo();
     }
+
+	/**
+	 * A FeedConsumer in the registry.  It counts the calls to the FeedConsumer provided by the plugin.
+	 */
+	private static class RegisteredConsumer implements FeedConsumer {
+		private final String name;
+		private final NamedFeedConsumer consumer;
+		private final AtomicLong lookups;
+		private final AtomicLong invocations;
+		private final AtomicLong failures;
+		private final AtomicInteger inFlight = new AtomicInteger();	// Open leases.  Not carried over, it only applies to this instance.
+
+		private RegisteredConsumer(String name, NamedFeedConsumer consumer, RegisteredConsumer previous) {
+			this.name = name;
+			this.consumer = consumer;
+			this.lookups = previous != null ? previous.lookups : new AtomicLong();
+			this.invocations = previous != null ? previous.invocations : new AtomicLong();
+			this.failures = previous != null ? previous.failures : new AtomicLong();
+		}
+
+		@Override
+		public DataSourceList accept(DataSourceList dataSources) throws FeedConsumerException {
+			invocations.incrementAndGet();
+			boolean succeeded = false;
+			try {
+				DataSourceList result = consumer.accept(dataSources);
+				succeeded = true;
+				return result;
+			} finally {
+				if (!succeeded) {
+					failures.incrementAndGet();
+				}
+			}
+		}
+
+		private ConsumerStats stats() {
+			return new ConsumerStats(name, lookups.get(), invocations.get(), failures.get());
+		}
+	}
+
+	/**
+	 * A FeedConsumer that has been looked up.  It keeps the FeedConsumer (and so its plugin's class loader) in flight
+	 * until it is closed.  Closing it more than once has no effect.
+	 */
+	public static final class ConsumerLease implements FeedConsumer, AutoCloseable {
+		private final RegisteredConsumer consumer;
+		private final AtomicBoolean closed = new AtomicBoolean();
+
+		private ConsumerLease(RegisteredConsumer consumer) {
+			this.consumer = consumer;
+			consumer.inFlight.incrementAndGet();
+		}
+
+		@Override
+		public DataSourceList accept(DataSourceList dataSources) throws FeedConsumerException {
+			return consumer.accept(dataSources);
+		}
+
+		@Override
+		public void close() {
+			if (closed.compareAndSet(false, true)) {
+				consumer.inFlight.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Snapshot of the counts for one FeedConsumer.
+	 */
+	public static class ConsumerStats {
+		private final String name;
+		private final long lookups;
+		private final long invocations;
+		private final long failures;
+
+		private ConsumerStats(String name, long lookups, long invocations, long failures) {
+			this.name = name;
+			this.lookups = lookups;
+			this.invocations = invocations;
+			this.failures = failures;
+		}
+
+		public String name() {
+			return name;
+		}
+
+		/**
+		 * Number of times the FeedConsumer was looked up.
+		 */
+		public long lookups() {
+			return lookups;
+		}
+
+		/**
+		 * Number of times the FeedConsumer was invoked.
+		 */
+		public long invocations() {
+			return invocations;
+		}
+
+		/**
+		 * Number of invocations that threw an exception.
+		 */
+		public long failures() {
+			return failures;
+		}
+
+		@Override
+		public String toString() {
+			return "ConsumerStats [name=" + name + ", lookups=" + lookups + ", invocations=" + invocations + ", failures=" + failures + "]";
+		}
+	}
 }
@@ -0,0 +1,509 @@
+package com._4point.aem.formsfeeder.server.pf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.pf4j.PluginDescriptor;
+import org.pf4j.PluginRuntimeException;
+import org.pf4j.PluginState;
+import org.pf4j.PluginWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import com._4point.aem.formsfeeder.pf4j.SpringPluginManager;
+import com._4point.aem.formsfeeder.server.WebSecurityConfig;
+
+/**
+ * Loads, starts, stops and reloads individual plugins while the server is running.
+ *
+ * When a plugin is loaded or reloaded, the new plugin is started and then the FeedConsumers registry is refreshed, which
+ * swaps the new FeedConsumers in atomically.  Requests that are already running in (or have looked up) the old
+ * FeedConsumers finish on the old instances.  The old plugin's class loader is kept open until those requests have
+ * drained and is then closed (so that it can be garbage collected).  Note that the old plugin is stopped (i.e. its
+ * Plugin.stop() is called) before the new one is started, because pf4j only allows one plugin with each plugin id.  If
+ * the new plugin cannot be loaded or started, it is discarded and the old plugin is put back and restarted.
+ *
+ * The plugins directory can optionally be watched.  A plugin jar that is added or replaced is loaded (replacing any
+ * plugin with the same plugin id) once it has stopped changing, and the plugin of a jar that is removed is unloaded.
+ * <pre>
+ * formsfeeder.plugins.watch.enabled=false
+ * formsfeeder.plugins.watch.interval=2000
+ * </pre>
+ * (the interval is in milliseconds and is also how often drained class loaders are checked).  The PluginAdminEndpoint,
+ * which exposes these operations over HTTP, is disabled unless formsfeeder.plugins.admin.enabled=true.  It stays
+ * disabled when authentication is turned off (formsfeeder.auth=none), because anyone could then replace the plugins.
+ *
+ */
+@Component
+public class PluginReloader implements Closeable {
+	private final static Logger logger = LoggerFactory.getLogger(PluginReloader.class);
+
+	public static final String FF_WATCH_ENABLED_PROPERTY = "formsfeeder.plugins.watch.enabled";
+	public static final String FF_WATCH_INTERVAL_PROPERTY = "formsfeeder.plugins.watch.interval";
+	public static final String FF_ADMIN_ENABLED_PROPERTY = "formsfeeder.plugins.admin.enabled";
+
+	private static final String PLUGIN_FILE_SUFFIX = ".jar";
+
+	private final SpringPluginManager pluginManager;
+	private final FeedConsumers feedConsumers;
+	private final boolean watchEnabled;
+	private final boolean adminEnabled;
+	private final List<Retired> retired = new ArrayList<>();		// Guarded by this
+	private final Map<Path, FileState> knownFiles = new HashMap<>();	// Only used by the watcher thread
+	private final Map<Path, FileState> changedFiles = new HashMap<>();	// Only used by the watcher thread
+	private final ScheduledExecutorService executor;
+
+	public PluginReloader(SpringPluginManager pluginManager, FeedConsumers feedConsumers, Environment environment) {
+		this.pluginManager = pluginManager;
+		this.feedConsumers = feedConsumers;
+		this.watchEnabled = environment.getProperty(FF_WATCH_ENABLED_PROPERTY, Boolean.class, false);
+		this.adminEnabled = adminEnabled(environment);
+		long interval = environment.getProperty(FF_WATCH_INTERVAL_PROPERTY, Long.class, 2_000L);
+		this.executor = Executors.newSingleThreadScheduledExecutor(r->{
+			Thread thread = new Thread(r, "plugin-reloader");
+			thread.setDaemon(true);
+			return thread;
+		});
+		if (watchEnabled) {
+			knownFiles.putAll(scanPluginFiles());	// These have already been loaded by the SpringPluginManager.
+			logger.info("Watching plugin directories " + pluginManager.getPluginsRoots() + " for changes.");
+		}
+		this.executor.scheduleWithFixedDelay(this::poll, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	private static boolean adminEnabled(Environment environment) {
+		if (!environment.getProperty(FF_ADMIN_ENABLED_PROPERTY, Boolean.class, false)) {
+			return false;
+		}
+		String auth = environment.getProperty(WebSecurityConfig.AUTH_PROPERTY, WebSecurityConfig.AUTH_NONE);
+		if (WebSecurityConfig.AUTH_NONE.equals(auth)) {
+			logger.error("Plugin administration cannot be enabled when authentication is turned off (" + WebSecurityConfig.AUTH_PROPERTY + "=" + auth + "), so it remains disabled.");
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Indicates whether plugins can be administered using the PluginAdminEndpoint.
+	 *
+	 * @return
+	 */
+	public boolean adminEnabled() {
+		return adminEnabled;
+	}
+
+	/**
+	 * Returns information about all the plugins that are currently loaded.
+	 *
+	 * @return
+	 */
+	public List<PluginInfo> plugins() {
+		return pluginManager.getPlugins().stream()
+							.map(PluginInfo::new)
+							.sorted((a, b)->a.id().compareTo(b.id()))
+							.collect(Collectors.toList());
+	}
+
+	/**
+	 * Loads and starts a plugin from a plugin file.  If a plugin with the same plugin id is already loaded, it is replaced.
+	 * If the new plugin cannot be loaded or started, the plugin that it was replacing is restored.
+	 *
+	 * @param pluginPath	path to the plugin file
+	 * @return information about the new plugin
+	 * @throws PluginReloaderException if the plugin cannot be loaded
+	 */
+	public synchronized PluginInfo load(Path pluginPath) {
+		if (!Files.isRegularFile(pluginPath)) {
+			throw new PluginReloaderException("Plugin file '" + pluginPath + "' does not exist.");
+		}
+		String pluginId;
+		try {
+			PluginDescriptor descriptor = pluginManager.readPluginDescriptor(pluginPath);
+			pluginId = descriptor.getPluginId();
+		} catch (PluginRuntimeException e) {
+			throw new PluginReloaderException("Unable to read plugin descriptor from '" + pluginPath + "' (" + e.getMessage() + ").", e);
+		}
+		Retired previous = pluginManager.getPlugin(pluginId) != null ? retire(pluginId) : null;
+		try {
+			String loadedId = pluginManager.loadPlugin(pluginPath);
+			PluginState state = pluginManager.startPlugin(loadedId);
+			if (state != PluginState.STARTED) {
+				throw new PluginReloaderException("Plugin '" + loadedId + "' did not start (" + state + ").");
+			}
+			refreshFeedConsumers();
+			logger.info("Loaded plugin '" + loadedId + "' from '" + pluginPath + "' (" + state + ").");
+			return new PluginInfo(pluginManager.getPlugin(loadedId));
+		} catch (RuntimeException | LinkageError e) {		// A broken plugin can fail in all sorts of ways.
+			discard(pluginId);
+			if (previous != null) {
+				restore(previous);
+			}
+			throw new PluginReloaderException("Unable to load plugin from '" + pluginPath + "' (" + e.getMessage() + ").", e);
+		}
+	}
+
+	/**
+	 * Unloads (and closes the class loader of) a plugin that failed to load or start, if it got as far as being loaded.
+	 */
+	private void discard(String pluginId) {
+		try {
+			pluginManager.discardPlugin(pluginId);
+		} catch (RuntimeException e) {
+			logger.warn("Unable to unload plugin '" + pluginId + "' after it failed to load (" + e.getMessage() + ").");
+		}
+	}
+
+	/**
+	 * Puts a retired plugin back (and restarts it if it was started).  Its FeedConsumers were never removed from the
+	 * registry, so requests keep using them throughout.
+	 */
+	private void restore(Retired previous) {
+		try {
+			pluginManager.reattachPlugin(previous.plugin, previous.classLoader);
+			if (previous.state == PluginState.STARTED) {
+				pluginManager.startPlugin(previous.pluginId);
+			}
+			retired.remove(previous);
+			logger.info("Restored plugin '" + previous.pluginId + "' (" + previous.plugin.getPluginState() + ").");
+		} catch (RuntimeException e) {
+			logger.error("Unable to restore plugin '" + previous.pluginId + "' (" + e.getMessage() + ").", e);
+		} finally {
+			try {
+				feedConsumers.refresh();
+			} catch (IllegalStateException e) {
+				logger.error("Unable to refresh FeedConsumers (" + e.getMessage() + ").", e);
+			}
+		}
+	}
+
+	/**
+	 * Reloads a plugin from its plugin file.
+	 *
+	 * @param pluginId
+	 * @return information about the reloaded plugin
+	 * @throws PluginReloaderException if the plugin is not loaded or cannot be reloaded
+	 */
+	public synchronized PluginInfo reload(String pluginId) {
+		return load(plugin(pluginId).getPluginPath());
+	}
+
+	/**
+	 * Starts a plugin that is loaded but not started.
+	 *
+	 * @param pluginId
+	 * @return information about the plugin
+	 * @throws PluginReloaderException if the plugin is not loaded or cannot be started
+	 */
+	public synchronized PluginInfo start(String pluginId) {
+		plugin(pluginId);
+		try {
+			pluginManager.startPlugin(pluginId);
+		} catch (PluginRuntimeException e) {
+			throw new PluginReloaderException("Unable to start plugin '" + pluginId + "' (" + e.getMessage() + ").", e);
+		}
+		refreshFeedConsumers();
+		logger.info("Started plugin '" + pluginId + "'.");
+		return new PluginInfo(plugin(pluginId));
+	}
+
+	/**
+	 * Stops a plugin.  Its FeedConsumers are removed from the registry but the plugin remains loaded, so it can be started
+	 * again.
+	 *
+	 * @param pluginId
+	 * @return information about the plugin
+	 * @throws PluginReloaderException if the plugin is not loaded or cannot be stopped
+	 */
+	public synchronized PluginInfo stop(String pluginId) {
+		plugin(pluginId);
+		try {
+			pluginManager.stopPlugin(pluginId);
+		} catch (PluginRuntimeException e) {
+			throw new PluginReloaderException("Unable to stop plugin '" + pluginId + "' (" + e.getMessage() + ").", e);
+		}
+		refreshFeedConsumers();
+		logger.info("Stopped plugin '" + pluginId + "'.");
+		return new PluginInfo(plugin(pluginId));
+	}
+
+	/**
+	 * Stops and unloads a plugin.  Its class loader is closed once the requests that are using it have finished.
+	 *
+	 * @param pluginId
+	 * @throws PluginReloaderException if the plugin is not loaded or cannot be unloaded
+	 */
+	public synchronized void unload(String pluginId) {
+		plugin(pluginId);
+		retire(pluginId);
+		refreshFeedConsumers();
+		logger.info("Unloaded plugin '" + pluginId + "'.");
+	}
+
+	/**
+	 * Number of unloaded (or replaced) plugins whose class loaders have not been closed yet because requests are still
+	 * using them.
+	 *
+	 * @return
+	 */
+	public synchronized int draining() {
+		return retired.size();
+	}
+
+	private PluginWrapper plugin(String pluginId) {
+		PluginWrapper plugin = pluginManager.getPlugin(Objects.requireNonNull(pluginId, "pluginId cannot be null."));
+		if (plugin == null) {
+			throw new PluginNotFoundException("Plugin '" + pluginId + "' is not loaded.");
+		}
+		return plugin;
+	}
+
+	/**
+	 * Detaches a plugin from the plugin manager, keeping track of its class loader so that it can be closed once the
+	 * requests that are running in its FeedConsumers have drained.  The FeedConsumers registry still contains the old
+	 * FeedConsumers until it is refreshed, so requests that arrive in the meantime are still handled.
+	 */
+	private Retired retire(String pluginId) {
+		PluginWrapper plugin = plugin(pluginId);
+		PluginState state = plugin.getPluginState();
+		ClassLoader classLoader = plugin.getPluginClassLoader();
+		IntSupplier inFlight = feedConsumers.inFlight(classLoader);
+		try {
+			pluginManager.detachPlugin(pluginId);
+		} catch (PluginRuntimeException | IllegalArgumentException e) {
+			throw new PluginReloaderException("Unable to unload plugin '" + pluginId + "' (" + e.getMessage() + ").", e);
+		}
+		Retired r = new Retired(plugin, state, classLoader, inFlight);
+		retired.add(r);
+		return r;
+	}
+
+	private void refreshFeedConsumers() {
+		try {
+			feedConsumers.refresh();
+		} catch (IllegalStateException e) {
+			throw new PluginReloaderException("Unable to refresh FeedConsumers (" + e.getMessage() + ").", e);
+		}
+	}
+
+	private void poll() {
+		try {
+			if (watchEnabled) {
+				watchPluginFiles();
+			}
+			closeDrained();
+		} catch (Exception e) {
+			logger.error("Error while checking plugins (" + e.getMessage() + ").", e);
+		}
+	}
+
+	/**
+	 * Closes the class loaders of retired plugins that no longer have any requests running.
+	 */
+	/* package */ synchronized void closeDrained() {
+		for (Iterator<Retired> it = retired.iterator(); it.hasNext(); ) {
+			Retired r = it.next();
+			if (r.inFlight.getAsInt() == 0) {
+				it.remove();
+				if (r.classLoader instanceof Closeable) {
+					try {
+						((Closeable)r.classLoader).close();
+					} catch (IOException e) {
+						logger.warn("Unable to close class loader of plugin '" + r.pluginId + "' (" + e.getMessage() + ").");
+					}
+				}
+				logger.info("Closed class loader of plugin '" + r.pluginId + "'.");
+			}
+		}
+	}
+
+	/**
+	 * Loads plugin files that have been added or changed (once they have stopped changing) and unloads the plugins of
+	 * plugin files that have been removed.
+	 */
+	/* package */ void watchPluginFiles() {
+		Map<Path, FileState> current = scanPluginFiles();
+		for (Map.Entry<Path, FileState> entry : current.entrySet()) {
+			Path path = entry.getKey();
+			FileState state = entry.getValue();
+			if (state.equals(knownFiles.get(path))) {
+				changedFiles.remove(path);
+			} else if (state.equals(changedFiles.get(path))) {
+				// It hasn't changed since the last scan, so it has finished being written.
+				changedFiles.remove(path);
+				knownFiles.put(path, state);
+				try {
+					load(path);
+				} catch (PluginReloaderException e) {
+					logger.error(e.getMessage(), e);
+				}
+			} else {
+				changedFiles.put(path, state);
+			}
+		}
+		for (Iterator<Path> it = knownFiles.keySet().iterator(); it.hasNext(); ) {
+			Path path = it.next();
+			if (!current.containsKey(path)) {
+				it.remove();
+				unloadPluginAt(path);
+			}
+		}
+		changedFiles.keySet().retainAll(current.keySet());
+	}
+
+	private synchronized void unloadPluginAt(Path path) {
+		for (PluginWrapper plugin : pluginManager.getPlugins()) {
+			if (plugin.getPluginPath().toAbsolutePath().normalize().equals(path)) {
+				try {
+					unload(plugin.getPluginId());
+				} catch (PluginReloaderException e) {
+					logger.error(e.getMessage(), e);
+				}
+			}
+		}
+	}
+
+	private Map<Path, FileState> scanPluginFiles() {
+		Map<Path, FileState> files = new HashMap<>();
+		for (Path root : pluginManager.getPluginsRoots()) {
+			if (Files.isDirectory(root)) {
+				try (Stream<Path> paths = Files.list(root)) {
+					paths.filter(p->p.getFileName().toString().endsWith(PLUGIN_FILE_SUFFIX) && Files.isRegularFile(p))
+						 .forEach(p->files.put(p.toAbsolutePath().normalize(), FileState.of(p)));
+				} catch (IOException e) {
+					logger.warn("Unable to scan plugin directory '" + root + "' (" + e.getMessage() + ").");
+				}
+			}
+		}
+		return files;
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	private static class Retired {
+		private final String pluginId;
+		private final PluginWrapper plugin;
+		private final PluginState state;		// The state the plugin was in before it was retired
+		private final ClassLoader classLoader;
+		private final IntSupplier inFlight;
+
+		private Retired(PluginWrapper plugin, PluginState state, ClassLoader classLoader, IntSupplier inFlight) {
+			this.pluginId = plugin.getPluginId();
+			this.plugin = plugin;
+			this.state = state;
+			this.classLoader = classLoader;
+			this.inFlight = inFlight;
+		}
+	}
+
+	private static class FileState {
+		private final long lastModified;
+		private final long size;
+
+		private FileState(long lastModified, long size) {
+			this.lastModified = lastModified;
+			this.size = size;
+		}
+
+		private static FileState of(Path path) {
+			try {
+				return new FileState(Files.getLastModifiedTime(path).toMillis(), Files.size(path));
+			} catch (IOException e) {
+				return new FileState(-1, -1);	// It will be picked up on a later scan.
+			}
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(lastModified, size);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof FileState)) {
+				return false;
+			}
+			FileState other = (FileState) obj;
+			return lastModified == other.lastModified && size == other.size;
+		}
+	}
+
+	/**
+	 * Information about a loaded plugin.
+	 */
+	public static class PluginInfo {
+		private final String id;
+		private final String version;
+		private final PluginState state;
+		private final String path;
+
+		private PluginInfo(PluginWrapper plugin) {
+			this.id = plugin.getPluginId();
+			this.version = plugin.getDescriptor().getVersion();
+			this.state = plugin.getPluginState();
+			this.path = plugin.getPluginPath().toString();
+		}
+
+		public String id() {
+			return id;
+		}
+
+		public String version() {
+			return version;
+		}
+
+		public PluginState state() {
+			return state;
+		}
+
+		public String path() {
+			return path;
+		}
+
+		@Override
+		public String toString() {
+			return "PluginInfo [id=" + id + ", version=" + version + ", state=" + state + ", path=" + path + "]";
+		}
+	}
+
+	@SuppressWarnings("serial")
+	public static class PluginReloaderException extends RuntimeException {
+
+		public PluginReloaderException(String message, Throwable cause) {
+			super(message, cause);
+		}
+
+		public PluginReloaderException(String message) {
+			super(message);
+		}
+	}
+
+	@SuppressWarnings("serial")
+	public static class PluginNotFoundException extends PluginReloaderException {
+
+		public PluginNotFoundException(String message) {
+			super(message);
+		}
+	}
+}
@@ -10,11 +10,11 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Map.Entry;
 
+import javax.ws.rs.BadRequestException;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
-import javax.xml.stream.FactoryConfigurationError;
 import javax.xml.stream.XMLStreamException;
 
 import org.glassfish.jersey.media.multipart.ContentDisposition;
@@ -27,6 +27,7 @@ import com._4point.aem.formsfeeder.core.datasource.DataSource;
 import com._4point.aem.formsfeeder.core.datasource.DataSourceList;
 import com._4point.aem.formsfeeder.core.datasource.MimeType;
 import com._4point.aem.formsfeeder.core.datasource.DataSourceList.Builder;
+import com._4point.aem.formsfeeder.core.datasource.SpillableDataSourceFactory;
 import com._4point.aem.formsfeeder.core.datasource.serialization.XmlDataSourceListDecoder;
 
 /**
@@ -61,11 +62,35 @@ public class DataSourceListJaxRsUtils {
 	/**
 	 * Converts the incoming multipart/form-data into a DataSourceList so that they can be processed by a plug-in
 	 * 
+	 * This is a naive implementation that reads each complex part into memory.  Use the version that accepts a
+	 * SpillableDataSourceFactory when the parts may be large.
+	 * 
 	 * @param formData
 	 * @return
 	 * @throws IOException 
 	 */
 	public static final DataSourceList asDataSourceList(final FormDataMultiPart formData, final Logger logger) throws IOException {
+		return asDataSourceList(formData, DataSourceListJaxRsUtils::readIntoMemory, logger);
+	}
+
+	/**
+	 * Converts the incoming multipart/form-data into a DataSourceList so that they can be processed by a plug-in
+	 * 
+	 * Complex parts are copied into DataSources created by the supplied factory, so they are only held in memory
+	 * up to the factory's threshold.  Parts that contain a serialized DataSourceList are decoded into a nested
+	 * DataSourceList whose contents are also created by the factory.  The DataSources are valid until the factory is closed.
+	 * 
+	 * @param formData
+	 * @param spillFactory
+	 * @param logger
+	 * @return
+	 * @throws IOException
+	 */
+	public static final DataSourceList asDataSourceList(final FormDataMultiPart formData, final SpillableDataSourceFactory spillFactory, final Logger logger) throws IOException {
+		return asDataSourceList(formData, spillingConverter(spillFactory), logger);
+	}
+
+	private static final DataSourceList asDataSourceList(final FormDataMultiPart formData, final BodyConverter converter, final Logger logger) throws IOException {
 		Builder builder = DataSourceList.builder();
 		for (Entry<String, List<FormDataBodyPart>> entry : formData.getFields().entrySet()) {
 			String name = entry.getKey();
@@ -86,11 +111,8 @@ public class DataSourceListJaxRsUtils {
 						logger.debug("    ModificationDate='" + (modificationDate != null ? modificationDate : "null") + "'.");
 						logger.debug("    ReadDate='" + (readDate != null ? readDate : "null") + "'.");
 					}
-					// TODO: This is a naive implementation that just reads the whole InputStream into memory.  Should fix this.
-					if (fileName != null) {
-						builder.add(name, part.getEntityAs(InputStream.class).readAllBytes(), asMimeType(part.getMediaType()), Paths.get(fileName));
-					} else {
-						builder.add(name, part.getEntityAs(InputStream.class).readAllBytes(), asMimeType(part.getMediaType()));
+					try (InputStream partStream = part.getEntityAs(InputStream.class)) {
+						builder.add(converter.convert(name, partStream, asMimeType(part.getMediaType()), fileName != null ? Paths.get(fileName) : null));
 					}
 				}
 			}
@@ -130,26 +152,20 @@ public class DataSourceListJaxRsUtils {
 	 * @return FormDataMultipart
 	 */
 	public static FormDataMultiPart asFormDataMultipart(final DataSourceList dataSourceList) {
-		try {
-			FormDataMultiPart responsesData = new FormDataMultiPart();
-			for(var dataSource : dataSourceList) {
-				if (XmlDataSourceListDecoder.DSL_MIME_TYPE_STR.equals(dataSource.contentType().asTypeString())) {
-					// We've found a serialized DataSourceList, so deserialize it, turn it into a MultipartFormData object
-					// and add it into the MultipartFormData object we're building.
-					XmlDataSourceListDecoder.wrap(dataSource.inputStream())
-											.decode()
+		FormDataMultiPart responsesData = new FormDataMultiPart();
+		for(var dataSource : dataSourceList) {
+			if (XmlDataSourceListDecoder.DSL_MIME_TYPE_STR.equals(dataSource.contentType().asTypeString())) {
+				// We've found a nested DataSourceList, so retrieve it (deserializing it only if required), turn it into
+				// a MultipartFormData object and add it into the MultipartFormData object we're building.
+				DataSourceList.Deconstructor.dsToDataSourceList(dataSource)
 											.map(DataSourceListJaxRsUtils::asFormDataMultipart)
 											.ifPresent(dsl->addFormDataPart(responsesData, dsl, dataSource.name()));
-				} else {
-					// We've found something else, so just add it into the MultipartFormData object we're building.
-					addFormDataPart(responsesData, dataSource);
-				}
+			} else {
+				// We've found something else, so just add it into the MultipartFormData object we're building.
+				addFormDataPart(responsesData, dataSource);
 			}
-			return responsesData;
-		} catch (XMLStreamException | FactoryConfigurationError e) {
-			String msg = e.getMessage();
-			throw new IllegalStateException("Encountered Exception while decoding DataSourceList Xml Serialization (" + (msg != null ? msg : "null") + ").", e);
 		}
+		return responsesData;
 	}
 
 	/**
@@ -187,10 +203,7 @@ public class DataSourceListJaxRsUtils {
 	/**
 	 * This is a rather naive implementation.  It reads the incoming data into memory.
 	 * 
-	 * A better implementation would create a DataSource from the inputStream but that would require a little more
-	 * work, so I am postponing that until later.
-	 * 
-	 * TODO: Create a better implementation for this.
+	 * Use the version that accepts a SpillableDataSourceFactory when the incoming data may be large.
 	 * 
 	 * @param in
 	 * @param contentType
@@ -198,13 +211,87 @@ public class DataSourceListJaxRsUtils {
 	 * @throws IOException
 	 */
 	public static final DataSourceList asDataSourceList(final InputStream in, final MediaType contentType, final ContentDisposition contentDisposition, final String dataSourceName, final Logger logger) throws IOException {
+		return asDataSourceList(in, contentType, contentDisposition, dataSourceName, DataSourceListJaxRsUtils::readIntoMemory, logger);
+	}
+
+	/**
+	 * Converts a single body into a DataSourceList containing one DataSource.
+	 * 
+	 * The body is copied into a DataSource created by the supplied factory, so it is only held in memory up to
+	 * the factory's threshold.  A body that contains a serialized DataSourceList is decoded into a nested DataSourceList
+	 * whose contents are also created by the factory.  The DataSource is valid until the factory is closed.
+	 * 
+	 * @param in
+	 * @param contentType
+	 * @param contentDisposition
+	 * @param dataSourceName
+	 * @param spillFactory
+	 * @param logger
+	 * @return
+	 * @throws IOException
+	 */
+	public static final DataSourceList asDataSourceList(final InputStream in, final MediaType contentType, final ContentDisposition contentDisposition, final String dataSourceName, final SpillableDataSourceFactory spillFactory, final Logger logger) throws IOException {
+		return asDataSourceList(in, contentType, contentDisposition, dataSourceName, spillingConverter(spillFactory), logger);
+	}
+
+	private static final DataSourceList asDataSourceList(final InputStream in, final MediaType contentType, final ContentDisposition contentDisposition, final String dataSourceName, final BodyConverter converter, final Logger logger) throws IOException {
 		logger.debug("Found Body Parameter of type '" + contentType.toString() + "'.");
 		String filename = contentDisposition != null ? contentDisposition.getFileName() : null;
+		return DataSourceList.builder().add(converter.convert(dataSourceName, in, asMimeType(contentType), filename != null ? Paths.get(filename) : null)).build();
+	}
+
+	/**
+	 * Reads an incoming body completely into a memory-based DataSource.
+	 * 
+	 * @param name
+	 * @param in
+	 * @param contentType
+	 * @param filename	filename associated with the body, may be null
+	 * @return
+	 * @throws IOException
+	 */
+	private static final DataSource readIntoMemory(final String name, final InputStream in, final MimeType contentType, final java.nio.file.Path filename) throws IOException {
+		Builder builder = DataSourceList.builder();
 		if (filename != null) {
-			return DataSourceList.builder().add(dataSourceName, in.readAllBytes(), asMimeType(contentType), Paths.get(filename)).build();
+			builder.add(name, in.readAllBytes(), contentType, filename);
 		} else {
-			return DataSourceList.builder().add(dataSourceName, in.readAllBytes(), asMimeType(contentType)).build();
+			builder.add(name, in.readAllBytes(), contentType);
 		}
+		return builder.build().list().get(0);
+	}
+
+	/**
+	 * Creates a BodyConverter that copies bodies into DataSources created by the supplied factory.
+	 * 
+	 * A serialized DataSourceList is decoded as it is read (rather than being copied and then decoded into memory when a
+	 * plugin asks for it), so that the DataSources it contains are also only held in memory up to the factory's threshold.
+	 * 
+	 * @param spillFactory
+	 * @return
+	 */
+	private static final BodyConverter spillingConverter(final SpillableDataSourceFactory spillFactory) {
+		return (name, in, contentType, filename)->XmlDataSourceListDecoder.DSL_MIME_TYPE_STR.equals(contentType.asTypeString())
+																	? decodeDataSourceList(name, in, spillFactory)
+																	: spillFactory.from(name, in, contentType, filename);
+	}
+
+	private static final DataSource decodeDataSourceList(final String name, final InputStream in, final SpillableDataSourceFactory spillFactory) throws IOException {
+		final DataSourceList dsl;
+		try (XmlDataSourceListDecoder decoder = XmlDataSourceListDecoder.wrap(in, spillFactory)) {
+			dsl = decoder.decode().orElse(DataSourceList.emptyList());
+		} catch (XMLStreamException | IllegalStateException e) {
+			String msg = "Error while decoding " + XmlDataSourceListDecoder.DSL_MIME_TYPE_STR + " body '" + name + "' (" + e.getMessage() + ").";
+			throw new BadRequestException(msg, Response.status(Response.Status.BAD_REQUEST).entity(msg).type(MediaType.TEXT_PLAIN_TYPE).build(), e);
+		}
+		return DataSourceList.builder().add(name, dsl).build().list().get(0);
+	}
+
+	/**
+	 * Converts an incoming body (or body part) into a DataSource. 
+	 */
+	@FunctionalInterface
+	private interface BodyConverter {
+		DataSource convert(String name, InputStream in, MimeType contentType, java.nio.file.Path filename) throws IOException;
 	}
 
 	/**
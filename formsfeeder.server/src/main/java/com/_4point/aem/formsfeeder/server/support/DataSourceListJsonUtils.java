@@ -1,6 +1,11 @@
 package com._4point.aem.formsfeeder.server.support;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -9,6 +14,7 @@ import java.util.Base64.Encoder;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Optional;
 import java.util.function.Predicate;
 
 import javax.json.Json;
@@ -20,8 +26,10 @@ import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
 import javax.json.JsonString;
 import javax.json.JsonValue;
-import javax.xml.stream.FactoryConfigurationError;
-import javax.xml.stream.XMLStreamException;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+import javax.json.stream.JsonParsingException;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.slf4j.Logger;
 
@@ -29,6 +37,9 @@ import com._4point.aem.formsfeeder.core.datasource.DataSource;
 import com._4point.aem.formsfeeder.core.datasource.DataSourceList;
 import com._4point.aem.formsfeeder.core.datasource.StandardMimeTypes;
 import com._4point.aem.formsfeeder.core.datasource.serialization.XmlDataSourceListDecoder;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 public class DataSourceListJsonUtils {
 	static final Encoder BYTE_ENCODER = Base64.getEncoder();
@@ -36,6 +47,12 @@ public class DataSourceListJsonUtils {
 	// We pre-create and cache the jsonFactory to speed up the creation of JsonObjects.
 	private static final JsonBuilderFactory jsonFactory = Json.createBuilderFactory(Collections.emptyMap());
 
+	// Jackson's JsonGenerator is used for streaming because, unlike javax.json's, it can write a String value from a Reader
+	// and Base64 encode binary values directly from an InputStream.  Neither the OutputStream nor any open Json
+	// objects/arrays are closed automatically, so an error part way through leaves the output visibly incomplete.
+	private static final JsonFactory jsonGeneratorFactory = new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+																			.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+
 	/**
 	 * Convert a Json Object into the DataSourceList
 	 * 
@@ -52,6 +69,94 @@ public class DataSourceListJsonUtils {
 		return addAsDataSource(DataSourceList.builder(), document, logger).build();
 	}
 	
+	/**
+	 * Convert the Json Object that a JsonParser is positioned at the start of into a DataSourceList.
+	 * 
+	 * This follows the same rules as asDataSourceList(JsonObject, Logger) however the DataSourceList is built directly
+	 * from the parser events so no intermediate JsonObject is created.  The parser is not closed.
+	 * 
+	 * @param parser
+	 * @param maxDepth	maximum nesting depth of Json objects and arrays (the outermost object has a depth of 1).
+	 * @param logger
+	 * @return
+	 * @throws JsonParsingException	if the Json is not an object or is nested deeper than maxDepth.
+	 */
+	public static final DataSourceList asDataSourceList(JsonParser parser, int maxDepth, Logger logger) {
+		if (!parser.hasNext() || parser.next() != Event.START_OBJECT) {
+			throw new JsonParsingException("Expected a Json object.", parser.getLocation());
+		}
+		checkDepth(parser, 1, maxDepth);
+		DataSourceList result = addAsDataSource(DataSourceList.builder(), parser, 1, maxDepth, logger).build();
+		if (parser.hasNext()) {
+			throw new JsonParsingException("Unexpected content after the end of the Json object.", parser.getLocation());
+		}
+		return result;
+	}
+
+	// Add the entries of a Json object (the START_OBJECT event has already been consumed)
+	//
+	// If a key appears more than once, the last value wins (in the position of the first occurrence), the same as when
+	// the Json is read into a JsonObject first.
+	private static DataSourceList.Builder addAsDataSource(DataSourceList.Builder builder, JsonParser parser, int depth, int maxDepth, Logger logger) {
+		LinkedHashMap<String, List<DataSource>> members = new LinkedHashMap<>();
+		Event event;
+		while ((event = parser.next()) != Event.END_OBJECT) {
+			if (event != Event.KEY_NAME) {
+				throw new JsonParsingException("Unexpected Json event '" + event.toString() + "', expected a key name.", parser.getLocation());
+			}
+			String key = parser.getString();
+			members.put(key, addAsDataSource(DataSourceList.builder(), key, parser.next(), parser, depth, maxDepth, logger).build().list());
+		}
+		members.values().forEach(builder::addDataSources);
+		return builder;
+	}
+
+	// Add the Json value that starts with the current parser event
+	private static DataSourceList.Builder addAsDataSource(DataSourceList.Builder builder, String key, Event event, JsonParser parser, int depth, int maxDepth, Logger logger) {
+		switch (event) {
+		case START_ARRAY:
+			checkDepth(parser, depth + 1, maxDepth);
+			Event arrayEvent;
+			while ((arrayEvent = parser.next()) != Event.END_ARRAY) {
+				addAsDataSource(builder, key, arrayEvent, parser, depth + 1, maxDepth, logger);
+			}
+			break;
+		case START_OBJECT:
+			checkDepth(parser, depth + 1, maxDepth);
+			builder.add(key, addAsDataSource(DataSourceList.builder(), parser, depth + 1, maxDepth, logger).build());
+			break;
+		case VALUE_FALSE:
+			builder.add(key, false);
+			break;
+		case VALUE_NULL:
+			builder.add(key, new byte[0]);	// Empty input stream.
+			break;
+		case VALUE_NUMBER:
+			BigDecimal num = parser.getBigDecimal();
+			if (num.scale() == 0) {	// Same test as JsonNumber.isIntegral()
+				builder.add(key, num.toBigIntegerExact().toString());
+			} else { 
+				builder.add(key, num.toString());
+			}
+			break;
+		case VALUE_STRING:
+			builder.add(key, parser.getString());
+			break;
+		case VALUE_TRUE:
+			builder.add(key, true);
+			break;
+		default:
+			throw new JsonParsingException("Unexpected Json event '" + event.toString() + "'.", parser.getLocation());
+		}
+		return builder;
+	}
+
+	private static void checkDepth(JsonParser parser, int depth, int maxDepth) {
+		if (depth > maxDepth) {
+			throw new JsonParsingException("Json is nested more than " + maxDepth + " levels deep.", parser.getLocation());
+		}
+	}
+
 	// Add JsonObject
 	private static DataSourceList.Builder addAsDataSource(DataSourceList.Builder builder, JsonObject obj, Logger logger) {
 		obj.forEach((k,v)->addAsDataSource(builder, k, v, logger));
@@ -110,6 +215,9 @@ public class DataSourceListJsonUtils {
 	 *  If you want to create a JSON object with an entry that is always an array, then wrap the array entries in a DataSourceList.  Leave
 	 *  the entry names as empty strings and set the containing DataSourceList name to the name of the array. 
 	 * 
+	 *  The whole JsonObject (including every DataSource's content) is held in memory, so use asJsonStreamingOutput()
+	 *  when the DataSourceList may contain large DataSources.
+	 * 
 	 * @param dataSourceList
 	 * @return FormDataMultipart
 	 */
@@ -119,11 +227,145 @@ public class DataSourceListJsonUtils {
 		return jsonBuilder.build();
 	}
 
+	/**
+	 * Returns a StreamingOutput that writes a DataSourceList out as JSON.
+	 * 
+	 * This produces the same JSON structure as asJson() (see that method for the rules), however the JSON is written
+	 * as the DataSourceList is walked rather than being built in memory first.  Binary content is Base64 encoded
+	 * directly from each DataSource's InputStream and text content is copied from a Reader, so no DataSource's content
+	 * is ever held in memory as a whole.  This means that large responses start flowing immediately and use a constant
+	 * amount of memory.
+	 * 
+	 * The structure of the DataSourceList is validated before the StreamingOutput is returned, so structural errors are
+	 * reported before any output has been written.
+	 * 
+	 * @param dataSourceList
+	 * @param logger
+	 * @return
+	 */
+	public static StreamingOutput asJsonStreamingOutput(final DataSourceList dataSourceList, Logger logger) {
+		validateDslForJsonObject(dataSourceList.list());
+		return os->writeJson(dataSourceList, os, logger);
+	}
+
+	/**
+	 * Writes a DataSourceList out to an OutputStream as UTF-8 encoded JSON.  The OutputStream is not closed.
+	 * 
+	 * If an error occurs part way through, the output is left incomplete (i.e. it is not valid JSON) so that the
+	 * client can tell that something went wrong.
+	 * 
+	 * @param dataSourceList
+	 * @param os
+	 * @param logger
+	 * @throws IOException
+	 */
+	public static void writeJson(final DataSourceList dataSourceList, final OutputStream os, Logger logger) throws IOException {
+		try (JsonGenerator generator = jsonGeneratorFactory.createGenerator(os, JsonEncoding.UTF8)) {
+			generator.writeStartObject();
+			writeDslToJsonObject(generator, dataSourceList.list(), logger);
+			generator.writeEndObject();
+		}
+	}
+
+	// Writes a list of DataSources into the JsonObject that is currently being written. 
+	private static void writeDslToJsonObject(JsonGenerator generator, final List<DataSource> dataSourceList, Logger logger) throws IOException {
+		for (List<DataSource> child : groupByName(dataSourceList).values()) {
+			DataSource firstDs = child.get(0);
+			if (child.size() > 1) {
+				generator.writeArrayFieldStart(firstDs.name());
+				for (DataSource ds : child) {
+					writeDsToJson(generator, null, ds, logger);
+				}
+				generator.writeEndArray();
+			} else {
+				writeDsToJson(generator, firstDs.name(), firstDs, logger);
+			}
+		}
+	}
+
+	// Writes a single DataSource into the JsonObject (as the member called name) or JsonArray (name is null) that is
+	// currently being written.
+	private static void writeDsToJson(JsonGenerator generator, String name, final DataSource dataSource, Logger logger) throws IOException {
+		switch(dataSource.contentType().asTypeString()) {
+		case XmlDataSourceListDecoder.DSL_MIME_TYPE_STR:
+			Optional<DataSourceList> dsl = DataSourceList.Deconstructor.dsToDataSourceList(dataSource);
+			if (dsl.isPresent()) {
+				writeDslToJson(generator, name, dsl.get(), logger);
+			}
+			break;
+		case StandardMimeTypes.TEXT_PLAIN_STR:
+			Charset charset = dataSource.contentType().charset();
+			try (Reader reader = new InputStreamReader(dataSource.inputStream(), charset != null ? charset : StandardCharsets.UTF_8)) {
+				writeFieldName(generator, name);
+				generator.writeString(reader, -1);
+			}
+			break;
+		default:
+			// Treat it as byte stream and base64 encode it into a String.
+			try (InputStream is = dataSource.inputStream()) {
+				writeFieldName(generator, name);
+				generator.writeBinary(is, -1);
+			}
+		}
+	}
+
+	// Writes a DataSourceList into the JsonObject (as the member called name) or JsonArray (name is null) that is
+	// currently being written.
+	private static void writeDslToJson(JsonGenerator generator, String name, final DataSourceList dataSourceList, Logger logger) throws IOException {
+		writeFieldName(generator, name);
+		if (hasOnlyBlankNames(dataSourceList)) {
+			generator.writeStartArray();
+			for (DataSource ds : dataSourceList.list()) {
+				writeDsToJson(generator, null, ds, logger);
+			}
+			generator.writeEndArray();
+		} else {
+			generator.writeStartObject();
+			writeDslToJsonObject(generator, dataSourceList.list(), logger);
+			generator.writeEndObject();
+		}
+	}
+
+	private static void writeFieldName(JsonGenerator generator, String name) throws IOException {
+		if (name != null) {
+			generator.writeFieldName(name);
+		}
+	}
+
+	// Checks that a list of DataSources can be written out as a JsonObject (i.e. that the same rules that asJson() enforces
+	// are met) without writing anything.
+	private static void validateDslForJsonObject(final List<DataSource> dataSourceList) {
+		for (List<DataSource> child : groupByName(dataSourceList).values()) {
+			if (child.size() == 1 && child.get(0).name().isBlank()) {
+				throw new IllegalArgumentException("DataSources contained in JsonObjects cannot have a blank name.");
+			}
+			child.forEach(DataSourceListJsonUtils::validateDsForJson);
+		}
+	}
+
+	private static void validateDsForJson(final DataSource dataSource) {
+		if (XmlDataSourceListDecoder.DSL_MIME_TYPE_STR.equals(dataSource.contentType().asTypeString())) {
+			DataSourceList.Deconstructor.dsToDataSourceList(dataSource).ifPresent(dsl->{
+				if (hasOnlyBlankNames(dsl)) {
+					dsl.forEach(DataSourceListJsonUtils::validateDsForJson);
+				} else {
+					validateDslForJsonObject(dsl.list());
+				}
+			});
+		}
+	}
+
+	// Creates a LinkedHashMap with all the datasources indexed by datasource name, maintaining lists where there are duplicate names.
+	private static LinkedHashMap<String, List<DataSource>> groupByName(final List<DataSource> dataSourceList) {
+		LinkedHashMap<String, List<DataSource>> childList = new LinkedHashMap<>(dataSourceList.size() + dataSourceList.size()/4);	// create it with some size to spare.
+		dataSourceList.forEach(ds->childList.compute(ds.name(), (k,v)->addItem(ds, v)));
+		return childList;
+	}
+
 	// Adds a list of DataSources into JsonObject using a JsonObjectBuilder. 
 	private static void addDslToJsonObject(JsonObjectBuilder jsonObjBuilder, final List<DataSource> dataSourceList, Logger logger) {
 		// Create a LinkedHashMap with all the datasources indexed by datasource name
-		LinkedHashMap<String, List<DataSource>> childList = new LinkedHashMap<>(dataSourceList.size() + dataSourceList.size()/4);	// create it with some size to spare.
-		dataSourceList.forEach(ds->childList.compute(ds.name(), (k,v)->addItem(ds, v)));	// populates the map, maintaining lists where there are duplicate names.
+		LinkedHashMap<String, List<DataSource>> childList = groupByName(dataSourceList);
 		
 		// Loop through the child list, if there's only one entry call addAsJsonObject otherwise create an JsonArray and add it.
 		for (List<DataSource> child : childList.values()) {
@@ -158,19 +400,25 @@ public class DataSourceListJsonUtils {
 		try {
 			switch(dataSource.contentType().asTypeString()) {
 			case XmlDataSourceListDecoder.DSL_MIME_TYPE_STR:
-				XmlDataSourceListDecoder.wrap(dataSource.inputStream())
-										.decode()
-										.ifPresent(dsl->addDslToJsonParent(jsonParent, dsl, logger));
+				// Nested DataSourceLists are retrieved directly where possible (without decoding a serialized version).
+				DataSourceList.Deconstructor.dsToDataSourceList(dataSource)
+											.ifPresent(dsl->addDslToJsonParent(jsonParent, dsl, logger));
 				break;
 			case StandardMimeTypes.TEXT_PLAIN_STR:
+				// A JsonObject holds complete Strings, so the content has to be read into memory here.  Use
+				// asJsonStreamingOutput() to avoid that.
 				Charset charset = dataSource.contentType().charset();
-				jsonParent.add(new String(dataSource.inputStream().readAllBytes(), charset != null ? charset : StandardCharsets.UTF_8));
+				try (InputStream is = dataSource.inputStream()) {
+					jsonParent.add(new String(is.readAllBytes(), charset != null ? charset : StandardCharsets.UTF_8));
+				}
 				break;
 			default:
 				// Treat it as byte stream and base64 encode it into a String object.
-				jsonParent.add(BYTE_ENCODER.encodeToString(dataSource.inputStream().readAllBytes()));
+				try (InputStream is = dataSource.inputStream()) {
+					jsonParent.add(BYTE_ENCODER.encodeToString(is.readAllBytes()));
+				}
 			}
-		} catch (IOException | XMLStreamException | FactoryConfigurationError e) {
+		} catch (IOException e) {
 			String msg = e.getMessage();
 			throw new IllegalStateException("Exception while converting datasources to JSON (" + (msg == null ? "null" : msg) + ").", e);
 		}
@@ -0,0 +1,86 @@
+package com._4point.aem.formsfeeder.server.support;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * InputStream that fails once more than a maximum number of bytes have been read from it.
+ *
+ * This allows a limit to be enforced on a body while it is being streamed, rather than having to read the whole body first.
+ *
+ */
+public class SizeLimitedInputStream extends FilterInputStream {
+	private final long maxSize;
+	private final String description;
+	private long count = 0;
+	private boolean exceeded = false;
+
+	/**
+	 * @param in			the stream being limited
+	 * @param maxSize		maximum number of bytes that can be read
+	 * @param description	description of the stream contents (used in the exception message, e.g. "Json request body")
+	 */
+	public SizeLimitedInputStream(InputStream in, long maxSize, String description) {
+		super(in);
+		this.maxSize = maxSize;
+		this.description = description;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = super.read();
+		if (b >= 0) {
+			checkCount(1);
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int read = super.read(b, off, len);
+		if (read > 0) {
+			checkCount(read);
+		}
+		return read;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = super.skip(n);
+		checkCount(skipped);
+		return skipped;
+	}
+
+	/**
+	 * Indicates whether the maximum size has been exceeded.  This is useful when the SizeLimitExceededException has been
+	 * wrapped in (or replaced by) another exception by the code that was reading the stream.
+	 *
+	 * @return true if more than the maximum number of bytes were read
+	 */
+	public boolean exceeded() {
+		return exceeded;
+	}
+
+	public long maxSize() {
+		return maxSize;
+	}
+
+	private void checkCount(long read) throws SizeLimitExceededException {
+		count += read;
+		if (count > maxSize) {
+			exceeded = true;
+			throw new SizeLimitExceededException(description + " exceeds the maximum size of " + maxSize + " bytes");
+		}
+	}
+
+	/**
+	 * Thrown when more than the allowed number of bytes are read from a SizeLimitedInputStream.
+	 */
+	@SuppressWarnings("serial")
+	public static class SizeLimitExceededException extends IOException {
+		private SizeLimitExceededException(String message) {
+			super(message);
+		}
+	}
+}
@@ -2,126 +2,111 @@ package com._4point.aem.formsfeeder.server.support;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
 
 import javax.ws.rs.BadRequestException;
-import javax.xml.namespace.NamespaceContext;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.XMLConstants;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 
 import org.slf4j.Logger;
-import org.xml.sax.SAXException;
 
 public class XmlDataFile {
-	private static final XPath XPATH_PROCESSOR = XPathFactory.newInstance().newXPath();
-	private static final String FORM_NODE_PATH_STR = "//xfa:data[1]/node()[1]";
-//	private static final String DATA_IDENTITY_STYLESHEET = "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">\r\n" + 
-//			"  <xsl:template match=\"@*|node()\">\r\n" + 
-//			"    <xsl:copy>\r\n" + 
-//			"      <xsl:apply-templates select=\"@*|node()\"/>\r\n" + 
-//			"    </xsl:copy>\r\n" + 
-//			"  </xsl:template>\r\n" + 
-//			"</xsl:stylesheet>";
-	
-	private static final String DATA_EXTRACTION_STYLESHEET = "<xsl:stylesheet version=\"2.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\" xmlns:xfa=\"http://www.xfa.org/schema/xfa-data/1.0/\">\r\n" +
-			"<xsl:strip-space elements=\"*\"/>" +
-			"<xsl:template match=\"/\">\r\n" + 
-			"        <xsl:copy-of select=\"" + FORM_NODE_PATH_STR + "\" copy-namespaces=\"no\">\r\n" + 	// Select the first node under xfa:data (this is always the form's data)
-			"        </xsl:copy-of>\r\n" + 
-			"    </xsl:template>" +
-			"</xsl:stylesheet>";
-	private static final XPathExpression FORM_NODE_XPATH;
+	private static final String XFA_DATA_NS = "http://www.xfa.org/schema/xfa-data/1.0/";
+	private static final String XFA_DATA_ELEMENT = "data";
+	private static final String FORMSFEEDER_ELEMENT =  "FormsFeeder";
+	private static final String PLUGIN_NAME_ELEMENT =  "Plugin";
+
+	// The factories are thread-safe once they have been configured.
+	private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newFactory();
+	private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newFactory();
 	static {
-		try {
-			XPATH_PROCESSOR.setNamespaceContext(new NamespaceContext() {
-			    public String getNamespaceURI(String prefix) {
-			        return prefix.equals("xfa") ? "http://www.xfa.org/schema/xfa-data/1.0/" : null;
-			    }
-
-			    public Iterator<String> getPrefixes(String val) {
-			        return null;
-			    }
-
-			    public String getPrefix(String uri) {
-			        return null;
-			    }
-			});
-			FORM_NODE_XPATH = XPATH_PROCESSOR.compile(FORM_NODE_PATH_STR);
-		} catch (XPathExpressionException e) {
-			throw new IllegalStateException("Unable to initialize XPaths.", e);
-		}
+		INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
 	}
 
 	/**
-	 * Use XSLT to pull the form data out of the incoming data stream (i.e. remove the xdp:xdp, xfa:datasets and xfa:data wrappers).
+	 * Pull the form data out of the incoming data stream (i.e. remove the xdp:xdp, xfa:datasets and xfa:data wrappers).
 	 * 
 	 * @param data
 	 * @param logger
 	 * @return
 	 * @throws ParserConfigurationException
-	 * @throws IOException 
-	 * @throws SAXException 
-	 * @throws TransformerException 
-	 * @throws XPathExpressionException 
 	 */
 	public static byte[] extractData(byte[] data, Logger logger) throws ParserConfigurationException {
-		return extractData(new ByteArrayInputStream(data), logger).readAllBytes();
+		return extractFormData(new ByteArrayInputStream(data), logger).data();
 	}
 	
 	/**
-	 * Use XSLT to pull the form data out of the incoming data stream (i.e. remove the xdp:xdp, xfa:datasets and xfa:data wrappers).
+	 * Pull the form data out of the incoming data stream (i.e. remove the xdp:xdp, xfa:datasets and xfa:data wrappers).
 	 * 
 	 * @param is
 	 * @param logger 
 	 * @return
 	 * @throws ParserConfigurationException 
-	 * @throws IOException 
-	 * @throws SAXException 
-	 * @throws TransformerException 
-	 * @throws XPathExpressionException 
 	 */
 	public static ByteArrayInputStream extractData(InputStream is, Logger logger) throws ParserConfigurationException {
+		return new ByteArrayInputStream(extractFormData(is, logger).data());
+	}
+
+	/**
+	 * Pull the form data out of the incoming data stream (i.e. remove the xdp:xdp, xfa:datasets and xfa:data wrappers)
+	 * and locate the FormsFeeder plugin name within it (the Plugin element of the first FormsFeeder element).
+	 * 
+	 * This is done in a single streaming pass.  The form data (the first element within the xfa:data element) is copied
+	 * to the output as it is read and parsing stops at the end of it.
+	 * 
+	 * @param data
+	 * @param logger
+	 * @return
+	 */
+	public static FormData extractFormData(byte[] data, Logger logger) {
+		return extractFormData(new ByteArrayInputStream(data), logger);
+	}
+
+	/**
+	 * Pull the form data out of the incoming data stream (i.e. remove the xdp:xdp, xfa:datasets and xfa:data wrappers)
+	 * and locate the FormsFeeder plugin name within it (the Plugin element of the first FormsFeeder element).
+	 * 
+	 * This is done in a single streaming pass.  The form data (the first element within the xfa:data element) is copied
+	 * to the output as it is read and parsing stops at the end of it.
+	 * 
+	 * @param is
+	 * @param logger
+	 * @return
+	 */
+	public static FormData extractFormData(InputStream is, Logger logger) {
 		try {
-			// Load the data into a DOM so that we can perform a query on it.
-			final DocumentBuilderFactory factory = DocumentBuilderFactory.newDefaultInstance();
-			factory.setNamespaceAware(true);
-			factory.setIgnoringElementContentWhitespace(true);
-			final DocumentBuilder builder = factory.newDocumentBuilder();
-			final org.w3c.dom.Document document = builder.parse(is);
-			
-			// Perform query to determine if a xfa:data node is present.  If not then throw an exception.
-			// This is to ensure that we don't end up returning an empty XML file.
-			String formNode = FORM_NODE_XPATH.evaluate(document);
-			if (formNode == null || formNode.isEmpty()) {
-				final String msg = "Incoming data is invalid.  It does not have a form node within an xfa:data node.";
-				logger.error(msg);
-				throw new BadRequestException(msg);
+			XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(is);
+			try {
+				// Skip to the xfa:data node.  If there isn't one then throw an exception.
+				// This is to ensure that we don't end up returning an empty XML file.
+				if (!skipToFormNode(reader)) {
+					final String msg = "Incoming data is invalid.  It does not have a form node within an xfa:data node.";
+					logger.error(msg);
+					throw new BadRequestException(msg);
+				}
+				ByteArrayOutputStream result = new ByteArrayOutputStream();
+				XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(result, "UTF-8");
+				writer.writeStartDocument("UTF-8", "1.0");
+				String pluginName = copyFormNode(reader, writer);
+				writer.writeEndDocument();
+				writer.close();
+				return new FormData(result.toByteArray(), pluginName);
+			} finally {
+				reader.close();
 			}
-			
-			// Now that we know there's an xfa:data node, then we can safely extract the data from within that node.
-			DOMSource dataSource = new DOMSource(document);
-			StreamSource styleSource = new StreamSource(new ByteArrayInputStream(DATA_EXTRACTION_STYLESHEET.getBytes(StandardCharsets.UTF_8)));
-			ByteArrayOutputStream result = new ByteArrayOutputStream();
-			StreamResult resultStream = new StreamResult(result);
-			final Transformer transformer = TransformerFactory.newDefaultInstance().newTransformer(styleSource);
-			transformer.transform(dataSource, resultStream);
-			resultStream.getOutputStream().close();
-			return new ByteArrayInputStream(result.toByteArray());
-		} catch (XPathExpressionException | SAXException | IOException | TransformerException e) {
+		} catch (XMLStreamException e) {
 			// Catch the exceptions that relate to a bad input stream so return Bad Request status code, 
 			// let the other ones go by so that we return Internal Server Error status code. 
 			String msg = "Error while parsing the incoming data stream.";
@@ -129,7 +114,181 @@ public class XmlDataFile {
 			throw new BadRequestException(msg, e);
 		}
 	}
-	
+
+	/**
+	 * Advances the reader to the first element within the first xfa:data element.
+	 * 
+	 * @return false if there is no such element
+	 */
+	private static boolean skipToFormNode(XMLStreamReader reader) throws XMLStreamException {
+		while (reader.hasNext()) {
+			if (reader.next() == XMLStreamConstants.START_ELEMENT && XFA_DATA_ELEMENT.equals(reader.getLocalName()) && XFA_DATA_NS.equals(reader.getNamespaceURI())) {
+				// Found xfa:data, now look for the first element within it.
+				while (reader.hasNext()) {
+					switch (reader.next()) {
+					case XMLStreamConstants.START_ELEMENT:
+						return true;
+					case XMLStreamConstants.END_ELEMENT:
+						return false;		// xfa:data is empty
+					default:
+						break;				// Skip whitespace, comments, etc.
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Copies the element that the reader is positioned on (and everything in it) to the writer.  Whitespace-only text is
+	 * dropped.
+	 * 
+	 * @return the plugin name (or null if there isn't one)
+	 */
+	private static String copyFormNode(XMLStreamReader reader, XMLStreamWriter writer) throws XMLStreamException {
+		int depth = 0;
+		int formsFeederDepth = -1;				// Depth of the first FormsFeeder element (while we're inside it)
+		boolean formsFeederFound = false;
+		int pluginDepth = -1;					// Depth of its Plugin element (while we're inside it)
+		StringBuilder pluginName = null;
+		List<String> namespaces = new ArrayList<>();	// Prefixes and URIs that have been declared in the output (a stack)
+		int[] namespacesAtDepth = new int[16];			// Size of the namespaces stack before each open element
+		int event = XMLStreamConstants.START_ELEMENT;
+		while (true) {
+			switch (event) {
+			case XMLStreamConstants.START_ELEMENT:
+				depth++;
+				if (depth == namespacesAtDepth.length) {
+					namespacesAtDepth = Arrays.copyOf(namespacesAtDepth, depth * 2);
+				}
+				namespacesAtDepth[depth] = namespaces.size();
+				writeStartElement(reader, writer, namespaces);
+				if (!formsFeederFound && isUnqualified(reader, FORMSFEEDER_ELEMENT)) {
+					formsFeederFound = true;
+					formsFeederDepth = depth;
+				} else if (pluginName == null && depth == formsFeederDepth + 1 && isUnqualified(reader, PLUGIN_NAME_ELEMENT)) {
+					pluginDepth = depth;
+					pluginName = new StringBuilder();
+				}
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				writer.writeEndElement();
+				namespaces.subList(namespacesAtDepth[depth], namespaces.size()).clear();
+				if (depth == pluginDepth) {
+					pluginDepth = -1;
+				} else if (depth == formsFeederDepth) {
+					formsFeederDepth = -1;
+				}
+				if (--depth == 0) {
+					return pluginName != null && !pluginName.toString().isBlank() ? pluginName.toString().strip() : null;
+				}
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+				if (pluginDepth > 0) {
+					pluginName.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+				}
+				if (!reader.isWhiteSpace()) {
+					writer.writeCharacters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+				}
+				break;
+			case XMLStreamConstants.COMMENT:
+				writer.writeComment(reader.getText());
+				break;
+			case XMLStreamConstants.PROCESSING_INSTRUCTION:
+				writer.writeProcessingInstruction(reader.getPITarget(), reader.getPIData());
+				break;
+			default:
+				break;
+			}
+			event = reader.next();
+		}
+	}
+
+	/**
+	 * Writes the start element that the reader is positioned on, along with its namespace declarations and any that it
+	 * needs because they were declared on one of the wrappers (which are not copied).
+	 */
+	private static void writeStartElement(XMLStreamReader reader, XMLStreamWriter writer, List<String> namespaces) throws XMLStreamException {
+		String prefix = nullToEmpty(reader.getPrefix());
+		String namespaceUri = nullToEmpty(reader.getNamespaceURI());
+		writer.writeStartElement(prefix, reader.getLocalName(), namespaceUri);
+		for (int i = 0; i < reader.getNamespaceCount(); i++) {
+			declareNamespace(writer, namespaces, nullToEmpty(reader.getNamespacePrefix(i)), nullToEmpty(reader.getNamespaceURI(i)));
+		}
+		declareNamespace(writer, namespaces, prefix, namespaceUri);
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			String attributePrefix = nullToEmpty(reader.getAttributePrefix(i));
+			String attributeNamespace = nullToEmpty(reader.getAttributeNamespace(i));
+			if (!attributePrefix.isEmpty()) {
+				declareNamespace(writer, namespaces, attributePrefix, attributeNamespace);
+			}
+			writer.writeAttribute(attributePrefix, attributeNamespace, reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+		}
+	}
+
+	/**
+	 * Declares a namespace unless the prefix is already bound to the URI in the output.
+	 */
+	private static void declareNamespace(XMLStreamWriter writer, List<String> namespaces, String prefix, String namespaceUri) throws XMLStreamException {
+		String boundUri = prefix.isEmpty() ? "" : null;		// Without a declaration, the default namespace is no namespace.
+		for (int i = namespaces.size() - 2; i >= 0; i -= 2) {
+			if (namespaces.get(i).equals(prefix)) {
+				boundUri = namespaces.get(i + 1);
+				break;
+			}
+		}
+		if (namespaceUri.equals(boundUri)) {
+			return;
+		}
+		if (prefix.isEmpty()) {
+			writer.writeDefaultNamespace(namespaceUri);
+		} else {
+			writer.writeNamespace(prefix, namespaceUri);
+		}
+		namespaces.add(prefix);
+		namespaces.add(namespaceUri);
+	}
+
+	private static boolean isUnqualified(XMLStreamReader reader, String localName) {
+		return localName.equals(reader.getLocalName()) && (reader.getPrefix() == null || reader.getPrefix().equals(XMLConstants.DEFAULT_NS_PREFIX));
+	}
+
+	private static String nullToEmpty(String s) {
+		return s == null ? "" : s;
+	}
+
+	/**
+	 * The form data that was extracted from an XDP along with the FormsFeeder plugin name it contains.
+	 */
+	public static class FormData {
+		private final byte[] data;
+		private final String pluginName;
+
+		private FormData(byte[] data, String pluginName) {
+			this.data = data;
+			this.pluginName = pluginName;
+		}
+
+		/**
+		 * The form data (an XML document).
+		 * 
+		 * @return
+		 */
+		public byte[] data() {
+			return data;
+		}
+
+		/**
+		 * The contents of the FormsFeeder/Plugin element (stripped of leading and trailing blanks).
+		 * 
+		 * @return the name, or empty if there is no FormsFeeder element, no Plugin element or the Plugin element is blank.
+		 */
+		public Optional<String> pluginName() {
+			return Optional.ofNullable(pluginName);
+		}
+	}
 
 	@SuppressWarnings("serial")
 	public static class XmlDataFileException extends Exception {
@@ -0,0 +1,189 @@
+package com._4point.aem.formsfeeder.server;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.core.Response;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import com._4point.aem.formsfeeder.server.AemBackendPool.BackendStats;
+import com._4point.aem.formsfeeder.server.AemBackendPool.Lease;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+
+class AemBackendPoolTest {
+	private static final String HEALTH_CHECK_PATH = "/health";
+	private static final int NUM_BACKENDS = 3;
+
+	private final List<WireMockServer> wireMockServers = new ArrayList<>();
+	private AemHttpClient aemHttpClient;
+	private AemBackendPool underTest;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		for (int i = 0; i < NUM_BACKENDS; i++) {
+			WireMockServer wireMockServer = new WireMockServer(new WireMockConfiguration().dynamicPort());
+			wireMockServer.start();
+			wireMockServer.stubFor(get("/test.js").willReturn(ok("Backend " + i)));
+			wireMockServer.stubFor(get(HEALTH_CHECK_PATH).willReturn(ok()));
+			wireMockServers.add(wireMockServer);
+		}
+		aemHttpClient = AemHttpClient.create(new AemHttpClientTest.TestAemConfig(wireMockServers.get(0).port()), new AemHttpClient.Settings(10, 10, 30_000, 60_000, 1_000, 5_000, 60_000, 4, 10));
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		if (underTest != null) {
+			underTest.close();
+		}
+		aemHttpClient.close();
+		wireMockServers.forEach(WireMockServer::stop);
+	}
+
+	@Test
+	void testAcquire_LeastOutstanding() throws Exception {
+		underTest = createPool(new MockEnvironment());
+
+		Lease lease0 = underTest.acquire();
+		Lease lease1 = underTest.acquire();
+		Lease lease2 = underTest.acquire();
+		lease1.completed(200);
+		Lease lease3 = underTest.acquire();	// Backend 1 is the only one without an outstanding request
+		lease0.completed(200);
+		Lease lease4 = underTest.acquire();	// Backends 0 and 1 are tied, so the first one listed wins
+
+		assertAll(
+				()->assertEquals(baseUrl(0), lease0.url()),
+				()->assertEquals(baseUrl(1), lease1.url()),
+				()->assertEquals(baseUrl(2), lease2.url()),
+				()->assertEquals(baseUrl(1), lease3.url()),
+				()->assertEquals(baseUrl(0), lease4.url()),
+				()->assertEquals(List.of(1, 1, 1), underTest.stats().stream().map(BackendStats::outstanding).collect(Collectors.toList()))
+				);
+	}
+
+	@Test
+	void testCall_UnhealthyBackendIsSkipped() throws Exception {
+		underTest = createPool(new MockEnvironment().withProperty(AemBackendPool.FF_UNHEALTHY_THRESHOLD_PROPERTY, "2"));
+		wireMockServers.get(0).stop();
+
+		assertThrows(ProcessingException.class, ()->getTestJs(underTest));
+		assertThrows(ProcessingException.class, ()->getTestJs(underTest));
+		String body = getTestJs(underTest);	// Backend 0 is now unhealthy
+
+		BackendStats stats0 = underTest.stats().get(0);
+		assertAll(
+				()->assertEquals("Backend 1", body),
+				()->assertFalse(stats0.healthy()),
+				()->assertEquals(2, stats0.requests()),
+				()->assertEquals(2, stats0.errors()),
+				()->assertEquals(0, stats0.outstanding()),
+				()->assertTrue(underTest.stats().get(1).healthy())
+				);
+	}
+
+	@Test
+	void testCheckHealth() throws Exception {
+		underTest = createPool(new MockEnvironment());
+		wireMockServers.get(1).stubFor(get(HEALTH_CHECK_PATH).willReturn(serviceUnavailable()));
+
+		underTest.checkHealth();
+		List<String> bodies = List.of(getTestJs(underTest), getTestJs(underTest));	// Sequential requests always go to the first healthy backend
+		boolean healthyAfterFailure = underTest.stats().get(1).healthy();
+		wireMockServers.get(1).stubFor(get(HEALTH_CHECK_PATH).willReturn(ok()));
+		underTest.checkHealth();
+
+		assertAll(
+				()->assertFalse(healthyAfterFailure),
+				()->assertEquals(List.of("Backend 0", "Backend 0"), bodies),
+				()->assertTrue(underTest.stats().get(1).healthy())
+				);
+	}
+
+	@Test
+	void testCall_AllBackendsUnhealthy() throws Exception {
+		underTest = createPool(new MockEnvironment());
+		wireMockServers.forEach(s->s.stubFor(get(HEALTH_CHECK_PATH).willReturn(serviceUnavailable())));
+		underTest.checkHealth();
+
+		assertEquals("Backend 0", getTestJs(underTest));	// Requests are still sent rather than failing outright
+	}
+
+	@Test
+	void testHedgedCall() throws Exception {
+		wireMockServers.get(0).stubFor(get("/test.js").willReturn(ok("Backend 0").withFixedDelay(2_000)));
+		underTest = createPool(new MockEnvironment().withProperty(AemBackendPool.FF_HEDGE_ENABLED_PROPERTY, "true")
+													.withProperty(AemBackendPool.FF_HEDGE_MIN_DELAY_PROPERTY, "100"));
+
+		long start = System.currentTimeMillis();
+		Response response = underTest.hedgedCall(url->aemHttpClient.client().target(url).path("/test.js").request().get());
+		long elapsed = System.currentTimeMillis() - start;
+
+		assertAll(
+				()->assertEquals("Backend 1", response.readEntity(String.class)),
+				()->assertTrue(elapsed < 2_000, "Expected hedged response in less than 2000ms but it took " + elapsed + "ms."),
+				()->assertEquals(1, underTest.stats().get(1).hedges())
+				);
+	}
+
+	@Test
+	void testHedgedCall_FastBackendIsNotHedged() throws Exception {
+		underTest = createPool(new MockEnvironment().withProperty(AemBackendPool.FF_HEDGE_ENABLED_PROPERTY, "true")
+													.withProperty(AemBackendPool.FF_HEDGE_MIN_DELAY_PROPERTY, "1000"));
+
+		Response response = underTest.hedgedCall(url->aemHttpClient.client().target(url).path("/test.js").request().get());
+
+		assertEquals("Backend 0", response.readEntity(String.class));
+		assertTrue(underTest.stats().stream().allMatch(s->s.hedges() == 0), "Expected no hedged requests.");
+		wireMockServers.get(1).verify(0, getRequestedFor(urlEqualTo("/test.js")));
+	}
+
+	@Test
+	void testStats() throws Exception {
+		underTest = createPool(new MockEnvironment());
+		wireMockServers.get(0).stubFor(get("/error.js").willReturn(serverError()));
+
+		for (int i = 0; i < 10; i++) {
+			getTestJs(underTest);
+		}
+		underTest.call(url->aemHttpClient.client().target(url).path("/error.js").request().get()).close();
+
+		BackendStats stats = underTest.stats().get(0);
+		assertAll(
+				()->assertEquals(baseUrl(0), stats.url()),
+				()->assertEquals(11, stats.requests()),
+				()->assertEquals(1, stats.errors()),
+				()->assertTrue(stats.p95LatencyMs() >= stats.p50LatencyMs()),
+				()->assertEquals(0, underTest.stats().get(1).requests())
+				);
+	}
+
+	private String getTestJs(AemBackendPool pool) {
+		return pool.call(url->aemHttpClient.client().target(url).path("/test.js").request().get()).readEntity(String.class);
+	}
+
+	private String baseUrl(int backend) {
+		return "http://localhost:" + wireMockServers.get(backend).port() + "/";
+	}
+
+	private AemBackendPool createPool(MockEnvironment environment) {
+		List<String> urls = List.of(baseUrl(0), baseUrl(1), baseUrl(2));
+		AemHttpClientTest.TestAemConfig aemConfig = new AemHttpClientTest.TestAemConfig(wireMockServers.get(0).port()) {
+			@Override
+			public List<String> urls() {
+				return urls;
+			}
+		};
+		return new AemBackendPool(aemHttpClient, aemConfig, new AemCallGuard(environment), environment.withProperty(AemBackendPool.FF_HEALTH_CHECK_PATH_PROPERTY, HEALTH_CHECK_PATH)
+																	   .withProperty(AemBackendPool.FF_HEALTH_CHECK_INTERVAL_PROPERTY, "0"));
+	}
+}
@@ -0,0 +1,172 @@
+package com._4point.aem.formsfeeder.server;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.mock.env.MockEnvironment;
+
+import com._4point.aem.formsfeeder.server.AemCallGuard.AemUnavailableException;
+import com._4point.aem.formsfeeder.server.AemCallGuard.Permit;
+import com._4point.aem.formsfeeder.server.AemCallGuard.State;
+
+class AemCallGuardTest {
+
+	@Test
+	void testAcquire_ConcurrencyLimit() throws Exception {
+		AemCallGuard underTest = new AemCallGuard(new MockEnvironment().withProperty(AemCallGuard.FF_INITIAL_LIMIT_PROPERTY, "4"));
+
+		List<Permit> permits = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			permits.add(underTest.acquire());
+		}
+		AemUnavailableException ex = assertThrows(AemUnavailableException.class, underTest::acquire);
+		permits.get(0).released();
+		Permit afterRelease = underTest.tryAcquire();
+
+		assertAll(
+				()->assertEquals(1, ex.retryAfterSeconds()),
+				()->assertNotNull(afterRelease),
+				()->assertEquals(4, underTest.stats().inFlight()),
+				()->assertEquals(1, underTest.stats().rejected())
+				);
+	}
+
+	@Test
+	void testLimit_ShrinksAsLatencyRises() throws Exception {
+		AemCallGuard underTest = new AemCallGuard(new MockEnvironment().withProperty(AemCallGuard.FF_INITIAL_LIMIT_PROPERTY, "10")
+																	   .withProperty(AemCallGuard.FF_MIN_LIMIT_PROPERTY, "2"));
+
+		runBatches(underTest, 20, 10, 1);		// Establish the normal latency
+		int normalLimit = underTest.stats().limit();
+		runBatches(underTest, 10, normalLimit, 30);	// AEM slows down
+
+		int slowLimit = underTest.stats().limit();
+		assertAll(
+				()->assertTrue(normalLimit >= 10, "Expected limit to grow at normal latency but it was " + normalLimit + "."),
+				()->assertTrue(slowLimit < normalLimit, "Expected limit to shrink from " + normalLimit + " but it was " + slowLimit + "."),
+				()->assertTrue(slowLimit >= 2, "Expected limit to stay above the minimum but it was " + slowLimit + ".")
+				);
+	}
+
+	@Test
+	void testCircuitBreaker() throws Exception {
+		AemCallGuard underTest = new AemCallGuard(new MockEnvironment().withProperty(AemCallGuard.FF_WINDOW_SIZE_PROPERTY, "10")
+																	   .withProperty(AemCallGuard.FF_MINIMUM_CALLS_PROPERTY, "4")
+																	   .withProperty(AemCallGuard.FF_OPEN_DURATION_PROPERTY, "300")
+																	   .withProperty(AemCallGuard.FF_HALF_OPEN_CALLS_PROPERTY, "2"));
+
+		underTest.acquire().completed(false);
+		underTest.acquire().completed(true);
+		underTest.acquire().completed(true);
+		State beforeTrip = underTest.stats().state();
+		underTest.acquire().completed(false);	// 2 of 4 calls failed, which reaches the 50% threshold
+		State afterTrip = underTest.stats().state();
+		AemUnavailableException ex = assertThrows(AemUnavailableException.class, underTest::acquire);
+
+		Thread.sleep(400);
+		Permit trial1 = underTest.acquire();
+		Permit trial2 = underTest.acquire();
+		Permit notAllowed = underTest.tryAcquire();	// Only 2 trial calls are allowed while half open
+		State halfOpen = underTest.stats().state();
+		trial1.completed(false);
+		trial2.completed(false);
+
+		assertAll(
+				()->assertEquals(State.CLOSED, beforeTrip),
+				()->assertEquals(State.OPEN, afterTrip),
+				()->assertEquals(1, ex.retryAfterSeconds()),
+				()->assertNull(notAllowed),
+				()->assertEquals(State.HALF_OPEN, halfOpen),
+				()->assertEquals(State.CLOSED, underTest.stats().state()),
+				()->assertEquals(1, underTest.stats().trips())
+				);
+	}
+
+	@Test
+	void testCircuitBreaker_TrialCallFails() throws Exception {
+		AemCallGuard underTest = new AemCallGuard(new MockEnvironment().withProperty(AemCallGuard.FF_MINIMUM_CALLS_PROPERTY, "2")
+																	   .withProperty(AemCallGuard.FF_OPEN_DURATION_PROPERTY, "100"));
+
+		underTest.acquire().completed(true);
+		underTest.acquire().completed(true);
+		Thread.sleep(200);
+		underTest.acquire().completed(true);
+
+		AemUnavailableException ex = assertThrows(AemUnavailableException.class, underTest::acquire);
+		assertAll(
+				()->assertEquals(State.OPEN, underTest.stats().state()),
+				()->assertEquals(2, underTest.stats().trips()),
+				()->assertEquals(1, ex.retryAfterSeconds())
+				);
+	}
+
+	@Test
+	void testRetryAfter_RemainingOpenTime() throws Exception {
+		AemCallGuard underTest = new AemCallGuard(new MockEnvironment().withProperty(AemCallGuard.FF_MINIMUM_CALLS_PROPERTY, "1")
+																	   .withProperty(AemCallGuard.FF_OPEN_DURATION_PROPERTY, "30000"));
+
+		underTest.acquire().completed(true);
+
+		AemUnavailableException ex = assertThrows(AemUnavailableException.class, underTest::acquire);
+		assertTrue(ex.retryAfterSeconds() > 25 && ex.retryAfterSeconds() <= 30, "Expected Retry-After of about 30 seconds but it was " + ex.retryAfterSeconds() + ".");
+	}
+
+	@Test
+	void testDisabled() throws Exception {
+		AemCallGuard underTest = new AemCallGuard(new MockEnvironment().withProperty(AemCallGuard.FF_GUARD_ENABLED_PROPERTY, "false")
+																	   .withProperty(AemCallGuard.FF_INITIAL_LIMIT_PROPERTY, "4")
+																	   .withProperty(AemCallGuard.FF_MINIMUM_CALLS_PROPERTY, "1"));
+
+		for (int i = 0; i < 10; i++) {
+			underTest.acquire().completed(true);
+			underTest.acquire();
+		}
+
+		assertEquals(State.CLOSED, underTest.stats().state());
+	}
+
+	@Test
+	void testGuardsPlugin() throws Exception {
+		AemCallGuard defaults = new AemCallGuard(new MockEnvironment());
+		AemCallGuard configured = new AemCallGuard(new MockEnvironment().withProperty(AemCallGuard.FF_GUARDED_PLUGINS_PROPERTY, " RenderPdf, MyAemPlugin ,"));
+
+		assertAll(
+				()->assertTrue(defaults.guardsPlugin("RenderPdf")),
+				()->assertTrue(defaults.guardsPlugin("RenderHtml5")),
+				()->assertTrue(defaults.guardsPlugin("RenderAdaptiveForm")),
+				()->assertFalse(defaults.guardsPlugin("Debug")),
+				()->assertTrue(configured.guardsPlugin("MyAemPlugin")),
+				()->assertFalse(configured.guardsPlugin("RenderHtml5")),
+				()->assertFalse(configured.guardsPlugin(""))
+				);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"0", "-1"})
+	void testInvalidWindowSize(String windowSize) throws Exception {
+		IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, ()->new AemCallGuard(new MockEnvironment().withProperty(AemCallGuard.FF_WINDOW_SIZE_PROPERTY, windowSize)));
+		assertEquals("AemCallGuard window size must be greater than zero (" + AemCallGuard.FF_WINDOW_SIZE_PROPERTY + "=" + windowSize + ").", ex.getMessage());
+	}
+
+	/**
+	 * Runs batches of concurrent calls that each take the given latency.
+	 */
+	private static void runBatches(AemCallGuard guard, int batches, int callsPerBatch, long latencyMs) throws InterruptedException {
+		for (int batch = 0; batch < batches; batch++) {
+			List<Permit> permits = new ArrayList<>();
+			for (int i = 0; i < callsPerBatch; i++) {
+				Permit permit = guard.tryAcquire();
+				if (permit != null) {
+					permits.add(permit);
+				}
+			}
+			Thread.sleep(latencyMs);
+			permits.forEach(p->p.completed(false));
+		}
+	}
+}
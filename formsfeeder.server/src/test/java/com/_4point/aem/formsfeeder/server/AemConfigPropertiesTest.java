@@ -2,12 +2,15 @@ package com._4point.aem.formsfeeder.server;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.List;
+
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.context.EnvironmentAware;
 import org.springframework.core.env.Environment;
+import org.springframework.mock.env.MockEnvironment;
 
 @SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, classes = Application.class)
 class AemConfigPropertiesTest /* implements EnvironmentAware */ {
@@ -49,6 +52,18 @@ class AemConfigPropertiesTest /* implements EnvironmentAware */ {
 		assertNotNull(aemConfig.serverType());
 	}
 
+	@Test
+	void testUrls() {
+		assertEquals(List.of(aemConfig.url()), aemConfig.urls());
+	}
+
+	@Test
+	void testUrls_Backends() {
+		AemConfigProperties underTest = new AemConfigProperties();
+		underTest.setEnvironment(new MockEnvironment().withProperty(AemConfigProperties.AEM_BACKENDS_PROPERTY, "http://aem1:4503/, http://aem2:4503,,"));
+		assertEquals(List.of("http://aem1:4503/", "http://aem2:4503/"), underTest.urls());
+	}
+
 //	@Override
 //	public void setEnvironment(Environment environment) {
 //		this.environment = environment;
@@ -0,0 +1,216 @@
+package com._4point.aem.formsfeeder.server;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.RequestEntityProcessing;
+import org.glassfish.jersey.media.multipart.FormDataMultiPart;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com._4point.aem.formsfeeder.core.api.AemConfig;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.BasicCredentials;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import com.github.tomakehurst.wiremock.http.Fault;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+
+class AemHttpClientTest {
+
+	private WireMockServer wireMockServer;
+	private AemHttpClient underTest;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		wireMockServer = new WireMockServer(new WireMockConfiguration().dynamicPort());
+		wireMockServer.start();
+		underTest = AemHttpClient.create(new TestAemConfig(wireMockServer.port()), new AemHttpClient.Settings(4, 2, 30_000, 60_000, 1_000, 5_000, 60_000, 2, 2));
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		underTest.close();
+		wireMockServer.stop();
+	}
+
+	@Test
+	void testGet_ReusesConnections() throws Exception {
+		wireMockServer.stubFor(get("/test").willReturn(ok("Response Body").withHeader("Content-Type", "text/plain")));
+
+		for (int i = 0; i < 10; i++) {
+			Response response = underTest.client().target(wireMockServer.baseUrl()).path("/test").request().get();
+			assertAll(
+					()->assertEquals(Response.Status.OK.getStatusCode(), response.getStatus()),
+					()->assertTrue(MediaType.TEXT_PLAIN_TYPE.isCompatible(response.getMediaType())),
+					()->assertEquals("Response Body", response.readEntity(String.class))
+					);
+		}
+
+		// Once the responses have been read, the connection should be back in the pool.
+		assertAll(
+				()->assertEquals(0, underTest.poolStats().getLeased()),
+				()->assertEquals(1, underTest.poolStats().getAvailable()),
+				()->assertEquals(4, underTest.poolStats().getMax())
+				);
+		wireMockServer.verify(10, getRequestedFor(urlEqualTo("/test")).withBasicAuth(new BasicCredentials("testUser", "testPassword")));
+	}
+
+	@Test
+	void testPost_Multipart() throws Exception {
+		wireMockServer.stubFor(post("/test").willReturn(ok("Posted")));
+
+		try (FormDataMultiPart multipart = new FormDataMultiPart()) {
+			multipart.field("field1", "value1");
+			Response response = underTest.client().target(wireMockServer.baseUrl()).path("/test").request().post(Entity.entity(multipart, multipart.getMediaType()));
+			assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+			assertEquals("Posted", response.readEntity(String.class));
+		}
+
+		// The entity is streamed, so make sure the multipart boundary made it into the Content-Type header.
+		wireMockServer.verify(postRequestedFor(urlEqualTo("/test"))
+				.withHeader("Content-Type", matching("multipart/form-data;\\s*boundary=.+"))
+				.withRequestBody(containing("value1")));
+	}
+
+	@Test
+	void testPost_Streamed() throws Exception {
+		wireMockServer.stubFor(post("/test").willReturn(ok("Posted")));
+
+		Response response = underTest.client().target(wireMockServer.baseUrl()).path("/test").request().post(Entity.text("Request Body"));
+		assertEquals("Posted", response.readEntity(String.class));
+
+		// The entity is written straight to the connection rather than being buffered first.
+		wireMockServer.verify(postRequestedFor(urlEqualTo("/test"))
+				.withHeader("Transfer-Encoding", equalTo("chunked"))
+				.withoutHeader("Content-Length")
+				.withHeader("Content-Type", matching("text/plain.*"))
+				.withRequestBody(equalTo("Request Body")));
+	}
+
+	@Test
+	void testPost_Buffered() throws Exception {
+		wireMockServer.stubFor(post("/test").willReturn(ok("Posted")));
+
+		Response response = underTest.client().target(wireMockServer.baseUrl()).path("/test")
+									 .property(ClientProperties.REQUEST_ENTITY_PROCESSING, RequestEntityProcessing.BUFFERED)
+									 .request().post(Entity.text("Request Body"));
+		assertEquals("Posted", response.readEntity(String.class));
+
+		wireMockServer.verify(postRequestedFor(urlEqualTo("/test"))
+				.withHeader("Content-Length", equalTo("12"))
+				.withoutHeader("Transfer-Encoding")
+				.withRequestBody(equalTo("Request Body")));
+	}
+
+	@Test
+	void testGet_NoRedirects() throws Exception {
+		wireMockServer.stubFor(get("/redirect").willReturn(temporaryRedirect("/test")));
+
+		Response response = underTest.client().target(wireMockServer.baseUrl()).path("/redirect").property(ClientProperties.FOLLOW_REDIRECTS, false).request().get();
+		response.close();
+
+		assertEquals(Response.Status.FOUND.getStatusCode(), response.getStatus());
+		assertEquals(0, underTest.poolStats().getLeased());
+	}
+
+	@Test
+	void testGet_RetriedAfterNoResponse() throws Exception {
+		wireMockServer.stubFor(get("/test").inScenario("Stale").whenScenarioStateIs(Scenario.STARTED)
+										   .willReturn(aResponse().withFault(Fault.EMPTY_RESPONSE)).willSetStateTo("Reconnected"));
+		wireMockServer.stubFor(get("/test").inScenario("Stale").whenScenarioStateIs("Reconnected").willReturn(ok("Response Body")));
+
+		Response response = underTest.client().target(wireMockServer.baseUrl()).path("/test").request().get();
+
+		assertEquals("Response Body", response.readEntity(String.class));
+		wireMockServer.verify(2, getRequestedFor(urlEqualTo("/test")));
+	}
+
+	@Test
+	void testPost_NotRetriedAfterNoResponse() throws Exception {
+		wireMockServer.stubFor(post("/test").willReturn(aResponse().withFault(Fault.EMPTY_RESPONSE)));
+
+		// AEM may have processed the POST already, so it must not be sent again.
+		assertThrows(ProcessingException.class, ()->underTest.client().target(wireMockServer.baseUrl()).path("/test").request().post(Entity.text("Body")));
+		wireMockServer.verify(1, postRequestedFor(urlEqualTo("/test")));
+	}
+
+	@Test
+	void testGet_DefaultSocketTimeout() throws Exception {
+		wireMockServer.stubFor(get("/slow").willReturn(ok("Slow").withFixedDelay(2_000)));
+
+		try (AemHttpClient shortTimeout = AemHttpClient.create(new TestAemConfig(wireMockServer.port()), new AemHttpClient.Settings(4, 2, 30_000, 60_000, 1_000, 5_000, 200, 2, 2))) {
+			// No READ_TIMEOUT is set on the request, so the client's socket timeout applies.
+			assertThrows(ProcessingException.class, ()->shortTimeout.client().target(wireMockServer.baseUrl()).path("/slow").request().get());
+			assertEquals(0, shortTimeout.poolStats().getLeased());
+		}
+	}
+
+	@Test
+	void testAsyncGet_RejectsWhenQueueIsFull() throws Exception {
+		wireMockServer.stubFor(get("/slow").willReturn(ok("Slow").withFixedDelay(500)));
+
+		// 2 threads and a queue of 2 means that the fifth concurrent request must be rejected.
+		List<Future<Response>> accepted = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			accepted.add(underTest.client().target(wireMockServer.baseUrl()).path("/slow").request().async().get());
+		}
+		assertThrows(RejectedExecutionException.class, ()->underTest.client().target(wireMockServer.baseUrl()).path("/slow").request().async().get());
+
+		for (Future<Response> future : accepted) {
+			Response response = future.get(5, TimeUnit.SECONDS);
+			assertEquals("Slow", response.readEntity(String.class));
+		}
+		assertEquals(0, underTest.asyncQueued());
+	}
+
+	/* package */ static class TestAemConfig implements AemConfig {
+		private final int port;
+
+		/* package */ TestAemConfig(int port) {
+			this.port = port;
+		}
+
+		@Override
+		public String host() {
+			return "localhost";
+		}
+
+		@Override
+		public int port() {
+			return port;
+		}
+
+		@Override
+		public String username() {
+			return "testUser";
+		}
+
+		@Override
+		public String secret() {
+			return "testPassword";
+		}
+
+		@Override
+		public Protocol protocol() {
+			return Protocol.HTTP;
+		}
+
+		@Override
+		public AemServerType serverType() {
+			return AemServerType.OSGI;
+		}
+	}
+}
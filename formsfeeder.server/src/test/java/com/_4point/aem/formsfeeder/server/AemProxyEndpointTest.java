@@ -150,11 +150,7 @@ class AemProxyEndpointTest implements EnvironmentAware {
 		assertEquals(Response.Status.OK.getStatusCode(), response.getStatus(), ()->"Unexpected response status returned from URL (" + csrf_token_path + ")." + getResponseBody(response));
 		final MediaType mediaType = response.getMediaType();
 		System.out.println(mediaType.toString());
-		if (USE_WIREMOCK) {	// For some reason that I can't determine, wiremock returns text/html.  I would like to fix this, but for now, I work around it.
-			assertTrue(MediaType.TEXT_HTML_TYPE.isCompatible(mediaType), "Expected response media type (" + response.getMediaType().toString() + ") to be compatible with 'text/html'.");
-		} else {
-			assertTrue(MediaType.APPLICATION_JSON_TYPE.isCompatible(mediaType), "Expected response media type (" + response.getMediaType().toString() + ") to be compatible with 'application/json'.");
-		}
+		assertTrue(MediaType.APPLICATION_JSON_TYPE.isCompatible(mediaType), "Expected response media type (" + response.getMediaType().toString() + ") to be compatible with 'application/json'.");
 		assertTrue(response.hasEntity(), "Expected response to have entity");
 		byte[] resultBytes = ((InputStream)response.getEntity()).readAllBytes();
 		if (SAVE_RESULTS /* && USE_AEM */) {
@@ -0,0 +1,138 @@
+package com._4point.aem.formsfeeder.server;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.core.Response;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import com._4point.aem.formsfeeder.server.AemProxyRelay.Route;
+import com._4point.aem.formsfeeder.server.CsrfTokenRelayTest.TestAsyncResponse;
+
+class AemProxyRelayTest {
+	private final ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor();
+	private AemHttpClient aemHttpClient;
+	private AemProxyRelay underTest;
+
+	@AfterEach
+	void tearDown() throws Exception {
+		if (underTest != null) {
+			underTest.close();
+		}
+		if (aemHttpClient != null) {
+			aemHttpClient.close();
+		}
+		timeoutScheduler.shutdownNow();
+	}
+
+	@Test
+	void testRelay() throws Exception {
+		underTest = createRelay(4, 10, new MockEnvironment());
+		CountDownLatch aemResponded = new CountDownLatch(1);
+
+		TestAsyncResponse asyncResponse = relay(Route.GET, ()->{
+			await(aemResponded);
+			return Response.ok("Test Body").build();
+		});
+		boolean completedBeforeAemResponded = asyncResponse.response.isDone();	// relay() returned while AEM was still "working"
+		aemResponded.countDown();
+		Response response = asyncResponse.response.get(5, TimeUnit.SECONDS);
+
+		assertAll(
+				()->assertFalse(completedBeforeAemResponded),
+				()->assertEquals(Response.Status.OK.getStatusCode(), response.getStatus()),
+				()->assertEquals("Test Body", response.getEntity()),
+				()->assertTrue(asyncResponse.resumedOnThread.startsWith("aem-proxy-streaming-"), "Expected response to be streamed on a streaming thread but it was streamed on '" + asyncResponse.resumedOnThread + "'."),
+				()->assertEquals(0, underTest.relaysInFlight())
+				);
+	}
+
+	@Test
+	void testRelay_RouteTimeouts() throws Exception {
+		underTest = createRelay(4, 10, new MockEnvironment().withProperty(AemProxyRelay.FF_PROXY_TIMEOUT_PROPERTY, "5000")
+															.withProperty(Route.POST.timeoutProperty(), "200"));
+		Supplier<Response> slowAemCall = ()->{
+			sleep(1_000);
+			return Response.ok().build();
+		};
+
+		TestAsyncResponse post = relay(Route.POST, slowAemCall);
+		TestAsyncResponse get = relay(Route.GET, slowAemCall);
+
+		assertAll(
+				()->assertEquals(200, underTest.timeout(Route.POST)),
+				()->assertEquals(5_000, underTest.timeout(Route.SUBMIT)),
+				()->assertEquals(Response.Status.GATEWAY_TIMEOUT.getStatusCode(), post.response.get(5, TimeUnit.SECONDS).getStatus()),
+				()->assertEquals(Response.Status.OK.getStatusCode(), get.response.get(5, TimeUnit.SECONDS).getStatus())
+				);
+	}
+
+	@Test
+	void testRelay_AemUnavailable() throws Exception {
+		underTest = createRelay(4, 10, new MockEnvironment());
+
+		Response response = relay(Route.GET, ()->{ throw new ProcessingException("Connection refused"); }).response.get(5, TimeUnit.SECONDS);
+
+		assertEquals(Response.Status.BAD_GATEWAY.getStatusCode(), response.getStatus());
+		assertEquals(0, underTest.relaysInFlight());
+	}
+
+	@Test
+	void testRelay_TooManyWaitingOnAem() throws Exception {
+		underTest = createRelay(1, 1, new MockEnvironment());
+		CountDownLatch aemResponded = new CountDownLatch(1);
+		Supplier<Response> blockedAemCall = ()->{
+			await(aemResponded);
+			return Response.ok().build();
+		};
+
+		// One request running and one queued, so the third has nowhere to go.
+		List<CompletableFuture<Response>> responses = List.of(relay(Route.GET, blockedAemCall).response, relay(Route.GET, blockedAemCall).response, relay(Route.GET, blockedAemCall).response);
+		Response rejected = responses.get(2).get(5, TimeUnit.SECONDS);
+		aemResponded.countDown();
+
+		assertAll(
+				()->assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), rejected.getStatus()),
+				()->assertEquals(Response.Status.OK.getStatusCode(), responses.get(0).get(5, TimeUnit.SECONDS).getStatus()),
+				()->assertEquals(Response.Status.OK.getStatusCode(), responses.get(1).get(5, TimeUnit.SECONDS).getStatus())
+				);
+	}
+
+	private AemProxyRelay createRelay(int asyncThreads, int asyncQueueSize, MockEnvironment environment) {
+		aemHttpClient = AemHttpClient.create(new AemHttpClientTest.TestAemConfig(8080), new AemHttpClient.Settings(4, 4, 30_000, 60_000, 1_000, 5_000, 60_000, asyncThreads, asyncQueueSize));
+		return new AemProxyRelay(aemHttpClient, environment);
+	}
+
+	private TestAsyncResponse relay(Route route, Supplier<Response> aemCall) {
+		TestAsyncResponse asyncResponse = new TestAsyncResponse(timeoutScheduler);
+		underTest.relay(route, asyncResponse, aemCall);
+		return asyncResponse;
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,273 @@
+package com._4point.aem.formsfeeder.server;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.CompletionCallback;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+
+class CsrfTokenRelayTest {
+	private static final String TOKEN_PATH = "/libs/granite/csrf/token.json";
+	private static final String TOKEN_JSON = "{\"token\":\"testToken\"}";
+	private static final int ASYNC_THREADS = 8;
+
+	private final ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor();
+	private WireMockServer wireMockServer;
+	private AemHttpClient aemHttpClient;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		wireMockServer = new WireMockServer(new WireMockConfiguration().dynamicPort());
+		wireMockServer.start();
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		if (aemHttpClient != null) {
+			aemHttpClient.close();
+		}
+		wireMockServer.stop();
+		timeoutScheduler.shutdownNow();
+	}
+
+	@Test
+	void testRelay() throws Exception {
+		wireMockServer.stubFor(get(TOKEN_PATH).willReturn(okJson(TOKEN_JSON).withHeader("Cache-Control", "no-cache")));
+		CsrfTokenRelay underTest = createRelay(ASYNC_THREADS, 1_000, 10, 10_000);
+
+		Response response = relay(underTest).get(5, TimeUnit.SECONDS);
+
+		assertAll(
+				()->assertEquals(Response.Status.OK.getStatusCode(), response.getStatus()),
+				()->assertTrue(MediaType.APPLICATION_JSON_TYPE.isCompatible(response.getMediaType()), "Expected response media type (" + response.getMediaType() + ") to be compatible with 'application/json'."),
+				()->assertEquals("no-cache", response.getHeaderString("Cache-Control")),
+				()->assertEquals(TOKEN_JSON, new String((byte[])response.getEntity())),
+				()->assertEquals(0, underTest.relaysInFlight())
+				);
+	}
+
+	@Test
+	void testRelay_InFlight() throws Exception {
+		wireMockServer.stubFor(get(TOKEN_PATH).willReturn(okJson(TOKEN_JSON).withFixedDelay(500)));
+		CsrfTokenRelay underTest = createRelay(ASYNC_THREADS, 1_000, 10, 10_000);
+
+		CompletableFuture<Response> response = relay(underTest);
+		int inFlightDuringRelay = underTest.relaysInFlight();
+
+		assertAll(
+				()->assertEquals(1, inFlightDuringRelay),
+				()->assertEquals(Response.Status.OK.getStatusCode(), response.get(5, TimeUnit.SECONDS).getStatus()),
+				()->assertEquals(0, underTest.relaysInFlight())
+				);
+	}
+
+	@Test
+	void testRelay_ThreadsStayFlatUnderLoad() throws Exception {
+		final int numRequests = 1_000;
+		wireMockServer.stubFor(get(TOKEN_PATH).willReturn(okJson(TOKEN_JSON).withFixedDelay(5)));
+		CsrfTokenRelay underTest = createRelay(ASYNC_THREADS, numRequests, numRequests, 30_000);
+		ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		int threadsBefore = threadMXBean.getThreadCount();
+		long asyncThreadsBefore = countAsyncThreads();	// Other AemHttpClients in this JVM may also have asynchronous request threads.
+		threadMXBean.resetPeakThreadCount();
+
+		List<CompletableFuture<Response>> responses = new ArrayList<>(numRequests);
+		int maxInFlight = 0;
+		for (int i = 0; i < numRequests; i++) {
+			responses.add(relay(underTest));
+			maxInFlight = Math.max(maxInFlight, underTest.relaysInFlight());
+		}
+		int inFlightDuringSubmit = maxInFlight;
+		CompletableFuture.allOf(responses.toArray(new CompletableFuture[0])).get(60, TimeUnit.SECONDS);
+
+		long asyncThreads = countAsyncThreads() - asyncThreadsBefore;
+		int threadGrowth = threadMXBean.getPeakThreadCount() - threadsBefore;
+		assertAll(
+				()->assertTrue(inFlightDuringSubmit > 0 && inFlightDuringSubmit <= numRequests, "Expected relays to be in flight but found " + inFlightDuringSubmit + "."),
+				()->assertTrue(responses.stream().allMatch(r->r.join().getStatus() == Response.Status.OK.getStatusCode()), "Expected all CSRF token requests to succeed."),
+				()->assertTrue(asyncThreads <= ASYNC_THREADS, "Expected no more than " + ASYNC_THREADS + " asynchronous request threads but found " + asyncThreads + "."),
+				()->assertTrue(threadGrowth < 100, "Expected thread count to stay flat but it grew by " + threadGrowth + " threads."),
+				()->assertEquals(0, underTest.relaysInFlight())
+				);
+		wireMockServer.verify(numRequests, getRequestedFor(urlEqualTo(TOKEN_PATH)));
+	}
+
+	@Test
+	void testRelay_QueueFull() throws Exception {
+		wireMockServer.stubFor(get(TOKEN_PATH).willReturn(okJson(TOKEN_JSON).withFixedDelay(500)));
+		CsrfTokenRelay underTest = createRelay(1, 1, 1, 10_000);
+
+		// One request running and one queued, so the third has nowhere to go.
+		List<CompletableFuture<Response>> responses = List.of(relay(underTest), relay(underTest), relay(underTest));
+
+		assertAll(
+				()->assertEquals(Response.Status.OK.getStatusCode(), responses.get(0).get(5, TimeUnit.SECONDS).getStatus()),
+				()->assertEquals(Response.Status.OK.getStatusCode(), responses.get(1).get(5, TimeUnit.SECONDS).getStatus()),
+				()->assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), responses.get(2).get(5, TimeUnit.SECONDS).getStatus()),
+				()->assertEquals(0, underTest.relaysInFlight())
+				);
+	}
+
+	@Test
+	void testRelay_Timeout() throws Exception {
+		wireMockServer.stubFor(get(TOKEN_PATH).willReturn(okJson(TOKEN_JSON).withFixedDelay(2_000)));
+		CsrfTokenRelay underTest = createRelay(ASYNC_THREADS, 1_000, 10, 200);
+
+		Response response = relay(underTest).get(5, TimeUnit.SECONDS);
+
+		assertEquals(Response.Status.GATEWAY_TIMEOUT.getStatusCode(), response.getStatus());
+		assertEquals(0, underTest.relaysInFlight());
+	}
+
+	@Test
+	void testRelay_AemUnavailable() throws Exception {
+		CsrfTokenRelay underTest = createRelay(ASYNC_THREADS, 1_000, 10, 10_000);
+		wireMockServer.stop();
+
+		Response response = relay(underTest).get(5, TimeUnit.SECONDS);
+
+		assertEquals(Response.Status.BAD_GATEWAY.getStatusCode(), response.getStatus());
+		assertEquals(0, underTest.relaysInFlight());
+	}
+
+	private static long countAsyncThreads() {
+		return Thread.getAllStackTraces().keySet().stream().filter(t->t.getName().startsWith("aem-client-async-")).count();
+	}
+
+	private CsrfTokenRelay createRelay(int asyncThreads, int asyncQueueSize, int maxConnections, int timeoutMs) {
+		aemHttpClient = AemHttpClient.create(new AemHttpClientTest.TestAemConfig(wireMockServer.port()),
+											 new AemHttpClient.Settings(maxConnections, maxConnections, 30_000, 60_000, 1_000, 30_000, 60_000, asyncThreads, asyncQueueSize));
+		return new CsrfTokenRelay(aemHttpClient, new AemBackendPool(aemHttpClient, new AemHttpClientTest.TestAemConfig(wireMockServer.port()), new AemCallGuard(new MockEnvironment()), new MockEnvironment()),
+								  new MockEnvironment().withProperty(CsrfTokenRelay.FF_CSRF_TOKEN_TIMEOUT_PROPERTY, Integer.toString(timeoutMs)));
+	}
+
+	private CompletableFuture<Response> relay(CsrfTokenRelay relay) {
+		TestAsyncResponse asyncResponse = new TestAsyncResponse(timeoutScheduler);
+		relay.relay(TOKEN_PATH, asyncResponse);
+		return asyncResponse.response;
+	}
+
+	/**
+	 * Minimal AsyncResponse that completes a CompletableFuture when it is resumed (or times out).
+	 */
+	/* package */ static class TestAsyncResponse implements AsyncResponse {
+		private final ScheduledExecutorService timeoutScheduler;
+		/* package */ final CompletableFuture<Response> response = new CompletableFuture<>();
+		/* package */ volatile String resumedOnThread;
+		private final List<CompletionCallback> completionCallbacks = Collections.synchronizedList(new ArrayList<>());
+		private final AtomicBoolean resumed = new AtomicBoolean();
+		private volatile TimeoutHandler timeoutHandler;
+		private volatile ScheduledFuture<?> timeout;
+
+		/* package */ TestAsyncResponse(ScheduledExecutorService timeoutScheduler) {
+			this.timeoutScheduler = timeoutScheduler;
+		}
+
+		@Override
+		public boolean resume(Object result) {
+			if (!resumed.compareAndSet(false, true)) {
+				return false;
+			}
+			if (timeout != null) {
+				timeout.cancel(false);
+			}
+			resumedOnThread = Thread.currentThread().getName();
+			completionCallbacks.forEach(c->c.onComplete(null));
+			response.complete((Response)result);
+			return true;
+		}
+
+		@Override
+		public boolean resume(Throwable throwable) {
+			return resume(Response.serverError().build());
+		}
+
+		@Override
+		public boolean cancel() {
+			return resume(Response.status(Response.Status.SERVICE_UNAVAILABLE).build());
+		}
+
+		@Override
+		public boolean cancel(int retryAfter) {
+			return cancel();
+		}
+
+		@Override
+		public boolean cancel(Date retryAfter) {
+			return cancel();
+		}
+
+		@Override
+		public boolean isSuspended() {
+			return !resumed.get();
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return false;
+		}
+
+		@Override
+		public boolean isDone() {
+			return resumed.get();
+		}
+
+		@Override
+		public boolean setTimeout(long time, TimeUnit unit) {
+			timeout = timeoutScheduler.schedule(()->timeoutHandler.handleTimeout(this), time, unit);
+			return true;
+		}
+
+		@Override
+		public void setTimeoutHandler(TimeoutHandler handler) {
+			this.timeoutHandler = handler;
+		}
+
+		@Override
+		public Collection<Class<?>> register(Class<?> callback) {
+			throw new UnsupportedOperationException("register(Class) is not supported.");
+		}
+
+		@Override
+		public Map<Class<?>, Collection<Class<?>>> register(Class<?> callback, Class<?>... callbacks) {
+			throw new UnsupportedOperationException("register(Class, Class...) is not supported.");
+		}
+
+		@Override
+		public Collection<Class<?>> register(Object callback) {
+			completionCallbacks.add((CompletionCallback)callback);
+			return List.of(CompletionCallback.class);
+		}
+
+		@Override
+		public Map<Class<?>, Collection<Class<?>>> register(Object callback, Object... callbacks) {
+			throw new UnsupportedOperationException("register(Object, Object...) is not supported.");
+		}
+	}
+}
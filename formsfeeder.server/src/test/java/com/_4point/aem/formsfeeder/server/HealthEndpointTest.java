@@ -0,0 +1,44 @@
+package com._4point.aem.formsfeeder.server;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringReader;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, classes = Application.class)
+class HealthEndpointTest {
+
+	@LocalServerPort
+	private int port;
+
+	@Test
+	void testHealth() throws Exception {
+		Response response = ClientBuilder.newClient().target("http://localhost:" + port).path("/health").request().accept(MediaType.APPLICATION_JSON_TYPE).get();
+
+		assertEquals(Response.Status.OK.getStatusCode(), response.getStatus(), ()->"Unexpected response status returned from URL (" + response.getStatusInfo().getReasonPhrase() + ").");
+		JsonObject health = Json.createReader(new StringReader(response.readEntity(String.class))).readObject();
+		assertAll(
+				()->assertEquals("UP", health.getString("status")),
+				()->assertEquals("CLOSED", health.getJsonObject("aemCallGuard").getString("state")),
+				()->assertTrue(health.getJsonObject("aemCallGuard").getInt("limit") > 0),
+				()->assertEquals(1, health.getJsonArray("aemBackends").size()),
+				()->assertEquals(50, health.getJsonObject("aemConnectionPool").getInt("max")),
+				()->assertTrue(health.getJsonObject("aemConnectionPool").containsKey("pending")),
+				()->assertEquals(0, health.getJsonObject("csrfTokenRelay").getInt("inFlight")),
+				()->assertEquals(0, health.getJsonObject("aemProxyRelay").getInt("inFlight")),
+				()->assertEquals(0, health.getJsonObject("aemProxyRelay").getInt("streamingActive")),
+				()->assertTrue(health.getJsonObject("proxyResponseCache").containsKey("hits")),
+				()->assertTrue(health.getJsonArray("plugins").getValuesAs(JsonObject.class).stream().anyMatch(p->p.getString("name").equals("MockSubmit")), ()->"Expected MockSubmit plugin in " + health.getJsonArray("plugins"))
+				);
+	}
+}
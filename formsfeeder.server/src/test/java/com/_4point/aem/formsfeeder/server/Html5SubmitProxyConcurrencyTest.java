@@ -0,0 +1,159 @@
+package com._4point.aem.formsfeeder.server;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.jersey.media.multipart.FormDataMultiPart;
+import org.glassfish.jersey.media.multipart.MultiPartFeature;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import com.github.tomakehurst.wiremock.extension.responsetemplating.ResponseTemplateTransformer;
+
+/**
+ * Submits many HTML5 forms at once to make sure that the (singleton) Html5SubmitProxy keeps each submission separate.
+ *
+ * Unlike Html5SubmitProxyTest, Wiremock is started once for all the tests in this class, because restarting it leaves
+ * lots of stale connections in the AEM connection pool after a concurrent test.
+ *
+ */
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, classes = Application.class)
+class Html5SubmitProxyConcurrencyTest {
+
+	private static final String SUBMIT_HTML5_FORM_SERVICE_PATH = "/content/xfaforms/profiles/default.submit.html";
+	private static final int NUM_SUBMISSIONS = 200;
+
+	private static WireMockServer wireMockServer;
+	private static Integer wiremockPort = null;
+
+	@LocalServerPort
+	private int port;
+
+	private URI uri;
+	private Client client;
+
+	@DynamicPropertySource
+    static void registerPgProperties(DynamicPropertyRegistry registry) {
+		registry.add(TestConstants.ENV_FORMSFEEDER_AEM_HOST, ()->"localhost");
+		registry.add(TestConstants.ENV_FORMSFEEDER_AEM_PORT, ()->wiremockPort);
+	}
+
+	@BeforeAll
+	static void setUpAll() throws Exception {
+		wireMockServer = new WireMockServer(new WireMockConfiguration().dynamicPort().extensions(new ResponseTemplateTransformer(true)));
+		wireMockServer.start();
+		wiremockPort = wireMockServer.port();
+	}
+
+	@AfterAll
+	static void tearDownAll() throws Exception {
+		wireMockServer.stop();
+	}
+
+	@BeforeEach
+	void setUp() throws Exception {
+		uri = TestConstants.getBaseUri(port);
+		client = ClientBuilder.newClient().register(MultiPartFeature.class);
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		client.close();
+	}
+
+	/**
+	 * Validates that concurrent submissions don't see each other's HTML5 parameters.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	void testHtml5SubmitPost_Concurrent() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(16);
+		try {
+			List<Future<String>> results = IntStream.range(0, NUM_SUBMISSIONS)
+													.mapToObj(i->executor.submit(()->submitReturnHtml5Parameters("submitUrl" + i)))
+													.collect(Collectors.toList());
+			for (int i = 0; i < NUM_SUBMISSIONS; i++) {
+				assertEquals("TemplateUrl='SampleForm.xdp', ContentRoot='crx:///content/dam/formsanddocuments/sample-forms', SubmitUrl='submitUrl" + i + "'", results.get(i).get());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Validates that submissions are processed in parallel (i.e. concurrent submissions complete faster than the same
+	 * number of sequential submissions).  This is only meaningful on a machine with more than one core.
+	 *
+	 * Because it depends on wall clock times, this is a benchmark rather than part of the normal build, it is run with
+	 * "mvn test -Pbenchmark".
+	 *
+	 * @throws Exception
+	 */
+	@Tag("Benchmark")
+	@Test
+	void testHtml5SubmitPost_ThroughputScales() throws Exception {
+		final int numThreads = Runtime.getRuntime().availableProcessors();
+		assumeTrue(numThreads > 1, "Throughput scaling can only be measured on a machine with more than one core.");
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			for (int i = 0; i < 20; i++) {	// Warm up
+				submitReturnHtml5Parameters("warmUp" + i);
+			}
+			long sequentialStart = System.nanoTime();
+			for (int i = 0; i < NUM_SUBMISSIONS; i++) {
+				submitReturnHtml5Parameters("sequential" + i);
+			}
+			long sequentialTime = System.nanoTime() - sequentialStart;
+
+			long concurrentStart = System.nanoTime();
+			List<Future<String>> results = IntStream.range(0, NUM_SUBMISSIONS)
+													.mapToObj(i->executor.submit(()->submitReturnHtml5Parameters("concurrent" + i)))
+													.collect(Collectors.toList());
+			for (Future<String> result : results) {
+				result.get();
+			}
+			long concurrentTime = System.nanoTime() - concurrentStart;
+
+			assertTrue(concurrentTime * 1.5 < sequentialTime, "Expected " + numThreads + " threads to be at least 1.5 times faster than one, but sequential took " + sequentialTime / 1_000_000 + "ms and concurrent took " + concurrentTime / 1_000_000 + "ms.");
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private String submitReturnHtml5Parameters(String submitUrl) {
+		final FormDataMultiPart getHtml5Form = Html5SubmitProxyTest.mockDefaultFormData(submitUrl, "MockSubmit", "ReturnHtml5Parameters");
+		Response response = client.target(uri)
+								  .path(SUBMIT_HTML5_FORM_SERVICE_PATH)
+								  .request()
+								  .accept(MediaType.TEXT_PLAIN_TYPE)
+								  .post(Entity.entity(getHtml5Form, getHtml5Form.getMediaType()));
+		assertEquals(Response.Status.OK.getStatusCode(), response.getStatus(), ()->"Unexpected response status returned from URL (" + this.uri.resolve(SUBMIT_HTML5_FORM_SERVICE_PATH) + ")." + TestConstants.getResponseBody(response));
+		return TestConstants.getResponseBody(response);
+	}
+}
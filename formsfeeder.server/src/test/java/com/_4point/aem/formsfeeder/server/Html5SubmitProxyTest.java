@@ -1,6 +1,7 @@
 package com._4point.aem.formsfeeder.server;
 
 import static com._4point.aem.formsfeeder.server.TestConstants.getResponseBody;
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.IOException;
@@ -20,6 +21,8 @@ import javax.ws.rs.core.Response;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDDocumentCatalog;
 import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.media.multipart.FormDataBodyPart;
+import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
 import org.glassfish.jersey.media.multipart.FormDataMultiPart;
 import org.glassfish.jersey.media.multipart.MultiPartFeature;
 import org.junit.jupiter.api.AfterEach;
@@ -101,6 +104,9 @@ class Html5SubmitProxyTest {
 		if (USE_WIREMOCK) {
 			registry.add(TestConstants.ENV_FORMSFEEDER_AEM_HOST, ()->"localhost");
 			registry.add(TestConstants.ENV_FORMSFEEDER_AEM_PORT, ()->wiremockPort);
+			// Wiremock is restarted for each test, which closes the pooled connections.  POSTs are not retried on a
+			// closed connection, so check pooled connections before each one is reused.
+			registry.add(AemHttpClientConfiguration.FF_VALIDATE_AFTER_INACTIVITY_PROPERTY, ()->1);
 		}		
 	}
 
@@ -251,6 +257,39 @@ class Html5SubmitProxyTest {
 		}
 		assertEquals("TemplateUrl='SampleForm.xdp', ContentRoot='crx:///content/dam/formsanddocuments/sample-forms', SubmitUrl='whatever'", responseText);
 	}
+
+	/**
+	 * Validate that parts that FormsFeeder does not transform (such as attachments) are passed to AEM unchanged, with their
+	 * original media type, and that the submitUrl is not passed to AEM.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	void testHtml5SubmitPost_BinaryAttachment() throws Exception {
+		final byte[] attachment = new byte[64 * 1024];
+		for (int i = 0; i < attachment.length; i++) {
+			attachment[i] = (byte)i;	// Includes bytes that are not valid UTF-8
+		}
+		final FormDataMultiPart getHtml5Form = mockDefaultFormData("whatever", "MockSubmit", "ReturnHtml5Parameters");
+		getHtml5Form.bodyPart(new FormDataBodyPart(FormDataContentDisposition.name("attachment").fileName("attachment.bin").build(), attachment, MediaType.APPLICATION_OCTET_STREAM_TYPE));
+
+		Response response = ClientBuilder.newClient()
+				 .register(MultiPartFeature.class)
+				 .target(uri)
+				 .path(SUBMIT_HTML5_FORM_SERVICE_PATH)
+				 .request()
+				 .accept(MediaType.TEXT_PLAIN_TYPE)
+				 .post(Entity.entity(getHtml5Form, getHtml5Form.getMediaType()));
+
+		assertEquals(Response.Status.OK.getStatusCode(), response.getStatus(), ()->"Unexpected response status returned from URL (" + this.uri.resolve(SUBMIT_HTML5_FORM_SERVICE_PATH) + ")." + TestConstants.getResponseBody(response));
+		assertEquals("TemplateUrl='SampleForm.xdp', ContentRoot='crx:///content/dam/formsanddocuments/sample-forms', SubmitUrl='whatever'", TestConstants.getResponseBody(response));
+		if (USE_WIREMOCK) {
+			wireMockServer.verify(postRequestedFor(urlEqualTo(SUBMIT_HTML5_FORM_SERVICE_PATH))
+					.withRequestBodyPart(aMultipart("attachment").withHeader("Content-Type", containing(MediaType.APPLICATION_OCTET_STREAM)).withBody(binaryEqualTo(attachment)).build())
+					.withRequestBodyPart(aMultipart("template").withBody(equalTo(FORM_NAME + ".xdp")).build())
+					.withRequestBody(notMatching("(?s).*name=\"submitUrl\".*")));
+		}
+	}
 	
 	/**
 	 * A submit plugin can return specifically named data source that will cause FormFeeder to return a redirect to the user.
@@ -0,0 +1,90 @@
+package com._4point.aem.formsfeeder.server;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringReader;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.jersey.client.authentication.HttpAuthenticationFeature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, classes = Application.class,
+				properties = {"formsfeeder.plugins.admin.enabled=true",
+							  "formsfeeder.auth=basic",
+							  "formsfeeder.auth.users={{\"foo\", \"" + PluginAdminEndpointTest.PASSWORD_ENCODED + "\", \"USER\"}, {\"admin\", \"" + PluginAdminEndpointTest.PASSWORD_ENCODED + "\", \"ADMIN\"}}"
+							  })
+class PluginAdminEndpointTest {
+	private static final String MOCK_PLUGIN_ID = "com._4point.aem.formsfeeder.plugins.mock";
+	private static final String PASSWORD = "passwordValue";
+	protected static final String PASSWORD_ENCODED = "{bcrypt}$2a$10$X0R0vqKMYh5h0x/bBO0vy.5N4z68MvpS5CPgrNMfQbBA3t48JpSzy";
+
+	@LocalServerPort
+	private int port;
+
+	private WebTarget target;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		target = adminTarget("admin");
+	}
+
+	private WebTarget adminTarget(String username) {
+		return ClientBuilder.newClient().register(HttpAuthenticationFeature.basic(username, PASSWORD)).target("http://localhost:" + port).path("/admin/plugins");
+	}
+
+	@Test
+	void testPlugins() throws Exception {
+		Response response = target.request().accept(MediaType.APPLICATION_JSON_TYPE).get();
+
+		assertEquals(Response.Status.OK.getStatusCode(), response.getStatus(), ()->"Unexpected response status returned from URL (" + response.getStatusInfo().getReasonPhrase() + ").");
+		JsonObject result = Json.createReader(new StringReader(response.readEntity(String.class))).readObject();
+		assertAll(
+				()->assertTrue(result.getJsonArray("plugins").getValuesAs(JsonObject.class).stream().anyMatch(p->p.getString("id").equals(MOCK_PLUGIN_ID)), ()->"Expected mock plugin in " + result.getJsonArray("plugins")),
+				()->assertEquals(0, result.getInt("draining"))
+				);
+	}
+
+	@Test
+	void testPlugins_NoCredentials() throws Exception {
+		Response response = ClientBuilder.newClient().target("http://localhost:" + port).path("/admin/plugins").request().get();
+
+		assertEquals(Response.Status.UNAUTHORIZED.getStatusCode(), response.getStatus(), ()->"Unexpected response status returned from URL (" + response.getStatusInfo().getReasonPhrase() + ").");
+	}
+
+	@Test
+	void testPlugins_NotAdmin() throws Exception {
+		Response response = adminTarget("foo").request().get();
+
+		assertEquals(Response.Status.FORBIDDEN.getStatusCode(), response.getStatus(), ()->"Unexpected response status returned from URL (" + response.getStatusInfo().getReasonPhrase() + ").");
+	}
+
+	@Test
+	void testStop_UnknownPlugin() throws Exception {
+		Response response = target.path("UnknownPlugin").path("stop").request().post(Entity.text(""));
+
+		assertEquals(Response.Status.NOT_FOUND.getStatusCode(), response.getStatus(), ()->"Unexpected response status returned from URL (" + response.getStatusInfo().getReasonPhrase() + ").");
+		assertEquals(MediaType.TEXT_PLAIN_TYPE, response.getMediaType());
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"../pom.xml", "/"})
+	void testLoad_OutsidePluginsDirectory(String pluginFileName) throws Exception {
+		Response response = target.request().post(Entity.text(pluginFileName));
+
+		assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus(), ()->"Unexpected response status returned from URL (" + response.getStatusInfo().getReasonPhrase() + ").");
+		assertTrue(response.readEntity(String.class).contains("must be in the plugins directory"));
+	}
+}
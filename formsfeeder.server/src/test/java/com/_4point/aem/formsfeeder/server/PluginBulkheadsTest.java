@@ -0,0 +1,142 @@
+package com._4point.aem.formsfeeder.server;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import com._4point.aem.formsfeeder.server.PluginBulkheads.Permit;
+import com._4point.aem.formsfeeder.server.PluginBulkheads.PluginBulkheadFullException;
+import com._4point.aem.formsfeeder.server.PluginBulkheads.PluginBulkheadTimeoutException;
+import com._4point.aem.formsfeeder.server.PluginBulkheads.Stats;
+
+class PluginBulkheadsTest {
+	private static final String SLOW_PLUGIN = "RenderPdf";
+	private static final String FAST_PLUGIN = "Debug";
+
+	private final MockEnvironment environment = new MockEnvironment().withProperty("formsfeeder.plugins.bulkhead.RenderPdf.max-concurrent", "1")
+																	 .withProperty("formsfeeder.plugins.bulkhead.RenderPdf.max-queued", "1")
+																	 .withProperty("formsfeeder.plugins.bulkhead.RenderPdf.max-wait", "100");
+
+	@Test
+	void testAcquire_QueueFull() throws Exception {
+		environment.setProperty("formsfeeder.plugins.bulkhead.RenderPdf.max-wait", "10000");
+		PluginBulkheads underTest = new PluginBulkheads(environment);
+
+		Permit running = underTest.acquire(SLOW_PLUGIN);
+		CompletableFuture<Permit> waiting = CompletableFuture.supplyAsync(()->underTest.acquire(SLOW_PLUGIN));
+		waitForQueued(underTest, SLOW_PLUGIN, 1);
+
+		PluginBulkheadFullException ex = assertThrows(PluginBulkheadFullException.class, ()->underTest.acquire(SLOW_PLUGIN));
+		running.close();
+		waiting.get(5, TimeUnit.SECONDS).close();
+
+		Stats stats = stats(underTest, SLOW_PLUGIN);
+		assertAll(
+				()->assertTrue(ex.retryAfterSeconds() >= 1),
+				()->assertEquals(1, stats.rejected()),
+				()->assertEquals(0, stats.timedOut()),
+				()->assertEquals(0, stats.active()),
+				()->assertEquals(0, stats.queued())
+				);
+	}
+
+	@Test
+	void testAcquire_WaitTimesOut() throws Exception {
+		PluginBulkheads underTest = new PluginBulkheads(environment);
+
+		try (Permit running = underTest.acquire(SLOW_PLUGIN)) {
+			assertThrows(PluginBulkheadTimeoutException.class, ()->underTest.acquire(SLOW_PLUGIN));
+		}
+
+		Stats stats = stats(underTest, SLOW_PLUGIN);
+		assertAll(
+				()->assertEquals(0, stats.rejected()),
+				()->assertEquals(1, stats.timedOut()),
+				()->assertEquals(0, stats.queued())
+				);
+	}
+
+	@Test
+	void testAcquire_WaitLimitedByDeadline() throws Exception {
+		environment.setProperty("formsfeeder.plugins.bulkhead.RenderPdf.max-wait", "10000");
+		PluginBulkheads underTest = new PluginBulkheads(environment);
+
+		try (Permit running = underTest.acquire(SLOW_PLUGIN)) {
+			long startNanos = System.nanoTime();
+			PluginBulkheadTimeoutException ex = assertThrows(PluginBulkheadTimeoutException.class, ()->underTest.acquire(SLOW_PLUGIN, Optional.of(Duration.ofMillis(100))));
+			long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+			assertTrue(waitedMs < 5_000, "Expected the wait to end at the deadline but it took " + waitedMs + "ms.");
+			assertTrue(ex.getMessage().contains("100ms"), "Unexpected message '" + ex.getMessage() + "'.");
+		}
+		assertEquals(1, stats(underTest, SLOW_PLUGIN).timedOut());
+	}
+
+	@Test
+	void testAcquire_OtherPluginsUnaffected() throws Exception {
+		PluginBulkheads underTest = new PluginBulkheads(environment);
+
+		try (Permit running = underTest.acquire(SLOW_PLUGIN)) {
+			// Debug has no limit configured, so it is not held up by RenderPdf being busy.
+			try (Permit first = underTest.acquire(FAST_PLUGIN); Permit second = underTest.acquire(FAST_PLUGIN)) {
+				assertEquals(2, stats(underTest, FAST_PLUGIN).active());
+			}
+		}
+		assertEquals(0, stats(underTest, FAST_PLUGIN).maxConcurrent());
+	}
+
+	@Test
+	void testDefaultLimits() throws Exception {
+		PluginBulkheads underTest = new PluginBulkheads(new MockEnvironment().withProperty("formsfeeder.plugins.bulkhead.default.max-concurrent", "2")
+																			 .withProperty("formsfeeder.plugins.bulkhead.default.max-queued", "0"));
+
+		Permit first = underTest.acquire(FAST_PLUGIN);
+		Permit second = underTest.acquire(FAST_PLUGIN);
+		assertThrows(PluginBulkheadFullException.class, ()->underTest.acquire(FAST_PLUGIN));
+		second.close();
+		second.close();		// Closing twice only releases once.
+		underTest.acquire(FAST_PLUGIN).close();
+		first.close();
+
+		Stats stats = stats(underTest, FAST_PLUGIN);
+		assertAll(
+				()->assertEquals(2, stats.maxConcurrent()),
+				()->assertEquals(0, stats.active()),
+				()->assertEquals(1, stats.rejected())
+				);
+	}
+
+	@Test
+	void testExceptionMapper() throws Exception {
+		PluginBulkheadExceptionMapper underTest = new PluginBulkheadExceptionMapper();
+
+		Response full = underTest.toResponse(new PluginBulkheadFullException(SLOW_PLUGIN, 3));
+		Response timedOut = underTest.toResponse(new PluginBulkheadTimeoutException(SLOW_PLUGIN, 100, 2));
+
+		assertAll(
+				()->assertEquals(Response.Status.TOO_MANY_REQUESTS.getStatusCode(), full.getStatus()),
+				()->assertEquals("3", full.getHeaderString(HttpHeaders.RETRY_AFTER)),
+				()->assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), timedOut.getStatus()),
+				()->assertEquals("2", timedOut.getHeaderString(HttpHeaders.RETRY_AFTER))
+				);
+	}
+
+	private static Stats stats(PluginBulkheads bulkheads, String pluginName) {
+		return bulkheads.stats().stream().filter(s->s.name().equals(pluginName)).findFirst().orElseThrow();
+	}
+
+	private static void waitForQueued(PluginBulkheads bulkheads, String pluginName, int expected) throws InterruptedException {
+		for (int i = 0; i < 500 && stats(bulkheads, pluginName).queued() < expected; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(expected, stats(bulkheads, pluginName).queued());
+	}
+}
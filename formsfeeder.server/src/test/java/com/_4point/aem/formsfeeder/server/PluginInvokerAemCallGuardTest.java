@@ -0,0 +1,49 @@
+package com._4point.aem.formsfeeder.server;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+/**
+ * The Debug plugin is treated as a plugin that calls AEM and the guard is configured so that it does not allow any calls.
+ */
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, classes = Application.class, properties = {
+		"formsfeeder.aem.guard.plugins=Debug",
+		"formsfeeder.aem.guard.initial-limit=0",
+		"formsfeeder.aem.guard.min-limit=0"
+		})
+class PluginInvokerAemCallGuardTest {
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private PluginBulkheads pluginBulkheads;
+
+	@Test
+	void testInvokeGuardedPlugin_AemUnavailable() throws Exception {
+		Response response = ClientBuilder.newClient().target("http://localhost:" + port).path(PluginInvoker.API_V1_PATH + "/Debug").request().get();
+
+		assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), response.getStatus(), ()->"Unexpected response status returned from URL (" + response.getStatusInfo().getReasonPhrase() + ").");
+		assertNotNull(response.getHeaderString(HttpHeaders.RETRY_AFTER));
+		// The plugin's bulkhead permit is given back when the guard turns the call away.
+		assertEquals(0, pluginBulkheads.stats().stream().filter(s->s.name().equals("Debug")).findFirst().orElseThrow().active());
+	}
+
+	@Test
+	void testInvokeUnguardedPlugin() throws Exception {
+		Response response = ClientBuilder.newClient().target("http://localhost:" + port).path(PluginInvoker.API_V1_PATH + "/Mock").request().get();
+
+		// The Mock plugin is not guarded, so it is invoked as usual.
+		assertNotEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), response.getStatus());
+		assertNotEquals(Response.Status.NOT_FOUND.getStatusCode(), response.getStatus());
+	}
+}
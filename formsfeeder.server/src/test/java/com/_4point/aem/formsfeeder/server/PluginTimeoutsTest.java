@@ -0,0 +1,192 @@
+package com._4point.aem.formsfeeder.server;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import com._4point.aem.formsfeeder.core.api.FeedConsumer.FeedConsumerBadRequestException;
+import com._4point.aem.formsfeeder.server.PluginTimeouts.PluginTimeoutException;
+import com._4point.aem.formsfeeder.server.PluginTimeouts.PluginTimeoutRejectedException;
+import com._4point.aem.formsfeeder.server.PluginTimeouts.Stats;
+
+class PluginTimeoutsTest {
+	private static final String SLOW_PLUGIN = "RenderPdf";
+	private static final String FAST_PLUGIN = "Debug";
+
+	private final PluginTimeouts underTest = new PluginTimeouts(new MockEnvironment().withProperty("formsfeeder.plugins.timeout.RenderPdf", "200"));
+	private final AtomicInteger completions = new AtomicInteger();
+
+	@AfterEach
+	void tearDown() throws Exception {
+		underTest.close();
+	}
+
+	@Test
+	void testTimeout() throws Exception {
+		assertAll(
+				()->assertEquals(Optional.of(Duration.ofMillis(200)), underTest.timeout(SLOW_PLUGIN, Optional.empty())),
+				()->assertEquals(Optional.of(Duration.ofMillis(50)), underTest.timeout(SLOW_PLUGIN, Optional.of(Duration.ofMillis(50)))),
+				()->assertEquals(Optional.of(Duration.ofMillis(200)), underTest.timeout(SLOW_PLUGIN, Optional.of(Duration.ofMillis(5000)))),
+				()->assertEquals(Optional.empty(), underTest.timeout(FAST_PLUGIN, Optional.empty())),
+				()->assertEquals(Optional.of(Duration.ofMillis(50)), underTest.timeout(FAST_PLUGIN, Optional.of(Duration.ofMillis(50))))
+				);
+	}
+
+	@Test
+	void testInvoke_NoTimeout() throws Exception {
+		Thread caller = Thread.currentThread();
+
+		Thread invokedOn = underTest.invoke(FAST_PLUGIN, Optional.empty(), Thread::currentThread, completions::incrementAndGet);
+
+		assertSame(caller, invokedOn, "Expected an invocation without a timeout to run on the caller's thread.");
+		assertEquals(1, completions.get());
+	}
+
+	@Test
+	void testInvoke_FinishesInTime() throws Exception {
+		String result = underTest.invoke(SLOW_PLUGIN, Optional.of(Duration.ofSeconds(5)), ()->"Result", completions::incrementAndGet);
+
+		assertEquals("Result", result);
+		assertEquals(1, completions.get());
+		assertEquals(0, stats(SLOW_PLUGIN).timedOut());
+	}
+
+	@Test
+	void testInvoke_PluginException() throws Exception {
+		assertThrows(FeedConsumerBadRequestException.class, ()->underTest.invoke(SLOW_PLUGIN, Optional.of(Duration.ofSeconds(5)), ()->{ throw new FeedConsumerBadRequestException("Bad input"); }, completions::incrementAndGet));
+		assertEquals(1, completions.get());
+	}
+
+	@Test
+	void testInvoke_Interrupted() throws Exception {
+		CountDownLatch interrupted = new CountDownLatch(1);
+
+		assertThrows(PluginTimeoutException.class, ()->underTest.invoke(SLOW_PLUGIN, Optional.of(Duration.ofMillis(100)), ()->{
+			try {
+				Thread.sleep(10_000);
+			} catch (InterruptedException e) {
+				interrupted.countDown();
+			}
+			return null;
+		}, completions::incrementAndGet));
+
+		assertTrue(interrupted.await(5, TimeUnit.SECONDS), "Expected the plugin to be interrupted.");
+		waitFor(()->completions.get() == 1);
+		assertEquals(1, stats(SLOW_PLUGIN).timedOut());
+		assertEquals(0, stats(SLOW_PLUGIN).overdue());
+	}
+
+	@Test
+	void testInvoke_IgnoresInterrupt() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+
+		assertThrows(PluginTimeoutException.class, ()->underTest.invoke(SLOW_PLUGIN, Optional.of(Duration.ofMillis(100)), ()->{
+			while (release.getCount() > 0) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					// Badly behaved plugin that keeps running.
+				}
+			}
+			return null;
+		}, completions::incrementAndGet));
+
+		// The completion (e.g. the bulkhead permit) is held until the plugin actually finishes.
+		assertEquals(0, completions.get());
+		assertEquals(1, stats(SLOW_PLUGIN).overdue());
+		release.countDown();
+		waitFor(()->completions.get() == 1);
+		assertEquals(0, stats(SLOW_PLUGIN).overdue());
+		assertEquals(1, stats(SLOW_PLUGIN).timedOut());
+	}
+
+	@Test
+	void testInvoke_NoTimeRemaining() throws Exception {
+		AtomicInteger invocations = new AtomicInteger();
+
+		assertThrows(PluginTimeoutException.class, ()->underTest.invoke(SLOW_PLUGIN, Optional.of(Duration.ZERO), invocations::incrementAndGet, completions::incrementAndGet));
+
+		assertEquals(0, invocations.get());
+		assertEquals(1, completions.get());
+	}
+
+	@Test
+	void testInvoke_NoThreadAvailable() throws Exception {
+		PluginTimeouts oneThread = new PluginTimeouts(new MockEnvironment().withProperty("formsfeeder.plugins.timeout.max-threads", "1"));
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger invocations = new AtomicInteger();
+		try {
+			CountDownLatch started = new CountDownLatch(1);
+			Thread busy = new Thread(()->{
+				try {
+					oneThread.invoke(SLOW_PLUGIN, Optional.of(Duration.ofSeconds(30)), ()->{ started.countDown(); return release.await(30, TimeUnit.SECONDS); }, ()->{});
+				} catch (Exception e) {
+					// Not what is being tested.
+				}
+			});
+			busy.start();
+			assertTrue(started.await(5, TimeUnit.SECONDS), "Expected the first invocation to be running.");
+
+			assertThrows(PluginTimeoutRejectedException.class, ()->oneThread.invoke(FAST_PLUGIN, Optional.of(Duration.ofSeconds(5)), invocations::incrementAndGet, completions::incrementAndGet));
+
+			assertEquals(0, invocations.get());
+			assertEquals(1, completions.get());
+			assertEquals(1, oneThread.stats().stream().filter(s->s.name().equals(FAST_PLUGIN)).findFirst().orElseThrow().rejected());
+			release.countDown();
+			busy.join(5_000);
+		} finally {
+			release.countDown();
+			oneThread.close();
+		}
+	}
+
+	@Test
+	void testExceptionMapper() throws Exception {
+		Response response = new PluginTimeoutExceptionMapper().toResponse(new PluginTimeoutException(SLOW_PLUGIN));
+
+		assertEquals(Response.Status.GATEWAY_TIMEOUT.getStatusCode(), response.getStatus());
+	}
+
+	@Test
+	void testRejectedExceptionMapper() throws Exception {
+		Response response = new PluginTimeoutRejectedExceptionMapper().toResponse(new PluginTimeoutRejectedException(SLOW_PLUGIN));
+
+		assertAll(
+				()->assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), response.getStatus()),
+				()->assertEquals("1", response.getHeaderString(HttpHeaders.RETRY_AFTER))
+				);
+	}
+
+	@Test
+	void testRequestTimeout() throws Exception {
+		assertAll(
+				()->assertEquals(Optional.empty(), PluginInvoker.requestTimeout(null)),
+				()->assertEquals(Optional.of(Duration.ofMillis(1500)), PluginInvoker.requestTimeout(" 1500 ")),
+				()->assertThrows(PluginInvoker.PluginInvokerBadRequestException.class, ()->PluginInvoker.requestTimeout("0")),
+				()->assertThrows(PluginInvoker.PluginInvokerBadRequestException.class, ()->PluginInvoker.requestTimeout("soon"))
+				);
+	}
+
+	private Stats stats(String pluginName) {
+		return underTest.stats().stream().filter(s->s.name().equals(pluginName)).findFirst().orElseThrow();
+	}
+
+	private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+		for (int i = 0; i < 500 && !condition.getAsBoolean(); i++) {
+			Thread.sleep(10);
+		}
+		assertTrue(condition.getAsBoolean());
+	}
+}
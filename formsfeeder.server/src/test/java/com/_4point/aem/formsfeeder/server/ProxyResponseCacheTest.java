@@ -0,0 +1,394 @@
+package com._4point.aem.formsfeeder.server;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+
+class ProxyResponseCacheTest {
+	private static final String LAST_MODIFIED = "Mon, 08 Nov 2021 21:01:23 GMT";
+	private static final int READ_TIMEOUT = 5_000;
+	private static final String UTILS_JS = "function detectContextPath() {\n"
+										 + "    var result = /^(.*)\\/etc.clientlibs\\//.exec(window.location.pathname);\n"
+										 + "    if (result) {\n"
+										 + "        contextPath = result[1];\n"
+										 + "    }\n"
+										 + "    return contextPath;\n"
+										 + "}\n";
+
+	private WireMockServer wireMockServer;
+	private AemHttpClient aemHttpClient;
+	private ProxyResponseCache underTest;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		wireMockServer = new WireMockServer(new WireMockConfiguration().dynamicPort());
+		wireMockServer.start();
+		aemHttpClient = AemHttpClient.create(new AemHttpClientTest.TestAemConfig(wireMockServer.port()), new AemHttpClient.Settings(4, 4, 30_000, 60_000, 1_000, 5_000, 60_000, 2, 10));
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		if (underTest != null) {
+			underTest.close();
+		}
+		aemHttpClient.close();
+		wireMockServer.stop();
+	}
+
+	@Test
+	void testGet_ReadTimeout() throws Exception {
+		wireMockServer.stubFor(get("/slow.js").willReturn(ok("Slow Body").withFixedDelay(2_000)));
+		underTest = createCache(new MockEnvironment());
+
+		// The client's socket timeout is a minute, so this fails quickly only if the read timeout is applied.
+		assertThrows(ProcessingException.class, ()->underTest.get("/slow.js", request(), 200));
+		assertEquals(0, aemHttpClient.poolStats().getLeased());
+	}
+
+	@Test
+	void testGet_FreshResponseIsCached() throws Exception {
+		wireMockServer.stubFor(get("/test.js").willReturn(ok("Test Body").withHeader("Content-Type", "application/javascript").withHeader("Cache-Control", "max-age=600")));
+		underTest = createCache(new MockEnvironment());
+
+		Response response1 = underTest.get("/test.js", request(), READ_TIMEOUT);
+		Response response2 = underTest.get("/test.js", request(), READ_TIMEOUT);
+
+		assertAll(
+				()->assertEquals(Response.Status.OK.getStatusCode(), response1.getStatus()),
+				()->assertEquals("Test Body", bodyOf(response1)),
+				()->assertEquals(Response.Status.OK.getStatusCode(), response2.getStatus()),
+				()->assertEquals("Test Body", bodyOf(response2)),
+				()->assertEquals("application/javascript", response2.getHeaderString("Content-Type")),
+				()->assertEquals("max-age=600", response2.getHeaderString("Cache-Control")),
+				()->assertEquals(1, underTest.stats().hits()),
+				()->assertEquals(1, underTest.stats().misses()),
+				()->assertEquals(0.5, underTest.stats().hitRatio()),
+				()->assertEquals(1, underTest.stats().memoryEntries()),
+				()->assertEquals(9, underTest.stats().memorySize())
+				);
+		wireMockServer.verify(1, getRequestedFor(urlEqualTo("/test.js")));
+	}
+
+	@Test
+	void testGet_StaleResponseIsRevalidated() throws Exception {
+		wireMockServer.stubFor(get("/test.js").willReturn(ok("Test Body").withHeader("Cache-Control", "no-cache").withHeader("ETag", "\"v1\"").withHeader("Last-Modified", LAST_MODIFIED)));
+		wireMockServer.stubFor(get("/test.js").withHeader("If-None-Match", equalTo("\"v1\"")).willReturn(status(304).withHeader("ETag", "\"v1\"")));
+		underTest = createCache(new MockEnvironment());
+
+		Response response1 = underTest.get("/test.js", request(), READ_TIMEOUT);
+		Response response2 = underTest.get("/test.js", request(), READ_TIMEOUT);
+
+		assertAll(
+				()->assertEquals("Test Body", bodyOf(response1)),
+				()->assertEquals(Response.Status.OK.getStatusCode(), response2.getStatus()),
+				()->assertEquals("Test Body", bodyOf(response2)),
+				()->assertEquals(0, underTest.stats().hits()),
+				()->assertEquals(1, underTest.stats().revalidations()),
+				()->assertEquals(1, underTest.stats().misses())
+				);
+		wireMockServer.verify(getRequestedFor(urlEqualTo("/test.js")).withHeader("If-None-Match", equalTo("\"v1\"")).withHeader("If-Modified-Since", equalTo(LAST_MODIFIED)));
+	}
+
+	@Test
+	void testGet_ChangedResponseReplacesCachedOne() throws Exception {
+		wireMockServer.stubFor(get("/test.js").willReturn(ok("Version 1").withHeader("ETag", "\"v1\"")));
+		underTest = createCache(new MockEnvironment());
+		assertEquals("Version 1", bodyOf(underTest.get("/test.js", request(), READ_TIMEOUT)));
+
+		wireMockServer.stubFor(get("/test.js").willReturn(ok("Version 2").withHeader("ETag", "\"v2\"")));
+		assertEquals("Version 2", bodyOf(underTest.get("/test.js", request(), READ_TIMEOUT)));
+
+		assertEquals(2, underTest.stats().misses());
+		assertEquals(9, underTest.stats().memorySize());
+	}
+
+	@Test
+	void testGet_IfNoneMatchFromBrowser() throws Exception {
+		wireMockServer.stubFor(get("/test.js").willReturn(ok("Test Body").withHeader("Cache-Control", "max-age=600").withHeader("ETag", "\"v1\"")));
+		underTest = createCache(new MockEnvironment());
+
+		Response response1 = underTest.get("/test.js", request("If-None-Match", "\"v1\""), READ_TIMEOUT);	// Populates the cache
+		Response response2 = underTest.get("/test.js", request("If-None-Match", "\"v1\""), READ_TIMEOUT);
+		Response response3 = underTest.get("/test.js", request("If-None-Match", "\"v0\""), READ_TIMEOUT);
+
+		assertAll(
+				()->assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), response1.getStatus()),
+				()->assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), response2.getStatus()),
+				()->assertEquals("\"v1\"", response2.getHeaderString("ETag")),
+				()->assertEquals("max-age=600", response2.getHeaderString("Cache-Control")),
+				()->assertFalse(response2.hasEntity()),
+				()->assertEquals(Response.Status.OK.getStatusCode(), response3.getStatus()),
+				()->assertEquals("Test Body", bodyOf(response3))
+				);
+		wireMockServer.verify(1, getRequestedFor(urlEqualTo("/test.js")));
+	}
+
+	@Test
+	void testGet_NotCacheable() throws Exception {
+		wireMockServer.stubFor(get("/nostore.js").willReturn(ok("No Store").withHeader("Cache-Control", "no-store").withHeader("ETag", "\"v1\"")));
+		wireMockServer.stubFor(get("/private.js").willReturn(ok("Private").withHeader("Cache-Control", "private, max-age=600")));
+		wireMockServer.stubFor(get("/novalidator.js").willReturn(ok("No Validator")));
+		wireMockServer.stubFor(get("/notfound.js").willReturn(notFound().withHeader("Cache-Control", "max-age=600")));
+		underTest = createCache(new MockEnvironment());
+
+		for (String path : List.of("/nostore.js", "/private.js", "/novalidator.js", "/notfound.js")) {
+			underTest.get(path, request(), READ_TIMEOUT).close();
+			underTest.get(path, request(), READ_TIMEOUT).close();
+			wireMockServer.verify(2, getRequestedFor(urlEqualTo(path)));
+		}
+		assertEquals(0, underTest.stats().memoryEntries());
+	}
+
+	@Test
+	void testGet_SetCookieIsNotCached() throws Exception {
+		wireMockServer.stubFor(get("/test.js").willReturn(ok("Test Body").withHeader("Cache-Control", "max-age=600").withHeader("Set-Cookie", "session=1234")));
+		underTest = createCache(new MockEnvironment());
+
+		underTest.get("/test.js", request(), READ_TIMEOUT).close();
+		Response response = underTest.get("/test.js", request(), READ_TIMEOUT);
+
+		assertNull(response.getHeaderString("Set-Cookie"));
+	}
+
+	@Test
+	void testGet_Rewrite() throws Exception {
+		wireMockServer.stubFor(get("/utils.js").willReturn(ok(UTILS_JS).withHeader("Cache-Control", "max-age=600").withHeader("ETag", "\"v1\"").withHeader("Last-Modified", LAST_MODIFIED)));
+		underTest = createCache(new MockEnvironment());
+
+		Response response1 = underTest.get("/utils.js", request(), request(), rewrite("/base"), READ_TIMEOUT);
+		Response response2 = underTest.get("/utils.js", request(), request(), rewrite("/base"), READ_TIMEOUT);
+
+		String expectedBody = UTILS_JS.replace("contextPath = result[1];", "contextPath = \"/base\" + result[1];");
+		assertAll(
+				()->assertEquals(expectedBody, bodyOf(response1)),
+				()->assertEquals(expectedBody, bodyOf(response2)),
+				()->assertFalse(response1.getEntityTag().isWeak()),
+				()->assertNotEquals("v1", response1.getEntityTag().getValue(), "AEM's ETag should not be used for the rewritten body."),
+				()->assertEquals(response1.getEntityTag(), response2.getEntityTag()),
+				()->assertNull(response1.getHeaderString("Last-Modified")),
+				()->assertEquals("Accept-Encoding", response1.getHeaderString("Vary")),
+				()->assertNull(response1.getHeaderString("Content-Encoding")),
+				()->assertEquals(1, underTest.stats().hits())
+				);
+	}
+
+	@Test
+	void testGet_RewriteGzipVariant() throws Exception {
+		wireMockServer.stubFor(get("/utils.js").willReturn(ok(UTILS_JS).withHeader("Cache-Control", "max-age=600")));
+		underTest = createCache(new MockEnvironment());
+
+		Response identity = underTest.get("/utils.js", request(), request(), rewrite("/base"), READ_TIMEOUT);
+		Response gzipped = underTest.get("/utils.js", request(), request("Accept-Encoding", "gzip, deflate, br"), rewrite("/base"), READ_TIMEOUT);
+		Response refused = underTest.get("/utils.js", request(), request("Accept-Encoding", "gzip;q=0, *"), rewrite("/base"), READ_TIMEOUT);
+
+		byte[] gzippedBody = (byte[])gzipped.getEntity();
+		assertAll(
+				()->assertEquals("gzip", gzipped.getHeaderString("Content-Encoding")),
+				()->assertTrue(gzippedBody.length < UTILS_JS.length(), "Expected gzipped body to be smaller than the original."),
+				()->assertEquals(bodyOf(identity), new String(new GZIPInputStream(new ByteArrayInputStream(gzippedBody)).readAllBytes(), StandardCharsets.UTF_8)),
+				()->assertNotEquals(identity.getEntityTag(), gzipped.getEntityTag(), "Each encoding should have its own ETag."),
+				()->assertFalse(gzipped.getEntityTag().isWeak()),
+				()->assertNull(refused.getHeaderString("Content-Encoding")),
+				()->assertEquals(identity.getEntityTag(), refused.getEntityTag())
+				);
+	}
+
+	@Test
+	void testGet_RewriteIfNoneMatchFromBrowser() throws Exception {
+		wireMockServer.stubFor(get("/utils.js").willReturn(ok(UTILS_JS).withHeader("Cache-Control", "max-age=600").withHeader("Last-Modified", LAST_MODIFIED)));
+		underTest = createCache(new MockEnvironment());
+		String entityTag = underTest.get("/utils.js", request(), request(), rewrite("/base"), READ_TIMEOUT).getHeaderString("ETag");
+
+		ContainerRequest conditional = request("If-None-Match", entityTag, "If-Modified-Since", LAST_MODIFIED);
+		Response notModified = underTest.get("/utils.js", conditional, conditional, rewrite("/base"), READ_TIMEOUT);
+		ContainerRequest otherTag = request("If-None-Match", "\"v0\"", "If-Modified-Since", LAST_MODIFIED);
+		Response modified = underTest.get("/utils.js", otherTag, otherTag, rewrite("/base"), READ_TIMEOUT);
+
+		assertAll(
+				()->assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), notModified.getStatus()),
+				()->assertEquals(entityTag, notModified.getHeaderString("ETag")),
+				()->assertEquals("Accept-Encoding", notModified.getHeaderString("Vary")),
+				()->assertEquals(Response.Status.OK.getStatusCode(), modified.getStatus())
+				);
+	}
+
+	@Test
+	void testGet_RewriteChanges() throws Exception {
+		wireMockServer.stubFor(get("/utils.js").willReturn(ok(UTILS_JS).withHeader("Cache-Control", "no-cache").withHeader("ETag", "\"v1\"")));
+		wireMockServer.stubFor(get("/utils.js").withHeader("If-None-Match", equalTo("\"v1\"")).willReturn(status(304).withHeader("ETag", "\"v1\"")));
+		underTest = createCache(new MockEnvironment());
+
+		Response base1 = underTest.get("/utils.js", request(), request(), rewrite("/base"), READ_TIMEOUT);
+		Response base2 = underTest.get("/utils.js", request(), request(), rewrite("/base"), READ_TIMEOUT);	// Revalidated with AEM, not rewritten again
+		Response other = underTest.get("/utils.js", request(), request(), rewrite("/other"), READ_TIMEOUT);	// New property value
+		wireMockServer.stubFor(get("/utils.js").willReturn(ok(UTILS_JS + "// v2\n").withHeader("Cache-Control", "no-cache").withHeader("ETag", "\"v2\"")));
+		Response base3 = underTest.get("/utils.js", request(), request(), rewrite("/base"), READ_TIMEOUT);	// New version of the file in AEM
+
+		assertAll(
+				()->assertEquals(base1.getEntityTag(), base2.getEntityTag()),
+				()->assertNotEquals(base1.getEntityTag(), other.getEntityTag()),
+				()->assertTrue(bodyOf(other).contains("contextPath = \"/other\" + result[1];")),
+				()->assertNotEquals(base1.getEntityTag(), base3.getEntityTag()),
+				()->assertTrue(bodyOf(base3).endsWith("// v2\n")),
+				()->assertEquals(1, underTest.stats().revalidations()),
+				()->assertEquals(2, underTest.stats().memoryEntries())
+				);
+	}
+
+	@Test
+	void testAcceptsGzip() throws Exception {
+		assertAll(
+				()->assertTrue(ProxyResponseCache.acceptsGzip(request("Accept-Encoding", "gzip"))),
+				()->assertTrue(ProxyResponseCache.acceptsGzip(request("Accept-Encoding", "deflate, GZIP;q=0.5"))),
+				()->assertTrue(ProxyResponseCache.acceptsGzip(request("Accept-Encoding", "*"))),
+				()->assertFalse(ProxyResponseCache.acceptsGzip(request("Accept-Encoding", "gzip;q=0"))),
+				()->assertFalse(ProxyResponseCache.acceptsGzip(request("Accept-Encoding", "gzip;q=0, *"))),
+				()->assertFalse(ProxyResponseCache.acceptsGzip(request("Accept-Encoding", "br, deflate"))),
+				()->assertFalse(ProxyResponseCache.acceptsGzip(request())),
+				()->assertFalse(ProxyResponseCache.acceptsGzip(null))
+				);
+	}
+
+	@Test
+	void testGet_LruEviction() throws Exception {
+		for (String path : List.of("/a.js", "/b.js", "/c.js")) {
+			wireMockServer.stubFor(get(path).willReturn(ok("0123456789").withHeader("Cache-Control", "max-age=600")));
+		}
+		underTest = createCache(new MockEnvironment().withProperty(ProxyResponseCache.FF_MAX_MEMORY_SIZE_PROPERTY, "25"));
+
+		underTest.get("/a.js", request(), READ_TIMEOUT).close();
+		underTest.get("/b.js", request(), READ_TIMEOUT).close();
+		underTest.get("/a.js", request(), READ_TIMEOUT).close();	// Makes /b.js the least recently used
+		underTest.get("/c.js", request(), READ_TIMEOUT).close();
+		underTest.get("/a.js", request(), READ_TIMEOUT).close();
+
+		assertAll(
+				()->assertEquals(1, underTest.stats().evictions()),
+				()->assertEquals(2, underTest.stats().memoryEntries()),
+				()->assertEquals(20, underTest.stats().memorySize())
+				);
+		wireMockServer.verify(1, getRequestedFor(urlEqualTo("/a.js")));
+		underTest.get("/b.js", request(), READ_TIMEOUT).close();
+		wireMockServer.verify(2, getRequestedFor(urlEqualTo("/b.js")));
+	}
+
+	@Test
+	void testGet_DiskTier(@TempDir Path tempDir) throws Exception {
+		for (String path : List.of("/a.js", "/b.js")) {
+			wireMockServer.stubFor(get(path).willReturn(ok("Body of " + path).withHeader("Cache-Control", "max-age=600")));
+		}
+		underTest = createCache(new MockEnvironment().withProperty(ProxyResponseCache.FF_MAX_MEMORY_SIZE_PROPERTY, "15")
+													 .withProperty(ProxyResponseCache.FF_DISK_DIRECTORY_PROPERTY, tempDir.toString()));
+
+		underTest.get("/a.js", request(), READ_TIMEOUT).close();
+		underTest.get("/b.js", request(), READ_TIMEOUT).close();	// Pushes /a.js out to disk
+
+		assertEquals(1, underTest.stats().diskEntries());
+		assertEquals(1, countFiles(tempDir));
+
+		Response response = underTest.get("/a.js", request(), READ_TIMEOUT);	// Comes back from disk and pushes /b.js out
+		assertAll(
+				()->assertEquals("Body of /a.js", bodyOf(response)),
+				()->assertEquals(0, underTest.stats().evictions()),
+				()->assertEquals(1, underTest.stats().diskEntries()),
+				()->assertEquals(13, underTest.stats().diskSize())
+				);
+		wireMockServer.verify(1, getRequestedFor(urlEqualTo("/a.js")));
+
+		underTest.close();
+		assertEquals(0, countFiles(tempDir));
+		underTest = null;
+	}
+
+	@Test
+	void testGet_Disabled() throws Exception {
+		wireMockServer.stubFor(get("/test.js").willReturn(ok("Test Body").withHeader("Cache-Control", "max-age=600")));
+		underTest = createCache(new MockEnvironment().withProperty(ProxyResponseCache.FF_ENABLED_PROPERTY, "false"));
+
+		assertEquals("Test Body", bodyOf(underTest.get("/test.js", request(), READ_TIMEOUT)));
+		assertEquals("Test Body", bodyOf(underTest.get("/test.js", request(), READ_TIMEOUT)));
+
+		wireMockServer.verify(2, getRequestedFor(urlEqualTo("/test.js")));
+		assertEquals(0, underTest.stats().memoryEntries());
+	}
+
+	@Test
+	void testFreshnessLifetime() throws Exception {
+		final long now = 1_000_000_000L;
+		assertAll(
+				()->assertEquals(600_000, ProxyResponseCache.freshnessLifetime(headers("Cache-Control", "public, max-age=600"), now, 300_000)),
+				()->assertEquals(60_000, ProxyResponseCache.freshnessLifetime(headers("Cache-Control", "max-age=600, s-maxage=60"), now, 300_000)),
+				()->assertEquals(0, ProxyResponseCache.freshnessLifetime(headers("Cache-Control", "no-cache"), now, 300_000)),
+				()->assertEquals(-1, ProxyResponseCache.freshnessLifetime(headers("Cache-Control", "no-store"), now, 300_000)),
+				()->assertEquals(-1, ProxyResponseCache.freshnessLifetime(headers("Vary", "*"), now, 300_000)),
+				()->assertEquals(0, ProxyResponseCache.freshnessLifetime(headers("Expires", "-1"), now, 300_000)),
+				()->assertEquals(0, ProxyResponseCache.freshnessLifetime(headers("Expires", "Thu, 01 Jan 1970 00:00:00 GMT"), now, 300_000)),
+				()->assertEquals(3_600_000, ProxyResponseCache.freshnessLifetime(headers("Date", "Mon, 08 Nov 2021 21:00:00 GMT", "Expires", "Mon, 08 Nov 2021 22:00:00 GMT"), now, 300_000)),
+				()->assertEquals(360_000, ProxyResponseCache.freshnessLifetime(headers("Date", "Mon, 08 Nov 2021 21:00:00 GMT", "Last-Modified", "Mon, 08 Nov 2021 20:00:00 GMT"), now, 600_000)),
+				()->assertEquals(300_000, ProxyResponseCache.freshnessLifetime(headers("Date", "Mon, 08 Nov 2021 21:00:00 GMT", "Last-Modified", "Mon, 08 Nov 2021 20:00:00 GMT"), now, 300_000)),
+				()->assertEquals(0, ProxyResponseCache.freshnessLifetime(headers(), now, 300_000))
+				);
+	}
+
+	private ProxyResponseCache createCache(MockEnvironment environment) {
+		AemBackendPool aemBackendPool = new AemBackendPool(aemHttpClient, new AemHttpClientTest.TestAemConfig(wireMockServer.port()), new AemCallGuard(new MockEnvironment()), new MockEnvironment());
+		return new ProxyResponseCache(aemHttpClient, aemBackendPool, environment);
+	}
+
+	private static ProxyResponseCache.Rewrite rewrite(String afBaseLocation) {
+		return new ProxyResponseCache.Rewrite(afBaseLocation, is->new ReplacingInputStream(is, "contextPath = result[1];", "contextPath = \"" + afBaseLocation + "\" + result[1];"));
+	}
+
+	private static ContainerRequest request(String... headers) {
+		ContainerRequest request = new ContainerRequest(URI.create("http://localhost/"), URI.create("http://localhost/aem/test.js"), "GET", null, new MapPropertiesDelegate(), null);
+		for (int i = 0; i < headers.length; i += 2) {
+			request.header(headers[i], headers[i + 1]);
+		}
+		return request;
+	}
+
+	private static MultivaluedMap<String, String> headers(String... headers) {
+		MultivaluedMap<String, String> result = new MultivaluedHashMap<>();
+		for (int i = 0; i < headers.length; i += 2) {
+			result.add(headers[i], headers[i + 1]);
+		}
+		return result;
+	}
+
+	private static String bodyOf(Response response) throws Exception {
+		Object entity = response.getEntity();
+		byte[] bytes = entity instanceof byte[] ? (byte[])entity : ((InputStream)entity).readAllBytes();
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static long countFiles(Path dir) throws Exception {
+		try (Stream<Path> files = Files.walk(dir)) {
+			return files.filter(Files::isRegularFile).count();
+		}
+	}
+}
@@ -0,0 +1,267 @@
+package com._4point.aem.formsfeeder.server;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.function.UnaryOperator;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com._4point.aem.formsfeeder.server.ReplacingInputStream.Replacements;
+
+class ReplacingInputStreamTest {
+	private final static Logger logger = LoggerFactory.getLogger(ReplacingInputStreamTest.class);
+
+	@ParameterizedTest
+	@CsvSource({
+		"'contextPath = result[1];',	'contextPath = \"/base\" + result[1];'",
+		"'abc contextPath = result[1]; def',	'abc contextPath = \"/base\" + result[1]; def'",
+		"'contextPath = result[1]contextPath = result[1];',	'contextPath = result[1]contextPath = \"/base\" + result[1];'",
+		"'contextPath = result[1',	'contextPath = result[1'",
+		"'',	''",
+	})
+	void testSinglePattern(String input, String expected) throws Exception {
+		final String pattern = "contextPath = result[1];";
+		final String replacement = "contextPath = \"/base\" + result[1];";
+		assertAll(
+				()->assertEquals(expected, readAllBulk(new ReplacingInputStream(toStream(input), pattern, replacement))),
+				()->assertEquals(expected, readAllByteByByte(new ReplacingInputStream(new OneByteInputStream(toStream(input)), pattern, replacement)))
+				);
+	}
+
+	@ParameterizedTest
+	@CsvSource({
+		"aab,		Rb",		// Leftmost match wins
+		"baab,		bRb",
+		"aaa,		Ra",		// Overlapping matches are not replaced twice
+		"aaaa,		RR",
+		"abab,		RR",
+	})
+	void testSelfOverlappingPattern(String input, String expected) throws Exception {
+		Replacements replacements = Replacements.builder().replace("aa", "R").replace("ab", "R").build();
+		assertEquals(expected, readAllBulk(new ReplacingInputStream(toStream(input), replacements)));
+	}
+
+	@ParameterizedTest
+	@CsvSource({
+		"xabcdy,	x1y",		// Longer match that starts earlier wins
+		"xabcy,		x4cy",		// Leftmost match wins
+		"xbcd,		x2d",
+		"cdab,		34",
+	})
+	void testMultiplePatterns(String input, String expected) throws Exception {
+		Replacements replacements = Replacements.builder()
+												.replace("abcd", "1")
+												.replace("bc", "2")
+												.replace("cd", "3")
+												.replace("ab", "4")
+												.build();
+		assertAll(
+				()->assertEquals(expected, readAllBulk(new ReplacingInputStream(toStream(input), replacements))),
+				()->assertEquals(expected, readAllByteByByte(new ReplacingInputStream(new OneByteInputStream(toStream(input)), replacements)))
+				);
+	}
+
+	@Test
+	void testPartialMatchFollowedByMatch() throws Exception {
+		assertEquals("xaaR", readAllBulk(new ReplacingInputStream(toStream("xaaab"), "ab", "R")));
+	}
+
+	@Test
+	void testRemovePattern() throws Exception {
+		assertEquals("abcdef", readAllBulk(new ReplacingInputStream(toStream("abXYcdXYef"), "XY", null)));
+	}
+
+	@Test
+	void testNewLineNormalizing() throws Exception {
+		assertEquals("a\nb\nc\n\nd\n", readAllBulk(ReplacingInputStream.newLineNormalizingInputStream(toStream("a\r\nb\rc\r\r\nd\n"))));
+	}
+
+	@Test
+	void testDuplicatePattern() throws Exception {
+		IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, ()->Replacements.builder().replace("ab", "1").replace("ab", "2").build());
+		assertEquals("Duplicate pattern 'ab'.", ex.getMessage());
+	}
+
+	@Test
+	void testEmptyPattern() throws Exception {
+		assertThrows(IllegalArgumentException.class, ()->Replacements.builder().replace("", "1"));
+	}
+
+	@Test
+	void testSkipAndAvailable() throws Exception {
+		try (InputStream underTest = new ReplacingInputStream(toStream("0123XY456789"), "XY", "ab")) {
+			assertEquals(2, underTest.skip(2));
+			assertEquals('2', underTest.read());
+			assertTrue(underTest.available() > 0);
+			assertEquals(3, underTest.skip(3));	// Skips "3ab"
+			assertEquals("456789", readAllBulk(underTest));
+		}
+	}
+
+	/**
+	 * Runs a multi-megabyte body with the patterns scattered through it (including across the read buffer boundaries)
+	 * through the stream and compares the result with String.replace().
+	 */
+	@Test
+	void testLargeBody() throws Exception {
+		final String pattern1 = "contextPath = result[1];";
+		final String replacement1 = "contextPath = \"/base\" + result[1];";
+		final String pattern2 = "/etc.clientlibs/";
+		final String replacement2 = "/aem/etc.clientlibs/";
+		Random random = new Random(42);
+		StringBuilder input = new StringBuilder();
+		while (input.length() < 4 * 1024 * 1024) {
+			int r = random.nextInt(100);
+			if (r < 2) {
+				input.append(pattern1);
+			} else if (r < 4) {
+				input.append(pattern2);
+			} else if (r < 6) {
+				input.append(pattern1, 0, random.nextInt(pattern1.length()));	// Partial matches
+			} else {
+				input.append("var x").append(r).append(" = function() { return ").append(r).append("; };\n");
+			}
+		}
+		String expected = input.toString().replace(pattern1, replacement1).replace(pattern2, replacement2);
+		Replacements replacements = Replacements.builder().replace(pattern1, replacement1).replace(pattern2, replacement2).build();
+
+		assertAll(
+				()->assertEquals(expected, readAllBulk(new ReplacingInputStream(toStream(input.toString()), replacements))),
+				()->assertEquals(expected, readAllBulk(new ReplacingInputStream(new OneByteInputStream(toStream(input.toString())), replacements)))
+				);
+	}
+
+	/**
+	 * Compares the throughput of the utils.js replacement with that of the old (LegacyReplacingInputStream)
+	 * implementation.  The results are written to the log.
+	 *
+	 * Benchmarks are not part of the normal build, they are run with "mvn test -Pbenchmark".
+	 */
+	@Tag("Benchmark")
+	@Test
+	void benchmarkReplace() throws Exception {
+		final String pattern = "contextPath = result[1];";
+		final String replacement = "contextPath = \"/base\" + result[1];";
+		String input = scriptBody(4 * 1024 * 1024, pattern, "\n");
+
+		benchmark("replace", input, input.replace(pattern, replacement),
+				  is->new LegacyReplacingInputStream(is, pattern, replacement),
+				  is->new ReplacingInputStream(is, pattern, replacement));
+	}
+
+	/**
+	 * Compares the throughput of newline normalization with that of the old (LegacyReplacingInputStream)
+	 * implementation.  The results are written to the log.
+	 *
+	 * Benchmarks are not part of the normal build, they are run with "mvn test -Pbenchmark".
+	 */
+	@Tag("Benchmark")
+	@Test
+	void benchmarkNewLineNormalizing() throws Exception {
+		String input = scriptBody(4 * 1024 * 1024, "", "\r\n");
+
+		benchmark("newline normalizing", input, input.replace("\r\n", "\n"),
+				  LegacyReplacingInputStream::newLineNormalizingInputStream,
+				  ReplacingInputStream::newLineNormalizingInputStream);
+	}
+
+	private static void benchmark(String name, String input, String expected, UnaryOperator<InputStream> legacy, UnaryOperator<InputStream> current) throws IOException {
+		byte[] inputBytes = input.getBytes(StandardCharsets.UTF_8);
+		final int iterations = 10;
+
+		for (int i = 0; i < iterations; i++) {	// Warm up
+			readAllBuffered(legacy.apply(new ByteArrayInputStream(inputBytes)));
+			readAllBuffered(current.apply(new ByteArrayInputStream(inputBytes)));
+		}
+		String legacyResult = null;
+		long legacyStart = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			legacyResult = readAllBuffered(legacy.apply(new ByteArrayInputStream(inputBytes)));
+		}
+		long legacyNanos = System.nanoTime() - legacyStart;
+		String currentResult = null;
+		long currentStart = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			currentResult = readAllBuffered(current.apply(new ByteArrayInputStream(inputBytes)));
+		}
+		long currentNanos = System.nanoTime() - currentStart;
+
+		double legacyMbPerSecond = ((double)inputBytes.length * iterations / (1024 * 1024)) / (legacyNanos / 1_000_000_000.0);
+		double currentMbPerSecond = ((double)inputBytes.length * iterations / (1024 * 1024)) / (currentNanos / 1_000_000_000.0);
+		logger.info(String.format("ReplacingInputStream %s of %,d bytes: legacy %.1f MB/s, current %.1f MB/s (%.1fx).", name, inputBytes.length, legacyMbPerSecond, currentMbPerSecond, currentMbPerSecond / legacyMbPerSecond));
+		assertEquals(expected, legacyResult);
+		assertEquals(expected, currentResult);
+	}
+
+	/**
+	 * Creates a script body of (about) the given size with the pattern scattered through it.
+	 */
+	private static String scriptBody(int size, String pattern, String lineEnding) {
+		Random random = new Random(42);
+		StringBuilder body = new StringBuilder(size + 200);
+		while (body.length() < size) {
+			int r = random.nextInt(100);
+			if (r < 2) {
+				body.append(pattern);
+			}
+			body.append("var x").append(r).append(" = function() { return ").append(r).append("; };").append(lineEnding);
+		}
+		return body.toString();
+	}
+
+	/**
+	 * Reads the whole stream using reads into the start of a buffer (which LegacyReplacingInputStream requires).
+	 */
+	private static String readAllBuffered(InputStream is) throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int count;
+		while ((count = is.read(buffer)) != -1) {
+			os.write(buffer, 0, count);
+		}
+		return new String(os.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private static InputStream toStream(String s) {
+		return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String readAllBulk(InputStream is) throws IOException {
+		return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+	}
+
+	private static String readAllByteByByte(InputStream is) throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		int b;
+		while ((b = is.read()) != -1) {
+			os.write(b);
+		}
+		return new String(os.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * InputStream that returns at most one byte from each read, so that every byte falls on a buffer boundary.
+	 */
+	private static class OneByteInputStream extends FilterInputStream {
+		private OneByteInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			return super.read(b, off, Math.min(len, 1));
+		}
+	}
+}
@@ -6,6 +6,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
@@ -18,6 +19,7 @@ import java.util.Base64.Decoder;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Random;
 
 import javax.json.Json;
 import javax.json.JsonArray;
@@ -33,6 +35,7 @@ import org.apache.pdfbox.pdmodel.PDDocumentCatalog;
 import org.glassfish.jersey.jsonp.JsonProcessingFeature;
 import org.glassfish.jersey.media.multipart.ContentDisposition;
 import org.glassfish.jersey.media.multipart.FormDataBodyPart;
+import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
 import org.glassfish.jersey.media.multipart.FormDataMultiPart;
 import org.glassfish.jersey.media.multipart.MultiPartFeature;
 import org.glassfish.jersey.media.multipart.file.FileDataBodyPart;
@@ -51,7 +54,14 @@ import org.springframework.core.env.Environment;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 
+import com._4point.aem.formsfeeder.core.datasource.DataSource;
+import com._4point.aem.formsfeeder.core.datasource.DataSourceList;
+import com._4point.aem.formsfeeder.core.datasource.SpillableDataSourceFactory;
 import com._4point.aem.formsfeeder.core.datasource.StandardMimeTypes;
+import com._4point.aem.formsfeeder.core.datasource.serialization.BinaryDataSourceListDecoder;
+import com._4point.aem.formsfeeder.core.datasource.serialization.BinaryDataSourceListEncoder;
+import com._4point.aem.formsfeeder.core.datasource.serialization.XmlDataSourceListDecoder;
+import com._4point.aem.formsfeeder.core.datasource.serialization.XmlDataSourceListEncoder;
 import com._4point.aem.formsfeeder.server.support.CorrelationId;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.github.tomakehurst.wiremock.http.ResponseDefinition;
@@ -74,6 +84,7 @@ class ServicesEndpointTest implements EnvironmentAware {
 
 	private static final String BODY_DS_NAME = "formsfeeder:BodyBytes";
 	private static final String MOCK_PLUGIN_SCENARIO_NAME = "scenario";
+	private static final MediaType BINARY_DSL_MEDIA_TYPE = MediaType.valueOf(BinaryDataSourceListEncoder.DSL_MIME_TYPE_STR);
 	
 	private static final Path SAMPLE_XDP = TestConstants.SAMPLE_FILES_DIR.resolve("SampleForm.xdp");
 	private static final Path SAMPLE_DATA = TestConstants.SAMPLE_FILES_DIR.resolve("SampleForm_data.xml");
@@ -154,6 +165,33 @@ class ServicesEndpointTest implements EnvironmentAware {
 		assertNotNull(response.getHeaderString(CorrelationId.CORRELATION_ID_HDR));
 	}
 
+	@Test
+	void testInvokeGetNoParams_TimeBudget() {
+		Response response = ClientBuilder.newClient()
+				 .target(uri)
+				 .path(DEBUG_PLUGIN_PATH)
+				 .request()
+				 .header(PluginInvoker.REQUEST_TIMEOUT_HDR, "30000")
+				 .get();
+		
+		// The Debug plugin echoes back the time budget that it was given.
+		assertEquals(Response.Status.OK.getStatusCode(), response.getStatus(), ()->"Unexpected response status returned from URL (" + DEBUG_PLUGIN_PATH + ")." + getResponseBody(response));
+		assertTrue(getResponseBody(response).contains("name='" + PluginInvoker.TIME_BUDGET_DS_NAME + "'"));
+	}
+
+	@Test
+	void testInvokeGetNoParams_InvalidRequestTimeout() {
+		Response response = ClientBuilder.newClient()
+				 .target(uri)
+				 .path(DEBUG_PLUGIN_PATH)
+				 .request()
+				 .header(PluginInvoker.REQUEST_TIMEOUT_HDR, "soon")
+				 .get();
+		
+		assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus(), ()->"Unexpected response status returned from URL (" + DEBUG_PLUGIN_PATH + ")." + getResponseBody(response));
+		assertTrue(getResponseBody(response).contains(PluginInvoker.REQUEST_TIMEOUT_HDR));
+	}
+
 	@Test
 	void testInvokeGetOneParams() {
 		String expectedParamName = "QueryParam1";
@@ -462,6 +500,79 @@ class ServicesEndpointTest implements EnvironmentAware {
 		assertTrue(responseBody.contains(testFile.getFileName().toString()), "Expected response body to contain '" + testFile.getFileName().toString() + "', but was '" + responseBody + "'.");
 	}
 
+	@Test
+	void testInvokePostLargeBody_SpilledToDisk() throws Exception {
+		// Body is larger than the default spill threshold, so it gets written to a temporary file on the server.
+		final byte[] expectedBytes = new byte[SpillableDataSourceFactory.DEFAULT_THRESHOLD * 2 + 17];
+		new Random(42).nextBytes(expectedBytes);
+		Response response = ClientBuilder.newClient()
+				 .target(uri)
+				 .path(MOCK_PLUGIN_PATH)
+				 .queryParam(MOCK_PLUGIN_SCENARIO_NAME, "ReturnBody")
+				 .request()
+				 .post(Entity.entity(expectedBytes, MediaType.APPLICATION_OCTET_STREAM_TYPE));
+
+		assertEquals(Response.Status.OK.getStatusCode(), response.getStatus(), ()->"Unexpected response status returned from URL (" + MOCK_PLUGIN_PATH + ")." + getResponseBody(response));
+		assertNotNull(response.getHeaderString(CorrelationId.CORRELATION_ID_HDR));
+		assertArrayEquals(expectedBytes, ((InputStream)response.getEntity()).readAllBytes());
+	}
+
+	@Test
+	void testInvokePostDataSourceListBody_DecodedWhileReading() throws Exception {
+		// Body is a serialized DataSourceList whose content is larger than the spill threshold.
+		final byte[] expectedBytes = new byte[SpillableDataSourceFactory.DEFAULT_THRESHOLD * 2 + 17];
+		new Random(42).nextBytes(expectedBytes);
+		ByteArrayOutputStream xml = new ByteArrayOutputStream();
+		try (XmlDataSourceListEncoder encoder = XmlDataSourceListEncoder.wrap(xml)) {
+			encoder.encode(DataSourceList.builder().add("LargeContent", expectedBytes).add("SmallContent", "SmallValue").build());
+		}
+		Response response = ClientBuilder.newClient()
+				 .target(uri)
+				 .path(MOCK_PLUGIN_PATH)
+				 .queryParam(MOCK_PLUGIN_SCENARIO_NAME, "ReturnBody")
+				 .request()
+				 .post(Entity.entity(xml.toByteArray(), XmlDataSourceListEncoder.DSL_MIME_TYPE_STR));
+
+		assertEquals(Response.Status.OK.getStatusCode(), response.getStatus(), ()->"Unexpected response status returned from URL (" + MOCK_PLUGIN_PATH + ")." + getResponseBody(response));
+		DataSourceList result;
+		try (XmlDataSourceListDecoder decoder = XmlDataSourceListDecoder.wrap((InputStream)response.getEntity())) {
+			result = decoder.decode().orElseThrow();
+		}
+		assertArrayEquals(expectedBytes, result.deconstructor().getByteArrayByName("LargeContent").orElseThrow());
+		assertEquals("SmallValue", result.deconstructor().getStringByName("SmallContent").orElseThrow());
+	}
+
+	@Test
+	void testInvokePostDataSourceListBody_Invalid() throws Exception {
+		Response response = ClientBuilder.newClient()
+				 .target(uri)
+				 .path(MOCK_PLUGIN_PATH)
+				 .queryParam(MOCK_PLUGIN_SCENARIO_NAME, "ReturnBody")
+				 .request()
+				 .post(Entity.entity("<DataSourceList><DataSource", XmlDataSourceListEncoder.DSL_MIME_TYPE_STR));
+
+		assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus(), ()->"Unexpected response status returned from URL (" + MOCK_PLUGIN_PATH + ")." + getResponseBody(response));
+	}
+
+	@Test
+	void testInvokePostLargeFormParam_SpilledToDisk() throws Exception {
+		final byte[] largeBytes = new byte[SpillableDataSourceFactory.DEFAULT_THRESHOLD + 1];
+		final String expectedFilename = "LargeFile.bin";
+		FormDataMultiPart bodyData = new FormDataMultiPart();
+		bodyData.bodyPart(new FormDataBodyPart(FormDataContentDisposition.name("LargeParam").fileName(expectedFilename).build(), new ByteArrayInputStream(largeBytes), MediaType.APPLICATION_OCTET_STREAM_TYPE));
+
+		Response response = ClientBuilder.newClient()
+				 .register(MultiPartFeature.class)
+				 .target(uri)
+				 .path(DEBUG_PLUGIN_PATH)
+				 .request()
+				 .post(Entity.entity(bodyData, bodyData.getMediaType()));
+
+		assertEquals(Response.Status.OK.getStatusCode(), response.getStatus(), ()->"Unexpected response status returned from URL (" + DEBUG_PLUGIN_PATH + ")." + getResponseBody(response));
+		String responseBody = getResponseBody(response);
+		assertTrue(responseBody.contains(expectedFilename), "Expected response body to contain '" + expectedFilename + "', but was '" + responseBody + "'.");
+	}
+
 	@Test
 	void testInvokePostNoQueryParamsOneBodyParamText() {
 		String expectedBodyText = "This is some text.";
@@ -1014,6 +1125,47 @@ class ServicesEndpointTest implements EnvironmentAware {
 		assertTrue(responseBody.contains(expectedParamValue), "Expected response body to contain '" + expectedParamValue + "', but was '" + responseBody + "'.");
 	}
 
+	@Test
+	void testInvokePostMalformedJson() {
+		Response response = ClientBuilder.newClient()
+				 .target(uri)
+				 .path(DEBUG_PLUGIN_PATH)
+				 .request()
+				 .post(Entity.entity("{\"BodyParam1\": ", MediaType.APPLICATION_JSON_TYPE));
+		
+		assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus(), ()->"Unexpected response status returned from URL (" + DEBUG_PLUGIN_PATH + ")." + getResponseBody(response));
+		String responseBody = getResponseBody(response);
+		assertTrue(responseBody.contains("Unable to parse Json request body"), "Expected response body to contain 'Unable to parse Json request body', but was '" + responseBody + "'.");
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"no-such-charset", "bad charset name"})
+	void testInvokePostJsonUnsupportedCharset(String charset) {
+		Response response = ClientBuilder.newClient()
+				 .target(uri)
+				 .path(DEBUG_PLUGIN_PATH)
+				 .request()
+				 .post(Entity.entity("{\"BodyParam1\": \"value\"}".getBytes(StandardCharsets.UTF_8), MediaType.APPLICATION_JSON_TYPE.withCharset(charset)));
+		
+		assertEquals(Response.Status.UNSUPPORTED_MEDIA_TYPE.getStatusCode(), response.getStatus(), ()->"Unexpected response status returned from URL (" + DEBUG_PLUGIN_PATH + ")." + getResponseBody(response));
+		String responseBody = getResponseBody(response);
+		assertTrue(responseBody.contains("Unsupported charset"), "Expected response body to contain 'Unsupported charset', but was '" + responseBody + "'.");
+	}
+
+	@Test
+	void testInvokePostJsonTooDeep() {
+		String jsonData = "{\"a\":".repeat(RequestBufferingProperties.DEFAULT_JSON_MAX_DEPTH + 1) + "\"value\"" + "}".repeat(RequestBufferingProperties.DEFAULT_JSON_MAX_DEPTH + 1);
+		Response response = ClientBuilder.newClient()
+				 .target(uri)
+				 .path(DEBUG_PLUGIN_PATH)
+				 .request()
+				 .post(Entity.entity(jsonData, MediaType.APPLICATION_JSON_TYPE));
+		
+		assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus(), ()->"Unexpected response status returned from URL (" + DEBUG_PLUGIN_PATH + ")." + getResponseBody(response));
+		String responseBody = getResponseBody(response);
+		assertTrue(responseBody.contains("nested more than"), "Expected response body to contain 'nested more than', but was '" + responseBody + "'.");
+	}
+
 	@Test
 	void testInvokePostNoQueryParamsComplexJsonParams() {
 		String bodyParamString = "BodyParam";
@@ -1562,6 +1714,91 @@ class ServicesEndpointTest implements EnvironmentAware {
 		}
 	}
 	
+	@Test
+	void testInvokePost_BinaryBody_ReturnManyOutputsFromPlugin() throws Exception {
+		DataSourceList bodyData = DataSourceList.builder().add(MOCK_PLUGIN_SCENARIO_NAME, "ReturnManyOutputs").build();
+		
+		Response response = ClientBuilder.newClient()
+				 .target(uri)
+				 .path(MOCK_PLUGIN_PATH)
+				 .request()
+				 .accept(BINARY_DSL_MEDIA_TYPE)
+				 .post(Entity.entity(toBinary(bodyData), BINARY_DSL_MEDIA_TYPE));
+		
+		assertEquals(Response.Status.OK.getStatusCode(), response.getStatus(), ()->"Unexpected response status returned from URL (" + MOCK_PLUGIN_PATH + ")." + getResponseBody(response));
+		assertTrue(BINARY_DSL_MEDIA_TYPE.isCompatible(response.getMediaType()), "Expected response media type (" + response.getMediaType().toString() + ") to be compatible with '" + BINARY_DSL_MEDIA_TYPE.toString() + "'.");
+		assertNotNull(response.getHeaderString(CorrelationId.CORRELATION_ID_HDR));
+		
+		// Decode the response and check that it is correct.
+		try (BinaryDataSourceListDecoder decoder = BinaryDataSourceListDecoder.wrap(response.readEntity(InputStream.class))) {
+			DataSourceList result = decoder.decode().orElseThrow();
+			assertEquals(3, result.size(), "Expected 3 DataSources in the response.");
+			for (DataSource ds : result) {
+				MediaType mediaType = MediaType.valueOf(ds.contentType().asString());
+				if (TestConstants.APPLICATION_PDF.isCompatible(mediaType)) {
+					assertEquals(SAMPLE_PDF.getFileName(), ds.filename().orElseThrow().getFileName());
+					validatePdf(ds.inputStream());
+				} else if (MediaType.APPLICATION_XML_TYPE.isCompatible(mediaType)) {
+					assertEquals(SAMPLE_DATA.getFileName(), ds.filename().orElseThrow().getFileName());
+					validateXml(ds.inputStream());
+				} else if (MediaType.APPLICATION_OCTET_STREAM_TYPE.isCompatible(mediaType)) {
+					assertTrue(ds.filename().isEmpty());
+					assertArrayEquals("SampleData".getBytes(StandardCharsets.UTF_8), ds.inputStream().readAllBytes());
+				} else {
+					fail("Found unexpected mediaType in response '" + mediaType.toString() + "'.");
+				}
+			}
+		}
+	}
+
+	@Test
+	void testInvokeGetManyParamsAcceptBinary() throws Exception {
+		String queryParamString = "QueryParam";
+		String queryValueString = "Value";
+		Response response = ClientBuilder.newClient()
+				 .target(uri)
+				 .path(DEBUG_PLUGIN_PATH)
+				 .queryParam(queryParamString + "1", queryParamString + "1 " + queryValueString)
+				 .queryParam(queryParamString + "2", queryParamString + "2 " + queryValueString)
+				 .request()
+				 .accept(BINARY_DSL_MEDIA_TYPE)
+				 .get();
+		
+		assertEquals(Response.Status.OK.getStatusCode(), response.getStatus(), ()->"Unexpected response status returned from URL (" + DEBUG_PLUGIN_PATH + ")." + getResponseBody(response));
+		assertTrue(BINARY_DSL_MEDIA_TYPE.isCompatible(response.getMediaType()), "Expected response media type (" + response.getMediaType().toString() + ") to be compatible with '" + BINARY_DSL_MEDIA_TYPE.toString() + "'.");
+		
+		try (BinaryDataSourceListDecoder decoder = BinaryDataSourceListDecoder.wrap(response.readEntity(InputStream.class))) {
+			List<String> messages = decoder.decode().orElseThrow().deconstructor().getStringsByName("Message");
+			assertEquals(2, messages.size());
+			for (String message : messages) {
+				assertTrue(message.contains(queryParamString), "Expected response body to contain '" + queryParamString + "', but was '" + message + "'.");
+				assertTrue(message.contains(queryValueString), "Expected response body to contain '" + queryValueString + "', but was '" + message + "'.");
+			}
+		}
+	}
+
+	@Test
+	void testInvokePost_BadBinaryBody() throws Exception {
+		Response response = ClientBuilder.newClient()
+				 .target(uri)
+				 .path(MOCK_PLUGIN_PATH)
+				 .request()
+				 .accept(BINARY_DSL_MEDIA_TYPE)
+				 .post(Entity.entity("Not a binary DataSourceList".getBytes(StandardCharsets.UTF_8), BINARY_DSL_MEDIA_TYPE));
+		
+		assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus(), ()->"Unexpected response status returned from URL (" + MOCK_PLUGIN_PATH + ")." + getResponseBody(response));
+		assertNotNull(response.getHeaderString(CorrelationId.CORRELATION_ID_HDR));
+		assertThat(response.readEntity(String.class), containsString("invalid header"));
+	}
+
+	private static byte[] toBinary(DataSourceList dsl) throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		try (BinaryDataSourceListEncoder encoder = BinaryDataSourceListEncoder.wrap(os)) {
+			encoder.encode(dsl);
+		}
+		return os.toByteArray();
+	}
+
 	@Test
 	void testInvokePost_ReturnManyOutputsFromPlugin_Json() throws Exception {
 		JsonObject jsonData = Json.createObjectBuilder()
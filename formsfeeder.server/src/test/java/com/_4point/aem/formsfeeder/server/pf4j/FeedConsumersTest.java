@@ -1,15 +1,26 @@
 package com._4point.aem.formsfeeder.server.pf4j;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.junit.jupiter.api.Test;
 
+import com._4point.aem.formsfeeder.core.api.FeedConsumer;
+import com._4point.aem.formsfeeder.core.api.FeedConsumer.FeedConsumerException;
+import com._4point.aem.formsfeeder.core.api.FeedConsumer.FeedConsumerInternalErrorException;
 import com._4point.aem.formsfeeder.core.api.NamedFeedConsumer;
 import com._4point.aem.formsfeeder.core.datasource.DataSourceList;
 import com._4point.aem.formsfeeder.pf4j.SpringPluginManager;
+import com._4point.aem.formsfeeder.server.pf4j.FeedConsumers.ConsumerLease;
+import com._4point.aem.formsfeeder.server.pf4j.FeedConsumers.ConsumerStats;
 
 class FeedConsumersTest {
 	
@@ -34,6 +45,102 @@ class FeedConsumersTest {
 		assertEquals(1, mockSpringPluginManager.timesCalled());
 	}
 
+	@Test
+	void testConcurrentFirstLookups() throws Exception {
+		final int numThreads = 16;
+		FeedConsumers feedConsumers = constructFeedConsumers();
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			List<Future<Boolean>> results = IntStream.range(0, numThreads)
+													 .mapToObj(i->executor.submit(()->{ start.await(); return feedConsumers.consumer("Mock").isPresent(); }))
+													 .collect(Collectors.toList());
+			start.countDown();
+			for (Future<Boolean> result : results) {
+				assertTrue(result.get());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		// The extensions must only be initialized once, no matter how many threads look them up at the same time.
+		assertEquals(1, mockSpringPluginManager.timesCalled());
+	}
+
+	@Test
+	void testDuplicateNames() {
+		mockSpringPluginManager.consumers = List.of(new MockNamedFeedConsumer("Mock"), new MockNamedFeedConsumer("Other"), new MockNamedFeedConsumer("Mock"));
+		IllegalStateException ex = assertThrows(IllegalStateException.class, ()->underTest.consumer("Other"));
+		assertEquals("Found multiple FeedConsumer extensions named 'Mock'.", ex.getMessage());
+	}
+
+	@Test
+	void testStats() throws Exception {
+		FeedConsumer consumer = underTest.consumer("Mock").get();
+		consumer.accept(DataSourceList.emptyList());
+		consumer.accept(DataSourceList.emptyList());
+		underTest.consumer("Mock");
+		underTest.consumer("NotMock");
+
+		ConsumerStats stats = underTest.stats().get(0);
+		assertAll(
+				()->assertEquals(1, underTest.stats().size()),
+				()->assertEquals("Mock", stats.name()),
+				()->assertEquals(2, stats.lookups()),
+				()->assertEquals(2, stats.invocations()),
+				()->assertEquals(0, stats.failures()),
+				()->assertEquals(1, underTest.notFound())
+				);
+	}
+
+	@Test
+	void testStats_Failures() throws Exception {
+		mockSpringPluginManager.consumers = List.of(new FailingNamedFeedConsumer());
+		FeedConsumer consumer = underTest.consumer("Failing").get();
+		assertThrows(FeedConsumerException.class, ()->consumer.accept(DataSourceList.emptyList()));
+
+		ConsumerStats stats = underTest.stats().get(0);
+		assertEquals(1, stats.invocations());
+		assertEquals(1, stats.failures());
+	}
+
+	@Test
+	void testInFlight() throws Exception {
+		IntSupplier inFlight = underTest.inFlight(MockNamedFeedConsumer.class.getClassLoader());
+		ConsumerLease lease = underTest.consumer("Mock").get();
+		assertEquals(1, inFlight.getAsInt(), "A lookup should count as in flight before the FeedConsumer is invoked.");
+
+		lease.accept(DataSourceList.emptyList());
+		assertEquals(1, inFlight.getAsInt());
+
+		lease.close();
+		lease.close();		// Closing twice only releases once.
+		assertEquals(0, inFlight.getAsInt());
+	}
+
+	@Test
+	void testRefresh() throws Exception {
+		underTest.consumer("Mock").get().accept(DataSourceList.emptyList());
+		mockSpringPluginManager.consumers = List.of(new MockNamedFeedConsumer("Mock"), new MockNamedFeedConsumer("New"));
+
+		underTest.refresh();
+
+		assertAll(
+				()->assertTrue(underTest.consumer("New").isPresent()),
+				()->assertEquals(2, mockSpringPluginManager.timesCalled()),
+				()->assertEquals(1, underTest.stats().stream().filter(s->s.name().equals("Mock")).findFirst().get().invocations())	// Counts are carried over
+				);
+	}
+
+	@Test
+	void testRefresh_DuplicateNamesKeepsCurrent() throws Exception {
+		assertTrue(underTest.consumer("Mock").isPresent());
+		mockSpringPluginManager.consumers = List.of(new MockNamedFeedConsumer("New"), new MockNamedFeedConsumer("New"));
+
+		assertThrows(IllegalStateException.class, ()->underTest.refresh());
+
+		assertTrue(underTest.consumer("Mock").isPresent());
+		assertTrue(underTest.consumer("New").isEmpty());
+	}
 
 	private FeedConsumers constructFeedConsumers() {
 		FeedConsumers feedConsumers = new FeedConsumers();
@@ -48,12 +155,14 @@ class FeedConsumersTest {
 	}
 	
 	private static class MockSpringPluginManager extends SpringPluginManager {
-		private int timesCalled = 0;
+		private volatile int timesCalled = 0;
+		private List<NamedFeedConsumer> consumers = List.of(new MockNamedFeedConsumer("Mock"));
 
+		@SuppressWarnings("unchecked")
 		@Override
-		public <T> List<T> getExtensions(Class<T> type) {
+		public synchronized <T> List<T> getExtensions(Class<T> type) {
 			timesCalled++;
-			return List.of((T)new MockNamedFeedConsumer());
+			return (List<T>)consumers;
 		}
 
 		public final int timesCalled() {
@@ -62,17 +171,34 @@ class FeedConsumersTest {
 	}
 	
 	private static class MockNamedFeedConsumer implements NamedFeedConsumer {
+		private final String name;
+
+		private MockNamedFeedConsumer(String name) {
+			this.name = name;
+		}
 
 		@Override
 		public DataSourceList accept(DataSourceList dataSources) throws FeedConsumerException {
-			// TODO Auto-generated method stub
-			return null;
+			return dataSources;
 		}
 
 		@Override
 		public String name() {
-			return "Mock";
+			return name;
 		}
 		
 	}
+
+	private static class FailingNamedFeedConsumer implements NamedFeedConsumer {
+
+		@Override
+		public DataSourceList accept(DataSourceList dataSources) throws FeedConsumerException {
+			throw new FeedConsumerInternalErrorException("Failure");
+		}
+
+		@Override
+		public String name() {
+			return "Failing";
+		}
+	}
 }
@@ -0,0 +1,263 @@
+package com._4point.aem.formsfeeder.server.pf4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.pf4j.PluginState;
+import org.springframework.beans.factory.support.AbstractAutowireCapableBeanFactory;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.mock.env.MockEnvironment;
+
+import com._4point.aem.formsfeeder.core.api.FeedConsumer;
+import com._4point.aem.formsfeeder.core.api.FeedConsumer.FeedConsumerException;
+import com._4point.aem.formsfeeder.core.datasource.DataSourceList;
+import com._4point.aem.formsfeeder.pf4j.ExtensionsInjector;
+import com._4point.aem.formsfeeder.pf4j.SpringPluginManager;
+import com._4point.aem.formsfeeder.server.pf4j.FeedConsumers.ConsumerLease;
+import com._4point.aem.formsfeeder.server.pf4j.PluginReloader.PluginInfo;
+import com._4point.aem.formsfeeder.server.pf4j.PluginReloader.PluginNotFoundException;
+import com._4point.aem.formsfeeder.server.pf4j.PluginReloader.PluginReloaderException;
+
+/**
+ * Tests the PluginReloader using a copy of the mock plugin in a temporary plugins directory.
+ *
+ */
+class PluginReloaderTest {
+	private static final Path MOCK_PLUGIN_JAR = Paths.get("plugins", "mock-0.0.2-SNAPSHOT.jar");
+	private static final String MOCK_PLUGIN_ID = "com._4point.aem.formsfeeder.plugins.mock";
+
+	@TempDir
+	Path pluginsDir;
+
+	private final MockEnvironment environment = new MockEnvironment().withProperty(PluginReloader.FF_WATCH_INTERVAL_PROPERTY, "3600000");	// Tests drive the watcher directly.
+	private GenericApplicationContext applicationContext;
+	private SpringPluginManager pluginManager;
+	private FeedConsumers feedConsumers;
+	private PluginReloader underTest;
+
+	@AfterEach
+	void tearDown() throws Exception {
+		if (underTest != null) {
+			underTest.close();
+		}
+		if (pluginManager != null) {
+			pluginManager.stopPlugins();
+			pluginManager.unloadPlugins();
+		}
+	}
+
+	@Test
+	void testReload() throws Exception {
+		Path jar = copyMockPlugin("mock.jar");
+		createReloader(true);
+		ConsumerLease oldConsumer = feedConsumers.consumer("Mock").get();
+		ClassLoader oldClassLoader = pluginManager.getPlugin(MOCK_PLUGIN_ID).getPluginClassLoader();
+
+		PluginInfo info = underTest.reload(MOCK_PLUGIN_ID);
+
+		assertAll(
+				()->assertEquals(MOCK_PLUGIN_ID, info.id()),
+				()->assertEquals(PluginState.STARTED, info.state()),
+				()->assertEquals(jar.toString(), info.path()),
+				()->assertNotSame(oldClassLoader, pluginManager.getPlugin(MOCK_PLUGIN_ID).getPluginClassLoader()),
+				()->assertNotSame(oldConsumer, feedConsumers.consumer("Mock").get()),
+				()->assertEquals(1, underTest.draining())
+				);
+
+		// A request that looked up the old FeedConsumer before the reload can still use it.
+		invoke(oldConsumer);
+		underTest.closeDrained();
+		assertEquals(1, underTest.draining(), "Expected the old class loader to be kept open until the lease is closed.");
+		assertNotNull(oldClassLoader.getResource("SampleForm.xdp"));
+
+		oldConsumer.close();
+		underTest.closeDrained();
+
+		assertEquals(0, underTest.draining());
+		assertNull(oldClassLoader.getResource("SampleForm.xdp"), "Expected the old class loader to be closed.");
+	}
+
+	@Test
+	void testReload_CorruptJarKeepsWorkingPlugin() throws Exception {
+		Path jar = copyMockPlugin("mock.jar");
+		createReloader(true);
+		ClassLoader oldClassLoader = pluginManager.getPlugin(MOCK_PLUGIN_ID).getPluginClassLoader();
+		try (ConsumerLease consumer = feedConsumers.consumer("Mock").get()) {
+			invoke(consumer);		// The plugin is in use before it is replaced.
+		}
+		writeCorruptPlugin(jar);
+
+		assertThrows(PluginReloaderException.class, ()->underTest.reload(MOCK_PLUGIN_ID));
+
+		assertAll(
+				()->assertEquals(PluginState.STARTED, pluginManager.getPlugin(MOCK_PLUGIN_ID).getPluginState()),
+				()->assertSame(oldClassLoader, pluginManager.getPlugin(MOCK_PLUGIN_ID).getPluginClassLoader()),
+				()->assertTrue(feedConsumers.consumer("Mock").isPresent()),
+				()->assertTrue(feedConsumers.consumer("MockSubmit").isPresent()),
+				()->assertEquals(0, underTest.draining())
+				);
+		underTest.closeDrained();
+		try (ConsumerLease consumer = feedConsumers.consumer("Mock").get()) {
+			invoke(consumer);
+		}
+		assertNotNull(oldClassLoader.getResource("SampleForm.xdp"), "Expected the restored plugin's class loader to still be open.");
+	}
+
+	@Test
+	void testUnload_DestroysExtensionBeans() throws Exception {
+		copyMockPlugin("mock.jar");
+		createReloader(true);
+		AbstractAutowireCapableBeanFactory beanFactory = (AbstractAutowireCapableBeanFactory)applicationContext.getAutowireCapableBeanFactory();
+		new ExtensionsInjector(pluginManager, beanFactory).injectExtensions();		// As SpringPluginManager.init() does at startup.
+		Set<String> extensionClassNames = pluginManager.getExtensionClassNames(MOCK_PLUGIN_ID);
+		assertFalse(extensionClassNames.isEmpty());
+		assertTrue(extensionClassNames.stream().allMatch(beanFactory::containsSingleton));
+
+		underTest.unload(MOCK_PLUGIN_ID);
+
+		assertTrue(extensionClassNames.stream().noneMatch(beanFactory::containsSingleton), "Expected the plugin's extension beans to be destroyed.");
+	}
+
+	@Test
+	void testAdminEnabled() throws Exception {
+		environment.setProperty(PluginReloader.FF_ADMIN_ENABLED_PROPERTY, "true");
+		createReloader(true);
+		assertFalse(underTest.adminEnabled(), "Plugin administration must not be enabled without authentication.");
+		underTest.close();
+
+		environment.setProperty("formsfeeder.auth", "basic");
+		underTest = new PluginReloader(pluginManager, feedConsumers, environment);
+		assertTrue(underTest.adminEnabled());
+	}
+
+	@Test
+	void testStopAndStart() throws Exception {
+		copyMockPlugin("mock.jar");
+		createReloader(true);
+
+		assertEquals(PluginState.STOPPED, underTest.stop(MOCK_PLUGIN_ID).state());
+		assertTrue(feedConsumers.consumer("Mock").isEmpty());
+		assertTrue(feedConsumers.consumer("MockSubmit").isEmpty());
+
+		assertEquals(PluginState.STARTED, underTest.start(MOCK_PLUGIN_ID).state());
+		assertTrue(feedConsumers.consumer("Mock").isPresent());
+		assertTrue(feedConsumers.consumer("MockSubmit").isPresent());
+		assertEquals(0, underTest.draining());
+	}
+
+	@Test
+	void testUnloadAndLoad() throws Exception {
+		Path jar = copyMockPlugin("mock.jar");
+		createReloader(true);
+
+		underTest.unload(MOCK_PLUGIN_ID);
+
+		assertAll(
+				()->assertTrue(underTest.plugins().isEmpty()),
+				()->assertTrue(feedConsumers.consumer("Mock").isEmpty()),
+				()->assertEquals(1, underTest.draining())
+				);
+
+		PluginInfo info = underTest.load(jar);
+
+		assertEquals(MOCK_PLUGIN_ID, info.id());
+		assertTrue(feedConsumers.consumer("Mock").isPresent());
+		underTest.closeDrained();
+		assertEquals(0, underTest.draining());
+	}
+
+	@Test
+	void testUnknownPlugin() throws Exception {
+		createReloader(true);
+
+		assertThrows(PluginNotFoundException.class, ()->underTest.stop("UnknownPlugin"));
+		assertThrows(PluginNotFoundException.class, ()->underTest.reload("UnknownPlugin"));
+		assertThrows(PluginReloaderException.class, ()->underTest.load(pluginsDir.resolve("DoesNotExist.jar")));
+	}
+
+	@Test
+	void testWatcher() throws Exception {
+		environment.setProperty(PluginReloader.FF_WATCH_ENABLED_PROPERTY, "true");
+		createReloader(true);
+		assertTrue(underTest.plugins().isEmpty());
+
+		copyMockPlugin("mock.jar");
+		underTest.watchPluginFiles();
+		assertTrue(underTest.plugins().isEmpty(), "Plugins should not be loaded until the file has stopped changing.");
+		underTest.watchPluginFiles();
+
+		assertEquals(1, underTest.plugins().size());
+		assertTrue(feedConsumers.consumer("Mock").isPresent());
+
+		Files.delete(pluginsDir.resolve("mock.jar"));
+		underTest.watchPluginFiles();
+
+		assertTrue(underTest.plugins().isEmpty());
+		assertTrue(feedConsumers.consumer("Mock").isEmpty());
+	}
+
+	private Path copyMockPlugin(String fileName) throws Exception {
+		return Files.copy(MOCK_PLUGIN_JAR, pluginsDir.resolve(fileName), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Replaces a plugin jar with one that has the same plugin id but whose plugin class is missing.  The new jar is
+	 * moved into place (as a deployment would do it), because overwriting a jar in place also breaks the class loader
+	 * that has it open.
+	 */
+	private static void writeCorruptPlugin(Path jar) throws Exception {
+		Manifest manifest;
+		try (JarFile jarFile = new JarFile(jar.toFile())) {
+			manifest = jarFile.getManifest();
+		}
+		manifest.getMainAttributes().putValue("Plugin-Class", "com._4point.aem.formsfeeder.plugins.mock.MissingPlugin");
+		Path tempFile = jar.resolveSibling(jar.getFileName() + ".tmp");
+		try (OutputStream os = Files.newOutputStream(tempFile); JarOutputStream jos = new JarOutputStream(os, manifest)) {
+			// No classes
+		}
+		Files.move(tempFile, jar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private void createReloader(boolean startPlugins) throws Exception {
+		applicationContext = new GenericApplicationContext();
+		applicationContext.refresh();
+		pluginManager = new SpringPluginManager() {
+			@Override
+			protected List<Path> createPluginsRoot() {
+				return List.of(pluginsDir);
+			}
+		};
+		pluginManager.setApplicationContext(applicationContext);
+		pluginManager.loadPlugins();
+		if (startPlugins) {
+			pluginManager.startPlugins();
+		}
+		feedConsumers = new FeedConsumers();
+		// Emulate the injection that Spring Boot is doing
+		junitx.util.PrivateAccessor.setField(feedConsumers, "springPluginManager", pluginManager);
+		junitx.util.PrivateAccessor.setField(feedConsumers, "environment", environment);
+		junitx.util.PrivateAccessor.setField(feedConsumers, "applicationContext", applicationContext);
+		underTest = new PluginReloader(pluginManager, feedConsumers, environment);
+	}
+
+	private static void invoke(FeedConsumer consumer) {
+		try {
+			consumer.accept(DataSourceList.emptyList());
+		} catch (FeedConsumerException e) {
+			// The mock plugin rejects an empty list, that's fine.  All we care about is that its code can still be run.
+		}
+	}
+}
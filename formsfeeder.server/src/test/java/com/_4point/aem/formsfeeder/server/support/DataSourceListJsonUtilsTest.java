@@ -2,8 +2,14 @@ package com._4point.aem.formsfeeder.server.support;
 
 import static com._4point.aem.formsfeeder.server.support.DataSourceListJsonUtils.asDataSourceList;
 import static com._4point.aem.formsfeeder.server.support.DataSourceListJsonUtils.asJson;
+import static com._4point.aem.formsfeeder.server.support.DataSourceListJsonUtils.asJsonStreamingOutput;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
@@ -13,12 +19,18 @@ import java.nio.file.Paths;
 import java.util.Base64;
 import java.util.Base64.Decoder;
 import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Collectors;
 
 import javax.json.Json;
 import javax.json.JsonArray;
 import javax.json.JsonArrayBuilder;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
+import javax.json.JsonReader;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParsingException;
 
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
@@ -29,6 +41,7 @@ import org.slf4j.LoggerFactory;
 import com._4point.aem.formsfeeder.core.datasource.DataSource;
 import com._4point.aem.formsfeeder.core.datasource.DataSourceList;
 import com._4point.aem.formsfeeder.core.datasource.DataSourceList.Deconstructor;
+import com._4point.aem.formsfeeder.core.datasource.DataSourceWrapper;
 
 class DataSourceListJsonUtilsTest {
 	private final static Logger logger = LoggerFactory.getLogger(DataSourceListJsonUtilsTest.class);
@@ -139,6 +152,86 @@ class DataSourceListJsonUtilsTest {
 		
 	}
 
+	@Test
+	void testAsDataSourceList_JsonParser() throws Exception {
+		JsonObject jsonData = Json.createObjectBuilder()
+				  .add(BIG_DECIMAL_DATA_STR, new BigDecimal("1.50"))
+				  .add(BIG_INTEGER_DATA_STR, BIG_INTEGER_DATA)
+				  .add(BOOLEAN_DATA_STR, BOOLEAN_DATA)
+				  .add(DOUBLE_DATA_STR, DOUBLE_DATA)
+				  .add(LONG_DATA_STR, LONG_DATA)
+				  .add(STRING_DATA_STR, "Text with \"quotes\" and \\ backslashes")
+				  .addNull(NULL_DATA_STR)
+				  .add(JSON_ARRAY_DATA_STR, Json.createArrayBuilder().add(INTEGER_DATA).add(Json.createArrayBuilder().add(STRING_DATA)).addNull())
+				  .add(JSON_OBJECT_DATA_STR, Json.createObjectBuilder().add(STRING_DATA_STR, STRING_DATA).add(NESTED_JSON_OBJECT_DATA_STR, Json.createObjectBuilder().add(LONG_DATA_STR, LONG_DATA)))
+				  .build();
+		
+		DataSourceList fromParser;
+		try (JsonParser parser = Json.createParser(new StringReader(jsonData.toString()))) {
+			fromParser = asDataSourceList(parser, 64, logger);
+		}
+		
+		// Parsing directly should produce the same DataSourceList as going through a JsonObject.
+		assertEquals(asJson(asDataSourceList(jsonData, logger), logger), asJson(fromParser, logger));
+	}
+
+	@Test
+	void testAsDataSourceList_JsonParser_ComplexEmail() throws Exception {
+		final Path jsonFile = Paths.get("src", "test", "resources", "SampleFiles", "SendEmailIntegrationTest_ComplexEmail.json");
+		JsonObject json = Json.createReader(Files.newInputStream(jsonFile)).readObject();
+		DataSourceList fromParser;
+		try (JsonParser parser = Json.createParser(Files.newInputStream(jsonFile))) {
+			fromParser = asDataSourceList(parser, 64, logger);
+		}
+		assertEquals(asJson(asDataSourceList(json, logger), logger), asJson(fromParser, logger));
+	}
+
+	@Test
+	void testAsDataSourceList_JsonParser_TooDeep() throws Exception {
+		String json = "{\"level1\":{\"level2\":[{\"level4\":\"value\"}]}}";
+		try (JsonParser parser = Json.createParser(new StringReader(json))) {
+			assertEquals(1, asDataSourceList(parser, 4, logger).size());
+		}
+		try (JsonParser parser = Json.createParser(new StringReader(json))) {
+			JsonParsingException ex = assertThrows(JsonParsingException.class, ()->asDataSourceList(parser, 3, logger));
+			String msg = ex.getMessage();
+			assertNotNull(msg);
+			assertEquals("Json is nested more than 3 levels deep.", msg);
+		}
+	}
+
+	@Test
+	void testAsDataSourceList_JsonParser_DuplicateKeys() throws Exception {
+		String json = "{\"first\":\"one\",\"dup\":[\"a\",\"b\"],\"nested\":{\"dup\":1,\"dup\":2},\"dup\":\"last\"}";
+		DataSourceList fromParser;
+		try (JsonParser parser = Json.createParser(new StringReader(json))) {
+			fromParser = asDataSourceList(parser, 64, logger);
+		}
+		DataSourceList fromObject;
+		try (JsonReader reader = Json.createReader(new StringReader(json))) {
+			fromObject = asDataSourceList(reader.readObject(), logger);
+		}
+
+		// The last value for a duplicate key wins, the same as when going through a JsonObject.
+		assertEquals(asJson(fromObject, logger), asJson(fromParser, logger));
+		Deconstructor deconstructor = fromParser.deconstructor();
+		assertAll(
+				()->assertEquals(List.of("first", "dup", "nested"), fromParser.list().stream().map(DataSource::name).collect(Collectors.toList())),
+				()->assertEquals(Optional.of("last"), deconstructor.getStringByName("dup")),
+				()->assertEquals(Optional.of("2"), deconstructor.getDataSourceListByName("nested").flatMap(dsl->dsl.deconstructor().getStringByName("dup")))
+				);
+	}
+
+	@Test
+	void testAsDataSourceList_JsonParser_NotAnObject() throws Exception {
+		try (JsonParser parser = Json.createParser(new StringReader("[\"value\"]"))) {
+			JsonParsingException ex = assertThrows(JsonParsingException.class, ()->asDataSourceList(parser, 64, logger));
+			String msg = ex.getMessage();
+			assertNotNull(msg);
+			assertEquals("Expected a Json object.", msg);
+		}
+	}
+
 	@Test
 	void testAsDataSourceList_ComplexEmail() throws Exception {
 		final String EMAIL_BODY_NAME = "body";
@@ -171,7 +264,7 @@ class DataSourceListJsonUtilsTest {
 	}
 	
 	@Test
-	void testAsJson() {
+	void testAsJson() throws Exception {
 		
 		// A DataSourceList with no names in it is treated as an Array.
 		DataSourceList nestedJsonArrayDsl = DataSourceList.builder() 	// Order of entries matters for test verification
@@ -261,7 +354,8 @@ class DataSourceListJsonUtilsTest {
 		JsonArray arrayNestedJsonArray = jsonArray.getJsonArray(count++);
 		validateJsonArrayScalarContents(arrayNestedJsonArray);
 
-		
+		// Streaming the same DataSourceList should produce the same Json.
+		assertEquals(result, streamJson(srcDsl));
 	}
 
 	void validateJsonObjectScalarContents(JsonObject jsonObject) {
@@ -315,6 +409,7 @@ class DataSourceListJsonUtilsTest {
 		JsonObject resultJson = asJson(parent, logger);
 //		System.out.println(resultJson.toString());
 		JSONAssert.assertEquals(expectedResult, resultJson.toString(), false);
+		JSONAssert.assertEquals(expectedResult, streamJsonString(parent), false);
 	}
 
 	@Test
@@ -324,6 +419,125 @@ class DataSourceListJsonUtilsTest {
 		JsonObject resultJson = asJson(array, logger);
 		System.out.println(resultJson.toString());
 		JSONAssert.assertEquals(expectedResult, resultJson.toString(), false);
+		JSONAssert.assertEquals(expectedResult, streamJsonString(array), false);
+	}
+
+	@Test
+	void testAsJsonStreamingOutput_LargeBinary() throws Exception {
+		// Larger than the internal chunk size and not a multiple of 3 so that padding is exercised.
+		byte[] largeData = new byte[100_001];
+		new Random(42).nextBytes(largeData);
+		DataSourceList dsl = DataSourceList.builder()
+										   .add(STRING_DATA_STR, "Text with \"quotes\" and \\ backslashes")
+										   .add(BYTE_ARRAY_DATA_STR, largeData)
+										   .add(JSON_ARRAY_DATA_STR, largeData)
+										   .add(JSON_ARRAY_DATA_STR, BYTE_ARRAY_DATA)
+										   .add(LONG_DATA_STR, LONG_DATA)
+										   .build();
+
+		JsonObject result = streamJson(dsl);
+		
+		assertAll(
+				()->assertEquals(asJson(dsl, logger), result),
+				()->assertArrayEquals(largeData, BYTE_DECODER.decode(result.getString(BYTE_ARRAY_DATA_STR))),
+				()->assertArrayEquals(largeData, BYTE_DECODER.decode(result.getJsonArray(JSON_ARRAY_DATA_STR).getString(0))),
+				()->assertArrayEquals(BYTE_ARRAY_DATA, BYTE_DECODER.decode(result.getJsonArray(JSON_ARRAY_DATA_STR).getString(1)))
+				);
+	}
+
+	@Test
+	void testAsJsonStreamingOutput_EmptyBinary() throws Exception {
+		DataSourceList dsl = DataSourceList.builder()
+										   .add(BYTE_ARRAY_DATA_STR, new byte[0])
+										   .build();
+		JSONAssert.assertEquals("{\"" + BYTE_ARRAY_DATA_STR + "\":\"\"}", streamJsonString(dsl), true);
+	}
+
+	@Test
+	void testAsJsonStreamingOutput_BlankName() throws Exception {
+		DataSourceList nested = DataSourceList.builder()
+											  .add(STRING_DATA_STR, STRING_DATA)
+											  .add("", STRING_DATA)
+											  .build();
+		DataSourceList dsl = DataSourceList.builder()
+										   .add(JSON_OBJECT_DATA_STR, nested)
+										   .build();
+		// The error should be reported when the StreamingOutput is created rather than once output has started.
+		IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, ()->asJsonStreamingOutput(dsl, logger));
+		String msg = ex.getMessage();
+		assertNotNull(msg);
+		assertEquals("DataSources contained in JsonObjects cannot have a blank name.", msg);
+	}
+
+	@Test
+	void testAsJsonStreamingOutput_EscapedStrings() throws Exception {
+		String awkward = "Quote \" Backslash \\ Slash / Controls \b\f\n\r\t\u0001\u001f Unicode \u00e9\u4e2d\ud83d\ude00";
+		DataSourceList nested = DataSourceList.builder()
+											  .add(awkward, awkward)
+											  .add(BYTE_ARRAY_DATA_STR, awkward.getBytes(StandardCharsets.UTF_8))
+											  .build();
+		DataSourceList dsl = DataSourceList.builder()
+										   .add(awkward, awkward)
+										   .add("Name \"with\" quotes\n", nested)
+										   .add(STRING_DATA_STR, awkward)
+										   .add(STRING_DATA_STR, STRING_DATA)
+										   .build();
+
+		assertEquals(asJson(dsl, logger), streamJson(dsl));
+	}
+
+	@Test
+	void testAsJsonStreamingOutput_LargeText() throws Exception {
+		// Large enough to be copied from the Reader in several pieces, with surrogate pairs and escapes throughout.
+		StringBuilder text = new StringBuilder();
+		while (text.length() < 100_000) {
+			text.append("Line \"").append(text.length()).append("\"\t\ud83d\ude00\u00e9\n");
+		}
+		DataSourceList dsl = DataSourceList.builder()
+										   .add(STRING_DATA_STR, text.toString())
+										   .build();
+
+		JsonObject result = streamJson(dsl);
+
+		assertEquals(text.toString(), result.getString(STRING_DATA_STR));
+	}
+
+	@Test
+	void testAsJsonStreamingOutput_ReadError() throws Exception {
+		byte[] data = new byte[100_000];
+		DataSource failing = new DataSourceWrapper(DataSourceList.builder().add(BYTE_ARRAY_DATA_STR, data).build().list().get(0)) {
+			@Override
+			public InputStream inputStream() {
+				return new FilterInputStream(super.inputStream()) {
+					@Override
+					public int read(byte[] b, int off, int len) throws IOException {
+						throw new IOException("Read failed");
+					}
+				};
+			}
+		};
+		DataSourceList dsl = DataSourceList.builder()
+										   .add(STRING_DATA_STR, STRING_DATA)
+										   .add(failing)
+										   .build();
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+		assertThrows(IOException.class, ()->asJsonStreamingOutput(dsl, logger).write(os));
+		// The output must not be closed off into something that looks like a complete (but wrong) Json object.
+		String partial = new String(os.toByteArray(), StandardCharsets.UTF_8);
+		assertThrows(javax.json.JsonException.class, ()->Json.createReader(new StringReader(partial)).readObject());
+	}
+
+	private static String streamJsonString(DataSourceList dsl) throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		asJsonStreamingOutput(dsl, logger).write(os);
+		return new String(os.toByteArray(), StandardCharsets.UTF_8);
+	}
+	
+	private static JsonObject streamJson(DataSourceList dsl) throws IOException {
+		try (JsonReader reader = Json.createReader(new StringReader(streamJsonString(dsl)))) {
+			return reader.readObject();
+		}
 	}
 
 	// We can't currently generate an empty object.  I would like to at some point in the future however
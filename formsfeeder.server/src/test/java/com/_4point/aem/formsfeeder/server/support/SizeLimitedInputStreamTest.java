@@ -0,0 +1,63 @@
+package com._4point.aem.formsfeeder.server.support;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.ws.rs.BadRequestException;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com._4point.aem.formsfeeder.server.support.SizeLimitedInputStream.SizeLimitExceededException;
+
+class SizeLimitedInputStreamTest {
+	private final static Logger logger = LoggerFactory.getLogger(SizeLimitedInputStreamTest.class);
+
+	private static final byte[] DATA = "0123456789".getBytes(StandardCharsets.UTF_8);
+
+	@Test
+	void testRead_UnderLimit() throws Exception {
+		try (SizeLimitedInputStream underTest = new SizeLimitedInputStream(new ByteArrayInputStream(DATA), DATA.length, "Test data")) {
+			assertArrayEquals(DATA, underTest.readAllBytes());
+			assertFalse(underTest.exceeded());
+		}
+	}
+
+	@Test
+	void testRead_OverLimit() throws Exception {
+		try (SizeLimitedInputStream underTest = new SizeLimitedInputStream(new ByteArrayInputStream(DATA), DATA.length - 1, "Test data")) {
+			SizeLimitExceededException ex = assertThrows(SizeLimitExceededException.class, ()->underTest.readAllBytes());
+			assertEquals("Test data exceeds the maximum size of 9 bytes", ex.getMessage());
+			assertTrue(underTest.exceeded());
+		}
+	}
+
+	@Test
+	void testReadSingleBytes_OverLimit() throws Exception {
+		try (SizeLimitedInputStream underTest = new SizeLimitedInputStream(new ByteArrayInputStream(DATA), 2, "Test data")) {
+			underTest.read();
+			underTest.read();
+			assertThrows(SizeLimitExceededException.class, ()->underTest.read());
+		}
+	}
+
+	/**
+	 * The StAX parser wraps the SizeLimitExceededException, so callers rely on exceeded() to tell that the limit was hit.
+	 */
+	@Test
+	void testExtractFormData_OverLimit() throws Exception {
+		StringBuilder xdp = new StringBuilder("<xdp:xdp xmlns:xdp=\"http://ns.adobe.com/xdp/\"><xfa:data xmlns:xfa=\"http://www.xfa.org/schema/xfa-data/1.0/\"><form1>");
+		for (int i = 0; i < 10_000; i++) {
+			xdp.append("<Field>Value ").append(i).append("</Field>");
+		}
+		xdp.append("</form1></xfa:data></xdp:xdp>");
+
+		try (SizeLimitedInputStream underTest = new SizeLimitedInputStream(new ByteArrayInputStream(xdp.toString().getBytes(StandardCharsets.UTF_8)), 16 * 1024, "AEM response")) {
+			assertThrows(BadRequestException.class, ()->XmlDataFile.extractFormData(underTest, logger));
+			assertTrue(underTest.exceeded());
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package com._4point.aem.formsfeeder.server.support;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+
+import javax.ws.rs.BadRequestException;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com._4point.aem.formsfeeder.server.support.XmlDataFile.FormData;
+
+class XmlDataFileTest {
+	private final static Logger logger = LoggerFactory.getLogger(XmlDataFileTest.class);
+
+	private static final String XDP_PREFIX = "<?xml version='1.0' encoding='UTF-8'?>\n"
+			+ "<xdp:xdp uuid=\"31e01e60-4ed2-4a1a-a71a-4583243d6ba0\" timeStamp=\"2020-10-20T15:05:10Z\" xmlns:xdp=\"http://ns.adobe.com/xdp/\">\n"
+			+ "<xfa:datasets xmlns:xfa=\"http://www.xfa.org/schema/xfa-data/1.0/\">\n"
+			+ "  <xfa:data>\n    ";
+	private static final String XDP_SUFFIX = "\n  </xfa:data>\n"
+			+ "  <dd:dataDescription xmlns:dd=\"http://ns.adobe.com/data-description/\" dd:name=\"form1\"><form1/></dd:dataDescription>\n"
+			+ "</xfa:datasets>\n"
+			+ "</xdp:xdp>";
+
+	@Test
+	void testExtractFormData() throws Exception {
+		String formData = "<form1><TextField1>Text Field 1 Data</TextField1>\n      <TextField2 attr=\"value\">Text &amp; Data</TextField2><FormsFeeder><Plugin>MockSubmit</Plugin></FormsFeeder></form1>";
+
+		FormData result = XmlDataFile.extractFormData(xdp(formData).getBytes(StandardCharsets.UTF_8), logger);
+
+		assertAll(
+				()->assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?><form1><TextField1>Text Field 1 Data</TextField1><TextField2 attr=\"value\">Text &amp; Data</TextField2><FormsFeeder><Plugin>MockSubmit</Plugin></FormsFeeder></form1>", new String(result.data(), StandardCharsets.UTF_8)),
+				()->assertEquals("MockSubmit", result.pluginName().get())
+				);
+	}
+
+	@Test
+	void testExtractData_Namespaces() throws Exception {
+		String formData = "<xfa:form1 xmlns:ns=\"http://example.com/ns\"><ns:Field xfa:dataNode=\"dataGroup\">Data</ns:Field></xfa:form1>";
+
+		String result = new String(XmlDataFile.extractData(xdp(formData).getBytes(StandardCharsets.UTF_8), logger), StandardCharsets.UTF_8);
+
+		// The xfa namespace was declared on a wrapper, so it must be declared on the extracted data.
+		assertAll(
+				()->assertTrue(result.contains("<xfa:form1"), "Expected '<xfa:form1' in " + result),
+				()->assertTrue(result.contains("xmlns:xfa=\"http://www.xfa.org/schema/xfa-data/1.0/\""), "Expected xfa namespace declaration in " + result),
+				()->assertTrue(result.contains("xmlns:ns=\"http://example.com/ns\""), "Expected ns namespace declaration in " + result),
+				()->assertTrue(result.contains("<ns:Field xfa:dataNode=\"dataGroup\">Data</ns:Field>"), "Expected ns:Field in " + result),
+				()->assertFalse(result.contains("xdp"), "Did not expect the xdp namespace in " + result)
+				);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"PluginName", "   PluginName", "PluginName   ", "   PluginName  "})
+	void testPluginName(String pluginValue) throws Exception {
+		FormData result = XmlDataFile.extractFormData(xdp("<foo><bar><FormsFeeder><Plugin>" + pluginValue + "</Plugin></FormsFeeder></bar></foo>").getBytes(StandardCharsets.UTF_8), logger);
+		assertEquals("PluginName", result.pluginName().get());
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+			"<foo><bar><FormsFeeder></FormsFeeder></bar></foo>",							// No Plugin element
+			"<foo><bar><FormsFeeder><Plugin>  </Plugin></FormsFeeder></bar></foo>",		// Blank Plugin element
+			"<foo><bar/></foo>",															// No FormsFeeder element
+			"<foo><Plugin>PluginName</Plugin><bar><Plugin>PluginName</Plugin></bar></foo>",	// Plugin outside of FormsFeeder element
+			"<foo><FormsFeeder/><FormsFeeder><Plugin>PluginName</Plugin></FormsFeeder></foo>",	// Only the first FormsFeeder element counts
+			"<foo><FormsFeeder><bar><Plugin>PluginName</Plugin></bar></FormsFeeder></foo>"	// Plugin must be a child of FormsFeeder
+			})
+	void testPluginName_NotFound(String formData) throws Exception {
+		FormData result = XmlDataFile.extractFormData(xdp(formData).getBytes(StandardCharsets.UTF_8), logger);
+		assertTrue(result.pluginName().isEmpty(), ()->"Expected no plugin name but found '" + result.pluginName().get() + "'.");
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+			"<xdp:xdp xmlns:xdp=\"http://ns.adobe.com/xdp/\"><form1/></xdp:xdp>",			// No xfa:data
+			"<xdp:xdp xmlns:xdp=\"http://ns.adobe.com/xdp/\"><xfa:data xmlns:xfa=\"http://www.xfa.org/schema/xfa-data/1.0/\">  </xfa:data></xdp:xdp>",	// Empty xfa:data
+			"<xdp:xdp xmlns:xdp=\"http://ns.adobe.com/xdp/\"><data><form1/></data></xdp:xdp>",	// data without the xfa namespace
+			"<xdp:xdp xmlns:xdp=\"http://ns.adobe.com/xdp/\"><xfa:data xmlns:xfa=\"http://www.xfa.org/schema/xfa-data/1.0/\"><form1></xfa:data></xdp:xdp>",	// Bad XML
+			"Not XML"
+			})
+	void testExtractFormData_BadData(String xml) throws Exception {
+		assertThrows(BadRequestException.class, ()->XmlDataFile.extractFormData(xml.getBytes(StandardCharsets.UTF_8), logger));
+	}
+
+	/**
+	 * Measures how long it takes to extract the form data from XDPs of various sizes.  The results are written to the log.
+	 *
+	 * Benchmarks are not part of the normal build, they are run with "mvn test -Pbenchmark".
+	 *
+	 * @param size	approximate size of the XDP (in bytes)
+	 */
+	@Tag("Benchmark")
+	@ParameterizedTest
+	@ValueSource(ints = {10 * 1024, 100 * 1024, 1024 * 1024, 20 * 1024 * 1024})
+	void benchmarkExtractFormData(int size) throws Exception {
+		byte[] xdp = xdp(largeFormData(size)).getBytes(StandardCharsets.UTF_8);
+		int iterations = Math.max(2, (10 * 1024 * 1024) / xdp.length);	// Process about 10MB in total (but at least 2 XDPs)
+
+		for (int i = 0; i < iterations; i++) {	// Warm up
+			XmlDataFile.extractFormData(xdp, logger);
+		}
+		FormData result = null;
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			result = XmlDataFile.extractFormData(xdp, logger);
+		}
+		long elapsedNanos = System.nanoTime() - start;
+
+		double msPerXdp = elapsedNanos / 1_000_000.0 / iterations;
+		double mbPerSecond = ((double)xdp.length * iterations / (1024 * 1024)) / (elapsedNanos / 1_000_000_000.0);
+		logger.info(String.format("Extracted form data from %,d byte XDP in %.3fms (%.1f MB/s).", xdp.length, msPerXdp, mbPerSecond));
+		assertEquals("BenchmarkPlugin", result.pluginName().get());
+	}
+
+	private static String xdp(String formData) {
+		return XDP_PREFIX + formData + XDP_SUFFIX;
+	}
+
+	/**
+	 * Creates form data of (about) the given size with the FormsFeeder element at the end.
+	 */
+	private static String largeFormData(int size) {
+		StringBuilder formData = new StringBuilder(size + 200).append("<form1>");
+		for (int i = 0; formData.length() < size; i++) {
+			formData.append("<Row index=\"").append(i).append("\"><Name>Name ").append(i).append("</Name><Amount>").append(i * 3).append(".50</Amount></Row>\n");
+		}
+		return formData.append("<FormsFeeder><Plugin>BenchmarkPlugin</Plugin></FormsFeeder></form1>").toString();
+	}
+}